@@ -0,0 +1,143 @@
+package com.github.kristofa.brave;
+
+import com.github.kristofa.brave.grpc.BraveGrpcClientInterceptor;
+import com.github.kristofa.brave.grpc.BraveGrpcServerInterceptor;
+import io.grpc.CallOptions;
+import io.grpc.ManagedChannel;
+import io.grpc.MethodDescriptor;
+import io.grpc.Server;
+import io.grpc.ServerInterceptors;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.ClientCalls;
+import io.grpc.stub.ServerCalls;
+import io.grpc.stub.StreamObserver;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import zipkin.reporter.Reporter;
+
+/**
+ * Measures a traced unary call over the in-process transport, comparing how the trace context is
+ * propagated in metadata. The untraced call is the baseline: subtract it to get the tracing cost.
+ */
+@Measurement(iterations = 5, time = 1)
+@Warmup(iterations = 5, time = 1)
+@Fork(3)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(1)
+@State(Scope.Thread)
+public class GrpcPropagationBenchmarks {
+  static final MethodDescriptor.Marshaller<byte[]> BYTES = new MethodDescriptor.Marshaller<byte[]>() {
+    @Override public InputStream stream(byte[] value) {
+      return new ByteArrayInputStream(value);
+    }
+
+    @Override public byte[] parse(InputStream stream) {
+      try {
+        byte[] result = new byte[stream.available()];
+        stream.read(result);
+        return result;
+      } catch (IOException e) {
+        throw new AssertionError(e);
+      }
+    }
+  };
+
+  static final MethodDescriptor<byte[], byte[]> ECHO = MethodDescriptor.create(
+      MethodDescriptor.MethodType.UNARY, "benchmark/echo", BYTES, BYTES);
+
+  static final byte[] MESSAGE = {'h', 'e', 'l', 'l', 'o'};
+
+  final Brave brave = new Brave.Builder("benchmark")
+      .traceSampler(Sampler.ALWAYS_SAMPLE)
+      .reporter(Reporter.NOOP)
+      .build();
+
+  Server server;
+  ManagedChannel untraced;
+  ManagedChannel multipleKeys;
+  ManagedChannel singleKey;
+  ManagedChannel binaryKey;
+
+  @Setup
+  public void start() throws IOException {
+    ServerServiceDefinition service = ServerServiceDefinition.builder("benchmark")
+        .addMethod(ECHO, ServerCalls.asyncUnaryCall(new ServerCalls.UnaryMethod<byte[], byte[]>() {
+          @Override public void invoke(byte[] request, StreamObserver<byte[]> responseObserver) {
+            responseObserver.onNext(request);
+            responseObserver.onCompleted();
+          }
+        })).build();
+    server = InProcessServerBuilder.forName("benchmark")
+        .addService(ServerInterceptors.intercept(service, BraveGrpcServerInterceptor.create(brave)))
+        .directExecutor()
+        .build().start();
+
+    untraced = channel().build();
+    multipleKeys = channel().intercept(BraveGrpcClientInterceptor.create(brave)).build();
+    singleKey = channel().intercept(BraveGrpcClientInterceptor.builder(brave)
+        .b3SingleHeader(true).build()).build();
+    binaryKey = channel().intercept(BraveGrpcClientInterceptor.builder(brave)
+        .binaryPropagation(true).build()).build();
+  }
+
+  static InProcessChannelBuilder channel() {
+    return InProcessChannelBuilder.forName("benchmark").directExecutor();
+  }
+
+  @TearDown
+  public void stop() {
+    untraced.shutdownNow();
+    multipleKeys.shutdownNow();
+    singleKey.shutdownNow();
+    binaryKey.shutdownNow();
+    server.shutdownNow();
+  }
+
+  @Benchmark public byte[] unaryCall_untraced() {
+    return ClientCalls.blockingUnaryCall(untraced, ECHO, CallOptions.DEFAULT, MESSAGE);
+  }
+
+  @Benchmark public byte[] unaryCall_multipleKeys() {
+    return ClientCalls.blockingUnaryCall(multipleKeys, ECHO, CallOptions.DEFAULT, MESSAGE);
+  }
+
+  @Benchmark public byte[] unaryCall_singleKey() {
+    return ClientCalls.blockingUnaryCall(singleKey, ECHO, CallOptions.DEFAULT, MESSAGE);
+  }
+
+  @Benchmark public byte[] unaryCall_binaryKey() {
+    return ClientCalls.blockingUnaryCall(binaryKey, ECHO, CallOptions.DEFAULT, MESSAGE);
+  }
+
+  // Convenience main entry-point
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+        .include(".*" + GrpcPropagationBenchmarks.class.getSimpleName() + ".*")
+        .addProfiler(GCProfiler.class)
+        .build();
+
+    new Runner(opt).run();
+  }
+}
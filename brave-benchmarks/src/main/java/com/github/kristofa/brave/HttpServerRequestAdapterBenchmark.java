@@ -14,12 +14,15 @@ import org.openjdk.jmh.annotations.Scope;
 import org.openjdk.jmh.annotations.State;
 import org.openjdk.jmh.annotations.Threads;
 import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
 import org.openjdk.jmh.runner.Runner;
 import org.openjdk.jmh.runner.RunnerException;
 import org.openjdk.jmh.runner.options.Options;
 import org.openjdk.jmh.runner.options.OptionsBuilder;
 
 import com.github.kristofa.brave.http.BraveHttpHeaders;
+import com.github.kristofa.brave.http.HttpClientRequest;
+import com.github.kristofa.brave.http.HttpClientRequestAdapter;
 import com.github.kristofa.brave.http.HttpRequest;
 import com.github.kristofa.brave.http.HttpServerRequest;
 import com.github.kristofa.brave.http.HttpServerRequestAdapter;
@@ -83,6 +86,69 @@ public class HttpServerRequestAdapterBenchmark {
         };
 
         final HttpServerRequestAdapter adapter = new HttpServerRequestAdapter(request, nameProvider);
+
+        final HttpServerRequestAdapter multipleHeaders = new HttpServerRequestAdapter(
+            new FakeServerRequest(URI, false), nameProvider);
+        final HttpServerRequestAdapter singleHeader = new HttpServerRequestAdapter(
+            new FakeServerRequest(URI, true), nameProvider);
+
+        final SpanId childSpan = SpanId.builder()
+            .traceId(0x463ac35c9f6413adL).parentId(0x463ac35c9f6413adL).spanId(0x72485a3953bb6124L)
+            .build();
+        final HttpClientRequest clientRequest = new HttpClientRequest() {
+            @Override
+            public void addHeader(String header, String value) {
+            }
+
+            @Override
+            public URI getUri() {
+                return URI;
+            }
+
+            @Override
+            public String getHttpMethod() {
+                return "GET";
+            }
+        };
+        final HttpClientRequestAdapter multipleHeadersClient =
+            new HttpClientRequestAdapter(clientRequest, nameProvider);
+        final HttpClientRequestAdapter singleHeaderClient =
+            new HttpClientRequestAdapter(clientRequest, nameProvider, true);
+    }
+
+    /** Sends a sampled child span, as a traced caller would, in either header format. */
+    static final class FakeServerRequest implements HttpServerRequest {
+        final URI uri;
+        final boolean singleHeader;
+
+        FakeServerRequest(URI uri, boolean singleHeader) {
+            this.uri = uri;
+            this.singleHeader = singleHeader;
+        }
+
+        @Override
+        public String getHttpHeaderValue(String headerName) {
+            if (singleHeader) {
+                return BraveHttpHeaders.B3.getName().equals(headerName)
+                    ? "463ac35c9f6413ad-72485a3953bb6124-1-463ac35c9f6413ad"
+                    : null;
+            }
+            if (BraveHttpHeaders.Sampled.getName().equals(headerName)) return "1";
+            if (BraveHttpHeaders.TraceId.getName().equals(headerName)) return "463ac35c9f6413ad";
+            if (BraveHttpHeaders.SpanId.getName().equals(headerName)) return "72485a3953bb6124";
+            if (BraveHttpHeaders.ParentSpanId.getName().equals(headerName)) return "463ac35c9f6413ad";
+            return null;
+        }
+
+        @Override
+        public URI getUri() {
+            return uri;
+        }
+
+        @Override
+        public String getHttpMethod() {
+            return "GET";
+        }
     }
 
     @Benchmark
@@ -90,10 +156,31 @@ public class HttpServerRequestAdapterBenchmark {
         return data.adapter.getTraceData();
     }
 
+    @Benchmark
+    public TraceData httpServerRequestAdapter_multipleHeaders(Data data) {
+        return data.multipleHeaders.getTraceData();
+    }
+
+    @Benchmark
+    public TraceData httpServerRequestAdapter_singleHeader(Data data) {
+        return data.singleHeader.getTraceData();
+    }
+
+    @Benchmark
+    public void httpClientRequestAdapter_multipleHeaders(Data data) {
+        data.multipleHeadersClient.addSpanIdToRequest(data.childSpan);
+    }
+
+    @Benchmark
+    public void httpClientRequestAdapter_singleHeader(Data data) {
+        data.singleHeaderClient.addSpanIdToRequest(data.childSpan);
+    }
+
     // Convenience main entry-point
     public static void main(String[] args) throws RunnerException {
         Options opt = new OptionsBuilder()
                 .include(".*" + HttpServerRequestAdapterBenchmark.class.getSimpleName() + ".*")
+                .addProfiler(GCProfiler.class)
                 .build();
 
         new Runner(opt).run();
@@ -0,0 +1,74 @@
+package com.github.kristofa.brave;
+
+import com.twitter.zipkin.gen.Endpoint;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import zipkin.reporter.Reporter;
+
+/**
+ * Cost of tracking spans in flight, measured on a local span that starts and finishes. Several
+ * threads share the registry, as they would in a server.
+ */
+@Measurement(iterations = 5, time = 1)
+@Warmup(iterations = 5, time = 1)
+@Fork(3)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Threads(4)
+@State(Scope.Benchmark)
+public class InFlightSpansBenchmarks {
+  static final Endpoint ENDPOINT = Endpoint.create("benchmark", 127 << 24 | 1, 8080);
+
+  ServerClientAndLocalSpanState state = new ThreadLocalServerClientAndLocalSpanState(ENDPOINT);
+  LocalTracer localTracer = new Brave.Builder(state).reporter(Reporter.NOOP).build().localTracer();
+  InFlightSpans inFlightSpans = InFlightSpans.create();
+  LocalTracer inFlightLocalTracer = new Brave.Builder(state).reporter(Reporter.NOOP)
+      .inFlightSpans(inFlightSpans).build().localTracer();
+
+  @TearDown
+  public void close() {
+    inFlightSpans.close();
+  }
+
+  @Benchmark
+  public void localSpan() {
+    localTracer.startNewSpan("codec", "encode");
+    localTracer.finishSpan();
+  }
+
+  @Benchmark
+  public void localSpan_inFlightSpans() {
+    inFlightLocalTracer.startNewSpan("codec", "encode");
+    inFlightLocalTracer.finishSpan();
+  }
+
+  @Benchmark
+  public int inFlightByName() {
+    return inFlightSpans.inFlight("encode");
+  }
+
+  // Convenience main entry-point
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+        .include(".*" + InFlightSpansBenchmarks.class.getSimpleName() + ".*")
+        .addProfiler(GCProfiler.class)
+        .build();
+
+    new Runner(opt).run();
+  }
+}
@@ -0,0 +1,130 @@
+package com.github.kristofa.brave;
+
+import com.twitter.zipkin.gen.Annotation;
+import com.twitter.zipkin.gen.BinaryAnnotation;
+import com.twitter.zipkin.gen.Endpoint;
+import com.twitter.zipkin.gen.Span;
+import com.twitter.zipkin.gen.SpanCodec;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import zipkin.Constants;
+
+/**
+ * Compares the cost of compressing json span batches of different sizes. {@link #main(String[])}
+ * prints the compression ratio of each compressor before the benchmarks run.
+ */
+@Measurement(iterations = 10, time = 1)
+@Warmup(iterations = 10, time = 1)
+@Fork(3)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(1)
+@State(Scope.Benchmark)
+public class PayloadCompressorBenchmarks {
+  static final PayloadCompressor gzip1 = PayloadCompressor.gzip(1);
+  static final PayloadCompressor gzip6 = PayloadCompressor.gzip(6);
+  static final PayloadCompressor fastGzip = PayloadCompressor.fastGzip();
+
+  @Param({"1024", "65536", "1048576"})
+  int size;
+
+  byte[] payload;
+
+  @Setup
+  public void setup() {
+    payload = spans(size);
+  }
+
+  /** What HttpSpanCollector did before compressors: a new deflater per payload. */
+  @Benchmark
+  public byte[] gzipOutputStream() throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    GZIPOutputStream gzip = new GZIPOutputStream(out);
+    gzip.write(payload);
+    gzip.close();
+    return out.toByteArray();
+  }
+
+  @Benchmark
+  public byte[] pooledGzip_level1() throws IOException {
+    return gzip1.compress(payload);
+  }
+
+  @Benchmark
+  public byte[] pooledGzip_level6() throws IOException {
+    return gzip6.compress(payload);
+  }
+
+  @Benchmark
+  public byte[] fastGzip() throws IOException {
+    return fastGzip.compress(payload);
+  }
+
+  /** Returns a json list of distinct client spans, of at least the given size. */
+  static byte[] spans(int size) {
+    Endpoint web = Endpoint.builder().serviceName("web").ipv4(124 << 24 | 13 << 16 | 90 << 8 | 3)
+        .port(80).build();
+    Endpoint db = Endpoint.builder().serviceName("db").ipv4(172 << 24 | 17 << 16 | 2)
+        .port(3306).build();
+    List<Span> spans = new ArrayList<Span>();
+    int encodedSize = 2;
+    for (long id = 1L; encodedSize < size; id++) {
+      long timestamp = 1444438900941000L + id * 1000;
+      Span span = new Span()
+          .setTrace_id(id * 0x9E3779B97F4A7C15L)
+          .setId(id * 0xC2B2AE3D27D4EB4FL)
+          .setName("query")
+          .setTimestamp(timestamp)
+          .setDuration(id % 100 * 7)
+          .addToAnnotations(Annotation.create(timestamp, Constants.CLIENT_SEND, web))
+          .addToAnnotations(Annotation.create(timestamp + id % 100 * 7, Constants.CLIENT_RECV, web))
+          .addToBinary_annotations(
+              BinaryAnnotation.create("jdbc.query", "select * from users where id = " + id, web))
+          .addToBinary_annotations(BinaryAnnotation.address(Constants.SERVER_ADDR, db));
+      spans.add(span);
+      encodedSize += SpanCodec.JSON.writeSpan(span).length + 1;
+    }
+    return SpanCodec.JSON.writeSpans(spans);
+  }
+
+  // Convenience main entry-point
+  public static void main(String[] args) throws IOException, RunnerException {
+    System.out.println("Compressed size as a fraction of json:");
+    for (int size : new int[] {1024, 65536, 1048576}) {
+      byte[] payload = spans(size);
+      System.out.println("  " + size + " bytes: gzip(1) " + ratio(gzip1, payload)
+          + ", gzip(6) " + ratio(gzip6, payload)
+          + ", fastGzip " + ratio(fastGzip, payload));
+    }
+
+    Options opt = new OptionsBuilder()
+        .include(".*" + PayloadCompressorBenchmarks.class.getSimpleName() + ".*")
+        .build();
+
+    new Runner(opt).run();
+  }
+
+  static String ratio(PayloadCompressor compressor, byte[] payload) throws IOException {
+    return String.format("%.3f", (double) compressor.compress(payload).length / payload.length);
+  }
+}
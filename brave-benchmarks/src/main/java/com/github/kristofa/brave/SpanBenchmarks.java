@@ -0,0 +1,93 @@
+package com.github.kristofa.brave;
+
+import com.twitter.zipkin.gen.Annotation;
+import com.twitter.zipkin.gen.BinaryAnnotation;
+import com.twitter.zipkin.gen.Endpoint;
+import com.twitter.zipkin.gen.Span;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Memory cost of a server span, recorded the same way {@link ServerTracer} does.
+ *
+ * <p>Run with the GC profiler, as done in {@link #main}, and look at {@code gc.alloc.rate.norm}.
+ * Everything allocated by {@link #inFlightSpan} is reachable from the returned span, so that is
+ * also the size retained for each request in progress. {@link #finishedSpan} adds what it costs to
+ * complete the span and convert it for reporting. {@link #finishedSpan_pooled} is the same, except
+ * the span is recycled with a {@link SpanPool}.
+ */
+@Measurement(iterations = 5, time = 1)
+@Warmup(iterations = 5, time = 1)
+@Fork(3)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Threads(1)
+@State(Scope.Thread)
+public class SpanBenchmarks {
+  static final Endpoint ENDPOINT = Endpoint.create("benchmark", 127 << 24 | 1, 8080);
+  static final SpanId SPAN_ID = SpanId.builder()
+      .traceId(0x463ac35c9f6413adL).parentId(0x463ac35c9f6413adL).spanId(0x72485a3953bb6124L)
+      .build();
+
+  long timestamp = 1472470996199000L;
+  SpanPool pool = SpanPool.create();
+
+  @Benchmark
+  public Span inFlightSpan() {
+    return recordRequest(SPAN_ID.toSpan());
+  }
+
+  @Benchmark
+  public zipkin.Span finishedSpan() {
+    return finish(inFlightSpan());
+  }
+
+  @Benchmark
+  public zipkin.Span finishedSpan_pooled() {
+    Span span = recordRequest(pool.acquire(SPAN_ID));
+    zipkin.Span result = finish(span);
+    pool.release(span);
+    return result;
+  }
+
+  Span recordRequest(Span span) {
+    span.setName("get");
+    Annotation serverReceive = Annotation.create(timestamp, "sr", ENDPOINT);
+    span.setTimestamp(serverReceive.timestamp);
+    span.addToAnnotations(serverReceive);
+    span.startTick = System.nanoTime();
+    span.addToBinary_annotations(
+        BinaryAnnotation.create(TraceKeys.HTTP_URL, "/users/1", ENDPOINT));
+    return span;
+  }
+
+  zipkin.Span finish(Span span) {
+    span.addToAnnotations(Annotation.create(timestamp + 1000L, "ss", ENDPOINT));
+    span.setDuration(1000L);
+    return span.toZipkin();
+  }
+
+  // Convenience main entry-point
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+        .include(".*" + SpanBenchmarks.class.getSimpleName() + ".*")
+        .addProfiler(GCProfiler.class)
+        .build();
+
+    new Runner(opt).run();
+  }
+}
@@ -0,0 +1,120 @@
+package com.github.kristofa.brave;
+
+import com.twitter.zipkin.gen.Annotation;
+import com.twitter.zipkin.gen.BinaryAnnotation;
+import com.twitter.zipkin.gen.Endpoint;
+import com.twitter.zipkin.gen.Span;
+import com.twitter.zipkin.gen.SpanCodec;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import zipkin.Constants;
+
+/**
+ * Compares the encode speed of Zipkin v1 and v2 formats. Sizes of the encoded spans are printed
+ * by {@link #main(String[])} before the benchmarks run.
+ */
+@Measurement(iterations = 10, time = 1)
+@Warmup(iterations = 10, time = 1)
+@Fork(3)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(1)
+public class SpanCodecBenchmarks {
+  static final Endpoint web = Endpoint.builder()
+      .serviceName("web")
+      .ipv4(124 << 24 | 13 << 16 | 90 << 8 | 3)
+      .port(80).build();
+  static final Endpoint db = Endpoint.builder()
+      .serviceName("db")
+      .ipv4(172 << 24 | 17 << 16 | 2)
+      .port(3306).build();
+
+  /** A typical client span, where every annotation repeats the local endpoint in v1. */
+  static final Span clientSpan = new Span()
+      .setTrace_id(-692101025335252320L)
+      .setParent_id(-7842865617155193778L)
+      .setId(8207293009014896295L)
+      .setName("query")
+      .setTimestamp(1444438900941000L)
+      .setDuration(77000L)
+      .addToAnnotations(Annotation.create(1444438900941000L, Constants.CLIENT_SEND, web))
+      .addToAnnotations(Annotation.create(1444438900948000L, Constants.WIRE_SEND, web))
+      .addToAnnotations(Annotation.create(1444438901017000L, Constants.WIRE_RECV, web))
+      .addToAnnotations(Annotation.create(1444438901018000L, Constants.CLIENT_RECV, web))
+      .addToBinary_annotations(BinaryAnnotation.create("jdbc.query", "select * from users", web))
+      .addToBinary_annotations(BinaryAnnotation.address(Constants.SERVER_ADDR, db));
+
+  static final List<Span> tenClientSpans = new ArrayList<Span>();
+
+  static {
+    for (int i = 0; i < 10; i++) tenClientSpans.add(clientSpan);
+  }
+
+  @Benchmark
+  public byte[] writeClientSpan_json() {
+    return SpanCodec.JSON.writeSpan(clientSpan);
+  }
+
+  @Benchmark
+  public byte[] writeClientSpan_thrift() {
+    return SpanCodec.THRIFT.writeSpan(clientSpan);
+  }
+
+  @Benchmark
+  public byte[] writeClientSpan_json_v2() {
+    return SpanCodec.JSON_V2.writeSpan(clientSpan);
+  }
+
+  @Benchmark
+  public byte[] writeClientSpan_proto3() {
+    return SpanCodec.PROTO3.writeSpan(clientSpan);
+  }
+
+  @Benchmark
+  public byte[] writeTenClientSpans_json() {
+    return SpanCodec.JSON.writeSpans(tenClientSpans);
+  }
+
+  @Benchmark
+  public byte[] writeTenClientSpans_thrift() {
+    return SpanCodec.THRIFT.writeSpans(tenClientSpans);
+  }
+
+  @Benchmark
+  public byte[] writeTenClientSpans_json_v2() {
+    return SpanCodec.JSON_V2.writeSpans(tenClientSpans);
+  }
+
+  @Benchmark
+  public byte[] writeTenClientSpans_proto3() {
+    return SpanCodec.PROTO3.writeSpans(tenClientSpans);
+  }
+
+  // Convenience main entry-point
+  public static void main(String[] args) throws RunnerException {
+    System.out.println("Encoded size of a client span in bytes:");
+    System.out.println("  json:    " + SpanCodec.JSON.writeSpan(clientSpan).length);
+    System.out.println("  thrift:  " + SpanCodec.THRIFT.writeSpan(clientSpan).length);
+    System.out.println("  json_v2: " + SpanCodec.JSON_V2.writeSpan(clientSpan).length);
+    System.out.println("  proto3:  " + SpanCodec.PROTO3.writeSpan(clientSpan).length);
+
+    Options opt = new OptionsBuilder()
+        .include(".*" + SpanCodecBenchmarks.class.getSimpleName() + ".*")
+        .build();
+
+    new Runner(opt).run();
+  }
+}
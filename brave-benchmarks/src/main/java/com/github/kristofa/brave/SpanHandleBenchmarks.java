@@ -0,0 +1,73 @@
+package com.github.kristofa.brave;
+
+import com.twitter.zipkin.gen.Endpoint;
+import com.twitter.zipkin.gen.Span;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import zipkin.reporter.Reporter;
+
+/**
+ * Cost of tracing an asynchronous client call, whose response is processed on another thread.
+ * Both run on the calling thread here, so this only measures the tracing work.
+ */
+@Measurement(iterations = 5, time = 1)
+@Warmup(iterations = 5, time = 1)
+@Fork(3)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Threads(1)
+@State(Scope.Thread)
+public class SpanHandleBenchmarks {
+  static final Endpoint ENDPOINT = Endpoint.create("benchmark", 127 << 24 | 1, 8080);
+
+  Brave brave = new Brave.Builder(new ThreadLocalServerClientAndLocalSpanState(ENDPOINT))
+      .reporter(Reporter.NOOP).build();
+  ClientTracer clientTracer = brave.clientTracer();
+  ClientSpanThreadBinder clientSpanThreadBinder = brave.clientSpanThreadBinder();
+
+  /** Starts a thread-bound span, then binds it again in the callback, like callers used to. */
+  @Benchmark
+  public void threadBinder() {
+    clientTracer.startNewSpan("get");
+    clientTracer.setClientSent();
+    Span span = clientSpanThreadBinder.getCurrentClientSpan();
+    clientSpanThreadBinder.setCurrentSpan(null);
+
+    // callback
+    clientSpanThreadBinder.setCurrentSpan(span);
+    clientTracer.setClientReceived();
+  }
+
+  @Benchmark
+  public void spanHandle() {
+    SpanHandle span = clientTracer.startSpan("get");
+    span.setClientSent();
+
+    // callback
+    span.finish();
+  }
+
+  // Convenience main entry-point
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+        .include(".*" + SpanHandleBenchmarks.class.getSimpleName() + ".*")
+        .addProfiler(GCProfiler.class)
+        .build();
+
+    new Runner(opt).run();
+  }
+}
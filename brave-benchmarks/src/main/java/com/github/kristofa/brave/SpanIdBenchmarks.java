@@ -2,6 +2,7 @@ package com.github.kristofa.brave;
 
 import com.twitter.finagle.tracing.TraceId;
 import com.twitter.finagle.tracing.TraceId$;
+import java.util.Random;
 import java.util.concurrent.TimeUnit;
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.BenchmarkMode;
@@ -9,8 +10,11 @@ import org.openjdk.jmh.annotations.Fork;
 import org.openjdk.jmh.annotations.Measurement;
 import org.openjdk.jmh.annotations.Mode;
 import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
 import org.openjdk.jmh.annotations.Threads;
 import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
 import org.openjdk.jmh.runner.Runner;
 import org.openjdk.jmh.runner.RunnerException;
 import org.openjdk.jmh.runner.options.Options;
@@ -22,12 +26,23 @@ import org.openjdk.jmh.runner.options.OptionsBuilder;
 @BenchmarkMode(Mode.Throughput)
 @OutputTimeUnit(TimeUnit.MICROSECONDS)
 @Threads(1)
+@State(Scope.Thread)
 public class SpanIdBenchmarks {
   static final SpanId sampledRootSpan =
       new SpanId(1L, 1L, 1L, SpanId.FLAG_SAMPLED | SpanId.FLAG_SAMPLING_SET);
   static final byte[] sampledRootSpanBytes = sampledRootSpan.bytes();
   static final TraceId sampledRootSpanFinagle =
       TraceId$.MODULE$.deserialize(sampledRootSpanBytes).get();
+  static final String traceIdHeader = "463ac35c9f6413ad";
+  static final String spanIdHeader = "72485a3953bb6124";
+  static final byte[] b3Bytes = "463ac35c9f6413ad-72485a3953bb6124-1".getBytes();
+
+  // tracers share one Random, so also run traceIdHigh benchmarks with more threads, like -t 4
+  static final Random prng = new Random();
+
+  // caller-supplied, such as an outbound header buffer
+  final char[] chars = new char[16];
+  final byte[] bytes = new byte[16];
 
   @Benchmark
   public SpanId fromBytes_brave() {
@@ -59,10 +74,69 @@ public class SpanIdBenchmarks {
     return sampledRootSpanFinagle.toString();
   }
 
+  @Benchmark
+  public String traceIdString() {
+    return sampledRootSpan.traceIdString();
+  }
+
+  @Benchmark
+  public String convertToString_spanId() {
+    return IdConversion.convertToString(sampledRootSpan.spanId);
+  }
+
+  @Benchmark
+  public String convertToPaddedString_spanId() {
+    return IdConversion.convertToPaddedString(sampledRootSpan.spanId);
+  }
+
+  @Benchmark
+  public char[] writeHexLong_chars() {
+    IdConversion.writeHexLong(chars, 0, sampledRootSpan.spanId);
+    return chars;
+  }
+
+  @Benchmark
+  public byte[] writeHexLong_bytes() {
+    IdConversion.writeHexLong(bytes, 0, sampledRootSpan.spanId);
+    return bytes;
+  }
+
+  @Benchmark
+  public long convertToLong_string() {
+    return IdConversion.convertToLong(spanIdHeader);
+  }
+
+  @Benchmark
+  public long convertToLong_bytesRange() {
+    return IdConversion.convertToLong(b3Bytes, 17, 33);
+  }
+
+  @Benchmark
+  public long traceIdHigh_random() {
+    return prng.nextLong();
+  }
+
+  @Benchmark
+  public long traceIdHigh_timeOrdered() {
+    return SpanId.timeOrderedTraceIdHigh(System.currentTimeMillis() * 1000L, prng);
+  }
+
+  /** What a server adapter does with incoming headers: the only allocation should be the result. */
+  @Benchmark
+  public SpanId builder_fromHeaders() {
+    return SpanId.builder()
+        .traceId(IdConversion.convertToLong(traceIdHeader))
+        .spanId(IdConversion.convertToLong(spanIdHeader))
+        .parentId(IdConversion.convertToLong(traceIdHeader))
+        .sampled(true)
+        .build();
+  }
+
   // Convenience main entry-point
   public static void main(String[] args) throws RunnerException {
     Options opt = new OptionsBuilder()
         .include(".*" + SpanIdBenchmarks.class.getSimpleName() + ".*")
+        .addProfiler(GCProfiler.class)
         .build();
 
     new Runner(opt).run();
@@ -0,0 +1,88 @@
+package com.github.kristofa.brave;
+
+import com.twitter.zipkin.gen.Endpoint;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Overhead added to each task handed to an executor, without the cost of the executor itself.
+ * Tasks run on the calling thread, which is what the executing thread does after dequeuing one.
+ */
+@Measurement(iterations = 5, time = 1)
+@Warmup(iterations = 5, time = 1)
+@Fork(3)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Threads(1)
+@State(Scope.Thread)
+public class SpanStateSnapshotBenchmarks {
+  static final Endpoint ENDPOINT = Endpoint.create("benchmark", 127 << 24 | 1, 8080);
+
+  ServerClientAndLocalSpanState state = new ThreadLocalServerClientAndLocalSpanState(ENDPOINT);
+  Brave brave = new Brave.Builder(state).build();
+  ServerSpanThreadBinder serverSpanThreadBinder = brave.serverSpanThreadBinder();
+  Blackhole blackhole;
+  Runnable task = new Runnable() {
+    @Override public void run() {
+      blackhole.consume(state.getCurrentServerSpan());
+    }
+  };
+
+  @Setup
+  public void setup(Blackhole blackhole) {
+    this.blackhole = blackhole;
+    SpanId spanId = SpanId.builder().traceId(1L).spanId(2L).build();
+    state.setCurrentServerSpan(ServerSpan.create(spanId.toSpan().setName("get")));
+    state.setCurrentLocalSpan(spanId.toBuilder().spanId(3L).parentId(2L).build().toSpan());
+  }
+
+  @TearDown
+  public void clear() {
+    state.setCurrentServerSpan(null);
+    state.setCurrentLocalSpan(null);
+  }
+
+  @Benchmark
+  public void unwrapped() {
+    task.run();
+  }
+
+  /** Only carries the server span */
+  @Benchmark
+  public void braveRunnable() {
+    BraveRunnable.create(task, serverSpanThreadBinder).run();
+  }
+
+  /** Carries the server, local and client span */
+  @Benchmark
+  public void spanStateSnapshot() {
+    SpanStateSnapshot.capture(state).wrap(task).run();
+  }
+
+  // Convenience main entry-point
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+        .include(".*" + SpanStateSnapshotBenchmarks.class.getSimpleName() + ".*")
+        .addProfiler(GCProfiler.class)
+        .build();
+
+    new Runner(opt).run();
+  }
+}
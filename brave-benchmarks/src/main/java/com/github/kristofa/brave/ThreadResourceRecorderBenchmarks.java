@@ -0,0 +1,74 @@
+package com.github.kristofa.brave;
+
+import com.twitter.zipkin.gen.Endpoint;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import zipkin.reporter.Reporter;
+
+/** Cost of a local span, without and with thread resources measured for all or some spans. */
+@Measurement(iterations = 5, time = 1)
+@Warmup(iterations = 5, time = 1)
+@Fork(3)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Threads(1)
+@State(Scope.Thread)
+public class ThreadResourceRecorderBenchmarks {
+  static final Endpoint ENDPOINT = Endpoint.create("benchmark", 127 << 24 | 1, 8080);
+
+  LocalTracer withoutRecorder = localTracer(new Brave.Builder(state()));
+  LocalTracer everySpan = localTracer(new Brave.Builder(state())
+      .threadResourceRecorder(ThreadResourceRecorder.create()));
+  LocalTracer oneInTen = localTracer(new Brave.Builder(state())
+      .threadResourceRecorder(ThreadResourceRecorder.builder().sampleEvery(10).build()));
+
+  static ServerClientAndLocalSpanState state() {
+    return new ThreadLocalServerClientAndLocalSpanState(ENDPOINT);
+  }
+
+  static LocalTracer localTracer(Brave.Builder builder) {
+    return builder.reporter(Reporter.NOOP).build().localTracer();
+  }
+
+  @Benchmark
+  public void localSpan() {
+    withoutRecorder.startNewSpan("codec", "encode");
+    withoutRecorder.finishSpan();
+  }
+
+  @Benchmark
+  public void localSpan_recordEvery() {
+    everySpan.startNewSpan("codec", "encode");
+    everySpan.finishSpan();
+  }
+
+  @Benchmark
+  public void localSpan_recordOneInTen() {
+    oneInTen.startNewSpan("codec", "encode");
+    oneInTen.finishSpan();
+  }
+
+  // Convenience main entry-point
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+        .include(".*" + ThreadResourceRecorderBenchmarks.class.getSimpleName() + ".*")
+        .addProfiler(GCProfiler.class)
+        .build();
+
+    new Runner(opt).run();
+  }
+}
@@ -0,0 +1,118 @@
+package com.github.kristofa.brave;
+
+import com.github.kristofa.brave.http.BraveHttpHeaders;
+import com.github.kristofa.brave.http.DefaultSpanNameProvider;
+import com.github.kristofa.brave.http.HttpClientRequest;
+import com.github.kristofa.brave.http.HttpClientRequestAdapter;
+import com.github.kristofa.brave.http.HttpClientResponseAdapter;
+import com.github.kristofa.brave.http.HttpResponse;
+import com.github.kristofa.brave.http.HttpServerRequest;
+import com.github.kristofa.brave.http.HttpServerRequestAdapter;
+import com.github.kristofa.brave.http.HttpServerResponseAdapter;
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import zipkin.reporter.Reporter;
+
+/**
+ * Per-request cost of each {@link TracingControl.Level}: a sampled request is received, makes one
+ * outgoing call, and responds. Spans are reported to a no-op reporter.
+ */
+@Measurement(iterations = 5, time = 1)
+@Warmup(iterations = 5, time = 1)
+@Fork(3)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Threads(1)
+@State(Scope.Thread)
+public class TracingLevelBenchmarks {
+  static final URI URI = java.net.URI.create("http://localhost:8080/users/1");
+
+  static final HttpResponse OK = new HttpResponse() {
+    @Override public int getHttpStatusCode() {
+      return 200;
+    }
+  };
+
+  @Param({"OFF", "PROPAGATE_ONLY", "FULL"})
+  TracingControl.Level level;
+
+  final TracingControl control = new TracingControl();
+  final Brave brave = new Brave.Builder("benchmark")
+      .reporter(Reporter.NOOP)
+      .tracingControl(control)
+      .build();
+
+  final ServerRequestInterceptor serverRequestInterceptor = brave.serverRequestInterceptor();
+  final ServerResponseInterceptor serverResponseInterceptor = brave.serverResponseInterceptor();
+  final ClientRequestInterceptor clientRequestInterceptor = brave.clientRequestInterceptor();
+  final ClientResponseInterceptor clientResponseInterceptor = brave.clientResponseInterceptor();
+
+  final HttpServerRequest serverRequest = new HttpServerRequest() {
+    @Override public String getHttpHeaderValue(String headerName) {
+      if (BraveHttpHeaders.Sampled.getName().equals(headerName)) return "1";
+      if (BraveHttpHeaders.TraceId.getName().equals(headerName)) return "463ac35c9f6413ad";
+      if (BraveHttpHeaders.SpanId.getName().equals(headerName)) return "72485a3953bb6124";
+      return null;
+    }
+
+    @Override public URI getUri() {
+      return URI;
+    }
+
+    @Override public String getHttpMethod() {
+      return "GET";
+    }
+  };
+
+  final HttpClientRequest clientRequest = new HttpClientRequest() {
+    @Override public void addHeader(String header, String value) {
+    }
+
+    @Override public URI getUri() {
+      return URI;
+    }
+
+    @Override public String getHttpMethod() {
+      return "GET";
+    }
+  };
+
+  @Setup public void setLevel() {
+    control.level(level);
+  }
+
+  @Benchmark public void request() {
+    DefaultSpanNameProvider names = new DefaultSpanNameProvider();
+    serverRequestInterceptor.handle(new HttpServerRequestAdapter(serverRequest, names));
+    clientRequestInterceptor.handle(new HttpClientRequestAdapter(clientRequest, names));
+    clientResponseInterceptor.handle(new HttpClientResponseAdapter(OK));
+    serverResponseInterceptor.handle(new HttpServerResponseAdapter(OK));
+  }
+
+  // Convenience main entry-point
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+        .include(".*" + TracingLevelBenchmarks.class.getSimpleName() + ".*")
+        .addProfiler(GCProfiler.class)
+        .build();
+
+    new Runner(opt).run();
+  }
+}
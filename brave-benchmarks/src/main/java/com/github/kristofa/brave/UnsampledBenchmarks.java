@@ -0,0 +1,140 @@
+package com.github.kristofa.brave;
+
+import com.github.kristofa.brave.http.BraveHttpHeaders;
+import com.github.kristofa.brave.http.HttpClientRequest;
+import com.github.kristofa.brave.http.HttpClientRequestAdapter;
+import com.github.kristofa.brave.http.HttpClientResponseAdapter;
+import com.github.kristofa.brave.http.HttpRequest;
+import com.github.kristofa.brave.http.HttpResponse;
+import com.github.kristofa.brave.http.HttpServerRequest;
+import com.github.kristofa.brave.http.HttpServerRequestAdapter;
+import com.github.kristofa.brave.http.HttpServerResponseAdapter;
+import com.github.kristofa.brave.http.SpanNameProvider;
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import zipkin.reporter.Reporter;
+
+/**
+ * Measures the cost of instrumentation on requests that aren't sampled, which is most of them in
+ * a typical deployment. Span names and tags are built from the request URI here, so any work done
+ * for an unsampled request shows up as allocation.
+ *
+ * <p>Run with the GC profiler, as done in {@link #main}, and look at {@code gc.alloc.rate.norm}.
+ */
+@Measurement(iterations = 5, time = 1)
+@Warmup(iterations = 5, time = 1)
+@Fork(3)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Threads(1)
+@State(Scope.Thread)
+public class UnsampledBenchmarks {
+  static final URI URI = java.net.URI.create("http://localhost:8080/users/1?expand=true");
+
+  /** A name provider that, like many in practice, derives the span name from the URI. */
+  static final SpanNameProvider PATH_NAME = new SpanNameProvider() {
+    @Override public String spanName(HttpRequest request) {
+      return request.getHttpMethod() + " " + request.getUri().getPath();
+    }
+  };
+
+  static final HttpResponse OK = new HttpResponse() {
+    @Override public int getHttpStatusCode() {
+      return 200;
+    }
+  };
+
+  final Brave brave = new Brave.Builder("benchmark")
+      .traceSampler(Sampler.NEVER_SAMPLE)
+      .reporter(Reporter.NOOP)
+      .build();
+
+  final ServerRequestInterceptor serverRequestInterceptor = brave.serverRequestInterceptor();
+  final ServerResponseInterceptor serverResponseInterceptor = brave.serverResponseInterceptor();
+  final ClientRequestInterceptor clientRequestInterceptor = brave.clientRequestInterceptor();
+  final ClientResponseInterceptor clientResponseInterceptor = brave.clientResponseInterceptor();
+
+  final HttpServerRequestAdapter noHeaders =
+      new HttpServerRequestAdapter(new FakeServerRequest(null), PATH_NAME);
+  final HttpServerRequestAdapter sampledFalse =
+      new HttpServerRequestAdapter(new FakeServerRequest("0"), PATH_NAME);
+  final HttpServerResponseAdapter serverResponse = new HttpServerResponseAdapter(OK);
+  final HttpClientRequestAdapter clientRequest =
+      new HttpClientRequestAdapter(new FakeClientRequest(), PATH_NAME);
+  final HttpClientResponseAdapter clientResponse = new HttpClientResponseAdapter(OK);
+
+  /** The sampler decides: no trace headers were sent. */
+  @Benchmark public void server_sampler() {
+    serverRequestInterceptor.handle(noHeaders);
+    serverResponseInterceptor.handle(serverResponse);
+  }
+
+  /** The caller decided: X-B3-Sampled: 0 */
+  @Benchmark public void server_sampledHeaderFalse() {
+    serverRequestInterceptor.handle(sampledFalse);
+    serverResponseInterceptor.handle(serverResponse);
+  }
+
+  @Benchmark public void client_sampler() {
+    clientRequestInterceptor.handle(clientRequest);
+    clientResponseInterceptor.handle(clientResponse);
+  }
+
+  static final class FakeServerRequest implements HttpServerRequest {
+    final String sampled;
+
+    FakeServerRequest(String sampled) {
+      this.sampled = sampled;
+    }
+
+    @Override public String getHttpHeaderValue(String headerName) {
+      return BraveHttpHeaders.Sampled.getName().equals(headerName) ? sampled : null;
+    }
+
+    @Override public URI getUri() {
+      return URI;
+    }
+
+    @Override public String getHttpMethod() {
+      return "GET";
+    }
+  }
+
+  static final class FakeClientRequest implements HttpClientRequest {
+    @Override public void addHeader(String header, String value) {
+    }
+
+    @Override public URI getUri() {
+      return URI;
+    }
+
+    @Override public String getHttpMethod() {
+      return "GET";
+    }
+  }
+
+  // Convenience main entry-point
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+        .include(".*" + UnsampledBenchmarks.class.getSimpleName() + ".*")
+        .addProfiler(GCProfiler.class)
+        .build();
+
+    new Runner(opt).run();
+  }
+}
@@ -1,33 +1,93 @@
 package com.github.kristofa.brave;
 
+import com.github.kristofa.brave.ExtendedSpanCollectorMetricsHandler.DropCause;
 import com.twitter.zipkin.gen.Span;
 import com.twitter.zipkin.gen.SpanCodec;
 import java.io.IOException;
 import java.util.List;
 
+import static com.github.kristofa.brave.internal.Util.checkNotNull;
+
 /**
  * Implemented {@link #sendSpans} to transport a encoded list of spans to Zipkin.
  *
+ * <p>When a {@link PayloadCompressor} is supplied, the encoded list is compressed before
+ * {@link #sendSpans(byte[], String)}. Transports which support compression override that method
+ * to label the payload with its content encoding.
+ *
  * @deprecated replaced by {@link zipkin.reporter.AsyncReporter}
  */
 @Deprecated
 public abstract class AbstractSpanCollector extends FlushingSpanCollector {
 
   private final SpanCodec codec;
+  private final PayloadCompressor compressor;
 
   /**
    * @param flushInterval in seconds. 0 implies spans are {@link #flush() flushed externally.
    */
   public AbstractSpanCollector(SpanCodec codec, SpanCollectorMetricsHandler metrics,
       int flushInterval) {
-    super(metrics, flushInterval);
+    this(codec, PayloadCompressor.NONE, metrics, flushInterval);
+  }
+
+  /**
+   * @param compressor applied to each encoded list of spans
+   * @param flushInterval in seconds. 0 implies spans are {@link #flush() flushed externally.
+   */
+  public AbstractSpanCollector(SpanCodec codec, PayloadCompressor compressor,
+      SpanCollectorMetricsHandler metrics, int flushInterval) {
+    this(codec, compressor, metrics, flushInterval, PrioritySpanQueue.builder().build());
+  }
+
+  /**
+   * @param compressor applied to each encoded list of spans
+   * @param flushInterval in seconds. 0 implies spans are {@link #flush() flushed externally.
+   * @param pending holds spans until they are flushed. Not shared with other collectors.
+   */
+  public AbstractSpanCollector(SpanCodec codec, PayloadCompressor compressor,
+      SpanCollectorMetricsHandler metrics, int flushInterval, PrioritySpanQueue pending) {
+    super(metrics, flushInterval, pending);
     this.codec = codec;
+    this.compressor = checkNotNull(compressor, "compressor");
   }
 
   @Override
   protected void reportSpans(List<Span> drained) throws IOException {
-    byte[] encoded = codec.writeSpans(drained);
-    sendSpans(encoded);
+    long start = System.nanoTime();
+    byte[] payload;
+    String contentEncoding;
+    try {
+      byte[] encoded = codec.writeSpans(drained);
+      contentEncoding = compressor.encoding(encoded.length);
+      payload = PayloadCompressor.IDENTITY.equals(contentEncoding)
+          ? encoded
+          : compressor.compress(encoded);
+    } catch (IOException e) {
+      metrics().incrementDroppedSpans(drained.size(), DropCause.ENCODING);
+      return;
+    } catch (RuntimeException e) {
+      metrics().incrementDroppedSpans(drained.size(), DropCause.ENCODING);
+      return;
+    }
+    metrics().recordEncoding(drained.size(), payload.length, System.nanoTime() - start);
+    sendSpans(payload, contentEncoding);
+  }
+
+  /**
+   * Sends a possibly compressed list of spans over the current transport. The default
+   * implementation only supports uncompressed payloads, which it passes to {@link
+   * #sendSpans(byte[])}.
+   *
+   * @param contentEncoding {@link PayloadCompressor#IDENTITY} when not compressed, otherwise
+   * a value like {@link PayloadCompressor#GZIP}.
+   * @throws IOException when thrown, drop metrics will increment accordingly
+   */
+  protected void sendSpans(byte[] payload, String contentEncoding) throws IOException {
+    if (!PayloadCompressor.IDENTITY.equals(contentEncoding)) {
+      throw new IOException(getClass().getSimpleName() + " doesn't support " + contentEncoding);
+    }
+    sendSpans(payload);
   }
 
   /**
@@ -0,0 +1,104 @@
+package com.github.kristofa.brave;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import static com.github.kristofa.brave.internal.Util.checkNotNull;
+
+/**
+ * Chooses a compressor by the size of the payload. Small batches aren't worth compressing, while
+ * large ones may be better served by a faster algorithm than by the best ratio.
+ *
+ * <p>The {@link #create() default} leaves payloads under 1KiB uncompressed, gzips at level 6 up to
+ * 256KiB and uses {@link PayloadCompressor#fastGzip()} above that.
+ */
+public final class AdaptivePayloadCompressor extends PayloadCompressor {
+
+    public static AdaptivePayloadCompressor create() {
+        return builder()
+            .add(0, PayloadCompressor.NONE)
+            .add(1024, PayloadCompressor.gzip(6))
+            .add(256 * 1024, PayloadCompressor.fastGzip())
+            .build();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static final class Builder {
+        final List<Threshold> thresholds = new ArrayList<Threshold>();
+
+        Builder() {
+        }
+
+        /** Use the compressor for payloads of at least minBytes, until the next larger threshold. */
+        public Builder add(int minBytes, PayloadCompressor compressor) {
+            if (minBytes < 0) throw new IllegalArgumentException("minBytes < 0");
+            thresholds.add(new Threshold(minBytes, checkNotNull(compressor, "compressor")));
+            return this;
+        }
+
+        public AdaptivePayloadCompressor build() {
+            if (thresholds.isEmpty()) throw new IllegalArgumentException("no compressors added");
+            return new AdaptivePayloadCompressor(this);
+        }
+    }
+
+    static final class Threshold {
+        final int minBytes;
+        final PayloadCompressor compressor;
+
+        Threshold(int minBytes, PayloadCompressor compressor) {
+            this.minBytes = minBytes;
+            this.compressor = compressor;
+        }
+    }
+
+    final int[] minBytes;
+    final PayloadCompressor[] compressors;
+
+    AdaptivePayloadCompressor(Builder builder) {
+        List<Threshold> sorted = new ArrayList<Threshold>(builder.thresholds);
+        Collections.sort(sorted, new Comparator<Threshold>() {
+            @Override public int compare(Threshold left, Threshold right) {
+                return left.minBytes < right.minBytes ? -1 : left.minBytes == right.minBytes ? 0 : 1;
+            }
+        });
+        minBytes = new int[sorted.size()];
+        compressors = new PayloadCompressor[sorted.size()];
+        for (int i = 0; i < minBytes.length; i++) {
+            minBytes[i] = sorted.get(i).minBytes;
+            compressors[i] = sorted.get(i).compressor;
+        }
+    }
+
+    /** Returns the compressor for a payload of this size. */
+    public PayloadCompressor select(int uncompressedSize) {
+        PayloadCompressor result = NONE; // when smaller than all thresholds
+        for (int i = 0; i < minBytes.length && uncompressedSize >= minBytes[i]; i++) {
+            result = compressors[i];
+        }
+        return result;
+    }
+
+    @Override public String encoding(int uncompressedSize) {
+        return select(uncompressedSize).encoding(uncompressedSize);
+    }
+
+    @Override protected byte[] doCompress(byte[] input) throws IOException {
+        return select(input.length).compress(input);
+    }
+
+    @Override public String toString() {
+        StringBuilder result = new StringBuilder("AdaptivePayloadCompressor(");
+        for (int i = 0; i < minBytes.length; i++) {
+            if (i > 0) result.append(", ");
+            result.append(">=").append(minBytes[i]).append(": ").append(compressors[i]);
+        }
+        return result.append(')').toString();
+    }
+}
@@ -1,5 +1,6 @@
 package com.github.kristofa.brave;
 
+import com.github.kristofa.brave.internal.InternalSpan;
 import com.github.kristofa.brave.internal.Nullable;
 import com.twitter.zipkin.gen.Annotation;
 import com.twitter.zipkin.gen.BinaryAnnotation;
@@ -28,6 +29,10 @@ public abstract class AnnotationSubmitter {
          * <p>This should use the most precise value possible. For example, {@code gettimeofday} or multiplying
          * {@link System#currentTimeMillis} by 1000.
          *
+         * <p>Tracers read this once per local root span, such as a server span. Other timestamps in
+         * the trace are derived from {@link System#nanoTime()} relative to that reading, so they have
+         * microsecond precision and don't run backwards.
+         *
          * <p>See <a href="http://zipkin.io/pages/instrumenting.html">Instrumenting a service</a> for more.
          */
         long currentTimeMicroseconds();
@@ -43,6 +48,14 @@ public abstract class AnnotationSubmitter {
 
     abstract SpanAndEndpoint spanAndEndpoint();
 
+    /**
+     * Returns true when there's no span to annotate, such as when the request isn't sampled. Use
+     * this to skip work that only produces annotations.
+     */
+    public boolean noCurrentSpan() {
+        return spanAndEndpoint().span() == null;
+    }
+
     /** The implementation of Clock to use.
      * See {@link com.github.kristofa.brave.AnnotationSubmitter#currentTimeMicroseconds}
      * and {@link com.github.kristofa.brave.AnnotationSubmitter.Clock}
@@ -57,14 +70,8 @@ public abstract class AnnotationSubmitter {
     public void submitAnnotation(String value) {
         Span span = spanAndEndpoint().span();
         if (span != null) {
-            Long startTimestamp;
-            Long startTick;
-            synchronized (span) {
-                startTimestamp = span.getTimestamp();
-                startTick = span.startTick;
-            }
             Annotation annotation = Annotation.create(
-                currentTimeMicroseconds(startTimestamp, startTick),
+                currentTimeMicroseconds(span),
                 value,
                 spanAndEndpoint().endpoint()
             );
@@ -93,19 +100,31 @@ public abstract class AnnotationSubmitter {
         }
     }
 
-    /** This adds an annotation that corresponds with {@link Span#getTimestamp()} */
+    /**
+     * This adds an annotation that corresponds with {@link Span#getTimestamp()}. A span that didn't
+     * inherit a clock anchor is a local root, so this reads the clock to anchor it.
+     */
     void submitStartAnnotation(String annotationName) {
         Span span = spanAndEndpoint().span();
         if (span != null) {
-            Annotation annotation = Annotation.create(
-                clock().currentTimeMicroseconds(),
-                annotationName,
-                spanAndEndpoint().endpoint()
-            );
+            Endpoint endpoint = spanAndEndpoint().endpoint();
             synchronized (span) {
+                long tick;
+                if (InternalSpan.instance.hasClockAnchor(span)) {
+                    tick = System.nanoTime();
+                } else { // local root
+                    long epochMicros = clock().currentTimeMicroseconds();
+                    tick = System.nanoTime();
+                    InternalSpan.instance.setClockAnchor(span, epochMicros, tick);
+                }
+                Annotation annotation = Annotation.create(
+                    InternalSpan.instance.anchoredTimeMicroseconds(span, tick),
+                    annotationName,
+                    endpoint
+                );
                 span.setTimestamp(annotation.timestamp);
                 span.addToAnnotations(annotation);
-                span.startTick = System.nanoTime(); // embezzle start tick into an internal field.
+                span.startTick = tick; // embezzle start tick into an internal field.
             }
         }
     }
@@ -122,13 +141,7 @@ public abstract class AnnotationSubmitter {
           return false;
         }
 
-        Long startTimestamp;
-        Long startTick;
-        synchronized (span) {
-            startTimestamp = span.getTimestamp();
-            startTick = span.startTick;
-        }
-        long endTimestamp = currentTimeMicroseconds(startTimestamp, startTick);
+        long endTimestamp = currentTimeMicroseconds(span);
 
         Annotation annotation = Annotation.create(
             endTimestamp,
@@ -137,10 +150,12 @@ public abstract class AnnotationSubmitter {
         );
         synchronized (span) {
             span.addToAnnotations(annotation);
+            Long startTimestamp = span.getTimestamp();
             if (startTimestamp != null) {
                 span.setDuration(Math.max(1L, endTimestamp - startTimestamp));
             }
         }
+        InFlightSpans.remove(span, spanAndEndpoint());
         reporter.report(span.toZipkin());
         return true;
     }
@@ -183,7 +198,24 @@ public abstract class AnnotationSubmitter {
      */
     public void submitBinaryAnnotation(String key, int value) {
         // Zipkin v1 UI and query only support String annotations.
-        submitBinaryAnnotation(key, String.valueOf(value));
+        if (!noCurrentSpan()) submitBinaryAnnotation(key, String.valueOf(value));
+    }
+
+    /**
+     * Epoch microseconds for an event in the span. When the span has a clock anchor, this is derived
+     * from {@link System#nanoTime()}, so that timestamps in a trace never run backwards.
+     */
+    long currentTimeMicroseconds(Span span) {
+        Long startTimestamp;
+        Long startTick;
+        synchronized (span) {
+            if (InternalSpan.instance.hasClockAnchor(span)) {
+                return InternalSpan.instance.anchoredTimeMicroseconds(span, System.nanoTime());
+            }
+            startTimestamp = span.getTimestamp();
+            startTick = span.startTick;
+        }
+        return currentTimeMicroseconds(startTimestamp, startTick);
     }
 
     long currentTimeMicroseconds(@Nullable Long startTimestamp, @Nullable Long startTick) {
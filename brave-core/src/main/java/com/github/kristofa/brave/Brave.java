@@ -26,6 +26,8 @@ public class Brave {
     private final ServerSpanThreadBinder serverSpanThreadBinder;
     private final ClientSpanThreadBinder clientSpanThreadBinder;
     private final LocalSpanThreadBinder localSpanThreadBinder;
+    private final TracingControl tracingControl;
+    final ServerClientAndLocalSpanState state; // for SpanStateSnapshot
 
     /**
      * Builds Brave api objects with following defaults if not overridden:
@@ -46,6 +48,14 @@ public class Brave {
         private boolean allowNestedLocalSpans = false;
         private AnnotationSubmitter.Clock clock = AnnotationSubmitter.DefaultClock.INSTANCE;
         private boolean traceId128Bit = false;
+        private boolean timeOrderedTraceIds = false;
+        private FlightRecorder flightRecorder;
+        private SpanLimits spanLimits;
+        private TracingControl tracingControl = new TracingControl();
+        private OverheadMonitor overheadMonitor;
+        private SpanPool spanPool;
+        private InFlightSpans inFlightSpans;
+        private ThreadResourceRecorder threadResourceRecorder;
 
         /**
          * Builder which initializes with serviceName = "unknown".
@@ -163,6 +173,92 @@ public class Brave {
             return this;
         }
 
+        /**
+         * When true, and {@link #traceId128Bit(boolean) 128-bit trace IDs} are enabled, the upper 32
+         * bits of new trace IDs are epoch seconds instead of random. Trace IDs then sort roughly by
+         * time, so writes to storage indexed by trace ID are local, and lookups can skip time ranges.
+         * Defaults to false.
+         */
+        public Builder timeOrderedTraceIds(boolean timeOrderedTraceIds) {
+            this.timeOrderedTraceIds = timeOrderedTraceIds;
+            return this;
+        }
+
+        /**
+         * Keeps recent spans, including unsampled server requests, in the given recorder. Spans
+         * are recorded before they are passed to the {@link #reporter(Reporter) reporter}.
+         *
+         * @see FlightRecorder
+         */
+        public Builder flightRecorder(FlightRecorder flightRecorder) {
+            this.flightRecorder = checkNotNull(flightRecorder, "flightRecorder");
+            return this;
+        }
+
+        /**
+         * Bounds tag values, annotations and span size before spans are recorded or reported.
+         *
+         * @see SpanLimits
+         */
+        public Builder spanLimits(SpanLimits spanLimits) {
+            this.spanLimits = checkNotNull(spanLimits, "spanLimits");
+            return this;
+        }
+
+        /**
+         * Switches interceptors between full tracing, only propagating trace headers, or nothing,
+         * at runtime. Defaults to a new control at {@link TracingControl.Level#FULL}.
+         *
+         * @see TracingControl
+         */
+        public Builder tracingControl(TracingControl tracingControl) {
+            this.tracingControl = checkNotNull(tracingControl, "tracingControl");
+            return this;
+        }
+
+        /**
+         * Measures time and allocation of a sample of interceptor calls and span reports.
+         *
+         * @see OverheadMonitor
+         */
+        public Builder overheadMonitor(OverheadMonitor overheadMonitor) {
+            this.overheadMonitor = checkNotNull(overheadMonitor, "overheadMonitor");
+            return this;
+        }
+
+        /**
+         * Recycles span objects after they are reported. Only use this when no code keeps spans
+         * after they finish.
+         *
+         * @see SpanPool
+         */
+        public Builder spanPool(SpanPool spanPool) {
+            this.spanPool = checkNotNull(spanPool, "spanPool");
+            return this;
+        }
+
+        /**
+         * Tracks spans in flight, reporting those not finished in time as abandoned.
+         *
+         * @see InFlightSpans
+         */
+        public Builder inFlightSpans(InFlightSpans inFlightSpans) {
+            this.inFlightSpans = checkNotNull(inFlightSpans, "inFlightSpans");
+            return this;
+        }
+
+        /**
+         * Tags a sample of server and local spans with the CPU time, allocation and blocked time of
+         * their thread.
+         *
+         * @see ThreadResourceRecorder
+         */
+        public Builder threadResourceRecorder(ThreadResourceRecorder threadResourceRecorder) {
+            this.threadResourceRecorder =
+                checkNotNull(threadResourceRecorder, "threadResourceRecorder");
+            return this;
+        }
+
         public Brave build() {
             return new Brave(this);
         }
@@ -204,6 +300,15 @@ public class Brave {
         return serverTracer;
     }
 
+    /**
+     * Switches the tracing level of this instance's interceptors at runtime.
+     *
+     * @see Builder#tracingControl(TracingControl)
+     */
+    public TracingControl tracingControl() {
+        return tracingControl;
+    }
+
     public ClientRequestInterceptor clientRequestInterceptor() {
         return clientRequestInterceptor;
     }
@@ -261,38 +366,58 @@ public class Brave {
     }
 
     private Brave(Builder builder) {
+        state = builder.state;
+        Reporter<zipkin.Span> reporter = builder.flightRecorder != null
+                ? builder.flightRecorder.recording(builder.reporter)
+                : builder.reporter;
+        if (builder.spanLimits != null) reporter = builder.spanLimits.decorate(reporter);
+        if (builder.overheadMonitor != null) reporter = builder.overheadMonitor.monitoring(reporter);
         serverTracer = ServerTracer.builder()
                 .randomGenerator(builder.random)
-                .reporter(builder.reporter)
+                .reporter(reporter)
                 .state(builder.state)
                 .traceSampler(builder.sampler)
                 .clock(builder.clock)
                 .traceId128Bit(builder.traceId128Bit)
+                .timeOrderedTraceIds(builder.timeOrderedTraceIds)
+                .flightRecorder(builder.flightRecorder)
+                .spanPool(builder.spanPool)
+                .inFlightSpans(builder.inFlightSpans)
+                .threadResourceRecorder(builder.threadResourceRecorder)
                 .build();
 
         clientTracer = ClientTracer.builder()
                 .randomGenerator(builder.random)
-                .reporter(builder.reporter)
+                .reporter(reporter)
                 .state(builder.state)
                 .traceSampler(builder.sampler)
                 .clock(builder.clock)
                 .traceId128Bit(builder.traceId128Bit)
+                .timeOrderedTraceIds(builder.timeOrderedTraceIds)
+                .spanPool(builder.spanPool)
+                .inFlightSpans(builder.inFlightSpans)
                 .build();
 
         localTracer = LocalTracer.builder()
                 .randomGenerator(builder.random)
-                .reporter(builder.reporter)
+                .reporter(reporter)
                 .allowNestedLocalSpans(builder.allowNestedLocalSpans)
                 .spanAndEndpoint(SpanAndEndpoint.LocalSpanAndEndpoint.create(builder.state))
                 .traceSampler(builder.sampler)
                 .clock(builder.clock)
                 .traceId128Bit(builder.traceId128Bit)
+                .timeOrderedTraceIds(builder.timeOrderedTraceIds)
+                .spanPool(builder.spanPool)
+                .inFlightSpans(builder.inFlightSpans)
+                .threadResourceRecorder(builder.threadResourceRecorder)
                 .build();
 
-        serverRequestInterceptor = new ServerRequestInterceptor(serverTracer);
-        serverResponseInterceptor = new ServerResponseInterceptor(serverTracer);
-        clientRequestInterceptor = new ClientRequestInterceptor(clientTracer);
-        clientResponseInterceptor = new ClientResponseInterceptor(clientTracer);
+        tracingControl = builder.tracingControl;
+        OverheadMonitor monitor = builder.overheadMonitor;
+        serverRequestInterceptor = new ServerRequestInterceptor(serverTracer, tracingControl, monitor);
+        serverResponseInterceptor = new ServerResponseInterceptor(serverTracer, tracingControl, monitor);
+        clientRequestInterceptor = new ClientRequestInterceptor(clientTracer, tracingControl, monitor);
+        clientResponseInterceptor = new ClientResponseInterceptor(clientTracer, tracingControl, monitor);
         serverSpanAnnotationSubmitter = AnnotationSubmitter.create(SpanAndEndpoint.ServerSpanAndEndpoint.create(builder.state));
         serverSpanThreadBinder = new ServerSpanThreadBinder(builder.state);
         clientSpanThreadBinder = new ClientSpanThreadBinder(builder.state);
@@ -10,7 +10,7 @@ package com.github.kristofa.brave;
 public class BraveAnnotations {
 
     /**
-     * Thread duration.
+     * Thread duration. Never recorded: see {@link ThreadResourceRecorder#CPU_TIME} instead.
      */
     public static final String THREAD_DURATION = "td";
 
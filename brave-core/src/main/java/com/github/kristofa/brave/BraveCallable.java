@@ -9,7 +9,8 @@ import com.google.auto.value.AutoValue;
  * Callable implementation that wraps another Callable and makes sure the wrapped Callable will be executed in the same
  * Span/Trace context as the thread from which the Callable was executed.
  * <p/>
- * Is used by {@link BraveExecutorService}.
+ * Is used by {@link BraveExecutorService}. Once the wrapped Callable completes, the server span that was current
+ * before is restored. To also carry the local and client span, use {@link SpanStateSnapshot}.
  * 
  * @author kristof
  * @param <T> Return type.
@@ -38,8 +39,13 @@ public abstract class BraveCallable<T> implements Callable<T> {
      */
     @Override
     public T call() throws Exception {
+        ServerSpan previous = serverSpanThreadBinder().getCurrentServerSpan();
         serverSpanThreadBinder().setCurrentSpan(currentServerSpan());
-        return wrappedCallable().call();
+        try {
+            return wrappedCallable().call();
+        } finally {
+            serverSpanThreadBinder().setCurrentSpan(previous);
+        }
     }
 
     BraveCallable() {
@@ -17,7 +17,12 @@ import static com.github.kristofa.brave.internal.Util.checkNotNull;
  * {@link ExecutorService} that wraps around an existing {@link ExecutorService} and that makes sure the threads are executed
  * in the same Span/Trace context as the the thread that invoked execution of the threads.
  * <p/>
- * It uses {@link ServerTracer} and {@link ServerSpanThreadBinder} to accomplish this in a transparent way for the user.
+ * When created with a {@link ServerSpanThreadBinder}, only the server span is carried over. When created with
+ * {@link Brave}, tasks are wrapped with a {@link SpanStateSnapshot}, so they also see the caller's local and client
+ * span. Either way, the state of the executing thread is restored once a task completes.
+ * <p/>
+ * A {@code ForkJoinPool} can be wrapped too, which covers tasks submitted through this interface.
+ * Subtasks forked inside the pool, such as those of parallel streams, run without the caller's spans.
  * <p/>
  * It also implements {@link Closeable}, calling {@link BraveExecutorService#shutdown()}, so the executor service is
  * shut down properly when for example using Spring.
@@ -25,11 +30,13 @@ import static com.github.kristofa.brave.internal.Util.checkNotNull;
  * @author kristof
  * @see BraveCallable
  * @see BraveRunnable
+ * @see BraveScheduledExecutorService
  */
 public class BraveExecutorService implements ExecutorService, Closeable {
 
     private final ExecutorService wrappedExecutor;
     private final ServerSpanThreadBinder threadBinder;
+    private final ServerClientAndLocalSpanState state;
 
     /**
      * Creates a new instance.
@@ -40,6 +47,19 @@ public class BraveExecutorService implements ExecutorService, Closeable {
     public BraveExecutorService(final ExecutorService wrappedExecutor, final ServerSpanThreadBinder threadBinder) {
         this.wrappedExecutor = checkNotNull(wrappedExecutor, "Null wrappedExecutor");
         this.threadBinder = checkNotNull(threadBinder, "Null threadBinder");
+        this.state = null;
+    }
+
+    /**
+     * Creates a new instance which carries the server, local and client span to tasks.
+     *
+     * @param wrappedExecutor Wrapped ExecutorService to which execution will be delegated.
+     * @param brave Brave instance whose span state is captured.
+     */
+    public BraveExecutorService(final ExecutorService wrappedExecutor, final Brave brave) {
+        this.wrappedExecutor = checkNotNull(wrappedExecutor, "Null wrappedExecutor");
+        this.threadBinder = null;
+        this.state = checkNotNull(brave, "Null brave").state;
     }
 
     /**
@@ -47,8 +67,7 @@ public class BraveExecutorService implements ExecutorService, Closeable {
      */
     @Override
     public void execute(final Runnable arg0) {
-        final BraveRunnable braveRunnable = BraveRunnable.create(arg0, threadBinder);
-        wrappedExecutor.execute(braveRunnable);
+        wrappedExecutor.execute(wrap(arg0));
     }
 
     /**
@@ -131,8 +150,7 @@ public class BraveExecutorService implements ExecutorService, Closeable {
      */
     @Override
     public <T> Future<T> submit(final Callable<T> arg0) {
-        final BraveCallable<T> braveCallable = BraveCallable.create(arg0, threadBinder);
-        return wrappedExecutor.submit(braveCallable);
+        return wrappedExecutor.submit(wrap(arg0));
     }
 
     /**
@@ -140,8 +158,7 @@ public class BraveExecutorService implements ExecutorService, Closeable {
      */
     @Override
     public Future<?> submit(final Runnable arg0) {
-        final BraveRunnable braveRunnable = BraveRunnable.create(arg0, threadBinder);
-        return wrappedExecutor.submit(braveRunnable);
+        return wrappedExecutor.submit(wrap(arg0));
     }
 
     /**
@@ -149,19 +166,32 @@ public class BraveExecutorService implements ExecutorService, Closeable {
      */
     @Override
     public <T> Future<T> submit(final Runnable arg0, final T arg1) {
-        final BraveRunnable braveRunnable = BraveRunnable.create(arg0, threadBinder);
-        return wrappedExecutor.submit(braveRunnable, arg1);
+        return wrappedExecutor.submit(wrap(arg0), arg1);
     }
 
     private <T> Collection<? extends Callable<T>> buildBraveCollection(
         final Collection<? extends Callable<T>> originalCollection) {
         final Collection<Callable<T>> collection = new ArrayList<Callable<T>>();
         for (final Callable<T> t : originalCollection) {
-            collection.add(BraveCallable.create(t, threadBinder));
+            collection.add(wrap(t));
         }
         return collection;
     }
 
+    /** Wraps the task so that it runs with the caller's spans. */
+    Runnable wrap(final Runnable task) {
+        return state != null
+            ? SpanStateSnapshot.capture(state).wrap(task)
+            : BraveRunnable.create(task, threadBinder);
+    }
+
+    /** Wraps the task so that it is called with the caller's spans. */
+    <T> Callable<T> wrap(final Callable<T> task) {
+        return state != null
+            ? SpanStateSnapshot.capture(state).wrap(task)
+            : BraveCallable.create(task, threadBinder);
+    }
+
     /**
      * Convenience for try-with-resources, or frameworks such as Spring that automatically process this.
      **/
@@ -7,7 +7,8 @@ import com.google.auto.value.AutoValue;
  * {@link Runnable} implementation that wraps another Runnable and makes sure the wrapped Runnable will be executed in the
  * same Span/Trace context as the thread from which the Runnable was executed.
  * <p/>
- * Is used by {@link BraveExecutorService}.
+ * Is used by {@link BraveExecutorService}. Once the wrapped Runnable completes, the server span that was current
+ * before is restored. To also carry the local and client span, use {@link SpanStateSnapshot}.
  * 
  * @author kristof
  * @see BraveExecutorService
@@ -35,7 +36,12 @@ public abstract class BraveRunnable implements Runnable {
      */
     @Override
     public void run() {
+        ServerSpan previous = serverSpanThreadBinder().getCurrentServerSpan();
         serverSpanThreadBinder().setCurrentSpan(currentServerSpan());
-        wrappedRunnable().run();
+        try {
+            wrappedRunnable().run();
+        } finally {
+            serverSpanThreadBinder().setCurrentSpan(previous);
+        }
     }
 }
@@ -0,0 +1,77 @@
+package com.github.kristofa.brave;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ScheduledExecutorService} that wraps around an existing {@link ScheduledExecutorService}, so that scheduled
+ * tasks run in the Span/Trace context of the thread that scheduled them.
+ * <p/>
+ * The context is captured when a task is scheduled. Periodic tasks see the same spans each time they run, and the
+ * state of the executing thread is restored after each run.
+ *
+ * @see BraveExecutorService
+ */
+public class BraveScheduledExecutorService extends BraveExecutorService implements ScheduledExecutorService {
+
+    private final ScheduledExecutorService wrappedExecutor;
+
+    /**
+     * Creates a new instance which only carries the server span to tasks.
+     *
+     * @param wrappedExecutor Wrapped ScheduledExecutorService to which execution will be delegated.
+     * @param threadBinder Thread binder.
+     */
+    public BraveScheduledExecutorService(final ScheduledExecutorService wrappedExecutor,
+        final ServerSpanThreadBinder threadBinder) {
+        super(wrappedExecutor, threadBinder);
+        this.wrappedExecutor = wrappedExecutor;
+    }
+
+    /**
+     * Creates a new instance which carries the server, local and client span to tasks.
+     *
+     * @param wrappedExecutor Wrapped ScheduledExecutorService to which execution will be delegated.
+     * @param brave Brave instance whose span state is captured.
+     */
+    public BraveScheduledExecutorService(final ScheduledExecutorService wrappedExecutor, final Brave brave) {
+        super(wrappedExecutor, brave);
+        this.wrappedExecutor = wrappedExecutor;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ScheduledFuture<?> schedule(final Runnable command, final long delay, final TimeUnit unit) {
+        return wrappedExecutor.schedule(wrap(command), delay, unit);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <V> ScheduledFuture<V> schedule(final Callable<V> callable, final long delay, final TimeUnit unit) {
+        return wrappedExecutor.schedule(wrap(callable), delay, unit);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(final Runnable command, final long initialDelay, final long period,
+        final TimeUnit unit) {
+        return wrappedExecutor.scheduleAtFixedRate(wrap(command), initialDelay, period, unit);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(final Runnable command, final long initialDelay, final long delay,
+        final TimeUnit unit) {
+        return wrappedExecutor.scheduleWithFixedDelay(wrap(command), initialDelay, delay, unit);
+    }
+}
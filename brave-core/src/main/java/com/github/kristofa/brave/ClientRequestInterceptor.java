@@ -1,5 +1,6 @@
 package com.github.kristofa.brave;
 
+import com.github.kristofa.brave.internal.Nullable;
 import com.twitter.zipkin.gen.Endpoint;
 
 import static com.github.kristofa.brave.internal.Util.checkNotNull;
@@ -21,9 +22,29 @@ import static com.github.kristofa.brave.internal.Util.checkNotNull;
 public class ClientRequestInterceptor {
 
     private final ClientTracer clientTracer;
+    @Nullable private final TracingControl control;
+    @Nullable private final OverheadMonitor monitor;
 
     public ClientRequestInterceptor(ClientTracer clientTracer) {
+        this(clientTracer, null);
+    }
+
+    /**
+     * @param control switches the tracing level at runtime, or null to always trace fully.
+     */
+    public ClientRequestInterceptor(ClientTracer clientTracer, @Nullable TracingControl control) {
+        this(clientTracer, control, null);
+    }
+
+    /**
+     * @param control switches the tracing level at runtime, or null to always trace fully.
+     * @param monitor measures a sample of calls to {@link #handle}, or null to not measure.
+     */
+    public ClientRequestInterceptor(ClientTracer clientTracer, @Nullable TracingControl control,
+        @Nullable OverheadMonitor monitor) {
         this.clientTracer = checkNotNull(clientTracer, "Null clientTracer");
+        this.control = control;
+        this.monitor = monitor;
     }
 
     /**
@@ -32,6 +53,61 @@ public class ClientRequestInterceptor {
      * @param adapter The adapter deals with implementation specific details.
      */
     public void handle(ClientRequestAdapter adapter) {
+        handle(adapter, false);
+    }
+
+    /**
+     * Like {@link #handle(ClientRequestAdapter)}, except the span isn't bound to the current thread.
+     * Pass the result to {@link ClientResponseInterceptor#handle(ClientResponseAdapter, SpanHandle)}
+     * when the response is received, on any thread.
+     *
+     * @param adapter The adapter deals with implementation specific details.
+     * @return the span, or null if the request isn't traced.
+     */
+    @Nullable
+    public SpanHandle startSpan(ClientRequestAdapter adapter) {
+        return handle(adapter, true);
+    }
+
+    private SpanHandle handle(ClientRequestAdapter adapter, boolean detached) {
+        if (monitor == null || !monitor.sample(OverheadMonitor.Operation.CLIENT_REQUEST)) {
+            return doHandle(adapter, detached);
+        }
+        long startNanos = System.nanoTime();
+        long startBytes = monitor.allocatedBytes();
+        try {
+            return doHandle(adapter, detached);
+        } finally {
+            monitor.record(OverheadMonitor.Operation.CLIENT_REQUEST, startNanos, startBytes);
+        }
+    }
+
+    private SpanHandle doHandle(ClientRequestAdapter adapter, boolean detached) {
+        TracingControl.Level level = TracingControl.level(control);
+        if (level == TracingControl.Level.OFF) return null;
+        if (level == TracingControl.Level.PROPAGATE_ONLY) {
+            propagateOnly(adapter);
+            return null;
+        }
+
+        if (detached) {
+            SpanHandle span = clientTracer.startSpan(adapter.getSpanName());
+            if (span == null) {
+                adapter.addSpanIdToRequest(null);
+                return null;
+            }
+            adapter.addSpanIdToRequest(span.spanId());
+            for (KeyValueAnnotation annotation : adapter.requestAnnotations()) {
+                span.submitBinaryAnnotation(annotation.getKey(), annotation.getValue());
+            }
+            Endpoint serverAddress = adapter.serverAddress();
+            if (serverAddress == null) {
+                span.setClientSent();
+            } else {
+                span.setClientSent(serverAddress);
+            }
+            return span;
+        }
 
         SpanId spanId = clientTracer.startNewSpan(adapter.getSpanName());
         if (spanId == null) {
@@ -44,6 +120,25 @@ public class ClientRequestInterceptor {
             }
             recordClientSentAnnotations(adapter.serverAddress());
         }
+        return null;
+    }
+
+    /**
+     * Continues the trace received by this server, if any, with a new span id that won't be
+     * reported. Downstream spans will have the caller's span as their grandparent.
+     */
+    private void propagateOnly(ClientRequestAdapter adapter) {
+        ServerSpan serverSpan = clientTracer.spanAndEndpoint().state().getCurrentServerSpan();
+        if (serverSpan == null) return;
+        SpanId received = serverSpan.propagatedSpanId();
+        if (received != null) {
+            adapter.addSpanIdToRequest(received.toBuilder()
+                .parentId(received.spanId)
+                .spanId(clientTracer.randomGenerator().nextLong())
+                .build());
+        } else if (Boolean.FALSE.equals(serverSpan.getSample())) {
+            adapter.addSpanIdToRequest(null); // forwards the decision not to sample
+        }
     }
 
     private void recordClientSentAnnotations(Endpoint serverAddress) {
@@ -1,5 +1,7 @@
 package com.github.kristofa.brave;
 
+import com.github.kristofa.brave.internal.Nullable;
+
 import static com.github.kristofa.brave.internal.Util.checkNotNull;
 
 /**
@@ -16,9 +18,29 @@ import static com.github.kristofa.brave.internal.Util.checkNotNull;
 public class ClientResponseInterceptor {
 
     private final ClientTracer clientTracer;
+    @Nullable private final TracingControl control;
+    @Nullable private final OverheadMonitor monitor;
 
     public ClientResponseInterceptor(ClientTracer clientTracer) {
+        this(clientTracer, null);
+    }
+
+    /**
+     * @param control switches the tracing level at runtime, or null to always trace fully.
+     */
+    public ClientResponseInterceptor(ClientTracer clientTracer, @Nullable TracingControl control) {
+        this(clientTracer, control, null);
+    }
+
+    /**
+     * @param control switches the tracing level at runtime, or null to always trace fully.
+     * @param monitor measures a sample of calls to {@link #handle}, or null to not measure.
+     */
+    public ClientResponseInterceptor(ClientTracer clientTracer, @Nullable TracingControl control,
+        @Nullable OverheadMonitor monitor) {
         this.clientTracer = checkNotNull(clientTracer, "Null clientTracer");
+        this.control = control;
+        this.monitor = monitor;
     }
 
     /**
@@ -27,9 +49,54 @@ public class ClientResponseInterceptor {
      * @param adapter Adapter that hides implementation details.
      */
     public void handle(ClientResponseAdapter adapter) {
+        if (monitor == null || !monitor.sample(OverheadMonitor.Operation.CLIENT_RESPONSE)) {
+            doHandle(adapter);
+            return;
+        }
+        long startNanos = System.nanoTime();
+        long startBytes = monitor.allocatedBytes();
         try {
-            for (KeyValueAnnotation annotation : adapter.responseAnnotations()) {
-                clientTracer.submitBinaryAnnotation(annotation.getKey(), annotation.getValue());
+            doHandle(adapter);
+        } finally {
+            monitor.record(OverheadMonitor.Operation.CLIENT_RESPONSE, startNanos, startBytes);
+        }
+    }
+
+    /**
+     * Like {@link #handle(ClientResponseAdapter)}, except the span started by {@link
+     * ClientRequestInterceptor#startSpan(ClientRequestAdapter)} is finished, from any thread.
+     *
+     * @param adapter Adapter that hides implementation details.
+     * @param span the span, or null if the request isn't traced.
+     */
+    public void handle(ClientResponseAdapter adapter, @Nullable SpanHandle span) {
+        if (span == null) return;
+        if (monitor == null || !monitor.sample(OverheadMonitor.Operation.CLIENT_RESPONSE)) {
+            doHandle(adapter, span);
+            return;
+        }
+        long startNanos = System.nanoTime();
+        long startBytes = monitor.allocatedBytes();
+        try {
+            doHandle(adapter, span);
+        } finally {
+            monitor.record(OverheadMonitor.Operation.CLIENT_RESPONSE, startNanos, startBytes);
+        }
+    }
+
+    private void doHandle(ClientResponseAdapter adapter) {
+        // Only full tracing starts client spans. If the level changed since this request started
+        // one, unbind it without reporting, so that it doesn't leak into the thread's next request.
+        if (TracingControl.level(control) != TracingControl.Level.FULL) {
+            clientTracer.clearCurrentSpan();
+            return;
+        }
+        try {
+            // Skip the adapter's work when there's no span to tag, such as when unsampled.
+            if (!clientTracer.noCurrentSpan()) {
+                for (KeyValueAnnotation annotation : adapter.responseAnnotations()) {
+                    clientTracer.submitBinaryAnnotation(annotation.getKey(), annotation.getValue());
+                }
             }
         }
         finally
@@ -37,4 +104,15 @@ public class ClientResponseInterceptor {
             clientTracer.setClientReceived();
         }
     }
+
+    // The span was started, so it is finished even if the tracing level changed since.
+    private void doHandle(ClientResponseAdapter adapter, SpanHandle span) {
+        try {
+            for (KeyValueAnnotation annotation : adapter.responseAnnotations()) {
+                span.submitBinaryAnnotation(annotation.getKey(), annotation.getValue());
+            }
+        } finally {
+            span.finish();
+        }
+    }
 }
@@ -1,6 +1,7 @@
 package com.github.kristofa.brave;
 
 import com.github.kristofa.brave.SpanAndEndpoint.ClientSpanAndEndpoint;
+import com.github.kristofa.brave.internal.InternalSpan;
 import com.github.kristofa.brave.internal.Nullable;
 import com.google.auto.value.AutoValue;
 import com.twitter.zipkin.gen.Endpoint;
@@ -28,7 +29,7 @@ import zipkin.reporter.Reporter;
 public abstract class ClientTracer extends AnnotationSubmitter {
 
     public static Builder builder() {
-        return new AutoValue_ClientTracer.Builder();
+        return new AutoValue_ClientTracer.Builder().timeOrderedTraceIds(false);
     }
 
     @Override
@@ -38,7 +39,12 @@ public abstract class ClientTracer extends AnnotationSubmitter {
     abstract Sampler traceSampler();
     @Override
     abstract AnnotationSubmitter.Clock clock();
+    @Nullable
+    abstract SpanPool spanPool();
+    @Nullable
+    abstract InFlightSpans inFlightSpans();
     abstract boolean traceId128Bit();
+    abstract boolean timeOrderedTraceIds();
 
     @AutoValue.Builder
     public abstract static class Builder {
@@ -68,6 +74,12 @@ public abstract class ClientTracer extends AnnotationSubmitter {
         public abstract Builder clock(AnnotationSubmitter.Clock clock);
         abstract Builder traceId128Bit(boolean traceId128Bit);
 
+        abstract Builder timeOrderedTraceIds(boolean timeOrderedTraceIds);
+
+        abstract Builder spanPool(@Nullable SpanPool spanPool);
+
+        abstract Builder inFlightSpans(@Nullable InFlightSpans inFlightSpans);
+
         public abstract ClientTracer build();
     }
 
@@ -110,11 +122,26 @@ public abstract class ClientTracer extends AnnotationSubmitter {
      * event means this span is finished.
      */
     public void setClientReceived() {
+        SpanPool pool = spanPool();
+        Span span = pool != null ? spanAndEndpoint().span() : null;
         if (submitEndAnnotation(Constants.CLIENT_RECV, reporter())) {
             spanAndEndpoint().state().setCurrentClientSpan(null);
+            if (pool != null) pool.release(span);
         }
     }
 
+    /**
+     * Unbinds the current span from this thread without reporting it, such as when tracing was
+     * switched off while its request was in flight.
+     */
+    void clearCurrentSpan() {
+        Span span = spanAndEndpoint().span();
+        if (span == null) return;
+        spanAndEndpoint().state().setCurrentClientSpan(null);
+        InFlightSpans.remove(span, spanAndEndpoint());
+        if (spanPool() != null) spanPool().release(span);
+    }
+
     /**
      * Start a new span for a new client request that will be bound to current thread. The ClientTracer can decide to return
      * <code>null</code> in case this request should not be traced (eg sampling).
@@ -123,29 +150,51 @@ public abstract class ClientTracer extends AnnotationSubmitter {
      * @return Span id for new request or <code>null</code> in case we should not trace this new client request.
      */
     public SpanId startNewSpan(String requestName) {
-
         Boolean sample = spanAndEndpoint().state().sample();
         if (Boolean.FALSE.equals(sample)) {
             spanAndEndpoint().state().setCurrentClientSpan(null);
             return null;
         }
 
-        SpanId newSpanId = getNewSpanId();
-        if (sample == null) {
-            // No sample indication is present.
-            if (!traceSampler().isSampled(newSpanId.traceId)) {
-                spanAndEndpoint().state().setCurrentClientSpan(null);
-                return null;
-            }
+        Span parentSpan = getNewSpanParent();
+        SpanId spanId = nextSpanId(sample, parentSpan);
+        if (spanId == null) {
+            spanAndEndpoint().state().setCurrentClientSpan(null);
+            return null;
         }
 
-        Span newSpan = newSpanId.toSpan();
-        newSpan.setName(requestName);
+        Span newSpan = spanPool() != null ? spanPool().acquire(spanId) : spanId.toSpan();
+        initSpan(newSpan, parentSpan, requestName);
         spanAndEndpoint().state().setCurrentClientSpan(newSpan);
-        return newSpanId;
+        return spanId;
     }
 
-    private SpanId getNewSpanId() {
+    /**
+     * Like {@link #startNewSpan(String)}, except the span isn't bound to the current thread. Use the
+     * returned handle to record the 'client sent' and 'client received' events, from any thread.
+     *
+     * @param requestName Request name. Should be lowercase and not <code>null</code> or empty.
+     * @return handle for the new span or <code>null</code> in case we should not trace this new client request.
+     */
+    @Nullable
+    public SpanHandle startSpan(String requestName) {
+        Boolean sample = spanAndEndpoint().state().sample();
+        if (Boolean.FALSE.equals(sample)) return null;
+
+        Span parentSpan = getNewSpanParent();
+        SpanId spanId = nextSpanId(sample, parentSpan);
+        if (spanId == null) return null;
+
+        // Handles aren't pooled, as they can be referenced after they finish.
+        Span newSpan = spanId.toSpan();
+        initSpan(newSpan, parentSpan, requestName);
+        return SpanHandle.create(SpanHandle.Kind.CLIENT, spanId, newSpan,
+            spanAndEndpoint().endpoint(), clock(), reporter());
+    }
+
+    /** The current local span, or the current server span if there is no local span. */
+    @Nullable
+    private Span getNewSpanParent() {
         Span parentSpan = spanAndEndpoint().state().getCurrentLocalSpan();
         if (parentSpan == null) {
             ServerSpan serverSpan = spanAndEndpoint().state().getCurrentServerSpan();
@@ -153,16 +202,45 @@ public abstract class ClientTracer extends AnnotationSubmitter {
                 parentSpan = serverSpan.getSpan();
             }
         }
+        return parentSpan;
+    }
 
+    /** Returns the id of a new span, or null if the sampler decides it shouldn't be traced. */
+    @Nullable
+    private SpanId nextSpanId(@Nullable Boolean sample, @Nullable Span parentSpan) {
         long newSpanId = randomGenerator().nextLong();
+        // No sample indication is present: decide before allocating anything for the span.
+        if (sample == null) {
+            long traceId = parentSpan != null ? parentSpan.getTrace_id() : newSpanId;
+            if (!traceSampler().isSampled(traceId)) return null;
+        }
+
         SpanId.Builder builder = SpanId.builder().spanId(newSpanId);
         if (parentSpan == null) { // new trace
-            if (traceId128Bit()) builder.traceIdHigh(randomGenerator().nextLong());
-            return builder.build();
+            if (traceId128Bit()) builder.traceIdHigh(nextTraceIdHigh());
+        } else {
+            builder.traceIdHigh(parentSpan.getTrace_id_high())
+                .traceId(parentSpan.getTrace_id())
+                .parentId(parentSpan.getId());
+        }
+        return builder.build();
+    }
+
+    private void initSpan(Span newSpan, @Nullable Span parentSpan, String requestName) {
+        newSpan.setName(requestName);
+        // Timestamps derive from the local root's clock reading, instead of reading the clock again
+        if (parentSpan != null) {
+            synchronized (parentSpan) {
+                InternalSpan.instance.inheritClockAnchor(newSpan, parentSpan);
+            }
         }
-        return builder.traceIdHigh(parentSpan.getTrace_id_high())
-            .traceId(parentSpan.getTrace_id())
-            .parentId(parentSpan.getId()).build();
+        if (inFlightSpans() != null) inFlightSpans().add(newSpan, requestName, reporter(), null);
+    }
+
+    private long nextTraceIdHigh() {
+        return timeOrderedTraceIds()
+            ? SpanId.timeOrderedTraceIdHigh(clock().currentTimeMicroseconds(), randomGenerator())
+            : randomGenerator().nextLong();
     }
 
     ClientTracer() {
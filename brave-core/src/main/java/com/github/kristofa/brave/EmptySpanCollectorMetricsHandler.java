@@ -4,7 +4,7 @@ package com.github.kristofa.brave;
 /**
  * Empty implementation ignoring all events.
  */
-public class EmptySpanCollectorMetricsHandler implements SpanCollectorMetricsHandler {
+public class EmptySpanCollectorMetricsHandler implements ExtendedSpanCollectorMetricsHandler {
 
     @Override
     public void incrementAcceptedSpans(int quantity) {
@@ -15,4 +15,24 @@ public class EmptySpanCollectorMetricsHandler implements SpanCollectorMetricsHan
     public void incrementDroppedSpans(int quantity) {
 
     }
+
+    @Override
+    public void incrementDroppedSpans(int quantity, DropCause cause) {
+
+    }
+
+    @Override
+    public void updateQueueDepth(int depth) {
+
+    }
+
+    @Override
+    public void recordEncoding(int spanCount, int encodedBytes, long durationNanos) {
+
+    }
+
+    @Override
+    public void recordFlush(int spanCount, long durationNanos) {
+
+    }
 }
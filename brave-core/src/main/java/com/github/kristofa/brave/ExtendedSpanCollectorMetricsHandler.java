@@ -0,0 +1,103 @@
+package com.github.kristofa.brave;
+
+/**
+ * A {@link SpanCollectorMetricsHandler} which is also told why spans were dropped and how long
+ * encoding and flushing took. {@link JmxSpanCollectorMetricsHandler} is the default implementation.
+ *
+ * <p>Collectors given a handler of this type call {@link #incrementDroppedSpans(int, DropCause)}
+ * instead of {@link #incrementDroppedSpans(int)}. Other handlers are wrapped with {@link
+ * Adapter#of(SpanCollectorMetricsHandler)}, so they see the same drop counts as before.
+ *
+ * <p>Methods are called on the hot path of collecting and flushing spans, so implementations
+ * should neither block nor allocate.
+ */
+public interface ExtendedSpanCollectorMetricsHandler extends SpanCollectorMetricsHandler {
+
+    /** Why spans didn't reach the transport. */
+    enum DropCause {
+        /** The queue was full when the span was collected. */
+        QUEUE_FULL,
+        /** The spans couldn't be encoded. */
+        ENCODING,
+        /** The transport failed, or reporting the spans threw an exception. */
+        TRANSPORT,
+        /** Spans were queued when the collector was closed. */
+        CLOSED
+    }
+
+    /**
+     * Called when spans become lost and won't be delivered to the target collector.
+     *
+     * @param quantity the number of spans dropped.
+     */
+    void incrementDroppedSpans(int quantity, DropCause cause);
+
+    /**
+     * Called when the collector reads the count of spans waiting to be flushed, for example when a
+     * flush starts.
+     */
+    void updateQueueDepth(int depth);
+
+    /**
+     * Called after a batch of spans was encoded, and compressed if the collector compresses.
+     *
+     * @param encodedBytes size of the payload sent
+     */
+    void recordEncoding(int spanCount, int encodedBytes, long durationNanos);
+
+    /**
+     * Called after a batch of spans was handed to the transport, successfully or not. The duration
+     * includes encoding, when the collector encodes while flushing.
+     */
+    void recordFlush(int spanCount, long durationNanos);
+
+    /** Adapts a handler which only counts spans, ignoring the other events. */
+    final class Adapter implements ExtendedSpanCollectorMetricsHandler {
+
+        /** Returns the input if it is already an extended handler. */
+        public static ExtendedSpanCollectorMetricsHandler of(SpanCollectorMetricsHandler delegate) {
+            if (delegate instanceof ExtendedSpanCollectorMetricsHandler) {
+                return (ExtendedSpanCollectorMetricsHandler) delegate;
+            }
+            return new Adapter(delegate);
+        }
+
+        private final SpanCollectorMetricsHandler delegate;
+
+        private Adapter(SpanCollectorMetricsHandler delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void incrementAcceptedSpans(int quantity) {
+            delegate.incrementAcceptedSpans(quantity);
+        }
+
+        @Override
+        public void incrementDroppedSpans(int quantity) {
+            delegate.incrementDroppedSpans(quantity);
+        }
+
+        @Override
+        public void incrementDroppedSpans(int quantity, DropCause cause) {
+            delegate.incrementDroppedSpans(quantity);
+        }
+
+        @Override
+        public void updateQueueDepth(int depth) {
+        }
+
+        @Override
+        public void recordEncoding(int spanCount, int encodedBytes, long durationNanos) {
+        }
+
+        @Override
+        public void recordFlush(int spanCount, long durationNanos) {
+        }
+
+        @Override
+        public String toString() {
+            return delegate.toString();
+        }
+    }
+}
@@ -0,0 +1,444 @@
+package com.github.kristofa.brave;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import zipkin.reporter.Callback;
+import zipkin.reporter.Encoder;
+import zipkin.reporter.Encoding;
+import zipkin.reporter.Reporter;
+import zipkin.reporter.ReporterMetrics;
+import zipkin.reporter.Sender;
+
+import static com.github.kristofa.brave.internal.Util.checkNotNull;
+
+/**
+ * Reports each span to several sinks, such as a Kafka {@link Sender} and a local aggregator.
+ *
+ * <p>Each sink has its own bounded queue, drained by its own daemon thread, so the reporting
+ * thread only enqueues. When a sink stalls, its queue fills and spans for that sink are dropped
+ * according to its {@link DropPolicy}, while other sinks are unaffected.
+ *
+ * <p>Sinks can be a {@link Reporter}, a deprecated {@link SpanCollector} or a {@link Sender}.
+ * Senders receive batches of encoded spans. A span is encoded at most once per {@link Encoding},
+ * regardless of how many senders share that encoding.
+ *
+ * <pre>{@code
+ * reporter = FanOutReporter.builder()
+ *     .addSink(FanOutReporter.Sink.sender(kafkaSender).metrics(kafkaMetrics))
+ *     .addSink(FanOutReporter.Sink.reporter(aggregator).dropPolicy(DropPolicy.DROP_OLDEST))
+ *     .build();
+ * brave = new Brave.Builder("my-service").reporter(reporter).build();
+ * }</pre>
+ */
+public final class FanOutReporter implements Reporter<zipkin.Span>, Closeable {
+    private static final Logger LOGGER = Logger.getLogger(FanOutReporter.class.getName());
+
+    /** What to do with a span when a sink's queue is full. */
+    public enum DropPolicy {
+        /** Drop the span being reported, keeping those already queued. */
+        DROP_NEWEST,
+        /** Drop the oldest queued span to make room, favoring recent data. */
+        DROP_OLDEST
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static final class Builder {
+        final List<Sink> sinks = new ArrayList<Sink>();
+        long closeTimeoutNanos = TimeUnit.SECONDS.toNanos(1);
+
+        Builder() {
+        }
+
+        public Builder addSink(Sink sink) {
+            sinks.add(checkNotNull(sink, "sink"));
+            return this;
+        }
+
+        /**
+         * How long {@link FanOutReporter#close()} waits for sinks to deliver queued spans. Spans
+         * not delivered by then are counted as dropped. Default 1 second.
+         */
+        public Builder closeTimeout(long timeout, TimeUnit unit) {
+            if (timeout < 0) throw new IllegalArgumentException("timeout < 0");
+            this.closeTimeoutNanos = unit.toNanos(timeout);
+            return this;
+        }
+
+        /** Starts a thread per sink. */
+        public FanOutReporter build() {
+            if (sinks.isEmpty()) throw new IllegalArgumentException("no sinks added");
+            return new FanOutReporter(this);
+        }
+    }
+
+    /** A destination for spans and the settings of its queue. */
+    public static final class Sink {
+
+        public static Sink reporter(Reporter<zipkin.Span> reporter) {
+            return new Sink(checkNotNull(reporter, "reporter"));
+        }
+
+        /**
+         * Spans are converted for each collector, as collectors may modify the spans they are
+         * passed.
+         */
+        public static Sink spanCollector(SpanCollector collector) {
+            return new Sink(checkNotNull(collector, "collector"));
+        }
+
+        /**
+         * Encoded spans are sent in messages up to {@link Sender#messageMaxBytes()}. The sink's
+         * thread waits for each message to complete before sending the next.
+         */
+        public static Sink sender(Sender sender) {
+            return new Sink(checkNotNull(sender, "sender"));
+        }
+
+        final Object delegate;
+        String name;
+        int queueSize = 1000;
+        long messageTimeoutNanos = TimeUnit.SECONDS.toNanos(10);
+        DropPolicy dropPolicy = DropPolicy.DROP_NEWEST;
+        ReporterMetrics metrics = ReporterMetrics.NOOP_METRICS;
+
+        Sink(Object delegate) {
+            this.delegate = delegate;
+            this.name = delegate.toString();
+        }
+
+        /** Used in the name of the sink's thread and in log messages. Defaults to toString. */
+        public Sink name(String name) {
+            this.name = checkNotNull(name, "name");
+            return this;
+        }
+
+        /** Maximum count of spans waiting for this sink. Default 1000. */
+        public Sink queueSize(int queueSize) {
+            if (queueSize <= 0) throw new IllegalArgumentException("queueSize <= 0");
+            this.queueSize = queueSize;
+            return this;
+        }
+
+        /**
+         * How long a {@link #sender(Sender) sender} sink waits for a message to complete. When a
+         * message doesn't complete in time, its spans are counted as dropped and the next message
+         * is sent. Default 10 seconds.
+         */
+        public Sink messageTimeout(long timeout, TimeUnit unit) {
+            if (timeout <= 0) throw new IllegalArgumentException("timeout <= 0");
+            this.messageTimeoutNanos = unit.toNanos(timeout);
+            return this;
+        }
+
+        /** Default {@link DropPolicy#DROP_NEWEST}. */
+        public Sink dropPolicy(DropPolicy dropPolicy) {
+            this.dropPolicy = checkNotNull(dropPolicy, "dropPolicy");
+            return this;
+        }
+
+        /** Notified of spans accepted, delivered or dropped by this sink only. */
+        public Sink metrics(ReporterMetrics metrics) {
+            this.metrics = checkNotNull(metrics, "metrics");
+            return this;
+        }
+    }
+
+    final Lane[] lanes;
+    final long closeTimeoutNanos;
+    volatile boolean closed;
+
+    @SuppressWarnings("unchecked")
+    FanOutReporter(Builder builder) {
+        closeTimeoutNanos = builder.closeTimeoutNanos;
+        lanes = new Lane[builder.sinks.size()];
+        for (int i = 0; i < lanes.length; i++) {
+            Sink sink = builder.sinks.get(i);
+            if (sink.delegate instanceof Sender) {
+                lanes[i] = new SenderLane(sink, (Sender) sink.delegate);
+            } else if (sink.delegate instanceof SpanCollector) {
+                lanes[i] = new SpanCollectorLane(sink, (SpanCollector) sink.delegate);
+            } else {
+                lanes[i] = new ReporterLane(sink, (Reporter<zipkin.Span>) sink.delegate);
+            }
+        }
+        for (Lane lane : lanes) lane.start();
+    }
+
+    /** Enqueues the span for each sink. This never blocks. */
+    @Override
+    public void report(zipkin.Span span) {
+        checkNotNull(span, "Null span");
+        Entry entry = new Entry(span);
+        for (Lane lane : lanes) {
+            lane.offer(entry);
+        }
+    }
+
+    /**
+     * Delivers queued spans and stops the sink threads, waiting up to the {@link
+     * Builder#closeTimeout(long, TimeUnit) close timeout}. Sinks themselves are not closed, as they
+     * may be shared.
+     */
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        long deadline = System.nanoTime() + closeTimeoutNanos;
+        try {
+            for (Lane lane : lanes) {
+                TimeUnit.NANOSECONDS.timedJoin(lane.thread, deadline - System.nanoTime());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Lane lane : lanes) {
+            if (!lane.thread.isAlive()) continue;
+            LOGGER.fine("timed out delivering spans to " + lane.name);
+            lane.thread.interrupt();
+            lane.dropQueued();
+        }
+    }
+
+    /** A reported span, and its encoded forms once requested by a sink. */
+    static final class Entry {
+        final zipkin.Span span;
+        byte[] json, thrift;
+
+        Entry(zipkin.Span span) {
+            this.span = span;
+        }
+
+        synchronized byte[] encoded(Encoding encoding) {
+            if (encoding == Encoding.JSON) {
+                if (json == null) json = Encoder.JSON.encode(span);
+                return json;
+            }
+            if (thrift == null) thrift = Encoder.THRIFT.encode(span);
+            return thrift;
+        }
+    }
+
+    abstract class Lane implements Runnable {
+        final String name;
+        final DropPolicy dropPolicy;
+        final ReporterMetrics metrics;
+        final BlockingQueue<Entry> queue;
+        final Thread thread;
+
+        Lane(Sink sink) {
+            this.name = sink.name;
+            this.dropPolicy = sink.dropPolicy;
+            this.metrics = sink.metrics;
+            this.queue = new ArrayBlockingQueue<Entry>(sink.queueSize);
+            this.thread = new Thread(this, "FanOutReporter(" + name + ")");
+            thread.setDaemon(true);
+        }
+
+        void start() {
+            thread.start();
+        }
+
+        void offer(Entry entry) {
+            metrics.incrementSpans(1);
+            if (closed) {
+                metrics.incrementSpansDropped(1);
+                return;
+            }
+            while (!queue.offer(entry)) {
+                metrics.incrementSpansDropped(1);
+                if (dropPolicy == DropPolicy.DROP_NEWEST) return;
+                queue.poll(); // make room, racing with the sink's thread is harmless
+            }
+        }
+
+        @Override public void run() {
+            List<Entry> drained = new ArrayList<Entry>();
+            while (true) {
+                try {
+                    Entry first = queue.poll(100, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        if (closed) return;
+                        continue;
+                    }
+                    drained.add(first);
+                    queue.drainTo(drained);
+                    metrics.updateQueuedSpans(queue.size());
+                    deliver(drained);
+                } catch (InterruptedException e) {
+                    return;
+                } catch (RuntimeException e) {
+                    LOGGER.log(Level.WARNING, "error reporting spans to " + name, e);
+                } finally {
+                    drained.clear();
+                }
+            }
+        }
+
+        /** Counts spans still queued as dropped, when closing times out. */
+        void dropQueued() {
+            List<Entry> dropped = new ArrayList<Entry>();
+            queue.drainTo(dropped);
+            if (!dropped.isEmpty()) metrics.incrementSpansDropped(dropped.size());
+            metrics.updateQueuedSpans(0);
+        }
+
+        /** Delivers spans to the sink, updating drop metrics for any that fail. */
+        abstract void deliver(List<Entry> entries) throws InterruptedException;
+    }
+
+    final class ReporterLane extends Lane {
+        final Reporter<zipkin.Span> reporter;
+
+        ReporterLane(Sink sink, Reporter<zipkin.Span> reporter) {
+            super(sink);
+            this.reporter = reporter;
+        }
+
+        @Override void deliver(List<Entry> entries) {
+            for (int i = 0, length = entries.size(); i < length; i++) {
+                try {
+                    reporter.report(entries.get(i).span);
+                } catch (RuntimeException e) {
+                    metrics.incrementSpansDropped(1);
+                    LOGGER.log(Level.FINE, "error reporting span to " + name, e);
+                }
+            }
+        }
+    }
+
+    final class SpanCollectorLane extends Lane {
+        final SpanCollector collector;
+
+        SpanCollectorLane(Sink sink, SpanCollector collector) {
+            super(sink);
+            this.collector = collector;
+        }
+
+        @Override void deliver(List<Entry> entries) {
+            for (int i = 0, length = entries.size(); i < length; i++) {
+                try {
+                    collector.collect(SpanCollectorReporterAdapter.toBrave(entries.get(i).span));
+                } catch (RuntimeException e) {
+                    metrics.incrementSpansDropped(1);
+                    LOGGER.log(Level.FINE, "error collecting span to " + name, e);
+                }
+            }
+        }
+    }
+
+    final class SenderLane extends Lane {
+        final Sender sender;
+        final Encoding encoding;
+        final int messageMaxBytes;
+        final long messageTimeoutNanos;
+        final List<byte[]> message = new ArrayList<byte[]>();
+
+        SenderLane(Sink sink, Sender sender) {
+            super(sink);
+            this.sender = sender;
+            this.messageTimeoutNanos = sink.messageTimeoutNanos;
+            this.encoding = sender.encoding();
+            this.messageMaxBytes = sender.messageMaxBytes();
+        }
+
+        @Override void deliver(List<Entry> entries) throws InterruptedException {
+            int messageSize = 0;
+            for (int i = 0, length = entries.size(); i < length; i++) {
+                byte[] encoded;
+                try {
+                    encoded = entries.get(i).encoded(encoding);
+                } catch (RuntimeException e) {
+                    metrics.incrementSpansDropped(1);
+                    LOGGER.log(Level.FINE, "error encoding span for " + name, e);
+                    continue;
+                }
+                int encodedSize = sender.messageSizeInBytes(Collections.singletonList(encoded));
+                if (encodedSize > messageMaxBytes) {
+                    metrics.incrementSpansDropped(1);
+                    continue;
+                }
+                // each additional span costs its size, plus a comma in json
+                int added = encoding == Encoding.JSON ? encoded.length + 1 : encoded.length;
+                if (!message.isEmpty() && messageSize + added > messageMaxBytes) {
+                    send(messageSize);
+                    messageSize = 0;
+                }
+                messageSize = message.isEmpty() ? encodedSize : messageSize + added;
+                message.add(encoded);
+                metrics.incrementSpanBytes(encoded.length);
+            }
+            if (!message.isEmpty()) send(messageSize);
+        }
+
+        void send(int messageSize) throws InterruptedException {
+            int spanCount = message.size();
+            Throwable error;
+            try {
+                AwaitableCallback callback = new AwaitableCallback();
+                sender.sendSpans(new ArrayList<byte[]>(message), callback);
+                error = callback.await(messageTimeoutNanos);
+            } catch (InterruptedException e) {
+                metrics.incrementMessagesDropped(e);
+                metrics.incrementSpansDropped(spanCount);
+                throw e;
+            } catch (RuntimeException e) {
+                error = e;
+            } finally {
+                message.clear();
+            }
+            if (error == null) {
+                metrics.incrementMessages();
+                metrics.incrementMessageBytes(messageSize);
+            } else {
+                metrics.incrementMessagesDropped(error);
+                metrics.incrementSpansDropped(spanCount);
+                LOGGER.log(Level.FINE, "error sending spans to " + name, error);
+            }
+        }
+    }
+
+    static final class AwaitableCallback implements Callback {
+        final CountDownLatch latch = new CountDownLatch(1);
+        volatile Throwable error;
+
+        @Override public void onComplete() {
+            latch.countDown();
+        }
+
+        @Override public void onError(Throwable t) {
+            error = t;
+            latch.countDown();
+        }
+
+        /** Returns the error the message failed with, or a timeout if it didn't complete. */
+        Throwable await(long timeoutNanos) throws InterruptedException {
+            if (!latch.await(timeoutNanos, TimeUnit.NANOSECONDS)) {
+                return new TimeoutException("message didn't complete in "
+                    + TimeUnit.NANOSECONDS.toMillis(timeoutNanos) + "ms");
+            }
+            return error;
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder("FanOutReporter(");
+        for (int i = 0; i < lanes.length; i++) {
+            if (i > 0) result.append(", ");
+            result.append(lanes[i].name);
+        }
+        return result.append(')').toString();
+    }
+}
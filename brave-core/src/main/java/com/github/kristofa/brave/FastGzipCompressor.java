@@ -0,0 +1,194 @@
+package com.github.kristofa.brave;
+
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Pure-java gzip, in the spirit of LZ4: a single pass finds repeats with a hash table of the last
+ * position of each 4-byte sequence, without chaining or lazy matching. Output is one deflate
+ * block using the fixed huffman table, so any gzip reader can decompress it.
+ *
+ * <p>Span json is full of repeated keys and endpoints, so even this simple matching compresses
+ * it well, at a fraction of the CPU of zlib.
+ */
+final class FastGzipCompressor extends PayloadCompressor {
+    static final int HASH_BITS = 14;
+    static final int MIN_MATCH = 4, MAX_MATCH = 258, MAX_DISTANCE = 32768;
+
+    // Fixed huffman codes (RFC 1951 3.2.6), bit-reversed as deflate writes them lsb first
+    static final int[] LITERAL_CODES = new int[288], LITERAL_LENGTHS = new int[288];
+    static final int[] DISTANCE_CODES = new int[30];
+
+    static final int[] LENGTH_BASE = {
+        3, 4, 5, 6, 7, 8, 9, 10, 11, 13, 15, 17, 19, 23, 27, 31, 35, 43, 51, 59, 67, 83, 99, 115,
+        131, 163, 195, 227, 258
+    };
+    static final int[] LENGTH_EXTRA = {
+        0, 0, 0, 0, 0, 0, 0, 0, 1, 1, 1, 1, 2, 2, 2, 2, 3, 3, 3, 3, 4, 4, 4, 4, 5, 5, 5, 5, 0
+    };
+    static final int[] DISTANCE_BASE = {
+        1, 2, 3, 4, 5, 7, 9, 13, 17, 25, 33, 49, 65, 97, 129, 193, 257, 385, 513, 769, 1025, 1537,
+        2049, 3073, 4097, 6145, 8193, 12289, 16385, 24577
+    };
+    static final int[] DISTANCE_EXTRA = {
+        0, 0, 0, 0, 1, 1, 2, 2, 3, 3, 4, 4, 5, 5, 6, 6, 7, 7, 8, 8, 9, 9, 10, 10, 11, 11, 12, 12,
+        13, 13
+    };
+    /** Length code index by match length. */
+    static final byte[] LENGTH_CODE = new byte[MAX_MATCH + 1];
+    /** Distance code by distance - 1 below 256, else by 256 + ((distance - 1) >> 7), as in zlib. */
+    static final byte[] DISTANCE_CODE = new byte[512];
+
+    static {
+        for (int i = 0; i < 288; i++) {
+            int code, length;
+            if (i < 144) {
+                code = 0x30 + i;
+                length = 8;
+            } else if (i < 256) {
+                code = 0x190 + i - 144;
+                length = 9;
+            } else if (i < 280) {
+                code = i - 256;
+                length = 7;
+            } else {
+                code = 0xc0 + i - 280;
+                length = 8;
+            }
+            LITERAL_CODES[i] = reverse(code, length);
+            LITERAL_LENGTHS[i] = length;
+        }
+        for (int i = 0; i < 30; i++) {
+            DISTANCE_CODES[i] = reverse(i, 5);
+        }
+        for (int code = 0; code < LENGTH_BASE.length; code++) {
+            int end = code == LENGTH_BASE.length - 1 ? MAX_MATCH : LENGTH_BASE[code + 1] - 1;
+            for (int length = LENGTH_BASE[code]; length <= end; length++) {
+                LENGTH_CODE[length] = (byte) code;
+            }
+        }
+        for (int code = 0; code < DISTANCE_BASE.length; code++) {
+            int end = DISTANCE_BASE[code] + (1 << DISTANCE_EXTRA[code]) - 1;
+            for (int distance = DISTANCE_BASE[code]; distance <= end; distance++) {
+                int d = distance - 1;
+                DISTANCE_CODE[d < 256 ? d : 256 + (d >> 7)] = (byte) code;
+            }
+        }
+    }
+
+    static int reverse(int code, int length) {
+        int result = 0;
+        for (int i = 0; i < length; i++) {
+            result = result << 1 | (code >>> i & 1);
+        }
+        return result;
+    }
+
+    /** Hash tables are 64KiB, so they are reused across payloads. */
+    final Queue<int[]> tables = new ConcurrentLinkedQueue<int[]>();
+
+    @Override public String encoding(int uncompressedSize) {
+        return GZIP;
+    }
+
+    @Override protected byte[] doCompress(byte[] input) {
+        int[] table = tables.poll();
+        if (table == null) {
+            table = new int[1 << HASH_BITS];
+        } else {
+            Arrays.fill(table, 0);
+        }
+        try {
+            return compress(input, table);
+        } finally {
+            tables.offer(table);
+        }
+    }
+
+    byte[] compress(byte[] in, int[] table) {
+        // worst case, every byte is a 9-bit literal
+        BitWriter out = new BitWriter(PooledGzipCompressor.HEADER_SIZE + in.length * 9 / 8 + 16
+            + PooledGzipCompressor.TRAILER_SIZE);
+        out.pos = PooledGzipCompressor.writeHeader(out.bytes);
+        out.writeBits(1, 1); // final block
+        out.writeBits(1, 2); // fixed huffman
+
+        int length = in.length, anchor = 0, i = 0;
+        while (i + MIN_MATCH <= length) {
+            int sequence = readInt(in, i);
+            int hash = (sequence * -1640531535) >>> (32 - HASH_BITS);
+            int candidate = table[hash] - 1; // positions are stored plus one, so zero is empty
+            table[hash] = i + 1;
+            if (candidate < 0 || i - candidate > MAX_DISTANCE || readInt(in, candidate) != sequence) {
+                i++;
+                continue;
+            }
+            int matchLength = MIN_MATCH;
+            int max = Math.min(MAX_MATCH, length - i);
+            while (matchLength < max && in[candidate + matchLength] == in[i + matchLength]) {
+                matchLength++;
+            }
+            for (int j = anchor; j < i; j++) out.writeLiteral(in[j] & 0xff);
+            out.writeMatch(matchLength, i - candidate);
+            i += matchLength;
+            anchor = i;
+        }
+        for (int j = anchor; j < length; j++) out.writeLiteral(in[j] & 0xff);
+        out.writeLiteral(256); // end of block
+        out.flush();
+
+        int end = PooledGzipCompressor.writeTrailer(out.bytes, out.pos, in);
+        return Arrays.copyOf(out.bytes, end);
+    }
+
+    static int readInt(byte[] in, int i) {
+        return (in[i] & 0xff) | (in[i + 1] & 0xff) << 8 | (in[i + 2] & 0xff) << 16 | in[i + 3] << 24;
+    }
+
+    /** Writes deflate's least-significant-bit first stream. */
+    static final class BitWriter {
+        final byte[] bytes;
+        int pos;
+        long bits;
+        int bitCount;
+
+        BitWriter(int size) {
+            bytes = new byte[size];
+        }
+
+        void writeLiteral(int literal) {
+            writeBits(LITERAL_CODES[literal], LITERAL_LENGTHS[literal]);
+        }
+
+        void writeMatch(int length, int distance) {
+            int lengthCode = LENGTH_CODE[length];
+            writeLiteral(257 + lengthCode);
+            writeBits(length - LENGTH_BASE[lengthCode], LENGTH_EXTRA[lengthCode]);
+            int d = distance - 1;
+            int distanceCode = DISTANCE_CODE[d < 256 ? d : 256 + (d >> 7)];
+            writeBits(DISTANCE_CODES[distanceCode], 5);
+            writeBits(distance - DISTANCE_BASE[distanceCode], DISTANCE_EXTRA[distanceCode]);
+        }
+
+        void writeBits(int value, int count) {
+            bits |= (long) value << bitCount;
+            bitCount += count;
+            while (bitCount >= 8) {
+                bytes[pos++] = (byte) bits;
+                bits >>>= 8;
+                bitCount -= 8;
+            }
+        }
+
+        void flush() {
+            if (bitCount > 0) bytes[pos++] = (byte) bits;
+            bits = 0;
+            bitCount = 0;
+        }
+    }
+
+    @Override public String toString() {
+        return "FastGzipCompressor";
+    }
+}
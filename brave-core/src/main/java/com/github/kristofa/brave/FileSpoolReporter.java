@@ -0,0 +1,510 @@
+package com.github.kristofa.brave;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import zipkin.reporter.Encoder;
+import zipkin.reporter.Encoding;
+import zipkin.reporter.Reporter;
+import zipkin.reporter.ReporterMetrics;
+
+import static com.github.kristofa.brave.internal.Util.checkNotNull;
+
+/**
+ * Reporter which appends encoded spans to size-rotated segment files in a directory, so that a
+ * sidecar or log shipper can forward them. Unlike {@link LoggingReporter}, the calling thread only
+ * enqueues the span: encoding and file I/O happen on a single background writer thread. Spans are
+ * dropped when the queue is full.
+ *
+ * <p>Spans are written as newline-delimited json, or as thrift, each prefixed by its length as a
+ * 4-byte big-endian integer. The file format follows {@link Builder#encoder(Encoder)}.
+ *
+ * <h3>Segment files</h3>
+ * The segment being written is named {@code <prefix>-<sequence>.<ext>.active}. It is memory-mapped
+ * and pre-allocated to {@link Builder#segmentBytes(int)}, so its tail is zero-filled. On rotation,
+ * the segment is synced, unmapped, truncated to the bytes written, then atomically renamed to
+ * {@code <prefix>-<sequence>.<ext>}. Tailers should only read completed segments, which are never
+ * modified after rename. Sequence numbers are zero-padded, so lexical order is write order.
+ *
+ * <p>Once completed segments exceed {@link Builder#maxTotalBytes(long)}, the oldest are deleted.
+ *
+ * <p>An active segment left behind by a crash is completed on startup.
+ */
+public final class FileSpoolReporter implements Reporter<zipkin.Span>, Closeable {
+    private static final Logger LOGGER = Logger.getLogger(FileSpoolReporter.class.getName());
+    static final String ACTIVE_SUFFIX = ".active";
+
+    /** Controls when the writer forces segment contents to disk. */
+    public enum SyncPolicy {
+        /** Leave syncing to the operating system. Spans may be lost if the host crashes. */
+        NONE,
+        /** Sync each segment as it is completed. */
+        ON_ROTATION,
+        /** Sync the active segment at most once per {@link Builder#syncInterval sync interval}. */
+        INTERVAL
+    }
+
+    public static Builder builder(File directory) {
+        return new Builder(directory);
+    }
+
+    public static final class Builder {
+        final File directory;
+        Encoder<zipkin.Span> encoder = Encoder.JSON;
+        String prefix = "spans";
+        int segmentBytes = 16 * 1024 * 1024;
+        long maxTotalBytes = 256L * 1024 * 1024;
+        int queueSize = 10000;
+        SyncPolicy syncPolicy = SyncPolicy.ON_ROTATION;
+        long syncIntervalMillis = 1000;
+        long rotationIntervalMillis = 0;
+        ReporterMetrics metrics = ReporterMetrics.NOOP_METRICS;
+
+        Builder(File directory) {
+            this.directory = checkNotNull(directory, "directory");
+        }
+
+        /** Default {@link Encoder#JSON}, which writes one json span per line. */
+        public Builder encoder(Encoder<zipkin.Span> encoder) {
+            this.encoder = checkNotNull(encoder, "encoder");
+            return this;
+        }
+
+        /** File name prefix of segments. Default "spans". */
+        public Builder prefix(String prefix) {
+            checkNotNull(prefix, "prefix");
+            if (prefix.isEmpty() || prefix.indexOf(File.separatorChar) != -1) {
+                throw new IllegalArgumentException("invalid prefix: " + prefix);
+            }
+            this.prefix = prefix;
+            return this;
+        }
+
+        /** Maximum size of a segment file. Default 16MiB. */
+        public Builder segmentBytes(int segmentBytes) {
+            if (segmentBytes < 1024) throw new IllegalArgumentException("segmentBytes < 1024");
+            this.segmentBytes = segmentBytes;
+            return this;
+        }
+
+        /**
+         * Disk budget for segments in the directory, including the active one. The oldest
+         * completed segments are deleted to stay under it. Default 256MiB.
+         */
+        public Builder maxTotalBytes(long maxTotalBytes) {
+            this.maxTotalBytes = maxTotalBytes;
+            return this;
+        }
+
+        /** Maximum count of spans waiting for the writer. Default 10000. */
+        public Builder queueSize(int queueSize) {
+            if (queueSize <= 0) throw new IllegalArgumentException("queueSize <= 0");
+            this.queueSize = queueSize;
+            return this;
+        }
+
+        /** Default {@link SyncPolicy#ON_ROTATION}. */
+        public Builder syncPolicy(SyncPolicy syncPolicy) {
+            this.syncPolicy = checkNotNull(syncPolicy, "syncPolicy");
+            return this;
+        }
+
+        /** Used with {@link SyncPolicy#INTERVAL}. Default 1 second. */
+        public Builder syncInterval(long interval, TimeUnit unit) {
+            if (interval <= 0) throw new IllegalArgumentException("interval <= 0");
+            this.syncIntervalMillis = unit.toMillis(interval);
+            return this;
+        }
+
+        /**
+         * When positive, segments which have data are also completed after this interval, so that
+         * tailers see spans even at low traffic. Default 0: only rotate when full.
+         */
+        public Builder rotationInterval(long interval, TimeUnit unit) {
+            if (interval < 0) throw new IllegalArgumentException("interval < 0");
+            this.rotationIntervalMillis = unit.toMillis(interval);
+            return this;
+        }
+
+        /** Notified of spans written or dropped. */
+        public Builder metrics(ReporterMetrics metrics) {
+            this.metrics = checkNotNull(metrics, "metrics");
+            return this;
+        }
+
+        /** Creates the directory if needed and starts the writer thread. */
+        public FileSpoolReporter build() throws IOException {
+            if (segmentBytes > maxTotalBytes) {
+                throw new IllegalArgumentException("segmentBytes > maxTotalBytes");
+            }
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("couldn't create " + directory);
+            }
+            return new FileSpoolReporter(this);
+        }
+    }
+
+    final File directory;
+    final Encoder<zipkin.Span> encoder;
+    final String prefix;
+    final boolean json;
+    final String extension;
+    final int segmentBytes;
+    final long maxTotalBytes;
+    final SyncPolicy syncPolicy;
+    final long syncIntervalMillis;
+    final long rotationIntervalMillis;
+    final ReporterMetrics metrics;
+    final BlockingQueue<zipkin.Span> queue;
+    final Thread writer;
+    volatile boolean closed;
+
+    // Only accessed by the writer thread
+    long sequence;
+    RandomAccessFile file;
+    MappedByteBuffer buffer;
+    long lastSyncMillis;
+    long segmentStartMillis;
+
+    FileSpoolReporter(Builder builder) throws IOException {
+        this.directory = builder.directory;
+        this.encoder = builder.encoder;
+        this.prefix = builder.prefix;
+        this.json = encoder.encoding() == Encoding.JSON;
+        this.extension = json ? ".json" : ".thrift";
+        this.segmentBytes = builder.segmentBytes;
+        this.maxTotalBytes = builder.maxTotalBytes;
+        this.syncPolicy = builder.syncPolicy;
+        this.syncIntervalMillis = builder.syncIntervalMillis;
+        this.rotationIntervalMillis = builder.rotationIntervalMillis;
+        this.metrics = builder.metrics;
+        this.queue = new ArrayBlockingQueue<zipkin.Span>(builder.queueSize);
+        recoverActiveSegments();
+        this.writer = new Thread(new Runnable() {
+            @Override public void run() {
+                writeLoop();
+            }
+        }, "FileSpoolReporter(" + directory + ")");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /** Enqueues the span for the writer, or drops it if the queue is full or closed. */
+    @Override
+    public void report(zipkin.Span span) {
+        checkNotNull(span, "Null span");
+        metrics.incrementSpans(1);
+        if (closed || !queue.offer(span)) {
+            metrics.incrementSpansDropped(1);
+        }
+    }
+
+    /** Writes queued spans, completes the active segment and stops the writer. */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    void writeLoop() {
+        List<zipkin.Span> drained = new ArrayList<zipkin.Span>();
+        int written = 0; // spans in drained which were handled before any error
+        while (true) {
+            try {
+                zipkin.Span first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    drained.add(first);
+                    queue.drainTo(drained);
+                    for (int length = drained.size(); written < length; written++) {
+                        write(drained.get(written));
+                    }
+                    drained.clear();
+                    written = 0;
+                    metrics.updateQueuedSpans(queue.size());
+                } else if (closed) {
+                    completeSegment();
+                    return;
+                }
+                maybeSyncOrRotate();
+            } catch (InterruptedException e) {
+                closed = true;
+            } catch (IOException e) {
+                metrics.incrementSpansDropped(drained.size() - written);
+                drained.clear();
+                written = 0;
+                LOGGER.log(Level.WARNING, "error writing spans to " + directory, e);
+                abandonSegment();
+            } catch (RuntimeException e) {
+                metrics.incrementSpansDropped(drained.size() - written);
+                drained.clear();
+                written = 0;
+                LOGGER.log(Level.WARNING, "error encoding spans", e);
+            }
+        }
+    }
+
+    void write(zipkin.Span span) throws IOException {
+        byte[] encoded;
+        try {
+            encoded = encoder.encode(span);
+        } catch (RuntimeException e) {
+            metrics.incrementSpansDropped(1);
+            LOGGER.log(Level.WARNING, "error encoding span", e);
+            return;
+        }
+        int recordSize = encoded.length + (json ? 1 : 4);
+        if (recordSize > segmentBytes) {
+            metrics.incrementSpansDropped(1);
+            return;
+        }
+        if (buffer == null) {
+            startSegment();
+        } else if (buffer.remaining() < recordSize) {
+            completeSegment();
+            startSegment();
+        }
+        if (json) {
+            buffer.put(encoded).put((byte) '\n');
+        } else {
+            buffer.putInt(encoded.length).put(encoded);
+        }
+        metrics.incrementSpanBytes(encoded.length);
+    }
+
+    void maybeSyncOrRotate() throws IOException {
+        if (buffer == null || buffer.position() == 0) return;
+        long now = System.currentTimeMillis();
+        if (rotationIntervalMillis > 0 && now - segmentStartMillis >= rotationIntervalMillis) {
+            completeSegment();
+        } else if (syncPolicy == SyncPolicy.INTERVAL && now - lastSyncMillis >= syncIntervalMillis) {
+            buffer.force();
+            lastSyncMillis = now;
+        }
+    }
+
+    void startSegment() throws IOException {
+        enforceBudget();
+        file = new RandomAccessFile(segmentFile(sequence, true), "rw");
+        file.setLength(segmentBytes);
+        buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        segmentStartMillis = lastSyncMillis = System.currentTimeMillis();
+    }
+
+    /** Truncates the active segment to its contents and renames it for tailers. */
+    void completeSegment() {
+        if (buffer == null) return;
+        File active = segmentFile(sequence, true);
+        try {
+            if (syncPolicy != SyncPolicy.NONE) buffer.force();
+            int length = buffer.position();
+            unmap(buffer);
+            buffer = null;
+            file.setLength(length);
+            file.close();
+            file = null;
+            if (length == 0) {
+                if (!active.delete()) LOGGER.warning("couldn't delete " + active);
+            } else if (!active.renameTo(segmentFile(sequence++, false))) {
+                LOGGER.warning("couldn't rename " + active);
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "error completing " + active, e);
+            abandonSegment();
+        }
+    }
+
+    /** Closes and deletes the active segment after an error, so that it doesn't escape the budget. */
+    void abandonSegment() {
+        if (buffer != null) unmap(buffer);
+        buffer = null;
+        if (file != null) {
+            try {
+                file.close();
+            } catch (IOException ignored) {
+            }
+            file = null;
+        }
+        File active = segmentFile(sequence++, true);
+        if (active.exists() && !active.delete()) LOGGER.warning("couldn't delete " + active);
+    }
+
+    /**
+     * Deletes the oldest completed segments until a new one fits in the budget. Active segments
+     * which couldn't be deleted when abandoned still count against it.
+     */
+    void enforceBudget() {
+        File[] completed = listSegments(false);
+        long total = segmentBytes;
+        for (File segment : listSegments(true)) total += segment.length();
+        for (File segment : completed) total += segment.length();
+        for (int i = 0; i < completed.length && total > maxTotalBytes; i++) {
+            long length = completed[i].length();
+            if (completed[i].delete()) {
+                total -= length;
+            } else {
+                LOGGER.warning("couldn't delete " + completed[i]);
+            }
+        }
+    }
+
+    /** Completes segments left active by a prior process and resumes the sequence after them. */
+    void recoverActiveSegments() throws IOException {
+        for (File active : listSegments(true)) {
+            RandomAccessFile raf = new RandomAccessFile(active, "rw");
+            try {
+                MappedByteBuffer contents =
+                    raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+                int length = recoveredLength(contents);
+                unmap(contents);
+                raf.setLength(length);
+            } finally {
+                raf.close();
+            }
+            String name = active.getName();
+            File completed =
+                new File(directory, name.substring(0, name.length() - ACTIVE_SUFFIX.length()));
+            if (active.length() == 0) {
+                if (!active.delete()) LOGGER.warning("couldn't delete " + active);
+            } else if (!active.renameTo(completed)) {
+                LOGGER.warning("couldn't rename " + active);
+            }
+        }
+        for (File segment : listSegments(false)) {
+            sequence = Math.max(sequence, sequence(segment.getName()) + 1);
+        }
+    }
+
+    /** Returns the length of whole records before the zero-filled tail of a segment. */
+    int recoveredLength(MappedByteBuffer contents) {
+        int limit = contents.limit();
+        if (json) {
+            int end = 0;
+            for (int i = 0; i < limit; i++) {
+                byte b = contents.get(i);
+                if (b == 0) break;
+                if (b == '\n') end = i + 1;
+            }
+            return end;
+        }
+        int position = 0;
+        while (position + 4 <= limit) {
+            int length = contents.getInt(position);
+            if (length <= 0 || position + 4 + length > limit) break;
+            position += 4 + length;
+        }
+        return position;
+    }
+
+    /**
+     * Releases the mapping now instead of when the buffer is garbage collected, so that the file
+     * can be truncated: Windows refuses to resize a mapped file, and elsewhere the mapping would
+     * outlive the segment. The buffer must not be used afterwards. There's no public API for this,
+     * so it is done reflectively: via {@code Unsafe.invokeCleaner} on Java 9+, or the buffer's
+     * cleaner before that. Returns false when neither is accessible, leaving the mapping to GC.
+     */
+    static boolean unmap(MappedByteBuffer buffer) {
+        Unmapper unmapper = Unmapper.INSTANCE;
+        if (unmapper == null) return false;
+        try {
+            unmapper.unmap(buffer);
+            return true;
+        } catch (Exception e) {
+            LOGGER.log(Level.FINE, "couldn't unmap segment", e);
+            return false;
+        }
+    }
+
+    /** Unmaps direct buffers, or is null when the JVM doesn't allow it. */
+    static abstract class Unmapper {
+        static final Unmapper INSTANCE = create();
+
+        abstract void unmap(MappedByteBuffer buffer) throws Exception;
+
+        static Unmapper create() {
+            try {
+                Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+                final Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+                Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+                theUnsafe.setAccessible(true);
+                final Object unsafe = theUnsafe.get(null);
+                return new Unmapper() {
+                    @Override void unmap(MappedByteBuffer buffer) throws Exception {
+                        invokeCleaner.invoke(unsafe, buffer);
+                    }
+                };
+            } catch (Exception java8) {
+                // invokeCleaner was added in Java 9
+            }
+            try {
+                final Method cleaner = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+                final Method clean = Class.forName("sun.misc.Cleaner").getMethod("clean");
+                return new Unmapper() {
+                    @Override void unmap(MappedByteBuffer buffer) throws Exception {
+                        Object result = cleaner.invoke(buffer);
+                        if (result != null) clean.invoke(result);
+                    }
+                };
+            } catch (Exception e) {
+                LOGGER.log(Level.FINE, "can't unmap segments; mappings are released on GC", e);
+                return null;
+            }
+        }
+    }
+
+    File segmentFile(long sequence, boolean active) {
+        String name = prefix + "-" + String.format("%019d", sequence) + extension;
+        return new File(directory, active ? name + ACTIVE_SUFFIX : name);
+    }
+
+    /** Returns segments with this reporter's prefix and extension, oldest first. */
+    File[] listSegments(final boolean active) {
+        final String suffix = active ? extension + ACTIVE_SUFFIX : extension;
+        File[] result = directory.listFiles(new FilenameFilter() {
+            @Override public boolean accept(File dir, String name) {
+                return name.startsWith(prefix + "-") && name.endsWith(suffix)
+                    && sequence(name, suffix) >= 0;
+            }
+        });
+        if (result == null) return new File[0];
+        Arrays.sort(result);
+        return result;
+    }
+
+    long sequence(String completedName) {
+        return sequence(completedName, extension);
+    }
+
+    long sequence(String name, String suffix) {
+        try {
+            String digits = name.substring(prefix.length() + 1, name.length() - suffix.length());
+            return Long.parseLong(digits);
+        } catch (RuntimeException e) {
+            return -1;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "FileSpoolReporter(" + directory + ")";
+    }
+}
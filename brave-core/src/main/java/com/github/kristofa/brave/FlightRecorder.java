@@ -0,0 +1,355 @@
+package com.github.kristofa.brave;
+
+import com.github.kristofa.brave.internal.Nullable;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import zipkin.Constants;
+import zipkin.reporter.Reporter;
+
+import static com.github.kristofa.brave.internal.Util.checkNotNull;
+
+/**
+ * Keeps lightweight records of recent spans in a fixed-size, off-heap ring buffer, so that
+ * something survives about requests which were never sampled.
+ *
+ * <p>Each record is the trace and span id, the span name (truncated to {@link #MAX_NAME_LENGTH}
+ * ascii characters), the start timestamp and the duration. Unsampled requests are recorded without
+ * a name unless {@link Builder#unsampledNames(boolean) enabled}. Writes claim a slot with a single
+ * atomic increment and copy primitives into a direct buffer: no objects are allocated per record.
+ *
+ * <p>Sampled spans are recorded when they are {@link #report(zipkin.Span) reported}. Unsampled
+ * server requests are recorded by {@link ServerTracer} when a recorder is configured via {@link
+ * Brave.Builder#flightRecorder(FlightRecorder)}:
+ *
+ * <pre>{@code
+ * recorder = FlightRecorder.builder().capacity(16384).windowSeconds(30).build();
+ * brave = new Brave.Builder("my-service").reporter(reporter).flightRecorder(recorder).build();
+ * ManagementFactory.getPlatformMBeanServer().registerMBean(recorder, FlightRecorder.OBJECT_NAME);
+ * }</pre>
+ *
+ * <p>The buffer is {@link #dump() dumped} on demand, for example over JMX. When {@link
+ * Builder#dumpOnError(boolean) enabled}, it is also logged at WARNING when a span tagged with
+ * {@link Constants#ERROR} finishes.
+ */
+public final class FlightRecorder implements Reporter<zipkin.Span>, FlightRecorderMBean {
+
+    /** Suggested name when registering this with an MBean server. */
+    public static final String OBJECT_NAME = "com.github.kristofa.brave:type=FlightRecorder";
+
+    /** Span names longer than this are truncated in the record. */
+    public static final int MAX_NAME_LENGTH = 42;
+
+    static final int FLAG_SAMPLED = 1 << 0;
+    static final int FLAG_ERROR = 1 << 1;
+
+    // Record layout, in bytes
+    static final int TRACE_ID_HIGH = 0;
+    static final int TRACE_ID = 8;
+    static final int SPAN_ID = 16;
+    static final int TIMESTAMP = 24;
+    static final int DURATION = 32;
+    static final int FLAGS = 40;
+    static final int NAME_LENGTH = 44;
+    static final int NAME = 46;
+    static final int RECORD_SIZE = NAME + MAX_NAME_LENGTH;
+
+    private static final Logger LOGGER = Logger.getLogger(FlightRecorder.class.getName());
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static final class Builder {
+        int capacity = 4096;
+        int windowSeconds = 60;
+        boolean dumpOnError = true;
+        long minDumpIntervalMillis = TimeUnit.SECONDS.toMillis(10);
+        boolean unsampledNames = false;
+        AnnotationSubmitter.Clock clock = AnnotationSubmitter.DefaultClock.INSTANCE;
+
+        Builder() {
+        }
+
+        /**
+         * Maximum count of records kept, rounded up to a power of two. Each record takes {@value
+         * #RECORD_SIZE} bytes off-heap. Default 4096.
+         */
+        public Builder capacity(int capacity) {
+            if (capacity <= 0) throw new IllegalArgumentException("capacity must be positive");
+            if (capacity > 1 << 24) throw new IllegalArgumentException("capacity must be <= 2^24");
+            this.capacity = capacity;
+            return this;
+        }
+
+        /** Records older than this are left out of a dump. Default 60 seconds. */
+        public Builder windowSeconds(int windowSeconds) {
+            if (windowSeconds <= 0) throw new IllegalArgumentException("windowSeconds must be positive");
+            this.windowSeconds = windowSeconds;
+            return this;
+        }
+
+        /** When true, logs a dump when a span tagged with "error" finishes. Default true. */
+        public Builder dumpOnError(boolean dumpOnError) {
+            this.dumpOnError = dumpOnError;
+            return this;
+        }
+
+        /** Limits how often errors trigger a dump. Default 10 seconds. */
+        public Builder minDumpInterval(long duration, TimeUnit unit) {
+            if (duration < 0) throw new IllegalArgumentException("duration must be >= 0");
+            this.minDumpIntervalMillis = checkNotNull(unit, "unit").toMillis(duration);
+            return this;
+        }
+
+        /**
+         * When true, unsampled requests are recorded with their span name. Reading it costs every
+         * unsampled request what sampled ones cost, such as parsing a URI. Default false.
+         */
+        public Builder unsampledNames(boolean unsampledNames) {
+            this.unsampledNames = unsampledNames;
+            return this;
+        }
+
+        /**
+         * Decides which records are in the {@link #windowSeconds(int) window} of a dump. Use the
+         * same clock as {@link Brave.Builder#clock(AnnotationSubmitter.Clock)}, which timestamps
+         * records. Default {@link AnnotationSubmitter.DefaultClock}.
+         */
+        public Builder clock(AnnotationSubmitter.Clock clock) {
+            this.clock = checkNotNull(clock, "clock");
+            return this;
+        }
+
+        public FlightRecorder build() {
+            return new FlightRecorder(this);
+        }
+    }
+
+    final ByteBuffer buffer;
+    final AtomicLongArray sequences; // even when the slot is stable, odd while being written
+    final int mask;
+    final int windowSeconds;
+    final boolean dumpOnError;
+    final long minDumpIntervalMillis;
+    final boolean unsampledNames;
+    final AnnotationSubmitter.Clock clock;
+    final AtomicLong writeIndex = new AtomicLong();
+    final AtomicLong unsampledCount = new AtomicLong();
+    final AtomicLong lastDumpMillis = new AtomicLong();
+    final ThreadLocal<PendingRequest> pending = new ThreadLocal<PendingRequest>() {
+        @Override protected PendingRequest initialValue() {
+            return new PendingRequest();
+        }
+    };
+
+    FlightRecorder(Builder builder) {
+        int capacity = Integer.highestOneBit(builder.capacity);
+        if (capacity < builder.capacity) capacity <<= 1;
+        this.mask = capacity - 1;
+        this.buffer = ByteBuffer.allocateDirect(capacity * RECORD_SIZE);
+        this.sequences = new AtomicLongArray(capacity);
+        this.windowSeconds = builder.windowSeconds;
+        this.dumpOnError = builder.dumpOnError;
+        this.minDumpIntervalMillis = builder.minDumpIntervalMillis;
+        this.unsampledNames = builder.unsampledNames;
+        this.clock = builder.clock;
+    }
+
+    /**
+     * Records a sampled span. This does not forward the span anywhere; see {@link
+     * #recording(Reporter)}.
+     */
+    @Override
+    public void report(zipkin.Span span) {
+        checkNotNull(span, "Null span");
+        boolean error = isError(span);
+        long timestamp = span.timestamp != null ? span.timestamp
+            : span.annotations.isEmpty() ? 0L : span.annotations.get(0).timestamp;
+        long duration = span.duration != null ? span.duration : 0L;
+        record(span.traceIdHigh, span.traceId, span.id, span.name, timestamp, duration,
+            FLAG_SAMPLED | (error ? FLAG_ERROR : 0));
+        if (error && dumpOnError) maybeDumpOnError();
+    }
+
+    /** Returns a reporter which records each span before passing it to the delegate. */
+    Reporter<zipkin.Span> recording(final Reporter<zipkin.Span> delegate) {
+        checkNotNull(delegate, "delegate");
+        return new Reporter<zipkin.Span>() {
+            @Override public void report(zipkin.Span span) {
+                FlightRecorder.this.report(span);
+                delegate.report(span);
+            }
+
+            @Override public String toString() {
+                return "Recording(" + delegate + ")";
+            }
+        };
+    }
+
+    /**
+     * Marks the start of an unsampled request on the current thread. The ids are zero when the
+     * caller didn't propagate any.
+     *
+     * @param timestamp epoch microseconds, from the tracer's clock
+     */
+    void startUnsampled(long traceIdHigh, long traceId, long spanId, @Nullable String name,
+        long timestamp) {
+        PendingRequest request = pending.get();
+        request.traceIdHigh = traceIdHigh;
+        request.traceId = traceId;
+        request.spanId = spanId;
+        request.name = name;
+        request.timestamp = timestamp;
+        request.startTick = System.nanoTime();
+        request.active = true;
+    }
+
+    /** Records the unsampled request started on the current thread, if there was one. */
+    void finishUnsampled() {
+        PendingRequest request = pending.get();
+        if (!request.active) return;
+        request.active = false;
+        long duration = Math.max(1L, (System.nanoTime() - request.startTick) / 1000);
+        unsampledCount.incrementAndGet();
+        record(request.traceIdHigh, request.traceId, request.spanId, request.name,
+            request.timestamp, duration, 0);
+        request.name = null;
+    }
+
+    /** Forgets any unsampled request started on the current thread. */
+    void clearUnsampled() {
+        PendingRequest request = pending.get();
+        request.active = false;
+        request.name = null;
+    }
+
+    void record(long traceIdHigh, long traceId, long spanId, String name, long timestamp,
+        long duration, int flags) {
+        long index = writeIndex.getAndIncrement();
+        int slot = (int) (index & mask);
+        int offset = slot * RECORD_SIZE;
+        sequences.set(slot, (index << 1) | 1);
+        buffer.putLong(offset + TRACE_ID_HIGH, traceIdHigh);
+        buffer.putLong(offset + TRACE_ID, traceId);
+        buffer.putLong(offset + SPAN_ID, spanId);
+        buffer.putLong(offset + TIMESTAMP, timestamp);
+        buffer.putLong(offset + DURATION, duration);
+        buffer.putInt(offset + FLAGS, flags);
+        int length = name == null ? 0 : Math.min(name.length(), MAX_NAME_LENGTH);
+        buffer.putShort(offset + NAME_LENGTH, (short) length);
+        for (int i = 0; i < length; i++) {
+            char c = name.charAt(i);
+            buffer.put(offset + NAME + i, (byte) (c < 0x80 ? c : '?'));
+        }
+        sequences.lazySet(slot, (index + 1) << 1);
+    }
+
+    @Override
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    @Override
+    public int getWindowSeconds() {
+        return windowSeconds;
+    }
+
+    @Override
+    public long getRecordedCount() {
+        return writeIndex.get();
+    }
+
+    @Override
+    public long getUnsampledCount() {
+        return unsampledCount.get();
+    }
+
+    @Override
+    public String dump() {
+        StringBuilder result = new StringBuilder();
+        dumpTo(result);
+        return result.toString();
+    }
+
+    /** Appends the records in the window, oldest first, one per line. */
+    public void dumpTo(StringBuilder out) {
+        long end = writeIndex.get();
+        long start = Math.max(0, end - (mask + 1));
+        long oldest = clock.currentTimeMicroseconds() - TimeUnit.SECONDS.toMicros(windowSeconds);
+        char[] hex = new char[16];
+        char[] name = new char[MAX_NAME_LENGTH];
+        for (long index = start; index < end; index++) {
+            int slot = (int) (index & mask);
+            int offset = slot * RECORD_SIZE;
+            long sequence = sequences.get(slot);
+            if (sequence != (index + 1) << 1) continue; // being written or already overwritten
+            long traceIdHigh = buffer.getLong(offset + TRACE_ID_HIGH);
+            long traceId = buffer.getLong(offset + TRACE_ID);
+            long spanId = buffer.getLong(offset + SPAN_ID);
+            long timestamp = buffer.getLong(offset + TIMESTAMP);
+            long duration = buffer.getLong(offset + DURATION);
+            int flags = buffer.getInt(offset + FLAGS);
+            int nameLength = buffer.getShort(offset + NAME_LENGTH);
+            for (int i = 0; i < nameLength; i++) {
+                name[i] = (char) buffer.get(offset + NAME + i);
+            }
+            if (sequences.get(slot) != sequence) continue; // overwritten while reading
+            if (timestamp + duration < oldest) continue;
+
+            out.append("traceId=");
+            if (traceIdHigh != 0) {
+                IdConversion.writeHexLong(hex, 0, traceIdHigh);
+                out.append(hex);
+            }
+            IdConversion.writeHexLong(hex, 0, traceId);
+            out.append(hex).append(" spanId=");
+            IdConversion.writeHexLong(hex, 0, spanId);
+            out.append(hex).append(" name=").append(name, 0, nameLength)
+                .append(" timestamp=").append(timestamp)
+                .append(" duration=").append(duration)
+                .append(" sampled=").append((flags & FLAG_SAMPLED) != 0)
+                .append(" error=").append((flags & FLAG_ERROR) != 0)
+                .append('\n');
+        }
+    }
+
+    void maybeDumpOnError() {
+        long now = System.currentTimeMillis();
+        long last = lastDumpMillis.get();
+        if (last != 0 && now - last < minDumpIntervalMillis) return;
+        if (!lastDumpMillis.compareAndSet(last, now)) return; // another thread is dumping
+        if (LOGGER.isLoggable(Level.WARNING)) {
+            LOGGER.warning("Span finished with an error. Recent spans:\n" + dump());
+        }
+    }
+
+    static boolean isError(zipkin.Span span) {
+        for (int i = 0, length = span.binaryAnnotations.size(); i < length; i++) {
+            if (Constants.ERROR.equals(span.binaryAnnotations.get(i).key)) return true;
+        }
+        for (int i = 0, length = span.annotations.size(); i < length; i++) {
+            if (Constants.ERROR.equals(span.annotations.get(i).value)) return true;
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return "FlightRecorder(capacity=" + getCapacity() + ", windowSeconds=" + windowSeconds + ")";
+    }
+
+    /** State of an unsampled request in progress on a thread. Reused to avoid allocation. */
+    static final class PendingRequest {
+        boolean active;
+        long traceIdHigh;
+        long traceId;
+        long spanId;
+        String name;
+        long timestamp;
+        long startTick;
+    }
+}
@@ -0,0 +1,32 @@
+package com.github.kristofa.brave;
+
+/**
+ * JMX view of a {@link FlightRecorder}.
+ */
+public interface FlightRecorderMBean {
+
+    /**
+     * @return the maximum number of span records the ring buffer holds.
+     */
+    int getCapacity();
+
+    /**
+     * @return records older than this many seconds are left out of a dump.
+     */
+    int getWindowSeconds();
+
+    /**
+     * @return count of records written since the recorder was created, including overwritten ones.
+     */
+    long getRecordedCount();
+
+    /**
+     * @return count of records for requests which were not sampled.
+     */
+    long getUnsampledCount();
+
+    /**
+     * Returns the records in the window, oldest first, one per line.
+     */
+    String dump();
+}
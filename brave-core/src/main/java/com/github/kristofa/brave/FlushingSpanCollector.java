@@ -1,80 +1,214 @@
 package com.github.kristofa.brave;
 
+import com.github.kristofa.brave.ExtendedSpanCollectorMetricsHandler.DropCause;
 import com.github.kristofa.brave.internal.Nullable;
 import com.twitter.zipkin.gen.Span;
 import java.io.Closeable;
 import java.io.Flushable;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import static com.github.kristofa.brave.internal.Util.checkNotNull;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 import static java.util.concurrent.TimeUnit.SECONDS;
 
 /**
  * Extend this class to offload the task of reporting spans to separate thread. By doing so, callers
  * are protected from latency or exceptions possible when exporting spans out of process.
  *
+ * <p>The queue size, flush interval and batch size can be changed while running, and sending
+ * paused, for example over JMX:
+ *
+ * <pre>{@code
+ * ManagementFactory.getPlatformMBeanServer().registerMBean(collector,
+ *     new ObjectName("com.github.kristofa.brave:type=SpanCollector,name=http"));
+ * }</pre>
+ *
+ * <p>Pass an {@link ExtendedSpanCollectorMetricsHandler}, such as {@link
+ * JmxSpanCollectorMetricsHandler}, to also see why spans were dropped and how long flushes took.
+ *
  * @deprecated replaced by {@link zipkin.reporter.AsyncReporter}
  */
 @Deprecated
-public abstract class FlushingSpanCollector implements SpanCollector, Flushable, Closeable {
+public abstract class FlushingSpanCollector
+    implements SpanCollector, Flushable, Closeable, FlushingSpanCollectorMBean {
 
-  private final SpanCollectorMetricsHandler metrics;
-  private final BlockingQueue<Span> pending = new LinkedBlockingQueue<Span>(1000);
-  @Nullable // for testing
-  private final Flusher flusher;
+  private final ExtendedSpanCollectorMetricsHandler metrics;
+  private final PrioritySpanQueue pending;
+  @Nullable // guarded by this, null until flushing is scheduled
+  private Flusher flusher;
+  private volatile int flushInterval;
+  private volatile int maxBatchSize = Integer.MAX_VALUE;
+  private volatile boolean paused;
+  private final AtomicInteger inFlightBatches = new AtomicInteger();
+  private volatile long lastSendLatencyNanos = -1L;
 
   /**
    * @param flushInterval in seconds. 0 implies spans are {@link #flush() flushed externally.
    */
   protected FlushingSpanCollector(SpanCollectorMetricsHandler metrics, int flushInterval) {
-    this.metrics = metrics;
+    this(metrics, flushInterval, PrioritySpanQueue.builder().build());
+  }
+
+  /**
+   * @param flushInterval in seconds. 0 implies spans are {@link #flush() flushed externally.
+   * @param pending holds spans until they are flushed. Not shared with other collectors.
+   */
+  protected FlushingSpanCollector(SpanCollectorMetricsHandler metrics, int flushInterval,
+      PrioritySpanQueue pending) {
+    this.metrics = ExtendedSpanCollectorMetricsHandler.Adapter.of(metrics);
+    this.pending = checkNotNull(pending, "pending");
+    if (flushInterval < 0) throw new IllegalArgumentException("flushInterval < 0");
+    this.flushInterval = flushInterval;
     this.flusher = flushInterval > 0 ? new Flusher(this, flushInterval, getClass().getSimpleName()) : null;
   }
 
   /**
-   * Queues the span for collection, or drops it if the queue is full.
+   * Queues the span for collection. If the queue is full, this span or a queued one is dropped,
+   * according to the queue's {@link PrioritySpanQueue.DropPolicy drop policy}.
    *
    * @param span Span, should not be <code>null</code>.
    */
   @Override
   public void collect(Span span) {
     metrics.incrementAcceptedSpans(1);
-    if (!pending.offer(span)) {
-      metrics.incrementDroppedSpans(1);
+    int dropped = pending.offer(span);
+    if (dropped != 0) {
+      metrics.incrementDroppedSpans(dropped, DropCause.QUEUE_FULL);
     }
   }
 
   /**
-   * Calling this will flush any pending spans to the transport on the current thread.
+   * Receives accepted and dropped counts, and when extended, encoding and flush timings. Subclasses
+   * which encode in {@link #reportSpans(List)} should {@link
+   * ExtendedSpanCollectorMetricsHandler#recordEncoding(int, int, long) record encoding}.
+   */
+  protected final ExtendedSpanCollectorMetricsHandler metrics() {
+    return metrics;
+  }
+
+  /** The queue of spans waiting to be flushed, which counts spans it dropped by priority. */
+  public PrioritySpanQueue queue() {
+    return pending;
+  }
+
+  /**
+   * Calling this will flush any pending spans to the transport on the current thread, in batches
+   * of up to {@link #getMaxBatchSize()} spans. Nothing is flushed while {@link #pause() paused}.
    */
   @Override
   public void flush() {
-    if (pending.isEmpty()) return;
-    List<Span> drained = new ArrayList<Span>(pending.size());
-    pending.drainTo(drained);
-    if (drained.isEmpty()) return;
+    // Bounds the work to what was queued, so that a busy producer can't keep this thread sending.
+    int remaining = pending.size();
+    metrics.updateQueueDepth(remaining);
+    while (remaining > 0 && !paused) {
+      int batchSize = Math.min(remaining, maxBatchSize);
+      List<Span> drained = new ArrayList<Span>(batchSize);
+      if (pending.drainTo(drained, batchSize) == 0) return;
+      remaining -= drained.size();
+      send(drained);
+    }
+  }
 
+  void send(List<Span> drained) {
     int spanCount = drained.size();
+    inFlightBatches.incrementAndGet();
+    long start = System.nanoTime();
     try {
       reportSpans(drained);
     } catch (IOException e) {
-      metrics.incrementDroppedSpans(spanCount);
+      metrics.incrementDroppedSpans(spanCount, DropCause.TRANSPORT);
     } catch (RuntimeException e) {
-      metrics.incrementDroppedSpans(spanCount);
+      metrics.incrementDroppedSpans(spanCount, DropCause.TRANSPORT);
+    } finally {
+      long duration = System.nanoTime() - start;
+      lastSendLatencyNanos = duration;
+      inFlightBatches.decrementAndGet();
+      metrics.recordFlush(spanCount, duration);
+    }
+  }
+
+  @Override
+  public int getQueueCapacity() {
+    return pending.capacity();
+  }
+
+  @Override
+  public void setQueueCapacity(int queueCapacity) {
+    pending.capacity(queueCapacity);
+  }
+
+  @Override
+  public int getQueueDepth() {
+    return pending.size();
+  }
+
+  @Override
+  public int getFlushIntervalSeconds() {
+    return flushInterval;
+  }
+
+  @Override
+  public synchronized void setFlushIntervalSeconds(int flushIntervalSeconds) {
+    if (flushIntervalSeconds < 0) throw new IllegalArgumentException("flushIntervalSeconds < 0");
+    if (flusher == null) {
+      if (flushIntervalSeconds > 0) {
+        flusher = new Flusher(this, flushIntervalSeconds, getClass().getSimpleName());
+      }
+    } else {
+      flusher.schedule(flushIntervalSeconds);
     }
+    flushInterval = flushIntervalSeconds;
+  }
+
+  @Override
+  public int getMaxBatchSize() {
+    return maxBatchSize;
+  }
+
+  @Override
+  public void setMaxBatchSize(int maxBatchSize) {
+    if (maxBatchSize <= 0) throw new IllegalArgumentException("maxBatchSize <= 0");
+    this.maxBatchSize = maxBatchSize;
+  }
+
+  @Override
+  public boolean isPaused() {
+    return paused;
+  }
+
+  @Override
+  public void pause() {
+    paused = true;
+  }
+
+  @Override
+  public void resume() {
+    paused = false;
+  }
+
+  @Override
+  public int getInFlightBatches() {
+    return inFlightBatches.get();
+  }
+
+  @Override
+  public long getLastSendLatencyMillis() {
+    long nanos = lastSendLatencyNanos;
+    return nanos < 0 ? -1L : NANOSECONDS.toMillis(nanos);
   }
 
   /** Calls flush on a fixed interval */
   static final class Flusher implements Runnable {
     final Flushable flushable;
     final ScheduledExecutorService scheduler;
+    ScheduledFuture<?> task; // guarded by this
 
     Flusher(Flushable flushable, int flushInterval, final String threadPoolName) {
       this.flushable = flushable;
@@ -84,7 +218,15 @@ public abstract class FlushingSpanCollector implements SpanCollector, Flushable,
           return new Thread(r, threadPoolName);
         }
       });
-      this.scheduler.scheduleWithFixedDelay(this, 0, flushInterval, SECONDS);
+      this.task = scheduler.scheduleWithFixedDelay(this, 0, flushInterval, SECONDS);
+    }
+
+    /** Replaces the schedule. The next flush happens after the new interval. */
+    synchronized void schedule(int flushInterval) {
+      task.cancel(false);
+      if (flushInterval > 0) {
+        task = scheduler.scheduleWithFixedDelay(this, flushInterval, flushInterval, SECONDS);
+      }
     }
 
     @Override
@@ -113,9 +255,11 @@ public abstract class FlushingSpanCollector implements SpanCollector, Flushable,
    */
   @Override
   public void close() {
-    if (flusher != null) flusher.scheduler.shutdown();
+    synchronized (this) {
+      if (flusher != null) flusher.scheduler.shutdown();
+    }
     // throw any outstanding spans on the floor
-    int dropped = pending.drainTo(new LinkedList<Span>());
-    metrics.incrementDroppedSpans(dropped);
+    int dropped = pending.drainTo(new ArrayList<Span>());
+    metrics.incrementDroppedSpans(dropped, DropCause.CLOSED);
   }
 }
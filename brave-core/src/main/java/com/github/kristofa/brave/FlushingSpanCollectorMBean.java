@@ -0,0 +1,60 @@
+package com.github.kristofa.brave;
+
+/**
+ * JMX controls and gauges of a {@link FlushingSpanCollector}, for tuning it while it runs.
+ */
+public interface FlushingSpanCollectorMBean {
+
+    /**
+     * @return the maximum count of spans waiting to be flushed.
+     */
+    int getQueueCapacity();
+
+    /**
+     * Resizes the queue. Spans already queued are kept, even when shrinking below their count.
+     */
+    void setQueueCapacity(int queueCapacity);
+
+    /**
+     * @return count of spans waiting to be flushed.
+     */
+    int getQueueDepth();
+
+    /**
+     * @return seconds between scheduled flushes, or 0 if spans are only flushed externally.
+     */
+    int getFlushIntervalSeconds();
+
+    /**
+     * Reschedules flushing. 0 stops scheduled flushing.
+     */
+    void setFlushIntervalSeconds(int flushIntervalSeconds);
+
+    /**
+     * @return the maximum count of spans reported at once. A flush sends as many batches as needed.
+     */
+    int getMaxBatchSize();
+
+    void setMaxBatchSize(int maxBatchSize);
+
+    /**
+     * @return true if flushing is paused, in which case spans are queued until the queue is full.
+     */
+    boolean isPaused();
+
+    /** Stops sending spans. Spans are still queued, and dropped when the queue is full. */
+    void pause();
+
+    /** Resumes sending spans on the next flush. */
+    void resume();
+
+    /**
+     * @return count of batches being reported right now.
+     */
+    int getInFlightBatches();
+
+    /**
+     * @return how long the last batch took to report, or -1 if none was reported yet.
+     */
+    long getLastSendLatencyMillis();
+}
@@ -1,5 +1,7 @@
 package com.github.kristofa.brave;
 
+import java.nio.ByteBuffer;
+
 /**
  * Contains conversion utilities for converting trace and span ids from long to string and vice
  * versa.
@@ -10,11 +12,11 @@ package com.github.kristofa.brave;
  * This implementation is expected to be compatible with Zipkin. This is important in case you
  * mix brave services with zipkin / finagle services.
  * <p/>
- * The only difference between the zipkin implementation and this implementation 
- * is that zipkin prepends '0' characters in case String does not contain 16 characters. 
- * For example instead of generating String 
- * "0" for long id 0 it generates "0000000000000000". But zipkin will properly convert String
- * representations in case they are not prepended with 0's. 
+ * Zipkin prepends '0' characters in case the String does not contain 16 characters. For example,
+ * instead of generating String "0" for long id 0 it generates "0000000000000000". Brave's
+ * http, okhttp and gRPC client adapters send span and parent ids this way, via
+ * {@link #convertToPaddedString(long)}. {@link #convertToString(long)} still omits leading zeros,
+ * for compatibility. Either form is read by {@link #convertToLong(String)}, and by zipkin.
  * 
  * @author kristof
  */
@@ -30,6 +32,23 @@ public class IdConversion {
     return Long.toHexString(id);
   }
 
+  /**
+   * Returns the 16 character lower-hex form of the id, including leading zeros, as other zipkin
+   * tracers send it. This only allocates the resulting string.
+   */
+  public static String convertToPaddedString(long id) {
+    char[] buffer = HEX_BUFFER.get();
+    writeHexLong(buffer, 0, id);
+    return new String(buffer, 0, 16);
+  }
+
+  /** Avoids allocating a buffer per call, as {@link String#String(char[], int, int)} copies. */
+  static final ThreadLocal<char[]> HEX_BUFFER = new ThreadLocal<char[]>() {
+    @Override protected char[] initialValue() {
+      return new char[32];
+    }
+  };
+
   /**
    * Parses a 1 to 32 character lower-hex string with no prefix into an unsigned long, tossing any
    * bits higher than 64.
@@ -49,22 +68,84 @@ public class IdConversion {
    * specified index.
    */
   public static long convertToLong(String lowerHex, int index) {
+    return convertToLong(lowerHex, index, Math.min(index + 16, lowerHex.length()));
+  }
+
+  /**
+   * Parses 1 to 16 lower-hex characters in the range {@code [beginIndex, endIndex)} into an
+   * unsigned long. This allows parsing ids out of a larger value, such as a header, without
+   * extracting a substring.
+   */
+  public static long convertToLong(CharSequence lowerHex, int beginIndex, int endIndex) {
+    int length = endIndex - beginIndex;
+    if (length < 1 || length > 16) throw isntLowerHexLong(lowerHex);
+    long result = 0;
+    for (int i = beginIndex; i < endIndex; i++) {
+      int digit = hexDigit(lowerHex.charAt(i));
+      if (digit == -1) throw isntLowerHexLong(lowerHex);
+      result = (result << 4) | digit;
+    }
+    return result;
+  }
+
+  /**
+   * Like {@link #convertToLong(CharSequence, int, int)}, except parses ASCII bytes, such as those
+   * read directly from a network buffer.
+   */
+  public static long convertToLong(byte[] lowerHex, int beginIndex, int endIndex) {
+    int length = endIndex - beginIndex;
+    if (length < 1 || length > 16) throw isntLowerHexLong(ascii(lowerHex, beginIndex, endIndex));
     long result = 0;
-    for (int endIndex = Math.min(index + 16, lowerHex.length()); index < endIndex; index++) {
-      char c = lowerHex.charAt(index);
-      result <<= 4;
-      if (c >= '0' && c <= '9') {
-        result |= c - '0';
-      } else if (c >= 'a' && c <= 'f') {
-        result |= c - 'a' + 10;
-      } else {
-        throw isntLowerHexLong(lowerHex);
-      }
+    for (int i = beginIndex; i < endIndex; i++) {
+      int digit = hexDigit((char) lowerHex[i]);
+      if (digit == -1) throw isntLowerHexLong(ascii(lowerHex, beginIndex, endIndex));
+      result = (result << 4) | digit;
     }
     return result;
   }
 
-  static NumberFormatException isntLowerHexLong(String lowerHex) {
+  /** Writes the 16 character lower-hex form of the id, including leading zeros, at the position. */
+  public static void writeHexLong(char[] dest, int pos, long id) {
+    for (int i = pos + 15; i >= pos; i--, id >>>= 4) {
+      dest[i] = HEX_DIGITS[(int) (id & 0xf)];
+    }
+  }
+
+  /** Like {@link #writeHexLong(char[], int, long)}, except writes ASCII bytes. */
+  public static void writeHexLong(byte[] dest, int pos, long id) {
+    for (int i = pos + 15; i >= pos; i--, id >>>= 4) {
+      dest[i] = (byte) HEX_DIGITS[(int) (id & 0xf)];
+    }
+  }
+
+  /**
+   * Like {@link #writeHexLong(byte[], int, long)}, except writes at the buffer's position, which is
+   * advanced by 16.
+   */
+  public static void writeHexLong(ByteBuffer dest, long id) {
+    int pos = dest.position();
+    for (int i = pos + 15; i >= pos; i--, id >>>= 4) {
+      dest.put(i, (byte) HEX_DIGITS[(int) (id & 0xf)]);
+    }
+    dest.position(pos + 16);
+  }
+
+  static final char[] HEX_DIGITS =
+      {'0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f'};
+
+  static int hexDigit(char c) {
+    if (c >= '0' && c <= '9') return c - '0';
+    if (c >= 'a' && c <= 'f') return c - 'a' + 10;
+    return -1;
+  }
+
+  static String ascii(byte[] bytes, int beginIndex, int endIndex) {
+    char[] result = new char[Math.max(0, endIndex - beginIndex)];
+    for (int i = 0; i < result.length; i++) result[i] = (char) bytes[beginIndex + i];
+    return new String(result);
+  }
+
+  static NumberFormatException isntLowerHexLong(CharSequence lowerHex) {
     throw new NumberFormatException(
         lowerHex + " should be a 1 to 32 character lower-hex string with no prefix");
   }
@@ -0,0 +1,545 @@
+package com.github.kristofa.brave;
+
+import com.github.kristofa.brave.internal.InternalSpan;
+import com.github.kristofa.brave.internal.Nullable;
+import com.twitter.zipkin.gen.BinaryAnnotation;
+import com.twitter.zipkin.gen.Span;
+import java.io.Closeable;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import zipkin.Annotation;
+import zipkin.reporter.Reporter;
+
+import static com.github.kristofa.brave.internal.Util.checkNotNull;
+
+/**
+ * Keeps track of spans that were started and not yet finished.
+ *
+ * <p>Spans can leak: a client span started with {@link ClientTracer#startNewSpan(String)} that
+ * never receives a response stays in its thread local, and nested local spans that are never
+ * finished pile up in {@link InheritableServerClientAndLocalSpanState}. With a registry configured
+ * via {@link Brave.Builder#inFlightSpans(InFlightSpans)}, spans open longer than {@link
+ * Builder#abandonAfter(long, TimeUnit)} are reported with a {@link #ABANDONED} annotation, so they
+ * show up in Zipkin, and counted. Spans that are garbage collected without finishing are counted
+ * too. Neither are removed from the thread state that holds them.
+ *
+ * <p>The counts of spans in flight, per span name, can also inform admission control:
+ *
+ * <pre>{@code
+ * inFlightSpans = InFlightSpans.builder().abandonAfter(1, TimeUnit.MINUTES).build();
+ * brave = new Brave.Builder("my-service").reporter(reporter).inFlightSpans(inFlightSpans).build();
+ *
+ * if (inFlightSpans.inFlight("get /reports") > 50) return TOO_MANY_REQUESTS;
+ * }</pre>
+ *
+ * <h3>Slow spans</h3>
+ * With {@link Builder#sampleStacksAfter(long, TimeUnit)}, server and local spans that take longer
+ * than a threshold have the stack of the thread that started them sampled a few times, at a low
+ * frequency. When the span is reported, identical samples are merged into a {@link
+ * #STACK_SAMPLES} tag, which shows what a slow request was waiting for without a profiler:
+ *
+ * <pre>
+ * 3/4 WAITING
+ *     at java.lang.Object.wait(Native Method)
+ *     at com.zaxxer.hikari.pool.HikariPool.getConnection(HikariPool.java:150)
+ *     ...
+ * 1/4 RUNNABLE
+ *     at java.net.SocketInputStream.socketRead0(Native Method)
+ *     ...
+ * </pre>
+ *
+ * <p>A span bound to another thread with {@link ServerSpanThreadBinder} or {@link
+ * LocalSpanThreadBinder} is sampled on that thread from then on, or on the last one if bound to
+ * several. Client spans and {@link SpanHandle}s aren't sampled.
+ *
+ * <p>Registrations are weak references, kept in stripes chosen by the starting thread, so threads
+ * rarely contend. A span finds its registration through an internal field, so finishing one doesn't
+ * search.
+ */
+public final class InFlightSpans implements Closeable {
+
+    /** Annotation added to spans reported because they weren't finished in time. */
+    public static final String ABANDONED = "brave.abandoned";
+
+    /** Tag holding merged stack samples of a slow span's thread. */
+    public static final String STACK_SAMPLES = "brave.stack_samples";
+
+    private static final Logger LOG = Logger.getLogger(InFlightSpans.class.getName());
+
+    public static InFlightSpans create() {
+        return builder().build();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static final class Builder {
+        long abandonAfterNanos = TimeUnit.MINUTES.toNanos(5);
+        long checkIntervalNanos = TimeUnit.MINUTES.toNanos(1);
+        long sampleStacksAfterNanos = 0L;
+        long stackSampleIntervalNanos = TimeUnit.SECONDS.toNanos(1);
+        int maxStackSamples = 5;
+        int stackDepth = 12;
+
+        Builder() {
+        }
+
+        /** Spans open longer than this are reported as abandoned. Default 5 minutes. */
+        public Builder abandonAfter(long duration, TimeUnit unit) {
+            if (duration <= 0) throw new IllegalArgumentException("duration must be positive");
+            this.abandonAfterNanos = unit.toNanos(duration);
+            return this;
+        }
+
+        /**
+         * How often a background thread looks for abandoned spans, or zero to only look when {@link
+         * #checkAbandoned()} is called. Default 1 minute.
+         */
+        public Builder checkInterval(long interval, TimeUnit unit) {
+            if (interval < 0) throw new IllegalArgumentException("interval < 0");
+            this.checkIntervalNanos = unit.toNanos(interval);
+            return this;
+        }
+
+        /**
+         * Server and local spans open longer than this get stack samples of the thread that
+         * started them. Default zero, which disables sampling.
+         */
+        public Builder sampleStacksAfter(long duration, TimeUnit unit) {
+            if (duration < 0) throw new IllegalArgumentException("duration < 0");
+            this.sampleStacksAfterNanos = unit.toNanos(duration);
+            return this;
+        }
+
+        /**
+         * How often a background thread samples stacks of slow spans, or zero to only sample when
+         * {@link #sampleStacks()} is called. Default 1 second.
+         */
+        public Builder stackSampleInterval(long interval, TimeUnit unit) {
+            if (interval < 0) throw new IllegalArgumentException("interval < 0");
+            this.stackSampleIntervalNanos = unit.toNanos(interval);
+            return this;
+        }
+
+        /** Maximum count of stack samples taken for a span. Default 5. */
+        public Builder maxStackSamples(int maxStackSamples) {
+            if (maxStackSamples <= 0) throw new IllegalArgumentException("maxStackSamples <= 0");
+            this.maxStackSamples = maxStackSamples;
+            return this;
+        }
+
+        /** Maximum count of frames kept from the top of each stack sample. Default 12. */
+        public Builder stackDepth(int stackDepth) {
+            if (stackDepth <= 0) throw new IllegalArgumentException("stackDepth <= 0");
+            this.stackDepth = stackDepth;
+            return this;
+        }
+
+        public InFlightSpans build() {
+            return new InFlightSpans(this);
+        }
+    }
+
+    final long abandonAfterNanos;
+    final long sampleStacksAfterNanos;
+    final int maxStackSamples;
+    final int stackDepth;
+    final Stripe[] stripes;
+    final int stripeMask;
+    final ReferenceQueue<Span> collected = new ReferenceQueue<Span>();
+    final AtomicLong abandonedCount = new AtomicLong();
+    final AtomicLong collectedCount = new AtomicLong();
+    @Nullable
+    final ScheduledExecutorService checker;
+
+    InFlightSpans(Builder builder) {
+        this.abandonAfterNanos = builder.abandonAfterNanos;
+        this.sampleStacksAfterNanos = builder.sampleStacksAfterNanos;
+        this.maxStackSamples = builder.maxStackSamples;
+        this.stackDepth = builder.stackDepth;
+        int count = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1);
+        this.stripes = new Stripe[count];
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new Stripe();
+        }
+        this.stripeMask = count - 1;
+        long stackSampleIntervalNanos =
+            sampleStacksAfterNanos != 0 ? builder.stackSampleIntervalNanos : 0L;
+        if (builder.checkIntervalNanos == 0 && stackSampleIntervalNanos == 0) {
+            this.checker = null;
+            return;
+        }
+        this.checker = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "InFlightSpans");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        if (builder.checkIntervalNanos != 0) {
+            checker.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        checkAbandoned();
+                    } catch (RuntimeException e) {
+                        LOG.log(Level.WARNING, "error checking for abandoned spans", e);
+                    }
+                }
+            }, builder.checkIntervalNanos, builder.checkIntervalNanos, TimeUnit.NANOSECONDS);
+        }
+        if (stackSampleIntervalNanos != 0) {
+            checker.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        sampleStacks();
+                    } catch (RuntimeException e) {
+                        LOG.log(Level.WARNING, "error sampling stacks of slow spans", e);
+                    }
+                }
+            }, stackSampleIntervalNanos, stackSampleIntervalNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Registers a span that just started. When abandoned, a copy is sent to the reporter.
+     *
+     * @param owner the thread the span is bound to, sampled if the span is slow, or null if none.
+     */
+    void add(Span span, String name, Reporter<zipkin.Span> reporter, @Nullable Thread owner) {
+        Stripe stripe = stripes[(int) Thread.currentThread().getId() & stripeMask];
+        Entry entry = new Entry(span, collected, stripe, name, reporter, System.nanoTime(),
+            sampleStacksAfterNanos != 0 ? owner : null);
+        stripe.link(entry);
+        InternalSpan.instance.inFlight(span, entry);
+    }
+
+    /**
+     * Samples the stack of the given thread from now on, if the span is registered for sampling.
+     * Binders call this, as the thread that started the span may since have moved to other work.
+     */
+    static void bound(@Nullable Span span, Thread thread) {
+        if (span == null) return;
+        Object registration = InternalSpan.instance.inFlight(span);
+        if (registration == null) return;
+        Entry entry = (Entry) registration;
+        if (entry.owner != null) entry.owner = thread;
+    }
+
+    /**
+     * Unregisters a span that finished, tagging it with any stack samples taken. This does nothing
+     * if it wasn't registered.
+     */
+    static void remove(Span span, SpanAndEndpoint spanAndEndpoint) {
+        Object registration = InternalSpan.instance.inFlight(span);
+        if (registration == null) return;
+        InternalSpan.instance.inFlight(span, null);
+        Entry entry = (Entry) registration;
+        entry.unlink();
+        if (entry.stackSampleCount == 0) return;
+        String stackSamples = entry.stackSamples();
+        BinaryAnnotation tag =
+            BinaryAnnotation.create(STACK_SAMPLES, stackSamples, spanAndEndpoint.endpoint());
+        synchronized (span) {
+            span.addToBinary_annotations(tag);
+        }
+    }
+
+    /** Returns the count of spans started and not yet finished or abandoned. */
+    public int inFlight() {
+        expungeCollected();
+        int result = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                result += stripe.size;
+            }
+        }
+        return result;
+    }
+
+    /** Returns the count of spans with the given name started and not yet finished or abandoned. */
+    public int inFlight(String spanName) {
+        checkNotNull(spanName, "spanName");
+        expungeCollected();
+        int result = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                int[] count = stripe.countsByName.get(spanName);
+                if (count != null) result += count[0];
+            }
+        }
+        return result;
+    }
+
+    /** Returns a snapshot of the counts of spans in flight, by span name. */
+    public Map<String, Integer> inFlightByName() {
+        expungeCollected();
+        Map<String, Integer> result = new LinkedHashMap<String, Integer>();
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                for (Map.Entry<String, int[]> entry : stripe.countsByName.entrySet()) {
+                    if (entry.getValue()[0] == 0) continue;
+                    Integer count = result.get(entry.getKey());
+                    result.put(entry.getKey(), (count != null ? count : 0) + entry.getValue()[0]);
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Returns the count of spans reported as abandoned. */
+    public long abandonedCount() {
+        return abandonedCount.get();
+    }
+
+    /** Returns the count of spans garbage collected without being finished or abandoned. */
+    public long collectedCount() {
+        expungeCollected();
+        return collectedCount.get();
+    }
+
+    /**
+     * Reports spans open longer than the threshold with a {@link #ABANDONED} annotation, and stops
+     * tracking them. This is called periodically unless the check interval is zero.
+     *
+     * @return the count of spans reported
+     */
+    public int checkAbandoned() {
+        expungeCollected();
+        long now = System.nanoTime();
+        List<Entry> abandoned = new ArrayList<Entry>();
+        for (Stripe stripe : stripes) {
+            stripe.unlinkOlderThan(now - abandonAfterNanos, abandoned);
+        }
+        int reported = 0;
+        for (Entry entry : abandoned) {
+            Span span = entry.get();
+            if (span == null) { // collected since it was unlinked
+                collectedCount.incrementAndGet();
+                continue;
+            }
+            zipkin.Span copy;
+            synchronized (span) {
+                if (InternalSpan.instance.inFlight(span) == entry) {
+                    InternalSpan.instance.inFlight(span, null);
+                }
+                copy = span.toZipkin();
+            }
+            long timestamp = copy.timestamp != null
+                ? copy.timestamp + (now - entry.startNanos) / 1000L
+                : System.currentTimeMillis() * 1000L;
+            zipkin.Endpoint endpoint = localEndpoint(copy);
+            zipkin.Span.Builder result = copy.toBuilder()
+                .addAnnotation(Annotation.create(timestamp, ABANDONED, endpoint));
+            if (entry.stackSampleCount != 0) {
+                result.addBinaryAnnotation(zipkin.BinaryAnnotation.create(
+                    STACK_SAMPLES, entry.stackSamples(), endpoint));
+            }
+            entry.reporter.report(result.build());
+            abandonedCount.incrementAndGet();
+            reported++;
+        }
+        return reported;
+    }
+
+    /**
+     * Samples the stacks of threads whose span is open longer than {@link
+     * Builder#sampleStacksAfter(long, TimeUnit)}, unless they have the maximum count of samples.
+     * This is called periodically unless the stack sample interval is zero.
+     *
+     * @return the count of stacks sampled
+     */
+    public int sampleStacks() {
+        if (sampleStacksAfterNanos == 0) return 0;
+        long now = System.nanoTime();
+        List<Entry> slow = new ArrayList<Entry>();
+        for (Stripe stripe : stripes) {
+            stripe.slowerThan(now - sampleStacksAfterNanos, maxStackSamples, slow);
+        }
+        int sampled = 0;
+        for (Entry entry : slow) {
+            Thread owner = entry.owner;
+            Thread.State state = owner.getState();
+            StackTraceElement[] stack = owner.getStackTrace();
+            if (stack.length == 0) continue; // the thread exited
+            entry.addStackSample(state, stack, stackDepth);
+            sampled++;
+        }
+        return sampled;
+    }
+
+    /** Stops background work. Spans in flight are no longer reported when abandoned or sampled. */
+    @Override
+    public void close() {
+        if (checker != null) checker.shutdown();
+    }
+
+    @Override
+    public String toString() {
+        return "InFlightSpans{inFlight=" + inFlight() + ", abandoned=" + abandonedCount()
+            + ", collected=" + collectedCount() + "}";
+    }
+
+    /** Unlinks registrations whose span was garbage collected before it finished. */
+    void expungeCollected() {
+        Entry entry;
+        while ((entry = (Entry) collected.poll()) != null) {
+            if (entry.unlink()) collectedCount.incrementAndGet();
+        }
+    }
+
+    @Nullable
+    static zipkin.Endpoint localEndpoint(zipkin.Span span) {
+        if (!span.annotations.isEmpty()) return span.annotations.get(0).endpoint;
+        if (!span.binaryAnnotations.isEmpty()) return span.binaryAnnotations.get(0).endpoint;
+        return null;
+    }
+
+    /** Registrations started on a subset of threads, in start order, with counts by span name. */
+    static final class Stripe {
+        // all fields guarded by this
+        Entry head; // oldest
+        Entry tail; // newest
+        int size;
+        final Map<String, int[]> countsByName = new HashMap<String, int[]>();
+
+        synchronized void link(Entry entry) {
+            entry.linked = true;
+            entry.prev = tail;
+            if (tail == null) {
+                head = entry;
+            } else {
+                tail.next = entry;
+            }
+            tail = entry;
+            size++;
+            int[] count = countsByName.get(entry.name);
+            if (count == null) countsByName.put(entry.name, count = new int[1]);
+            count[0]++;
+        }
+
+        /** Returns false if the entry was already unlinked. */
+        synchronized boolean unlink(Entry entry) {
+            if (!entry.linked) return false;
+            entry.linked = false;
+            if (entry.prev == null) {
+                head = entry.next;
+            } else {
+                entry.prev.next = entry.next;
+            }
+            if (entry.next == null) {
+                tail = entry.prev;
+            } else {
+                entry.next.prev = entry.prev;
+            }
+            entry.prev = entry.next = null;
+            size--;
+            countsByName.get(entry.name)[0]--; // zero counts are kept until the next check
+            return true;
+        }
+
+        /** Adds entries with an owner thread that started before the given time. */
+        synchronized void slowerThan(long startNanos, int maxStackSamples, List<Entry> result) {
+            for (Entry entry = head; entry != null && entry.startNanos - startNanos < 0;
+                entry = entry.next) {
+                if (entry.owner != null && entry.stackSampleCount < maxStackSamples) {
+                    result.add(entry);
+                }
+            }
+        }
+
+        /** Entries are in start order, so this stops at the first that isn't expired. */
+        synchronized void unlinkOlderThan(long startNanos, List<Entry> result) {
+            while (head != null && head.startNanos - startNanos < 0) {
+                Entry entry = head;
+                unlink(entry);
+                result.add(entry);
+            }
+            for (Iterator<int[]> i = countsByName.values().iterator(); i.hasNext(); ) {
+                if (i.next()[0] == 0) i.remove();
+            }
+        }
+    }
+
+    static final class Entry extends WeakReference<Span> {
+        final Stripe stripe;
+        final String name;
+        final Reporter<zipkin.Span> reporter;
+        final long startNanos;
+        /** Thread whose stack is sampled, changed when the span is bound to another. */
+        @Nullable
+        volatile Thread owner;
+        // guarded by stripe
+        boolean linked;
+        Entry prev;
+        Entry next;
+        // guarded by this, except the count, which is also read without locking to skip this
+        volatile int stackSampleCount;
+        Map<String, int[]> stackSampleCounts;
+
+        Entry(Span span, ReferenceQueue<Span> queue, Stripe stripe, String name,
+            Reporter<zipkin.Span> reporter, long startNanos, @Nullable Thread owner) {
+            super(span, queue);
+            this.stripe = stripe;
+            this.name = name;
+            this.reporter = reporter;
+            this.startNanos = startNanos;
+            this.owner = owner;
+        }
+
+        boolean unlink() {
+            return stripe.unlink(this);
+        }
+
+        synchronized void addStackSample(Thread.State state, StackTraceElement[] stack, int depth) {
+            StringBuilder sample = new StringBuilder().append(state);
+            for (int i = 0, length = Math.min(depth, stack.length); i < length; i++) {
+                sample.append("\n\tat ").append(stack[i]);
+            }
+            if (stack.length > depth) sample.append("\n\t...");
+            if (stackSampleCounts == null) stackSampleCounts = new LinkedHashMap<String, int[]>();
+            String key = sample.toString();
+            int[] count = stackSampleCounts.get(key);
+            if (count == null) stackSampleCounts.put(key, count = new int[1]);
+            count[0]++;
+            stackSampleCount++;
+        }
+
+        /** Merged samples, most frequent first, each prefixed by its share of the samples. */
+        synchronized String stackSamples() {
+            List<Map.Entry<String, int[]>> samples =
+                new ArrayList<Map.Entry<String, int[]>>(stackSampleCounts.entrySet());
+            Collections.sort(samples, new Comparator<Map.Entry<String, int[]>>() {
+                @Override
+                public int compare(Map.Entry<String, int[]> left, Map.Entry<String, int[]> right) {
+                    return right.getValue()[0] - left.getValue()[0];
+                }
+            });
+            StringBuilder result = new StringBuilder();
+            for (Map.Entry<String, int[]> sample : samples) {
+                if (result.length() > 0) result.append('\n');
+                result.append(sample.getValue()[0]).append('/').append(stackSampleCount).append(' ')
+                    .append(sample.getKey());
+            }
+            return result.toString();
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.github.kristofa.brave;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static com.github.kristofa.brave.internal.Util.checkNotNull;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Keeps counts, drop causes and latency histograms of a span collector, readable over JMX.
+ * Recording is lock-free and doesn't allocate.
+ *
+ * <pre>{@code
+ * metrics = new JmxSpanCollectorMetricsHandler();
+ * collector = HttpSpanCollector.create("http://zipkin:9411", metrics);
+ * ManagementFactory.getPlatformMBeanServer().registerMBean(metrics,
+ *     new ObjectName(JmxSpanCollectorMetricsHandler.OBJECT_NAME + ",name=http"));
+ * }</pre>
+ */
+public final class JmxSpanCollectorMetricsHandler
+    implements ExtendedSpanCollectorMetricsHandler, JmxSpanCollectorMetricsHandlerMBean {
+
+    /** Suggested name when registering this with an MBean server. Add a name key per collector. */
+    public static final String OBJECT_NAME = "com.github.kristofa.brave:type=SpanCollectorMetrics";
+
+    private final AtomicLong acceptedSpans = new AtomicLong();
+    private final AtomicLong droppedSpans = new AtomicLong();
+    private final AtomicLongArray droppedSpansByCause = new AtomicLongArray(DropCause.values().length);
+    private volatile int queueDepth;
+    private final AtomicLong encodedBytes = new AtomicLong();
+    private final LongHistogram batchSpans = new LongHistogram();
+    private final LongHistogram encodeNanos = new LongHistogram();
+    private final LongHistogram flushNanos = new LongHistogram();
+
+    @Override
+    public void incrementAcceptedSpans(int quantity) {
+        acceptedSpans.addAndGet(quantity);
+    }
+
+    /** Counts spans dropped by a collector which doesn't say why. */
+    @Override
+    public void incrementDroppedSpans(int quantity) {
+        droppedSpans.addAndGet(quantity);
+    }
+
+    @Override
+    public void incrementDroppedSpans(int quantity, DropCause cause) {
+        droppedSpans.addAndGet(quantity);
+        droppedSpansByCause.addAndGet(checkNotNull(cause, "cause").ordinal(), quantity);
+    }
+
+    @Override
+    public void updateQueueDepth(int depth) {
+        queueDepth = depth;
+    }
+
+    @Override
+    public void recordEncoding(int spanCount, int encodedBytes, long durationNanos) {
+        this.encodedBytes.addAndGet(encodedBytes);
+        encodeNanos.record(durationNanos);
+    }
+
+    @Override
+    public void recordFlush(int spanCount, long durationNanos) {
+        batchSpans.record(spanCount);
+        flushNanos.record(durationNanos);
+    }
+
+    @Override
+    public long getAcceptedSpans() {
+        return acceptedSpans.get();
+    }
+
+    @Override
+    public long getDroppedSpans() {
+        return droppedSpans.get();
+    }
+
+    /** Count of spans dropped for the given reason. */
+    public long getDroppedSpans(DropCause cause) {
+        return droppedSpansByCause.get(cause.ordinal());
+    }
+
+    @Override
+    public long getDroppedSpansQueueFull() {
+        return getDroppedSpans(DropCause.QUEUE_FULL);
+    }
+
+    @Override
+    public long getDroppedSpansEncoding() {
+        return getDroppedSpans(DropCause.ENCODING);
+    }
+
+    @Override
+    public long getDroppedSpansTransport() {
+        return getDroppedSpans(DropCause.TRANSPORT);
+    }
+
+    @Override
+    public long getDroppedSpansClosed() {
+        return getDroppedSpans(DropCause.CLOSED);
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    @Override
+    public long getFlushedBatches() {
+        return flushNanos.count();
+    }
+
+    @Override
+    public long getBatchSpansMean() {
+        return batchSpans.mean();
+    }
+
+    @Override
+    public long getBatchSpansP99() {
+        return batchSpans.quantile(0.99);
+    }
+
+    @Override
+    public long getBatchSpansMax() {
+        return batchSpans.max();
+    }
+
+    @Override
+    public long getEncodedBytes() {
+        return encodedBytes.get();
+    }
+
+    @Override
+    public long getEncodeLatencyMicrosP50() {
+        return NANOSECONDS.toMicros(encodeNanos.quantile(0.5));
+    }
+
+    @Override
+    public long getEncodeLatencyMicrosP99() {
+        return NANOSECONDS.toMicros(encodeNanos.quantile(0.99));
+    }
+
+    @Override
+    public long getEncodeLatencyMicrosMax() {
+        return NANOSECONDS.toMicros(encodeNanos.max());
+    }
+
+    @Override
+    public long getFlushLatencyMicrosP50() {
+        return NANOSECONDS.toMicros(flushNanos.quantile(0.5));
+    }
+
+    @Override
+    public long getFlushLatencyMicrosP99() {
+        return NANOSECONDS.toMicros(flushNanos.quantile(0.99));
+    }
+
+    @Override
+    public long getFlushLatencyMicrosMax() {
+        return NANOSECONDS.toMicros(flushNanos.max());
+    }
+
+    @Override
+    public String toString() {
+        return "JmxSpanCollectorMetricsHandler(accepted=" + getAcceptedSpans()
+            + ", dropped=" + getDroppedSpans() + ", queueDepth=" + queueDepth + ")";
+    }
+}
@@ -0,0 +1,56 @@
+package com.github.kristofa.brave;
+
+/**
+ * JMX view of a {@link JmxSpanCollectorMetricsHandler}. Latencies are in microseconds. Percentiles
+ * are within 12.5% of the recorded values, and cover all events since the handler was created.
+ */
+public interface JmxSpanCollectorMetricsHandlerMBean {
+
+    long getAcceptedSpans();
+
+    /**
+     * @return count of spans dropped for any reason.
+     */
+    long getDroppedSpans();
+
+    long getDroppedSpansQueueFull();
+
+    long getDroppedSpansEncoding();
+
+    long getDroppedSpansTransport();
+
+    long getDroppedSpansClosed();
+
+    /**
+     * @return the count of spans waiting to be flushed when last reported by the collector.
+     */
+    int getQueueDepth();
+
+    /**
+     * @return count of batches handed to the transport.
+     */
+    long getFlushedBatches();
+
+    long getBatchSpansMean();
+
+    long getBatchSpansP99();
+
+    long getBatchSpansMax();
+
+    /**
+     * @return total size of encoded payloads.
+     */
+    long getEncodedBytes();
+
+    long getEncodeLatencyMicrosP50();
+
+    long getEncodeLatencyMicrosP99();
+
+    long getEncodeLatencyMicrosMax();
+
+    long getFlushLatencyMicrosP50();
+
+    long getFlushLatencyMicrosP99();
+
+    long getFlushLatencyMicrosMax();
+}
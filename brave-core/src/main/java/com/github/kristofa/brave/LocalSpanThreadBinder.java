@@ -46,5 +46,6 @@ public final class LocalSpanThreadBinder {
    */
   public void setCurrentSpan(Span span) {
     state.setCurrentLocalSpan(span);
+    InFlightSpans.bound(span, Thread.currentThread());
   }
 }
@@ -1,6 +1,7 @@
 package com.github.kristofa.brave;
 
 import com.github.kristofa.brave.SpanAndEndpoint.LocalSpanAndEndpoint;
+import com.github.kristofa.brave.internal.InternalSpan;
 import com.github.kristofa.brave.internal.Nullable;
 import com.google.auto.value.AutoValue;
 import com.twitter.zipkin.gen.BinaryAnnotation;
@@ -38,7 +39,7 @@ import static zipkin.Constants.LOCAL_COMPONENT;
 public abstract class LocalTracer extends AnnotationSubmitter {
 
     static Builder builder() {
-        return new AutoValue_LocalTracer.Builder();
+        return new AutoValue_LocalTracer.Builder().timeOrderedTraceIds(false);
     }
 
     // visible for testing
@@ -61,6 +62,16 @@ public abstract class LocalTracer extends AnnotationSubmitter {
     abstract AnnotationSubmitter.Clock clock();
 
     abstract boolean traceId128Bit();
+    abstract boolean timeOrderedTraceIds();
+
+    @Nullable
+    abstract SpanPool spanPool();
+
+    @Nullable
+    abstract InFlightSpans inFlightSpans();
+
+    @Nullable
+    abstract ThreadResourceRecorder threadResourceRecorder();
 
     @AutoValue.Builder
     abstract static class Builder {
@@ -79,6 +90,14 @@ public abstract class LocalTracer extends AnnotationSubmitter {
 
         abstract Builder traceId128Bit(boolean traceId128Bit);
 
+        abstract Builder timeOrderedTraceIds(boolean timeOrderedTraceIds);
+
+        abstract Builder spanPool(@Nullable SpanPool spanPool);
+
+        abstract Builder inFlightSpans(@Nullable InFlightSpans inFlightSpans);
+
+        abstract Builder threadResourceRecorder(@Nullable ThreadResourceRecorder threadResourceRecorder);
+
         abstract LocalTracer build();
 
     }
@@ -92,21 +111,14 @@ public abstract class LocalTracer extends AnnotationSubmitter {
      * @see Constants#LOCAL_COMPONENT
      */
     public SpanId startNewSpan(String component, String operation) {
-        SpanId spanId = startNewSpan(component, operation, clock().currentTimeMicroseconds());
-        if (spanId == null) return null;
-        Span span = spanAndEndpoint().span();
-        synchronized (span) {
-            span.startTick = System.nanoTime(); // embezzle start tick into an internal field.
-        }
-        return spanId;
+        return startNewSpan(component, operation, 0L, false);
     }
 
-    private SpanId getNewSpanId() {
-        Span parentSpan = getNewSpanParent();
+    private SpanId getNewSpanId(@Nullable Span parentSpan) {
         long newSpanId = randomGenerator().nextLong();
         SpanId.Builder builder = SpanId.builder().spanId(newSpanId);
         if (parentSpan == null) { // new trace
-            if (traceId128Bit()) builder.traceIdHigh(randomGenerator().nextLong());
+            if (traceId128Bit()) builder.traceIdHigh(nextTraceIdHigh());
             return builder.traceId(newSpanId).build();
         }
         return builder.traceIdHigh(parentSpan.getTrace_id_high())
@@ -153,6 +165,11 @@ public abstract class LocalTracer extends AnnotationSubmitter {
      * @see Constants#LOCAL_COMPONENT
      */
     public SpanId startNewSpan(String component, String operation, long timestamp) {
+        return startNewSpan(component, operation, timestamp, true);
+    }
+
+    private SpanId startNewSpan(String component, String operation, long timestamp,
+        boolean explicitTimestamp) {
 
         Boolean sample = spanAndEndpoint().state().sample();
         if (Boolean.FALSE.equals(sample)) {
@@ -160,7 +177,8 @@ public abstract class LocalTracer extends AnnotationSubmitter {
             return null;
         }
 
-        SpanId newSpanId = getNewSpanId();
+        Span parentSpan = getNewSpanParent();
+        SpanId newSpanId = getNewSpanId(parentSpan);
         if (sample == null) {
             // No sample indication is present.
             if (!traceSampler().isSampled(newSpanId.traceId)) {
@@ -169,13 +187,70 @@ public abstract class LocalTracer extends AnnotationSubmitter {
             }
         }
 
+        Span newSpan = spanPool() != null ? spanPool().acquire(newSpanId) : newSpanId.toSpan();
+        initSpan(newSpan, parentSpan, component, operation, timestamp, explicitTimestamp);
+        if (inFlightSpans() != null) {
+            inFlightSpans().add(newSpan, operation, reporter(), Thread.currentThread());
+        }
+        if (threadResourceRecorder() != null) {
+            threadResourceRecorder().start(newSpan, ThreadResourceRecorder.Kind.LOCAL);
+        }
+        spanAndEndpoint().state().setCurrentLocalSpan(newSpan);
+        return newSpanId;
+    }
+
+    /**
+     * Like {@link #startNewSpan(String, String)}, except the span isn't bound to the current thread.
+     * Finish it with {@link SpanHandle#finish()}, from any thread.
+     *
+     * @param component {@link Constants#LOCAL_COMPONENT component} responsible for the operation
+     * @param operation name of the operation that's begun
+     * @return handle for the new span or null if one wasn't started due to sampling policy.
+     */
+    @Nullable
+    public SpanHandle startSpan(String component, String operation) {
+        Boolean sample = spanAndEndpoint().state().sample();
+        if (Boolean.FALSE.equals(sample)) return null;
+
+        Span parentSpan = getNewSpanParent();
+        SpanId newSpanId = getNewSpanId(parentSpan);
+        if (sample == null && !traceSampler().isSampled(newSpanId.traceId)) return null;
+
+        // Handles aren't pooled, as they can be referenced after they finish.
         Span newSpan = newSpanId.toSpan();
+        initSpan(newSpan, parentSpan, component, operation, 0L, false);
+        if (inFlightSpans() != null) inFlightSpans().add(newSpan, operation, reporter(), null);
+        return SpanHandle.create(SpanHandle.Kind.LOCAL, newSpanId, newSpan,
+            spanAndEndpoint().endpoint(), clock(), reporter());
+    }
+
+    private void initSpan(Span newSpan, @Nullable Span parentSpan, String component,
+        String operation, long timestamp, boolean explicitTimestamp) {
         newSpan.setName(operation);
-        newSpan.setTimestamp(timestamp);
+        // Timestamps derive from the local root's clock reading, instead of reading the clock again
+        boolean anchored = false;
+        if (parentSpan != null) {
+            synchronized (parentSpan) {
+                anchored = InternalSpan.instance.inheritClockAnchor(newSpan, parentSpan);
+            }
+        }
+        if (explicitTimestamp) {
+            // we don't know the nanotime value for a user supplied timestamp
+            newSpan.setTimestamp(timestamp);
+        } else {
+            long tick;
+            if (anchored) {
+                tick = System.nanoTime();
+            } else {
+                long epochMicros = clock().currentTimeMicroseconds();
+                tick = System.nanoTime();
+                InternalSpan.instance.setClockAnchor(newSpan, epochMicros, tick);
+            }
+            newSpan.setTimestamp(InternalSpan.instance.anchoredTimeMicroseconds(newSpan, tick));
+            newSpan.startTick = tick; // embezzle start tick into an internal field.
+        }
         newSpan.addToBinary_annotations(
             BinaryAnnotation.create(LOCAL_COMPONENT, component, spanAndEndpoint().endpoint()));
-        spanAndEndpoint().state().setCurrentLocalSpan(newSpan);
-        return newSpanId;
     }
 
     /**
@@ -211,11 +286,22 @@ public abstract class LocalTracer extends AnnotationSubmitter {
     }
 
     private void internalFinishSpan(Span span, long duration) {
+        if (threadResourceRecorder() != null) {
+            threadResourceRecorder().finish(span, spanAndEndpoint().endpoint());
+        }
         synchronized (span) {
             span.setDuration(duration);
         }
+        InFlightSpans.remove(span, spanAndEndpoint());
         reporter().report(span.toZipkin());
         spanAndEndpoint().state().setCurrentLocalSpan(null);
+        if (spanPool() != null) spanPool().release(span);
+    }
+
+    private long nextTraceIdHigh() {
+        return timeOrderedTraceIds()
+            ? SpanId.timeOrderedTraceIdHigh(clock().currentTimeMicroseconds(), randomGenerator())
+            : randomGenerator().nextLong();
     }
 
     LocalTracer() {
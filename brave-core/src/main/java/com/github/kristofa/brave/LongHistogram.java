@@ -0,0 +1,78 @@
+package com.github.kristofa.brave;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of non-negative longs, with log-linear buckets: values below 8 are exact,
+ * and larger ones fall in one of 8 buckets per power of two. So percentiles are within 12.5% of
+ * the recorded values, using a fixed 4KiB and no allocation when recording.
+ */
+final class LongHistogram {
+    static final int SUB_BUCKET_BITS = 3;
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // The highest exponent of a positive long is 62.
+    static final int BUCKET_COUNT = SUB_BUCKETS + (63 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    final AtomicLong count = new AtomicLong();
+    final AtomicLong sum = new AtomicLong();
+    final AtomicLong max = new AtomicLong();
+
+    /** Records the value, or zero if negative. */
+    void record(long value) {
+        if (value < 0) value = 0;
+        buckets.incrementAndGet(index(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+        for (long current = max.get(); value > current; current = max.get()) {
+            if (max.compareAndSet(current, value)) break;
+        }
+    }
+
+    long count() {
+        return count.get();
+    }
+
+    long max() {
+        return max.get();
+    }
+
+    /** Returns the mean of recorded values, or zero if none were. */
+    long mean() {
+        long count = this.count.get();
+        return count == 0 ? 0 : sum.get() / count;
+    }
+
+    /**
+     * Returns the highest value of the bucket holding the given quantile, such as 0.99, capped at
+     * the maximum recorded. Returns zero if no values were recorded.
+     */
+    long quantile(double quantile) {
+        long count = this.count.get();
+        if (count == 0) return 0;
+        long rank = (long) Math.ceil(quantile * count);
+        if (rank < 1) rank = 1;
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += buckets.get(i);
+            if (seen >= rank) return Math.min(highestValue(i), max.get());
+        }
+        // concurrent updates can increment count before the bucket
+        return max.get();
+    }
+
+    static int index(long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) - SUB_BUCKETS;
+        return SUB_BUCKETS + (exponent - SUB_BUCKET_BITS) * SUB_BUCKETS + subBucket;
+    }
+
+    static long highestValue(int index) {
+        if (index < SUB_BUCKETS) return index;
+        int shift = (index - SUB_BUCKETS) / SUB_BUCKETS;
+        long lowest = (long) (SUB_BUCKETS + (index - SUB_BUCKETS) % SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
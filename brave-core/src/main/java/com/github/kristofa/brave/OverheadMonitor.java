@@ -0,0 +1,305 @@
+package com.github.kristofa.brave;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import zipkin.reporter.Reporter;
+
+import static com.github.kristofa.brave.internal.Util.checkNotNull;
+
+/**
+ * Measures Brave's own cost: the time spent and bytes allocated in the interceptors and when
+ * reporting spans, per instrumentation module.
+ *
+ * <p>One in {@link Builder#sampleEvery(int) N} calls of each operation is measured, so a call which
+ * isn't pays for a counter increment. Counters are per thread, so threads don't contend on them.
+ * The module is the package of the class calling into Brave, found by walking the stack of
+ * measured calls. For example, calls from {@code
+ * com.github.kristofa.brave.okhttp.BraveTracingInterceptor} are attributed to "okhttp".
+ *
+ * <pre>{@code
+ * monitor = OverheadMonitor.builder().sampleEvery(1000).build();
+ * brave = new Brave.Builder("my-service").reporter(reporter).overheadMonitor(monitor).build();
+ * ManagementFactory.getPlatformMBeanServer().registerMBean(monitor, OverheadMonitor.OBJECT_NAME);
+ * }</pre>
+ *
+ * <p>Allocation is read from {@code com.sun.management.ThreadMXBean}, when the JVM has it. Time
+ * includes work the call triggers, such as a {@link Reporter} queueing a span, but not a
+ * reporter's background thread.
+ */
+public final class OverheadMonitor implements OverheadMonitorMBean {
+
+    /** Suggested name when registering this with an MBean server. */
+    public static final String OBJECT_NAME = "com.github.kristofa.brave:type=OverheadMonitor";
+
+    /** Where Brave spends time on behalf of the application. */
+    public enum Operation {
+        SERVER_REQUEST,
+        SERVER_RESPONSE,
+        CLIENT_REQUEST,
+        CLIENT_RESPONSE,
+        REPORT
+    }
+
+    /** Further modules are measured as "other", to bound memory. */
+    static final int MAX_MODULES = 64;
+    static final String OTHER_MODULE = "other";
+
+    private static final Logger LOGGER = Logger.getLogger(OverheadMonitor.class.getName());
+    private static final String CORE_CLASS_PREFIX = "com.github.kristofa.brave.";
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static final class Builder {
+        int sampleEvery = 1000;
+
+        Builder() {
+        }
+
+        /** Measures one in this many calls. 1 measures every call. Default 1000. */
+        public Builder sampleEvery(int sampleEvery) {
+            if (sampleEvery <= 0) throw new IllegalArgumentException("sampleEvery must be positive");
+            this.sampleEvery = sampleEvery;
+            return this;
+        }
+
+        public OverheadMonitor build() {
+            return new OverheadMonitor(this);
+        }
+    }
+
+    /** Time and allocation of one operation in one module. */
+    static final class Stats {
+        final LongHistogram nanos = new LongHistogram();
+        final LongHistogram bytes = new LongHistogram();
+    }
+
+    final int sampleEvery;
+    final AllocationCounter allocationCounter;
+    final ConcurrentMap<String, Stats[]> modules = new ConcurrentHashMap<String, Stats[]>();
+    final AtomicLong measuredCalls = new AtomicLong();
+    /** Calls of each operation on the current thread since one was last measured. */
+    final ThreadLocal<int[]> calls = new ThreadLocal<int[]>();
+    final Random random = new Random();
+
+    OverheadMonitor(Builder builder) {
+        this(builder, AllocationCounter.create());
+    }
+
+    OverheadMonitor(Builder builder, AllocationCounter allocationCounter) {
+        this.sampleEvery = builder.sampleEvery;
+        this.allocationCounter = allocationCounter;
+    }
+
+    /**
+     * Returns true if the current call should be measured. Operations are counted separately, as
+     * each request calls them in a fixed sequence: a shared count would only ever land on some.
+     */
+    boolean sample(Operation operation) {
+        int[] counts = calls.get();
+        if (counts == null) calls.set(counts = initialCounts());
+        int i = operation.ordinal();
+        if (++counts[i] < sampleEvery) return false;
+        counts[i] = 0;
+        return true;
+    }
+
+    /**
+     * Starts each count at a random offset, so that threads making fewer than {@link #sampleEvery}
+     * calls are measured in proportion.
+     */
+    private int[] initialCounts() {
+        int[] result = new int[Operation.values().length];
+        for (int i = 0; i < result.length; i++) result[i] = random.nextInt(sampleEvery);
+        return result;
+    }
+
+    /** Returns bytes allocated by the current thread so far, or -1 if unknown. */
+    long allocatedBytes() {
+        return allocationCounter.allocatedBytes();
+    }
+
+    /**
+     * Records a measured call, which began at the given {@link System#nanoTime()} and {@link
+     * #allocatedBytes()}.
+     */
+    void record(Operation operation, long startNanos, long startBytes) {
+        long nanos = System.nanoTime() - startNanos;
+        long bytes = startBytes == -1 ? -1 : allocationCounter.allocatedBytes() - startBytes;
+        Stats stats = stats(callingModule())[operation.ordinal()];
+        stats.nanos.record(nanos);
+        if (bytes != -1) stats.bytes.record(bytes - allocationCounter.overhead);
+        measuredCalls.incrementAndGet();
+    }
+
+    Stats[] stats(String module) {
+        Stats[] result = modules.get(module);
+        if (result != null) return result;
+        if (modules.size() >= MAX_MODULES) module = OTHER_MODULE;
+        result = new Stats[Operation.values().length];
+        for (int i = 0; i < result.length; i++) result[i] = new Stats();
+        Stats[] existing = modules.putIfAbsent(module, result);
+        return existing != null ? existing : result;
+    }
+
+    /**
+     * Returns the last package segment of the first class on the stack outside Brave's core
+     * package, or the whole package for application classes.
+     */
+    static String callingModule() {
+        return callingModule(new Throwable().getStackTrace());
+    }
+
+    static String callingModule(StackTraceElement[] stack) {
+        for (StackTraceElement element : stack) {
+            String className = element.getClassName();
+            int lastDot = className.lastIndexOf('.');
+            if (lastDot == -1) return className;
+            String packageName = className.substring(0, lastDot);
+            if (packageName.equals("com.github.kristofa.brave")
+                || packageName.startsWith("java.")
+                || packageName.startsWith("sun.")
+                || packageName.startsWith("zipkin.")) {
+                continue;
+            }
+            if (packageName.startsWith(CORE_CLASS_PREFIX)) {
+                int end = packageName.indexOf('.', CORE_CLASS_PREFIX.length());
+                return end == -1
+                    ? packageName.substring(CORE_CLASS_PREFIX.length())
+                    : packageName.substring(CORE_CLASS_PREFIX.length(), end);
+            }
+            return packageName;
+        }
+        return OTHER_MODULE;
+    }
+
+    /** Returns a reporter which measures calls to the delegate. */
+    Reporter<zipkin.Span> monitoring(final Reporter<zipkin.Span> delegate) {
+        checkNotNull(delegate, "delegate");
+        return new Reporter<zipkin.Span>() {
+            @Override public void report(zipkin.Span span) {
+                if (!sample(Operation.REPORT)) {
+                    delegate.report(span);
+                    return;
+                }
+                long startNanos = System.nanoTime();
+                long startBytes = allocatedBytes();
+                try {
+                    delegate.report(span);
+                } finally {
+                    record(Operation.REPORT, startNanos, startBytes);
+                }
+            }
+
+            @Override public String toString() {
+                return "Monitoring(" + delegate + ")";
+            }
+        };
+    }
+
+    @Override
+    public int getSampleEvery() {
+        return sampleEvery;
+    }
+
+    @Override
+    public long getMeasuredCalls() {
+        return measuredCalls.get();
+    }
+
+    @Override
+    public boolean isAllocationMeasured() {
+        return allocationCounter.allocatedBytes() != -1;
+    }
+
+    @Override
+    public String report() {
+        StringBuilder result = new StringBuilder(String.format("%-24s %-16s %10s %10s %10s %10s %10s %10s%n",
+            "module", "operation", "calls", "p50(ns)", "p99(ns)", "max(ns)", "p50(B)", "p99(B)"));
+        for (Map.Entry<String, Stats[]> entry : new TreeMap<String, Stats[]>(modules).entrySet()) {
+            for (Operation operation : Operation.values()) {
+                Stats stats = entry.getValue()[operation.ordinal()];
+                if (stats.nanos.count() == 0) continue;
+                result.append(String.format("%-24s %-16s %10d %10d %10d %10d %10d %10d%n",
+                    entry.getKey(), operation, stats.nanos.count(), stats.nanos.quantile(0.5),
+                    stats.nanos.quantile(0.99), stats.nanos.max(), stats.bytes.quantile(0.5),
+                    stats.bytes.quantile(0.99)));
+            }
+        }
+        return result.toString();
+    }
+
+    @Override
+    public void reset() {
+        modules.clear();
+        measuredCalls.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return "OverheadMonitor(sampleEvery=" + sampleEvery + ")";
+    }
+
+    /**
+     * Reads {@code com.sun.management.ThreadMXBean.getThreadAllocatedBytes} reflectively, as it
+     * isn't part of the Java 6 API. Reflection allocates a little per read, which is measured at
+     * startup and subtracted.
+     */
+    static class AllocationCounter {
+        static final AllocationCounter UNSUPPORTED = new AllocationCounter(null, null);
+
+        static AllocationCounter create() {
+            try {
+                ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+                Class<?> type = Class.forName("com.sun.management.ThreadMXBean");
+                if (!type.isInstance(bean)) return UNSUPPORTED;
+                Method isEnabled = type.getMethod("isThreadAllocatedMemoryEnabled");
+                if (!Boolean.TRUE.equals(isEnabled.invoke(bean))) return UNSUPPORTED;
+                return new AllocationCounter(bean, type.getMethod("getThreadAllocatedBytes", long.class));
+            } catch (Exception e) {
+                LOGGER.log(Level.FINE, "Can't count allocated bytes per thread", e);
+                return UNSUPPORTED;
+            }
+        }
+
+        final ThreadMXBean bean;
+        final Method getThreadAllocatedBytes;
+        final long overhead;
+
+        AllocationCounter(ThreadMXBean bean, Method getThreadAllocatedBytes) {
+            this.bean = bean;
+            this.getThreadAllocatedBytes = getThreadAllocatedBytes;
+            this.overhead = bean != null ? measureOverhead() : 0L;
+        }
+
+        /** Returns bytes allocated by the current thread so far, or -1 if unknown. */
+        long allocatedBytes() {
+            if (bean == null) return -1L;
+            try {
+                return (Long) getThreadAllocatedBytes.invoke(bean, Thread.currentThread().getId());
+            } catch (Exception e) {
+                return -1L;
+            }
+        }
+
+        /** Bytes allocated between two back-to-back reads, after reflection has warmed up. */
+        private long measureOverhead() {
+            long result = Long.MAX_VALUE;
+            for (int i = 0; i < 32; i++) {
+                long start = allocatedBytes();
+                result = Math.min(result, allocatedBytes() - start);
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.github.kristofa.brave;
+
+/**
+ * JMX view of an {@link OverheadMonitor}.
+ */
+public interface OverheadMonitorMBean {
+
+    /**
+     * @return one in this many calls is measured.
+     */
+    int getSampleEvery();
+
+    /**
+     * @return count of calls measured since the monitor was created or reset.
+     */
+    long getMeasuredCalls();
+
+    /**
+     * @return false if the JVM can't count bytes allocated per thread, in which case only time is
+     * measured.
+     */
+    boolean isAllocationMeasured();
+
+    /**
+     * Returns one line per module and operation, with percentiles of the time spent and bytes
+     * allocated per call.
+     */
+    String report();
+
+    /** Discards measurements. */
+    void reset();
+}
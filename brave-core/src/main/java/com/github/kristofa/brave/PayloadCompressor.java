@@ -0,0 +1,104 @@
+package com.github.kristofa.brave;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compresses encoded span batches before {@link AbstractSpanCollector} sends them. Instances are
+ * thread-safe, and keep counters of input and output bytes and of time spent compressing, so that
+ * the ratio and cost of compression can be monitored.
+ *
+ * <p>All compressors built in produce the gzip format, which the Zipkin http api accepts.
+ *
+ * <ul>
+ *   <li>{@link #gzip(int)} - zlib deflate at a given level, reusing pooled {@link
+ *   java.util.zip.Deflater deflaters} instead of allocating one per batch</li>
+ *   <li>{@link #fastGzip()} - a pure-java single-pass compressor, which trades ratio for speed</li>
+ *   <li>{@link AdaptivePayloadCompressor} - chooses one of the above by batch size</li>
+ * </ul>
+ */
+public abstract class PayloadCompressor {
+    /** The value of Content-Encoding when a payload is sent as-is. */
+    public static final String IDENTITY = "identity";
+    public static final String GZIP = "gzip";
+
+    /** Leaves payloads uncompressed. */
+    public static final PayloadCompressor NONE = new PayloadCompressor() {
+        @Override public String encoding(int uncompressedSize) {
+            return IDENTITY;
+        }
+
+        @Override protected byte[] doCompress(byte[] input) {
+            return input;
+        }
+
+        @Override public String toString() {
+            return "NONE";
+        }
+    };
+
+    /**
+     * Returns a gzip compressor at the given deflate level, from 1 (fastest) to 9 (smallest).
+     */
+    public static PayloadCompressor gzip(int level) {
+        return new PooledGzipCompressor(level);
+    }
+
+    /**
+     * Returns a pure-java gzip compressor, which finds repeated sequences in one pass and uses the
+     * fixed huffman table. It is typically faster than {@code gzip(1)}, at a worse ratio.
+     */
+    public static PayloadCompressor fastGzip() {
+        return new FastGzipCompressor();
+    }
+
+    final AtomicLong compressions = new AtomicLong();
+    final AtomicLong inputBytes = new AtomicLong();
+    final AtomicLong outputBytes = new AtomicLong();
+    final AtomicLong compressNanos = new AtomicLong();
+
+    /**
+     * Returns the Content-Encoding {@link #compress(byte[])} will produce for a payload of this
+     * size, such as {@link #GZIP} or {@link #IDENTITY}.
+     */
+    public abstract String encoding(int uncompressedSize);
+
+    /** Returns the input compressed as {@link #encoding(int)}. */
+    public final byte[] compress(byte[] input) throws IOException {
+        long start = System.nanoTime();
+        byte[] result = doCompress(input);
+        compressNanos.addAndGet(System.nanoTime() - start);
+        compressions.incrementAndGet();
+        inputBytes.addAndGet(input.length);
+        outputBytes.addAndGet(result.length);
+        return result;
+    }
+
+    protected abstract byte[] doCompress(byte[] input) throws IOException;
+
+    /** Count of payloads compressed. */
+    public long compressions() {
+        return compressions.get();
+    }
+
+    /** Total bytes passed to {@link #compress(byte[])}. */
+    public long inputBytes() {
+        return inputBytes.get();
+    }
+
+    /** Total bytes returned by {@link #compress(byte[])}. */
+    public long outputBytes() {
+        return outputBytes.get();
+    }
+
+    /** Output bytes divided by input bytes, or 1.0 if nothing was compressed yet. */
+    public double ratio() {
+        long input = inputBytes.get();
+        return input == 0 ? 1.0 : (double) outputBytes.get() / input;
+    }
+
+    /** Total time spent compressing, which is time on the flushing thread's CPU. */
+    public long compressNanos() {
+        return compressNanos.get();
+    }
+}
@@ -0,0 +1,94 @@
+package com.github.kristofa.brave;
+
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Gzip using zlib. Unlike {@link java.util.zip.GZIPOutputStream}, which allocates a deflater and
+ * its native buffers per stream, deflaters are reset and returned to a pool after each payload.
+ */
+final class PooledGzipCompressor extends PayloadCompressor {
+    static final int HEADER_SIZE = 10, TRAILER_SIZE = 8;
+    static final int MAX_POOLED = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+    final int level;
+    final Queue<Deflater> pool = new ConcurrentLinkedQueue<Deflater>();
+    final AtomicInteger pooled = new AtomicInteger();
+
+    PooledGzipCompressor(int level) {
+        if (level < Deflater.BEST_SPEED || level > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("level should be between 1 and 9: " + level);
+        }
+        this.level = level;
+    }
+
+    @Override public String encoding(int uncompressedSize) {
+        return GZIP;
+    }
+
+    @Override protected byte[] doCompress(byte[] input) {
+        Deflater deflater = pool.poll();
+        if (deflater != null) {
+            pooled.decrementAndGet();
+        } else {
+            deflater = new Deflater(level, true); // nowrap: we write the gzip framing
+        }
+        try {
+            deflater.setInput(input);
+            deflater.finish();
+            // deflate's worst case is slightly larger than the input
+            byte[] out = new byte[HEADER_SIZE + input.length + input.length / 1000 + 64 + TRAILER_SIZE];
+            int pos = writeHeader(out);
+            while (!deflater.finished()) {
+                if (pos == out.length - TRAILER_SIZE) {
+                    out = Arrays.copyOf(out, out.length * 2);
+                }
+                pos += deflater.deflate(out, pos, out.length - TRAILER_SIZE - pos);
+            }
+            pos = writeTrailer(out, pos, input);
+            return pos == out.length ? out : Arrays.copyOf(out, pos);
+        } finally {
+            deflater.reset();
+            if (pooled.incrementAndGet() <= MAX_POOLED) {
+                pool.offer(deflater);
+            } else {
+                pooled.decrementAndGet();
+                deflater.end();
+            }
+        }
+    }
+
+    /** Writes the minimal gzip header: deflate, no flags, no mtime, unknown OS. */
+    static int writeHeader(byte[] out) {
+        out[0] = 0x1f;
+        out[1] = (byte) 0x8b;
+        out[2] = Deflater.DEFLATED;
+        out[3] = out[4] = out[5] = out[6] = out[7] = out[8] = 0;
+        out[9] = (byte) 0xff;
+        return HEADER_SIZE;
+    }
+
+    /** Writes the crc and size of the input, little-endian, returning the end position. */
+    static int writeTrailer(byte[] out, int pos, byte[] input) {
+        CRC32 crc = new CRC32();
+        crc.update(input, 0, input.length);
+        pos = writeIntLE(out, pos, (int) crc.getValue());
+        return writeIntLE(out, pos, input.length);
+    }
+
+    static int writeIntLE(byte[] out, int pos, int v) {
+        out[pos++] = (byte) v;
+        out[pos++] = (byte) (v >>> 8);
+        out[pos++] = (byte) (v >>> 16);
+        out[pos++] = (byte) (v >>> 24);
+        return pos;
+    }
+
+    @Override public String toString() {
+        return "PooledGzipCompressor(level=" + level + ")";
+    }
+}
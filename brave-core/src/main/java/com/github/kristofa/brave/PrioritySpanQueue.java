@@ -0,0 +1,215 @@
+package com.github.kristofa.brave;
+
+import com.twitter.zipkin.gen.BinaryAnnotation;
+import com.twitter.zipkin.gen.Span;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import zipkin.Constants;
+
+import static com.github.kristofa.brave.internal.Util.checkNotNull;
+
+/**
+ * Bounded queue of spans waiting for {@link FlushingSpanCollector} to flush, with two lanes.
+ *
+ * <p>Spans flagged {@link SpanId#FLAG_DEBUG debug}, or with an {@link Constants#ERROR error} tag,
+ * go in the priority lane. Other spans are routine, and may only use the capacity not {@link
+ * Builder#reservedPriorityCapacity(int) reserved} for priority spans. So when an overloaded
+ * process drops spans, it keeps the ones describing failures.
+ *
+ * <p>Drain order is priority spans first, then routine spans, each oldest first.
+ */
+public final class PrioritySpanQueue {
+
+  /** What to drop when the lane of an incoming span is full. */
+  public enum DropPolicy {
+    /** Drop the incoming span. */
+    DROP_NEWEST,
+    /** Drop the oldest span in the incoming span's lane, favoring recent data. */
+    DROP_OLDEST,
+    /**
+     * Like {@link #DROP_NEWEST}, except a priority span arriving when the queue is full evicts the
+     * newest routine span, if there is one.
+     */
+    DROP_LOWEST_PRIORITY
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  public static final class Builder {
+    int capacity = 1100;
+    int reservedPriorityCapacity = 100;
+    DropPolicy dropPolicy = DropPolicy.DROP_NEWEST;
+
+    Builder() {
+    }
+
+    /**
+     * Maximum count of spans in both lanes. Default 1100, which with the default reservation
+     * leaves routine spans the 1000 they had before priority lanes.
+     */
+    public Builder capacity(int capacity) {
+      if (capacity <= 0) throw new IllegalArgumentException("capacity <= 0");
+      this.capacity = capacity;
+      return this;
+    }
+
+    /**
+     * Capacity only priority spans may use. Zero means routine spans can fill the queue. Default
+     * 100.
+     */
+    public Builder reservedPriorityCapacity(int reservedPriorityCapacity) {
+      if (reservedPriorityCapacity < 0) {
+        throw new IllegalArgumentException("reservedPriorityCapacity < 0");
+      }
+      this.reservedPriorityCapacity = reservedPriorityCapacity;
+      return this;
+    }
+
+    /** Default {@link DropPolicy#DROP_NEWEST}. */
+    public Builder dropPolicy(DropPolicy dropPolicy) {
+      this.dropPolicy = checkNotNull(dropPolicy, "dropPolicy");
+      return this;
+    }
+
+    public PrioritySpanQueue build() {
+      if (reservedPriorityCapacity > capacity) {
+        throw new IllegalArgumentException("reservedPriorityCapacity > capacity");
+      }
+      return new PrioritySpanQueue(this);
+    }
+  }
+
+  final int reservedPriorityCapacity;
+  final DropPolicy dropPolicy;
+  // guarded by this
+  int capacity;
+  int routineCapacity;
+  final ArrayDeque<Span> priority = new ArrayDeque<Span>();
+  final ArrayDeque<Span> routine = new ArrayDeque<Span>();
+
+  final AtomicLong droppedPrioritySpans = new AtomicLong();
+  final AtomicLong droppedRoutineSpans = new AtomicLong();
+
+  PrioritySpanQueue(Builder builder) {
+    this.reservedPriorityCapacity = builder.reservedPriorityCapacity;
+    this.dropPolicy = builder.dropPolicy;
+    this.capacity = builder.capacity;
+    this.routineCapacity = builder.capacity - builder.reservedPriorityCapacity;
+  }
+
+  /** Returns true if the span is debug or has an error tag. */
+  static boolean isPriority(Span span) {
+    if (Boolean.TRUE.equals(span.isDebug())) return true;
+    List<BinaryAnnotation> binaryAnnotations = span.getBinary_annotations();
+    for (int i = 0, length = binaryAnnotations.size(); i < length; i++) {
+      if (Constants.ERROR.equals(binaryAnnotations.get(i).getKey())) return true;
+    }
+    return false;
+  }
+
+  /**
+   * Queues the span, returning the count of spans dropped to do so: zero, or one when either the
+   * input or a queued span was dropped.
+   */
+  public int offer(Span span) {
+    boolean isPriority = isPriority(span);
+    synchronized (this) {
+      int size = priority.size() + routine.size();
+      if (isPriority) {
+        if (size < capacity) {
+          priority.addLast(span);
+          return 0;
+        }
+        if (dropPolicy == DropPolicy.DROP_LOWEST_PRIORITY && !routine.isEmpty()) {
+          routine.pollLast();
+          droppedRoutineSpans.incrementAndGet();
+          priority.addLast(span);
+        } else if (dropPolicy == DropPolicy.DROP_OLDEST && !priority.isEmpty()) {
+          priority.pollFirst();
+          droppedPrioritySpans.incrementAndGet();
+          priority.addLast(span);
+        } else {
+          droppedPrioritySpans.incrementAndGet();
+        }
+        return 1;
+      }
+      if (routine.size() < routineCapacity && size < capacity) {
+        routine.addLast(span);
+        return 0;
+      }
+      if (dropPolicy == DropPolicy.DROP_OLDEST && !routine.isEmpty()) {
+        routine.pollFirst();
+        routine.addLast(span);
+      }
+      droppedRoutineSpans.incrementAndGet();
+      return 1;
+    }
+  }
+
+  /** Moves all queued spans to the collection, priority spans first. Returns the count moved. */
+  public synchronized int drainTo(Collection<Span> drained) {
+    int count = priority.size() + routine.size();
+    drained.addAll(priority);
+    drained.addAll(routine);
+    priority.clear();
+    routine.clear();
+    return count;
+  }
+
+  /**
+   * Moves up to {@code maxSpans} queued spans to the collection, priority spans first. Returns the
+   * count moved.
+   */
+  public synchronized int drainTo(Collection<Span> drained, int maxSpans) {
+    int count = 0;
+    for (; count < maxSpans && !priority.isEmpty(); count++) drained.add(priority.pollFirst());
+    for (; count < maxSpans && !routine.isEmpty(); count++) drained.add(routine.pollFirst());
+    return count;
+  }
+
+  /**
+   * Changes the maximum count of spans, keeping the reserved priority capacity. When shrinking
+   * below the current size, no queued span is dropped: new spans are dropped until the queue
+   * drains below the new capacity.
+   */
+  public synchronized void capacity(int capacity) {
+    if (capacity < reservedPriorityCapacity || capacity <= 0) {
+      throw new IllegalArgumentException("capacity < reservedPriorityCapacity or <= 0");
+    }
+    this.capacity = capacity;
+    this.routineCapacity = capacity - reservedPriorityCapacity;
+  }
+
+  public synchronized int capacity() {
+    return capacity;
+  }
+
+  public synchronized int size() {
+    return priority.size() + routine.size();
+  }
+
+  public synchronized boolean isEmpty() {
+    return priority.isEmpty() && routine.isEmpty();
+  }
+
+  /** Count of debug or error spans dropped because the queue was full. */
+  public long droppedPrioritySpans() {
+    return droppedPrioritySpans.get();
+  }
+
+  /** Count of other spans dropped because the queue was full. */
+  public long droppedRoutineSpans() {
+    return droppedRoutineSpans.get();
+  }
+
+  @Override
+  public synchronized String toString() {
+    return "PrioritySpanQueue(capacity=" + capacity
+        + ", reservedPriorityCapacity=" + reservedPriorityCapacity
+        + ", dropPolicy=" + dropPolicy + ")";
+  }
+}
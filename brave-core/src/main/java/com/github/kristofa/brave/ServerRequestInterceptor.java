@@ -1,5 +1,6 @@
 package com.github.kristofa.brave;
 
+import com.github.kristofa.brave.internal.Nullable;
 import com.twitter.zipkin.gen.Span;
 import java.util.logging.Logger;
 
@@ -19,9 +20,29 @@ public class ServerRequestInterceptor {
     private final static Logger LOGGER = Logger.getLogger(ServerRequestInterceptor.class.getName());
 
     private final ServerTracer serverTracer;
+    @Nullable private final TracingControl control;
+    @Nullable private final OverheadMonitor monitor;
 
     public ServerRequestInterceptor(ServerTracer serverTracer) {
+        this(serverTracer, null);
+    }
+
+    /**
+     * @param control switches the tracing level at runtime, or null to always trace fully.
+     */
+    public ServerRequestInterceptor(ServerTracer serverTracer, @Nullable TracingControl control) {
+        this(serverTracer, control, null);
+    }
+
+    /**
+     * @param control switches the tracing level at runtime, or null to always trace fully.
+     * @param monitor measures a sample of calls to {@link #handle}, or null to not measure.
+     */
+    public ServerRequestInterceptor(ServerTracer serverTracer, @Nullable TracingControl control,
+        @Nullable OverheadMonitor monitor) {
         this.serverTracer = checkNotNull(serverTracer, "Null serverTracer");
+        this.control = control;
+        this.monitor = monitor;
     }
 
     /**
@@ -30,51 +51,93 @@ public class ServerRequestInterceptor {
      * @param adapter The adapter translates implementation specific details.
      */
     public void handle(ServerRequestAdapter adapter) {
+        if (monitor == null || !monitor.sample(OverheadMonitor.Operation.SERVER_REQUEST)) {
+            doHandle(adapter);
+            return;
+        }
+        long startNanos = System.nanoTime();
+        long startBytes = monitor.allocatedBytes();
+        try {
+            doHandle(adapter);
+        } finally {
+            monitor.record(OverheadMonitor.Operation.SERVER_REQUEST, startNanos, startBytes);
+        }
+    }
+
+    private void doHandle(ServerRequestAdapter adapter) {
+        // Clear state left by a previous request on this thread, even when tracing is off.
         serverTracer.clearCurrentSpan();
+        TracingControl.Level level = TracingControl.level(control);
+        if (level == TracingControl.Level.OFF) return;
         final TraceData traceData = adapter.getTraceData();
+        if (level == TracingControl.Level.PROPAGATE_ONLY) {
+            propagateOnly(traceData);
+            return;
+        }
 
         Boolean sample = traceData.getSample();
         if (Boolean.FALSE.equals(sample)) {
             serverTracer.setStateNoTracing();
+            recordUnsampled(traceData.getSpanId(), adapter);
             LOGGER.fine("Received indication that we should NOT trace.");
-        } else {
-            SpanId spanId = traceData.getSpanId();
-            // We know an instrumented caller initiated the trace if they sampled it
-            boolean clientOriginatedTrace = spanId != null && Boolean.TRUE.equals(sample);
-            if (spanId != null) {
-                // If the sampled flag was left unset, we need to make the decision here
-                if (spanId.sampled() == null) {
-                    spanId = spanId.toBuilder()
-                        .sampled(serverTracer.traceSampler().isSampled(spanId.traceId))
-                        .build();
-                }
-                if (!spanId.sampled()) {
-                    LOGGER.fine("Received span information as part of request, but didn't sample.");
-                    serverTracer.setStateNoTracing();
-                } else {
-                    LOGGER.fine("Received span information as part of request.");
-                    serverTracer.setStateCurrentTrace(traceData.getSpanId(), adapter.getSpanName());
-                }
-            } else {
-                LOGGER.fine("Received no span state.");
-                serverTracer.setStateUnknown(adapter.getSpanName());
-            }
-            serverTracer.setServerReceived();
-            // In the RPC span model, the client owns the timestamp and duration of the span. If we
-            // were propagated an id, we can assume that we shouldn't report timestamp or duration,
-            // rather let the client do that. Worst case we were propagated an unreported ID and
-            // Zipkin backfills timestamp and duration.
-            if (clientOriginatedTrace) {
-                Span span = serverTracer.spanAndEndpoint().span();
-                synchronized (span) {
-                    span.setTimestamp(null);
-                    span.startTick = null;
-                }
+            return;
+        }
+        // Below, the adapter's span name and tags are only read once the request is known to be
+        // sampled, as they can be expensive, for example when they parse a URI.
+        SpanId spanId = traceData.getSpanId();
+        // We know an instrumented caller initiated the trace if they sampled it
+        boolean clientOriginatedTrace = spanId != null && Boolean.TRUE.equals(sample);
+        if (spanId != null) {
+            // If the sampled flag was left unset, we need to make the decision here
+            boolean sampled = spanId.sampled() != null
+                ? spanId.sampled()
+                : serverTracer.traceSampler().isSampled(spanId.traceId);
+            if (!sampled) {
+                LOGGER.fine("Received span information as part of request, but didn't sample.");
+                serverTracer.setStateNoTracing();
+                recordUnsampled(spanId, adapter);
+                return;
             }
-            for(KeyValueAnnotation annotation : adapter.requestAnnotations())
-            {
-                serverTracer.submitBinaryAnnotation(annotation.getKey(), annotation.getValue());
+            LOGGER.fine("Received span information as part of request.");
+            serverTracer.setStateCurrentTrace(spanId, adapter.getSpanName());
+        } else {
+            LOGGER.fine("Received no span state.");
+            if (!serverTracer.setStateUnknown(adapter)) return;
+        }
+        serverTracer.setServerReceived();
+        // In the RPC span model, the client owns the timestamp and duration of the span. If we
+        // were propagated an id, we can assume that we shouldn't report timestamp or duration,
+        // rather let the client do that. Worst case we were propagated an unreported ID and
+        // Zipkin backfills timestamp and duration.
+        if (clientOriginatedTrace) {
+            Span span = serverTracer.spanAndEndpoint().span();
+            synchronized (span) {
+                span.setTimestamp(null);
+                span.startTick = null;
             }
         }
+        for(KeyValueAnnotation annotation : adapter.requestAnnotations())
+        {
+            serverTracer.submitBinaryAnnotation(annotation.getKey(), annotation.getValue());
+        }
+    }
+
+    /** Keeps what outgoing requests need to continue the trace, without recording anything. */
+    private void propagateOnly(TraceData traceData) {
+        if (Boolean.FALSE.equals(traceData.getSample())) {
+            serverTracer.setStateNoTracing();
+        } else if (traceData.getSpanId() != null) {
+            serverTracer.setStatePropagateOnly(traceData.getSpanId());
+        }
+    }
+
+    /** Notes the start of an unsampled request, when a flight recorder is configured. */
+    private void recordUnsampled(@Nullable SpanId spanId, ServerRequestAdapter adapter) {
+        if (spanId == null) {
+            serverTracer.recordUnsampled(0L, 0L, 0L, null, adapter);
+        } else {
+            serverTracer.recordUnsampled(
+                spanId.traceIdHigh, spanId.traceId, spanId.spanId, null, adapter);
+        }
     }
 }
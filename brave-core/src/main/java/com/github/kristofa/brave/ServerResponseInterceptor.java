@@ -1,5 +1,6 @@
 package com.github.kristofa.brave;
 
+import com.github.kristofa.brave.internal.Nullable;
 import java.util.logging.Logger;
 
 import static com.github.kristofa.brave.internal.Util.checkNotNull;
@@ -16,19 +17,62 @@ public class ServerResponseInterceptor {
     private final static Logger LOGGER = Logger.getLogger(ServerResponseInterceptor.class.getName());
 
     private final ServerTracer serverTracer;
+    @Nullable private final TracingControl control;
+    @Nullable private final OverheadMonitor monitor;
 
     public ServerResponseInterceptor(ServerTracer serverTracer) {
+        this(serverTracer, null);
+    }
+
+    /**
+     * @param control switches the tracing level at runtime, or null to always trace fully.
+     */
+    public ServerResponseInterceptor(ServerTracer serverTracer, @Nullable TracingControl control) {
+        this(serverTracer, control, null);
+    }
+
+    /**
+     * @param control switches the tracing level at runtime, or null to always trace fully.
+     * @param monitor measures a sample of calls to {@link #handle}, or null to not measure.
+     */
+    public ServerResponseInterceptor(ServerTracer serverTracer, @Nullable TracingControl control,
+        @Nullable OverheadMonitor monitor) {
         this.serverTracer = checkNotNull(serverTracer, "Null serverTracer");
+        this.control = control;
+        this.monitor = monitor;
     }
 
     public void handle(ServerResponseAdapter adapter) {
+        if (monitor == null || !monitor.sample(OverheadMonitor.Operation.SERVER_RESPONSE)) {
+            doHandle(adapter);
+            return;
+        }
+        long startNanos = System.nanoTime();
+        long startBytes = monitor.allocatedBytes();
+        try {
+            doHandle(adapter);
+        } finally {
+            monitor.record(OverheadMonitor.Operation.SERVER_RESPONSE, startNanos, startBytes);
+        }
+    }
+
+    private void doHandle(ServerResponseAdapter adapter) {
+        // Unless fully tracing, only clear the state, which the request may have set before the
+        // level changed.
+        if (TracingControl.level(control) != TracingControl.Level.FULL) {
+            serverTracer.clearCurrentSpan();
+            return;
+        }
         // We can submit this in any case. When server state is not set or
         // we should not trace this request nothing will happen.
         LOGGER.fine("Sending server send.");
         try {
-            for(KeyValueAnnotation annotation : adapter.responseAnnotations())
-            {
-                serverTracer.submitBinaryAnnotation(annotation.getKey(), annotation.getValue());
+            // Skip the adapter's work when there's no span to tag, such as when unsampled.
+            if (!serverTracer.noCurrentSpan()) {
+                for(KeyValueAnnotation annotation : adapter.responseAnnotations())
+                {
+                    serverTracer.submitBinaryAnnotation(annotation.getKey(), annotation.getValue());
+                }
             }
             serverTracer.setServerSend();
         } finally {
@@ -15,8 +15,8 @@ import static com.github.kristofa.brave.internal.Util.checkNotNull;
 @AutoValue
 public abstract class ServerSpan {
 
-    public static final ServerSpan EMPTY = new AutoValue_ServerSpan(null, null);
-    static final ServerSpan NOT_SAMPLED = new AutoValue_ServerSpan(null, false);
+    public static final ServerSpan EMPTY = new AutoValue_ServerSpan(null, null, null);
+    static final ServerSpan NOT_SAMPLED = new AutoValue_ServerSpan(null, false, null);
 
     /**
      * Gets the Trace/Span context.
@@ -36,8 +36,20 @@ public abstract class ServerSpan {
     @Nullable
     public abstract Boolean getSample();
 
+    /**
+     * The span received, when the {@link TracingControl.Level#PROPAGATE_ONLY tracing level} only
+     * forwards trace headers. Outgoing requests are made children of it.
+     */
+    @Nullable
+    abstract SpanId propagatedSpanId();
+
     static ServerSpan create(Span span) {
-        return new AutoValue_ServerSpan(checkNotNull(span, "span"), true);
+        return new AutoValue_ServerSpan(checkNotNull(span, "span"), true, null);
+    }
+
+    /** Not sampled here, as nothing is recorded, but the incoming span id is kept to forward. */
+    static ServerSpan propagateOnly(SpanId spanId) {
+        return new AutoValue_ServerSpan(null, false, checkNotNull(spanId, "spanId"));
     }
 
     ServerSpan(){
@@ -49,5 +49,6 @@ public class ServerSpanThreadBinder {
      */
     public void setCurrentSpan(final ServerSpan span) {
         state.setCurrentServerSpan(span);
+        if (span != null) InFlightSpans.bound(span.getSpan(), Thread.currentThread());
     }
 }
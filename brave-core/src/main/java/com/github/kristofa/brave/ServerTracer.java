@@ -4,6 +4,7 @@ import com.github.kristofa.brave.SpanAndEndpoint.ServerSpanAndEndpoint;
 import com.github.kristofa.brave.internal.Nullable;
 import com.google.auto.value.AutoValue;
 import com.twitter.zipkin.gen.Endpoint;
+import com.twitter.zipkin.gen.Span;
 import java.util.Random;
 import zipkin.Constants;
 import zipkin.reporter.Reporter;
@@ -29,7 +30,7 @@ import static com.github.kristofa.brave.internal.Util.checkNotBlank;
 public abstract class ServerTracer extends AnnotationSubmitter {
 
     public static Builder builder() {
-        return new AutoValue_ServerTracer.Builder();
+        return new AutoValue_ServerTracer.Builder().timeOrderedTraceIds(false);
     }
 
     @Override
@@ -40,6 +41,15 @@ public abstract class ServerTracer extends AnnotationSubmitter {
     @Override
     abstract AnnotationSubmitter.Clock clock();
     abstract boolean traceId128Bit();
+    abstract boolean timeOrderedTraceIds();
+    @Nullable
+    abstract FlightRecorder flightRecorder();
+    @Nullable
+    abstract SpanPool spanPool();
+    @Nullable
+    abstract InFlightSpans inFlightSpans();
+    @Nullable
+    abstract ThreadResourceRecorder threadResourceRecorder();
 
     @AutoValue.Builder
     public abstract static class Builder {
@@ -71,14 +81,32 @@ public abstract class ServerTracer extends AnnotationSubmitter {
 
         abstract Builder traceId128Bit(boolean traceId128Bit);
 
+        abstract Builder timeOrderedTraceIds(boolean timeOrderedTraceIds);
+
+        abstract Builder flightRecorder(@Nullable FlightRecorder flightRecorder);
+
+        abstract Builder spanPool(@Nullable SpanPool spanPool);
+
+        abstract Builder inFlightSpans(@Nullable InFlightSpans inFlightSpans);
+
+        abstract Builder threadResourceRecorder(@Nullable ThreadResourceRecorder threadResourceRecorder);
+
         public abstract ServerTracer build();
     }
 
     /**
-     * Clears current span.
+     * Clears current span, without reporting it. If the span was still in flight, such as when
+     * tracing was switched off during its request, it is also unregistered and released.
      */
     public void clearCurrentSpan() {
+        boolean tracked = spanPool() != null || inFlightSpans() != null || threadResourceRecorder() != null;
+        Span span = tracked ? spanAndEndpoint().span() : null;
         spanAndEndpoint().state().setCurrentServerSpan(null);
+        if (flightRecorder() != null) flightRecorder().clearUnsampled();
+        if (span == null) return;
+        InFlightSpans.remove(span, spanAndEndpoint());
+        ThreadResourceRecorder.discard(span);
+        if (spanPool() != null) spanPool().release(span);
     }
 
     /**
@@ -100,7 +128,14 @@ public abstract class ServerTracer extends AnnotationSubmitter {
      */
     public void setStateCurrentTrace(SpanId spanId, String spanName) {
         checkNotBlank(spanName, "Null or blank span name");
-        ServerSpan span = ServerSpan.create(spanId.toSpan().setName(spanName));
+        Span newSpan = spanPool() != null ? spanPool().acquire(spanId) : spanId.toSpan();
+        if (inFlightSpans() != null) {
+            inFlightSpans().add(newSpan, spanName, reporter(), Thread.currentThread());
+        }
+        if (threadResourceRecorder() != null) {
+            threadResourceRecorder().start(newSpan, ThreadResourceRecorder.Kind.SERVER);
+        }
+        ServerSpan span = ServerSpan.create(newSpan.setName(spanName));
         spanAndEndpoint().state().setCurrentServerSpan(span);
     }
 
@@ -115,6 +150,15 @@ public abstract class ServerTracer extends AnnotationSubmitter {
         spanAndEndpoint().state().setCurrentServerSpan(ServerSpan.NOT_SAMPLED);
     }
 
+    /**
+     * Nothing will be recorded for the current request, but outgoing requests continue the trace.
+     *
+     * @see TracingControl.Level#PROPAGATE_ONLY
+     */
+    void setStatePropagateOnly(SpanId spanId) {
+        spanAndEndpoint().state().setCurrentServerSpan(ServerSpan.propagateOnly(spanId));
+    }
+
     /**
      * Sets the current Trace/Span state. Using this method indicates that we got no information about being part of an
      * existing trace or about the fact that we should not trace the current request. In this case the ServerTracer will
@@ -124,17 +168,48 @@ public abstract class ServerTracer extends AnnotationSubmitter {
      */
     public void setStateUnknown(String spanName) {
         checkNotBlank(spanName, "Null or blank span name");
+        setStateUnknown(spanName, null);
+    }
+
+    /**
+     * Like {@link #setStateUnknown(String)}, except the span name is only read from the adapter if
+     * needed, which is usually only when the request is sampled.
+     *
+     * @return true if the request is sampled
+     */
+    boolean setStateUnknown(ServerRequestAdapter adapter) {
+        return setStateUnknown(null, adapter);
+    }
+
+    private boolean setStateUnknown(@Nullable String spanName, @Nullable ServerRequestAdapter adapter) {
         long newTraceId = randomGenerator().nextLong();
         if (!traceSampler().isSampled(newTraceId)) {
             spanAndEndpoint().state().setCurrentServerSpan(ServerSpan.NOT_SAMPLED);
-            return;
+            recordUnsampled(0L, newTraceId, newTraceId, spanName, adapter);
+            return false;
         }
         SpanId spanId = SpanId.builder()
-            .traceIdHigh(traceId128Bit() ? randomGenerator().nextLong() : 0L)
+            .traceIdHigh(traceId128Bit() ? nextTraceIdHigh() : 0L)
             .traceId(newTraceId)
             .spanId(newTraceId)
             .build();
-        setStateCurrentTrace(spanId, spanName);
+        setStateCurrentTrace(spanId, spanName != null ? spanName : adapter.getSpanName());
+        return true;
+    }
+
+    /**
+     * Notes the start of an unsampled request, when a flight recorder is configured. The adapter's
+     * span name is only read if the recorder keeps names of unsampled requests.
+     */
+    void recordUnsampled(long traceIdHigh, long traceId, long spanId, @Nullable String spanName,
+        @Nullable ServerRequestAdapter adapter) {
+        FlightRecorder recorder = flightRecorder();
+        if (recorder == null) return;
+        if (spanName == null && adapter != null && recorder.unsampledNames) {
+            spanName = adapter.getSpanName();
+        }
+        recorder.startUnsampled(traceIdHigh, traceId, spanId, spanName,
+            clock().currentTimeMicroseconds());
     }
 
     /**
@@ -179,11 +254,24 @@ public abstract class ServerTracer extends AnnotationSubmitter {
      * Sets the server sent event for current thread.
      */
     public void setServerSend() {
+        SpanPool pool = spanPool();
+        ThreadResourceRecorder recorder = threadResourceRecorder();
+        Span span = pool != null || recorder != null ? spanAndEndpoint().span() : null;
+        if (recorder != null && span != null) recorder.finish(span, spanAndEndpoint().endpoint());
         if (submitEndAnnotation(Constants.SERVER_SEND, reporter())) {
             spanAndEndpoint().state().setCurrentServerSpan(null);
+            if (pool != null) pool.release(span);
+        } else if (flightRecorder() != null) {
+            flightRecorder().finishUnsampled();
         }
     }
 
+    private long nextTraceIdHigh() {
+        return timeOrderedTraceIds()
+            ? SpanId.timeOrderedTraceIdHigh(clock().currentTimeMicroseconds(), randomGenerator())
+            : randomGenerator().nextLong();
+    }
+
     ServerTracer() {
     }
 }
@@ -0,0 +1,152 @@
+package com.github.kristofa.brave;
+
+import com.github.kristofa.brave.SpanAndEndpoint.StaticSpanAndEndpoint;
+import com.github.kristofa.brave.internal.Nullable;
+import com.twitter.zipkin.gen.Endpoint;
+import com.twitter.zipkin.gen.Span;
+import java.util.concurrent.atomic.AtomicBoolean;
+import zipkin.Constants;
+import zipkin.reporter.Reporter;
+
+/**
+ * A span that isn't bound to a thread. It can be annotated, tagged and finished from any thread,
+ * such as the callback thread of an asynchronous client, without {@link ClientSpanThreadBinder}.
+ * <p/>
+ * Handles are returned by {@link ClientTracer#startSpan(String)} and {@link
+ * LocalTracer#startSpan(String, String)}, which choose the parent and make the sampling decision
+ * like their thread-bound counterparts, but leave the current spans as they were.
+ *
+ * <pre>{@code
+ * SpanHandle span = clientTracer.startSpan("get");
+ * if (span != null) {
+ *   addHeaders(request, span.spanId());
+ *   span.setClientSent();
+ * }
+ * client.execute(request, new Callback() {
+ *   public void onResponse(Response response) {
+ *     if (span != null) span.finish();
+ *   }
+ *   public void onFailure(IOException e) {
+ *     if (span != null) span.finish(e);
+ *   }
+ * });
+ * }</pre>
+ *
+ * @see SpanHandleFutures
+ */
+public final class SpanHandle extends AnnotationSubmitter {
+
+    enum Kind {
+        CLIENT,
+        LOCAL
+    }
+
+    static SpanHandle create(Kind kind, SpanId spanId, Span span, Endpoint endpoint, Clock clock,
+        Reporter<zipkin.Span> reporter) {
+        return new SpanHandle(kind, spanId, StaticSpanAndEndpoint.create(span, endpoint), clock, reporter);
+    }
+
+    private final Kind kind;
+    private final SpanId spanId;
+    private final StaticSpanAndEndpoint spanAndEndpoint;
+    private final Clock clock;
+    private final Reporter<zipkin.Span> reporter;
+    private final AtomicBoolean finished = new AtomicBoolean();
+
+    private SpanHandle(Kind kind, SpanId spanId, StaticSpanAndEndpoint spanAndEndpoint, Clock clock,
+        Reporter<zipkin.Span> reporter) {
+        this.kind = kind;
+        this.spanId = spanId;
+        this.spanAndEndpoint = spanAndEndpoint;
+        this.clock = clock;
+        this.reporter = reporter;
+    }
+
+    /** Identifies the span, for example to propagate it in request headers. */
+    public SpanId spanId() {
+        return spanId;
+    }
+
+    /**
+     * Sets the 'client sent' event. Only call this on a span returned by {@link
+     * ClientTracer#startSpan(String)}.
+     */
+    public void setClientSent() {
+        submitStartAnnotation(Constants.CLIENT_SEND);
+    }
+
+    /**
+     * Like {@link #setClientSent()}, except you can log the network context of the destination.
+     *
+     * @param server represents the server (peer). Set {@link Endpoint#service_name} to
+     * "unknown" if unknown.
+     */
+    public void setClientSent(Endpoint server) {
+        submitAddress(Constants.SERVER_ADDR, server);
+        submitStartAnnotation(Constants.CLIENT_SEND);
+    }
+
+    /**
+     * Completes the span and sends it for collection. A client span gets the 'client received'
+     * event. Only the first call has an effect, so it is safe to call this from racing callbacks.
+     */
+    public void finish() {
+        if (finished.compareAndSet(false, true)) report();
+    }
+
+    /**
+     * Like {@link #finish()}, except an error tag is added when the operation failed.
+     *
+     * @param error the failure, or null if the operation succeeded.
+     * @see Constants#ERROR
+     */
+    public void finish(@Nullable Throwable error) {
+        // Claim the span before tagging, so that the tag can't land after a racing finish reported it
+        if (!finished.compareAndSet(false, true)) return;
+        if (error != null) {
+            String message = error.getMessage();
+            submitBinaryAnnotation(Constants.ERROR,
+                message != null ? message : error.getClass().getSimpleName());
+        }
+        report();
+    }
+
+    /** Returns true once {@link #finish()} has been called. */
+    public boolean isFinished() {
+        return finished.get();
+    }
+
+    private void report() {
+        Span span = spanAndEndpoint.span();
+        if (kind == Kind.CLIENT) {
+            submitEndAnnotation(Constants.CLIENT_RECV, reporter);
+            return;
+        }
+        long endTick = System.nanoTime();
+        long duration;
+        synchronized (span) {
+            Long startTick = span.startTick;
+            duration = startTick != null
+                ? (endTick - startTick) / 1000L
+                : clock.currentTimeMicroseconds() - span.getTimestamp();
+            span.setDuration(Math.max(1L, duration));
+        }
+        InFlightSpans.remove(span, spanAndEndpoint);
+        reporter.report(span.toZipkin());
+    }
+
+    @Override
+    StaticSpanAndEndpoint spanAndEndpoint() {
+        return spanAndEndpoint;
+    }
+
+    @Override
+    Clock clock() {
+        return clock;
+    }
+
+    @Override
+    public String toString() {
+        return "SpanHandle{" + kind + ", " + spanId + "}";
+    }
+}
@@ -0,0 +1,75 @@
+package com.github.kristofa.brave;
+
+import com.github.kristofa.brave.internal.Nullable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.function.BiConsumer;
+
+import static com.github.kristofa.brave.internal.Util.checkNotNull;
+
+/**
+ * Finishes a {@link SpanHandle} when a {@link CompletableFuture} or other {@link CompletionStage}
+ * completes, on whichever thread completes it.
+ *
+ * <pre>{@code
+ * SpanHandle span = clientTracer.startSpan("get");
+ * ...
+ * return SpanHandleFutures.finishOnCompletion(client.sendAsync(request), span);
+ * }</pre>
+ * <p/>
+ * This class uses Java 8 types, so is only usable on Java 8 or later. The rest of brave-core
+ * doesn't depend on it.
+ */
+public final class SpanHandleFutures {
+
+    /**
+     * Finishes the span when the stage completes, adding an error tag if it completed exceptionally.
+     *
+     * @param span the span to finish, or null if the operation isn't traced.
+     * @return the input, so that callers see the same cancellation and completion behavior.
+     */
+    public static <T, S extends CompletionStage<T>> S finishOnCompletion(S stage,
+        @Nullable SpanHandle span) {
+        if (span != null) stage.whenComplete(finisher(span));
+        return stage;
+    }
+
+    /**
+     * Returns a callback for {@link CompletionStage#whenComplete} which finishes the span, adding an
+     * error tag if the stage completed exceptionally.
+     */
+    public static BiConsumer<Object, Throwable> finisher(SpanHandle span) {
+        return new Finisher(checkNotNull(span, "span"));
+    }
+
+    static final class Finisher implements BiConsumer<Object, Throwable> {
+        final SpanHandle span;
+
+        Finisher(SpanHandle span) {
+            this.span = span;
+        }
+
+        @Override
+        public void accept(Object result, Throwable error) {
+            span.finish(unwrap(error));
+        }
+
+        @Override
+        public String toString() {
+            return "Finisher(" + span + ")";
+        }
+    }
+
+    /** Dependent stages complete with the cause wrapped in a {@code CompletionException}. */
+    @Nullable
+    static Throwable unwrap(@Nullable Throwable error) {
+        if (error instanceof CompletionException && error.getCause() != null) {
+            return error.getCause();
+        }
+        return error;
+    }
+
+    private SpanHandleFutures() {
+    }
+}
@@ -3,6 +3,7 @@ package com.github.kristofa.brave;
 import com.github.kristofa.brave.internal.Nullable;
 import com.twitter.zipkin.gen.Span;
 import java.nio.ByteBuffer;
+import java.util.Random;
 
 import static com.github.kristofa.brave.internal.Util.checkNotNull;
 
@@ -87,6 +88,18 @@ public final class SpanId {
     return new SpanId(traceIdHigh, traceId, parentId, spanId, flags);
   }
 
+  /**
+   * Returns a {@link #traceIdHigh} whose upper 32 bits are epoch seconds and lower 32 bits are
+   * random. Trace IDs made this way sort roughly by when they started, so writes to storage indexed
+   * by trace ID are local, and lookups by trace ID can skip time ranges.
+   *
+   * <p>This doesn't lock: {@link Random#nextInt()} updates its seed with compare-and-set.
+   */
+  static long timeOrderedTraceIdHigh(long epochMicros, Random prng) {
+    long epochSeconds = epochMicros / 1000000L;
+    return (epochSeconds & 0xffffffffL) << 32 | (prng.nextInt() & 0xffffffffL);
+  }
+
   public static Builder builder() {
     return new Builder();
   }
@@ -212,17 +225,17 @@ public final class SpanId {
     char[] result = new char[((traceHi ? 4 : 3) * 16) + 3]; // 3 ids and the constant delimiters
     int pos = 0;
     if (traceHi) {
-      writeHexLong(result, pos, traceIdHigh);
+      IdConversion.writeHexLong(result, pos, traceIdHigh);
       pos += 16;
     }
-    writeHexLong(result, pos, traceId);
+    IdConversion.writeHexLong(result, pos, traceId);
     pos += 16;
     result[pos++] = '.';
-    writeHexLong(result, pos, spanId);
+    IdConversion.writeHexLong(result, pos, spanId);
     pos += 16;
     result[pos++] = '<';
     result[pos++] = ':';
-    writeHexLong(result, pos, parentId);
+    IdConversion.writeHexLong(result, pos, parentId);
     return new String(result);
   }
 
@@ -261,34 +274,41 @@ public final class SpanId {
    * @since 3.15
    */
   public String traceIdString() {
+    char[] result = IdConversion.HEX_BUFFER.get();
     if (traceIdHigh != 0) {
-      char[] result = new char[32];
-      writeHexLong(result, 0, traceIdHigh);
-      writeHexLong(result, 16, traceId);
-      return new String(result);
+      IdConversion.writeHexLong(result, 0, traceIdHigh);
+      IdConversion.writeHexLong(result, 16, traceId);
+      return new String(result, 0, 32);
     }
-    char[] result = new char[16];
-    writeHexLong(result, 0, traceId);
-    return new String(result);
+    IdConversion.writeHexLong(result, 0, traceId);
+    return new String(result, 0, 16);
   }
 
   /** Preferred way to create spans, as it properly deals with the parent id */
   public Span toSpan() {
-    Span result = new Span();
+    return toSpan(new Span());
+  }
+
+  /** Like {@link #toSpan()}, except fills a new or {@link Span#clear() cleared} span. */
+  Span toSpan(Span result) {
     result.setId(spanId);
     result.setTrace_id_high(traceIdHigh);
     result.setTrace_id(traceId);
-    result.setParent_id(nullableParentId());
+    if (!root()) result.setParent_id(parentId);
     result.setName(""); // avoid NPE on equals
     if (debug()) result.setDebug(debug());
     return result;
   }
 
   public static final class Builder {
+    // primitives with presence flags, so that building doesn't box ids
     long traceIdHigh = 0;
-    Long traceId;
-    Long nullableParentId;
-    Long spanId;
+    long traceId;
+    boolean hasTraceId;
+    long parentId;
+    boolean hasParentId;
+    long spanId;
+    boolean hasSpanId;
     long flags;
 
     Builder() {
@@ -297,8 +317,11 @@ public final class SpanId {
     Builder(SpanId source) {
       this.traceIdHigh = source.traceIdHigh;
       this.traceId = source.traceId;
-      this.nullableParentId = source.nullableParentId();
+      this.hasTraceId = true;
+      this.hasParentId = !source.root();
+      this.parentId = hasParentId ? source.parentId : 0L;
       this.spanId = source.spanId;
+      this.hasSpanId = true;
       this.flags = source.flags;
     }
 
@@ -311,6 +334,7 @@ public final class SpanId {
     /** @see SpanId#traceId */
     public Builder traceId(long traceId) {
       this.traceId = traceId;
+      this.hasTraceId = true;
       return this;
     }
 
@@ -322,16 +346,24 @@ public final class SpanId {
     public Builder parentId(@Nullable Long parentId) {
       if (parentId == null) {
         this.flags |= FLAG_IS_ROOT;
-      } else {
-        this.flags &= ~FLAG_IS_ROOT;
+        this.hasParentId = false;
+        return this;
       }
-      this.nullableParentId = parentId;
+      return parentId(parentId.longValue());
+    }
+
+    /** Like {@link #parentId(Long)}, except avoids boxing when there is a parent. */
+    public Builder parentId(long parentId) {
+      this.flags &= ~FLAG_IS_ROOT;
+      this.parentId = parentId;
+      this.hasParentId = true;
       return this;
     }
 
     /** @see SpanId#spanId */
     public Builder spanId(long spanId) {
       this.spanId = spanId;
+      this.hasSpanId = true;
       return this;
     }
 
@@ -367,31 +399,11 @@ public final class SpanId {
     }
 
     public SpanId build() {
-      checkNotNull(spanId, "spanId");
-      long traceId = this.traceId != null ? this.traceId : spanId;
-      long parentId = nullableParentId != null ? nullableParentId : traceId;
+      if (!hasSpanId) throw new NullPointerException("spanId");
+      long traceId = hasTraceId ? this.traceId : spanId;
+      long parentId = hasParentId ? this.parentId : traceId;
       if (parentId == spanId) parentId = traceId;
       return new SpanId(traceIdHigh, traceId, parentId, spanId, flags);
     }
   }
-
-  /** Inspired by {@code okio.Buffer.writeLong} */
-  static void writeHexLong(char[] data, int pos, long v) {
-    writeHexByte(data, pos + 0,  (byte) ((v >>> 56L) & 0xff));
-    writeHexByte(data, pos + 2,  (byte) ((v >>> 48L) & 0xff));
-    writeHexByte(data, pos + 4,  (byte) ((v >>> 40L) & 0xff));
-    writeHexByte(data, pos + 6,  (byte) ((v >>> 32L) & 0xff));
-    writeHexByte(data, pos + 8,  (byte) ((v >>> 24L) & 0xff));
-    writeHexByte(data, pos + 10, (byte) ((v >>> 16L) & 0xff));
-    writeHexByte(data, pos + 12, (byte) ((v >>> 8L) & 0xff));
-    writeHexByte(data, pos + 14, (byte)  (v & 0xff));
-  }
-
-  static final char[] HEX_DIGITS =
-      {'0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f'};
-
-  static void writeHexByte(char[] data, int pos, byte b) {
-    data[pos + 0] = HEX_DIGITS[(b >> 4) & 0xf];
-    data[pos + 1] = HEX_DIGITS[b & 0xf];
-  }
 }
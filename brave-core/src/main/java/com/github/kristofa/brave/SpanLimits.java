@@ -0,0 +1,314 @@
+package com.github.kristofa.brave;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import zipkin.Annotation;
+import zipkin.BinaryAnnotation;
+import zipkin.Codec;
+import zipkin.Constants;
+import zipkin.reporter.Encoding;
+import zipkin.reporter.Reporter;
+
+import static com.github.kristofa.brave.internal.Util.checkNotNull;
+
+/**
+ * Bounds the size of spans before they are reported, without changing instrumentation. For
+ * example, this caps {@code sql.query} tags added by the MySQL and p6spy interceptors, or long
+ * {@code http.url} tags.
+ *
+ * <p>Limits are applied in this order:
+ * <ol>
+ *   <li>Tags are dropped by {@link Builder#dropTagKeys key}, or unless {@link
+ *   Builder#allowTagKeys allowed}</li>
+ *   <li>Annotations beyond the {@link Builder#maxAnnotations budget} are dropped</li>
+ *   <li>String values are {@link Builder#maxValueLength truncated}</li>
+ *   <li>If the span is still over {@link Builder#maxSpanBytes(int, Encoding) its size limit},
+ *   the largest tags, then the latest annotations are dropped until it fits</li>
+ * </ol>
+ *
+ * <p>The local component and the client and server address tags, and core annotations such as
+ * "cs" and "sr", are needed to interpret a span, so they are never dropped.
+ *
+ * <p>When a span is within limits, {@link #apply(zipkin.Span)} returns it as-is without
+ * allocating. Use {@link Brave.Builder#spanLimits(SpanLimits)} to apply to all spans reported.
+ */
+public final class SpanLimits {
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static final class Builder {
+        int maxValueLength = Integer.MAX_VALUE;
+        Set<String> dropTagKeys;
+        Set<String> allowTagKeys;
+        int maxAnnotations = Integer.MAX_VALUE;
+        int maxSpanBytes = Integer.MAX_VALUE;
+        Encoding sizeEncoding = Encoding.JSON;
+
+        Builder() {
+        }
+
+        /**
+         * Truncates tag values longer than this count of UTF-8 bytes, and annotation values longer
+         * than this count of characters. Multi-byte characters are never split.
+         */
+        public Builder maxValueLength(int maxValueLength) {
+            if (maxValueLength <= 0) throw new IllegalArgumentException("maxValueLength <= 0");
+            this.maxValueLength = maxValueLength;
+            return this;
+        }
+
+        /** Drops tags with these keys. Can't be combined with {@link #allowTagKeys}. */
+        public Builder dropTagKeys(String... keys) {
+            if (allowTagKeys != null) throw new IllegalArgumentException("allowTagKeys already set");
+            dropTagKeys = new HashSet<String>(Arrays.asList(keys));
+            return this;
+        }
+
+        /** Drops tags unless their key is one of these. Can't be combined with {@link #dropTagKeys}. */
+        public Builder allowTagKeys(String... keys) {
+            if (dropTagKeys != null) throw new IllegalArgumentException("dropTagKeys already set");
+            allowTagKeys = new HashSet<String>(Arrays.asList(keys));
+            return this;
+        }
+
+        /** Maximum count of annotations, excluding core annotations. Later ones are dropped. */
+        public Builder maxAnnotations(int maxAnnotations) {
+            if (maxAnnotations < 0) throw new IllegalArgumentException("maxAnnotations < 0");
+            this.maxAnnotations = maxAnnotations;
+            return this;
+        }
+
+        /**
+         * Maximum size of a span in the given encoding. As it would cost an extra pass over each
+         * span, this is unlimited by default.
+         */
+        public Builder maxSpanBytes(int maxSpanBytes, Encoding encoding) {
+            if (maxSpanBytes <= 0) throw new IllegalArgumentException("maxSpanBytes <= 0");
+            this.maxSpanBytes = maxSpanBytes;
+            this.sizeEncoding = checkNotNull(encoding, "encoding");
+            return this;
+        }
+
+        public SpanLimits build() {
+            return new SpanLimits(this);
+        }
+    }
+
+    /** Orders tags largest value first, so they are dropped first when a span is too large. */
+    static final Comparator<BinaryAnnotation> LARGEST_FIRST = new Comparator<BinaryAnnotation>() {
+        @Override public int compare(BinaryAnnotation left, BinaryAnnotation right) {
+            int l = left.value.length, r = right.value.length;
+            return l > r ? -1 : l == r ? 0 : 1;
+        }
+    };
+
+    final int maxValueLength;
+    final Set<String> dropTagKeys; // nullable
+    final Set<String> allowTagKeys; // nullable
+    final int maxAnnotations;
+    final int maxSpanBytes;
+    final Codec sizeCodec;
+
+    final AtomicLong modifiedSpans = new AtomicLong();
+    final AtomicLong droppedTags = new AtomicLong();
+    final AtomicLong droppedAnnotations = new AtomicLong();
+    final AtomicLong truncatedValues = new AtomicLong();
+
+    SpanLimits(Builder builder) {
+        this.maxValueLength = builder.maxValueLength;
+        this.dropTagKeys = builder.dropTagKeys;
+        this.allowTagKeys = builder.allowTagKeys;
+        this.maxAnnotations = builder.maxAnnotations;
+        this.maxSpanBytes = builder.maxSpanBytes;
+        this.sizeCodec = builder.sizeEncoding == Encoding.JSON ? Codec.JSON : Codec.THRIFT;
+    }
+
+    /** Returns a reporter which applies these limits before passing spans to the delegate. */
+    public Reporter<zipkin.Span> decorate(final Reporter<zipkin.Span> delegate) {
+        checkNotNull(delegate, "delegate");
+        return new Reporter<zipkin.Span>() {
+            @Override public void report(zipkin.Span span) {
+                delegate.report(apply(span));
+            }
+
+            @Override public String toString() {
+                return "SpanLimits(" + delegate + ")";
+            }
+        };
+    }
+
+    /** Returns the input if it is within limits, otherwise a copy that is. */
+    public zipkin.Span apply(zipkin.Span span) {
+        List<Annotation> annotations = span.annotations;
+        List<BinaryAnnotation> binaryAnnotations = span.binaryAnnotations;
+        boolean changed = false;
+        if (!annotationsWithinLimits(annotations)) {
+            annotations = limitAnnotations(annotations);
+            changed = true;
+        }
+        if (!binaryAnnotationsWithinLimits(binaryAnnotations)) {
+            binaryAnnotations = limitBinaryAnnotations(binaryAnnotations);
+            changed = true;
+        }
+        if (changed) {
+            span = span.toBuilder()
+                .annotations(annotations)
+                .binaryAnnotations(binaryAnnotations)
+                .build();
+        }
+        if (maxSpanBytes != Integer.MAX_VALUE && sizeCodec.sizeInBytes(span) > maxSpanBytes) {
+            span = shrink(span);
+            changed = true;
+        }
+        if (changed) modifiedSpans.incrementAndGet();
+        return span;
+    }
+
+    boolean annotationsWithinLimits(List<Annotation> annotations) {
+        int count = 0;
+        for (int i = 0, length = annotations.size(); i < length; i++) {
+            Annotation a = annotations.get(i);
+            if (a.value.length() > maxValueLength) return false;
+            if (!isCore(a) && ++count > maxAnnotations) return false;
+        }
+        return true;
+    }
+
+    List<Annotation> limitAnnotations(List<Annotation> annotations) {
+        List<Annotation> result = new ArrayList<Annotation>(annotations.size());
+        int count = 0;
+        for (int i = 0, length = annotations.size(); i < length; i++) {
+            Annotation a = annotations.get(i);
+            if (!isCore(a) && ++count > maxAnnotations) {
+                droppedAnnotations.incrementAndGet();
+                continue;
+            }
+            if (a.value.length() > maxValueLength) {
+                truncatedValues.incrementAndGet();
+                a = a.toBuilder().value(truncate(a.value, maxValueLength)).build();
+            }
+            result.add(a);
+        }
+        return result;
+    }
+
+    boolean binaryAnnotationsWithinLimits(List<BinaryAnnotation> binaryAnnotations) {
+        for (int i = 0, length = binaryAnnotations.size(); i < length; i++) {
+            BinaryAnnotation b = binaryAnnotations.get(i);
+            if (!keep(b)) return false;
+            if (b.type == BinaryAnnotation.Type.STRING && b.value.length > maxValueLength) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    List<BinaryAnnotation> limitBinaryAnnotations(List<BinaryAnnotation> binaryAnnotations) {
+        List<BinaryAnnotation> result = new ArrayList<BinaryAnnotation>(binaryAnnotations.size());
+        for (int i = 0, length = binaryAnnotations.size(); i < length; i++) {
+            BinaryAnnotation b = binaryAnnotations.get(i);
+            if (!keep(b)) {
+                droppedTags.incrementAndGet();
+                continue;
+            }
+            if (b.type == BinaryAnnotation.Type.STRING && b.value.length > maxValueLength) {
+                truncatedValues.incrementAndGet();
+                b = b.toBuilder().value(truncateUtf8(b.value, maxValueLength)).build();
+            }
+            result.add(b);
+        }
+        return result;
+    }
+
+    boolean keep(BinaryAnnotation b) {
+        if (isStructural(b)) return true;
+        if (dropTagKeys != null) return !dropTagKeys.contains(b.key);
+        if (allowTagKeys != null) return allowTagKeys.contains(b.key);
+        return true;
+    }
+
+    /** Drops the largest tags, then the latest annotations, until the span fits. */
+    zipkin.Span shrink(zipkin.Span span) {
+        List<BinaryAnnotation> tags = new ArrayList<BinaryAnnotation>(span.binaryAnnotations);
+        List<BinaryAnnotation> droppable = new ArrayList<BinaryAnnotation>();
+        for (BinaryAnnotation b : tags) {
+            if (!isStructural(b)) droppable.add(b);
+        }
+        Collections.sort(droppable, LARGEST_FIRST);
+        for (BinaryAnnotation b : droppable) {
+            tags.remove(b);
+            droppedTags.incrementAndGet();
+            span = span.toBuilder().binaryAnnotations(tags).build();
+            if (sizeCodec.sizeInBytes(span) <= maxSpanBytes) return span;
+        }
+        List<Annotation> annotations = new ArrayList<Annotation>(span.annotations);
+        for (int i = annotations.size() - 1; i >= 0; i--) {
+            if (isCore(annotations.get(i))) continue;
+            annotations.remove(i);
+            droppedAnnotations.incrementAndGet();
+            span = span.toBuilder().annotations(annotations).build();
+            if (sizeCodec.sizeInBytes(span) <= maxSpanBytes) return span;
+        }
+        return span; // only data needed to interpret the span is left
+    }
+
+    static boolean isCore(Annotation a) {
+        return Constants.CORE_ANNOTATIONS.contains(a.value);
+    }
+
+    static boolean isStructural(BinaryAnnotation b) {
+        return b.key.equals(Constants.LOCAL_COMPONENT)
+            || (b.type == BinaryAnnotation.Type.BOOL
+            && (b.key.equals(Constants.CLIENT_ADDR) || b.key.equals(Constants.SERVER_ADDR)));
+    }
+
+    /** Truncates without splitting a surrogate pair. */
+    static String truncate(String value, int length) {
+        if (Character.isHighSurrogate(value.charAt(length - 1))) length--;
+        return value.substring(0, length);
+    }
+
+    /** Truncates without splitting a multi-byte character. */
+    static byte[] truncateUtf8(byte[] value, int length) {
+        // back up over continuation bytes (10xxxxxx) to the start of the cut character
+        while (length > 0 && (value[length] & 0xc0) == 0x80) length--;
+        return Arrays.copyOf(value, length);
+    }
+
+    /** Count of spans changed to fit limits. */
+    public long modifiedSpans() {
+        return modifiedSpans.get();
+    }
+
+    /** Count of tags dropped by key or to fit the span size. */
+    public long droppedTags() {
+        return droppedTags.get();
+    }
+
+    /** Count of annotations dropped over budget or to fit the span size. */
+    public long droppedAnnotations() {
+        return droppedAnnotations.get();
+    }
+
+    /** Count of tag or annotation values truncated. */
+    public long truncatedValues() {
+        return truncatedValues.get();
+    }
+
+    @Override
+    public String toString() {
+        return "SpanLimits(maxValueLength=" + maxValueLength
+            + ", dropTagKeys=" + dropTagKeys
+            + ", allowTagKeys=" + allowTagKeys
+            + ", maxAnnotations=" + maxAnnotations
+            + ", maxSpanBytes=" + maxSpanBytes + ")";
+    }
+}
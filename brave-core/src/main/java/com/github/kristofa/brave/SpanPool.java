@@ -0,0 +1,161 @@
+package com.github.kristofa.brave;
+
+import com.github.kristofa.brave.internal.InternalSpan;
+import com.twitter.zipkin.gen.Span;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Recycles {@link Span} objects, and the annotation lists they hold, after they are reported.
+ *
+ * <p>Tracers report a copy of each span, made by {@link Span#toZipkin()}, so once a span is
+ * finished the tracer owns the only reference it knows about. With a pool configured via {@link
+ * Brave.Builder#spanPool(SpanPool)}, the tracer returns the span to a pool local to the thread
+ * that finished it, and the next span started on that thread reuses it:
+ *
+ * <pre>{@code
+ * brave = new Brave.Builder("my-service").reporter(reporter).spanPool(SpanPool.create()).build();
+ * }</pre>
+ *
+ * <h3>Ownership</h3>
+ * A span belongs to the tracer from when it is started until it is finished, for example by
+ * {@link ServerTracer#setServerSend()}. After that, it may already describe a different request.
+ * Only enable pooling when no code keeps a span, or its annotation lists, after it finishes:
+ * <ul>
+ *     <li>Don't hold spans from {@link ServerSpanThreadBinder}, {@link ClientSpanThreadBinder} or
+ *     {@link LocalSpanThreadBinder} beyond the request that started them.</li>
+ *     <li>Don't keep lists returned by {@link Span#getAnnotations()} or {@link
+ *     Span#getBinary_annotations()}, as they are cleared and reused with the span.</li>
+ * </ul>
+ *
+ * <p>Misuse corrupts other traces rather than failing, so test with {@link
+ * Builder#detectUseAfterRelease(boolean)} enabled. Objects other than spans, such as {@link
+ * SpanId} and annotations, are immutable and aren't pooled.
+ */
+public final class SpanPool {
+
+    public static SpanPool create() {
+        return builder().build();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static final class Builder {
+        int maxPerThread = 32;
+        boolean detectUseAfterRelease = false;
+
+        Builder() {
+        }
+
+        /**
+         * Maximum count of idle spans kept for each thread. Spans released when the pool is full
+         * are left to the garbage collector. Default 32.
+         */
+        public Builder maxPerThread(int maxPerThread) {
+            if (maxPerThread <= 0) throw new IllegalArgumentException("maxPerThread must be positive");
+            this.maxPerThread = maxPerThread;
+            return this;
+        }
+
+        /**
+         * When true, spans released twice, or modified while in the pool, raise an {@link
+         * IllegalStateException} whose cause shows where the span was released. This is expensive,
+         * so is meant for tests. Default false.
+         */
+        public Builder detectUseAfterRelease(boolean detectUseAfterRelease) {
+            this.detectUseAfterRelease = detectUseAfterRelease;
+            return this;
+        }
+
+        public SpanPool build() {
+            return new SpanPool(this);
+        }
+    }
+
+    final int maxPerThread;
+    final boolean detectUseAfterRelease;
+    /** Spans in any thread's pool, to where they were released. Only used in debug mode. */
+    final Map<Span, Released> released;
+
+    final ThreadLocal<Pool> pools = new ThreadLocal<Pool>() {
+        @Override protected Pool initialValue() {
+            return new Pool(maxPerThread);
+        }
+    };
+
+    SpanPool(Builder builder) {
+        this.maxPerThread = builder.maxPerThread;
+        this.detectUseAfterRelease = builder.detectUseAfterRelease;
+        this.released = detectUseAfterRelease ? new IdentityHashMap<Span, Released>() : null;
+    }
+
+    /** Returns a span for the given ids, reusing one released on this thread when possible. */
+    Span acquire(SpanId spanId) {
+        Pool pool = pools.get();
+        if (pool.size == 0) return spanId.toSpan();
+        Span span;
+        if (detectUseAfterRelease) {
+            // take the oldest, so that writes after release have the longest time to be noticed
+            span = pool.spans[0];
+            System.arraycopy(pool.spans, 1, pool.spans, 0, --pool.size);
+            Released release;
+            synchronized (released) {
+                release = released.remove(span);
+            }
+            if (release != null && release.hashCode != span.hashCode()) {
+                throw new IllegalStateException("span modified after it was released: " + span,
+                    release.stackTrace);
+            }
+        } else {
+            span = pool.spans[--pool.size];
+        }
+        pool.spans[pool.size] = null;
+        return spanId.toSpan(InternalSpan.instance.clear(span));
+    }
+
+    /** Returns a finished span to this thread's pool. The caller must not use it afterwards. */
+    void release(Span span) {
+        if (detectUseAfterRelease) {
+            synchronized (released) {
+                Released previous = released.get(span);
+                if (previous != null) {
+                    throw new IllegalStateException("span released twice: " + span,
+                        previous.stackTrace);
+                }
+            }
+        }
+        Pool pool = pools.get();
+        if (pool.size == pool.spans.length) return;
+        if (detectUseAfterRelease) {
+            synchronized (released) {
+                released.put(span, new Released(span.hashCode()));
+            }
+        }
+        pool.spans[pool.size++] = span;
+    }
+
+    /** Count of idle spans in the current thread's pool. */
+    int idleOnCurrentThread() {
+        return pools.get().size;
+    }
+
+    static final class Pool {
+        final Span[] spans;
+        int size;
+
+        Pool(int maxSize) {
+            this.spans = new Span[maxSize];
+        }
+    }
+
+    static final class Released {
+        final int hashCode;
+        final Throwable stackTrace = new Throwable("released here");
+
+        Released(int hashCode) {
+            this.hashCode = hashCode;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.github.kristofa.brave;
+
+import com.github.kristofa.brave.internal.Nullable;
+import com.twitter.zipkin.gen.Span;
+import java.util.concurrent.Callable;
+
+import static com.github.kristofa.brave.internal.Util.checkNotNull;
+
+/**
+ * The server, local and client spans current on a thread, captured together so that a task run on
+ * another thread continues the same trace.
+ * <p/>
+ * Unlike {@link BraveRunnable} and {@link BraveCallable}, which only carry the server span, tasks
+ * wrapped by a snapshot see the same local and client spans as the thread that submitted them. When
+ * the task completes, the spans that were current on the executing thread before it are restored,
+ * so pooled threads don't keep spans from earlier tasks.
+ *
+ * <pre>{@code
+ * executor.execute(SpanStateSnapshot.capture(brave).wrap(task));
+ * }</pre>
+ *
+ * @see BraveExecutorService
+ * @see BraveScheduledExecutorService
+ */
+public final class SpanStateSnapshot {
+
+    /** Captures the spans current on this thread in the state used by the given brave instance. */
+    public static SpanStateSnapshot capture(Brave brave) {
+        return capture(checkNotNull(brave, "brave").state);
+    }
+
+    /** Captures the spans current on this thread in the given state. */
+    public static SpanStateSnapshot capture(ServerClientAndLocalSpanState state) {
+        checkNotNull(state, "state");
+        return new SpanStateSnapshot(state, state.getCurrentServerSpan(), state.getCurrentLocalSpan(),
+            state.getCurrentClientSpan());
+    }
+
+    private final ServerClientAndLocalSpanState state;
+    @Nullable
+    private final ServerSpan serverSpan;
+    @Nullable
+    private final Span localSpan;
+    @Nullable
+    private final Span clientSpan;
+
+    SpanStateSnapshot(ServerClientAndLocalSpanState state, @Nullable ServerSpan serverSpan,
+        @Nullable Span localSpan, @Nullable Span clientSpan) {
+        this.state = state;
+        this.serverSpan = serverSpan;
+        this.localSpan = localSpan;
+        this.clientSpan = clientSpan;
+    }
+
+    @Nullable
+    public ServerSpan serverSpan() {
+        return serverSpan;
+    }
+
+    @Nullable
+    public Span localSpan() {
+        return localSpan;
+    }
+
+    @Nullable
+    public Span clientSpan() {
+        return clientSpan;
+    }
+
+    /** Returns a runnable that runs the task with these spans current. */
+    public Runnable wrap(Runnable task) {
+        return new SnapshotRunnable(this, checkNotNull(task, "task"));
+    }
+
+    /** Returns a callable that calls the task with these spans current. */
+    public <T> Callable<T> wrap(Callable<T> task) {
+        return new SnapshotCallable<T>(this, checkNotNull(task, "task"));
+    }
+
+    @Override
+    public String toString() {
+        return "SpanStateSnapshot{serverSpan=" + serverSpan + ", localSpan=" + localSpan
+            + ", clientSpan=" + clientSpan + "}";
+    }
+
+    static final class SnapshotRunnable implements Runnable {
+        final SpanStateSnapshot snapshot;
+        final Runnable delegate;
+
+        SnapshotRunnable(SpanStateSnapshot snapshot, Runnable delegate) {
+            this.snapshot = snapshot;
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void run() {
+            ServerClientAndLocalSpanState state = snapshot.state;
+            ServerSpan previousServerSpan = state.getCurrentServerSpan();
+            Span previousLocalSpan = state.getCurrentLocalSpan();
+            Span previousClientSpan = state.getCurrentClientSpan();
+            boolean localSpanChanged = snapshot.enter(previousLocalSpan);
+            try {
+                delegate.run();
+            } finally {
+                snapshot.exit(previousServerSpan, previousLocalSpan, previousClientSpan,
+                    localSpanChanged);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return delegate.toString();
+        }
+    }
+
+    static final class SnapshotCallable<T> implements Callable<T> {
+        final SpanStateSnapshot snapshot;
+        final Callable<T> delegate;
+
+        SnapshotCallable(SpanStateSnapshot snapshot, Callable<T> delegate) {
+            this.snapshot = snapshot;
+            this.delegate = delegate;
+        }
+
+        @Override
+        public T call() throws Exception {
+            ServerClientAndLocalSpanState state = snapshot.state;
+            ServerSpan previousServerSpan = state.getCurrentServerSpan();
+            Span previousLocalSpan = state.getCurrentLocalSpan();
+            Span previousClientSpan = state.getCurrentClientSpan();
+            boolean localSpanChanged = snapshot.enter(previousLocalSpan);
+            try {
+                return delegate.call();
+            } finally {
+                snapshot.exit(previousServerSpan, previousLocalSpan, previousClientSpan,
+                    localSpanChanged);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return delegate.toString();
+        }
+    }
+
+    /** Makes these spans current, returning true if the local span was changed. */
+    boolean enter(@Nullable Span previousLocalSpan) {
+        state.setCurrentServerSpan(serverSpan);
+        state.setCurrentClientSpan(clientSpan);
+        if (localSpan == previousLocalSpan) return false;
+        // Depending on the state, this replaces the local span or pushes it on a stack. Null clears
+        // or pops.
+        state.setCurrentLocalSpan(localSpan);
+        return true;
+    }
+
+    /** Restores the spans that were current before {@link #enter}. */
+    void exit(@Nullable ServerSpan previousServerSpan, @Nullable Span previousLocalSpan,
+        @Nullable Span previousClientSpan, boolean localSpanChanged) {
+        state.setCurrentServerSpan(previousServerSpan);
+        state.setCurrentClientSpan(previousClientSpan);
+        if (!localSpanChanged) return;
+        if (localSpan != null) state.setCurrentLocalSpan(null); // undo what enter did
+        // a stack now has the previous span on top. Otherwise, it needs to be set again.
+        if (previousLocalSpan != null && state.getCurrentLocalSpan() != previousLocalSpan) {
+            state.setCurrentLocalSpan(previousLocalSpan);
+        }
+    }
+}
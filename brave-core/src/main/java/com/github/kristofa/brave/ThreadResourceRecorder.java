@@ -0,0 +1,234 @@
+package com.github.kristofa.brave;
+
+import com.github.kristofa.brave.OverheadMonitor.AllocationCounter;
+import com.github.kristofa.brave.internal.InternalSpan;
+import com.twitter.zipkin.gen.BinaryAnnotation;
+import com.twitter.zipkin.gen.Endpoint;
+import com.twitter.zipkin.gen.Span;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Tags server and local spans with what their thread consumed between start and finish: CPU time,
+ * bytes allocated, and time spent blocked on monitors or waiting. Comparing these with the span's
+ * duration tells whether an endpoint is slow because it computes, allocates or waits.
+ *
+ * <pre>{@code
+ * recorder = ThreadResourceRecorder.builder().sampleEvery(10).build();
+ * brave = new Brave.Builder("my-service").reporter(reporter).threadResourceRecorder(recorder).build();
+ * }</pre>
+ *
+ * <p>Counters are read from {@link ThreadMXBean}, and allocation from {@code
+ * com.sun.management.ThreadMXBean}, when the JVM has it. Values a JVM doesn't support aren't
+ * tagged. Blocked and waited time also need thread contention monitoring, which is off unless
+ * {@link Builder#contentionMonitoring(boolean) enabled}. Reading counters costs a few
+ * microseconds, so only one in {@link Builder#sampleEvery(int) N} sampled server spans, and one
+ * in N local spans, is measured.
+ *
+ * <p>Only spans finished on the thread that started them are tagged: counters of one thread say
+ * nothing about work done on another. Client spans and {@link SpanHandle}s aren't measured, as
+ * their thread mostly waits for the remote side.
+ */
+public final class ThreadResourceRecorder {
+
+    /** Tag holding the CPU time the span's thread used, in microseconds. */
+    public static final String CPU_TIME = "brave.cpu_time_us";
+
+    /** Tag holding the bytes the span's thread allocated. */
+    public static final String ALLOCATED_BYTES = "brave.allocated_bytes";
+
+    /** Tag holding the time the span's thread was blocked entering a monitor, in milliseconds. */
+    public static final String BLOCKED_TIME = "brave.blocked_time_ms";
+
+    /**
+     * Tag holding the time the span's thread waited in {@link Object#wait()}, {@link
+     * Thread#sleep(long)} or a {@link java.util.concurrent.locks.LockSupport#park() park}, such as
+     * for a lock or a pooled connection, in milliseconds.
+     */
+    public static final String WAITED_TIME = "brave.waited_time_ms";
+
+    private static final Logger LOGGER = Logger.getLogger(ThreadResourceRecorder.class.getName());
+
+    public static ThreadResourceRecorder create() {
+        return builder().build();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static final class Builder {
+        int sampleEvery = 1;
+        boolean contentionMonitoring = false;
+
+        Builder() {
+        }
+
+        /**
+         * Measures one in this many sampled spans of each kind, server or local. 1 measures every
+         * sampled span. Default 1.
+         */
+        public Builder sampleEvery(int sampleEvery) {
+            if (sampleEvery <= 0) throw new IllegalArgumentException("sampleEvery must be positive");
+            this.sampleEvery = sampleEvery;
+            return this;
+        }
+
+        /**
+         * When true, thread contention monitoring is enabled when this recorder is built, so that
+         * {@link #BLOCKED_TIME} and {@link #WAITED_TIME} are tagged. They aren't otherwise, unless
+         * something else enabled it. Contention monitoring applies to the whole JVM, adding cost to
+         * every contended lock, and stays enabled. Default false.
+         */
+        public Builder contentionMonitoring(boolean contentionMonitoring) {
+            this.contentionMonitoring = contentionMonitoring;
+            return this;
+        }
+
+        public ThreadResourceRecorder build() {
+            return new ThreadResourceRecorder(this, ManagementFactory.getThreadMXBean(),
+                AllocationCounter.create());
+        }
+    }
+
+    /** Spans measured, each counted separately. */
+    enum Kind {
+        SERVER,
+        LOCAL
+    }
+
+    /** Counters of the thread that started a span, read when it started. */
+    static final class Snapshot {
+        final Thread thread;
+        final long cpuNanos;
+        final long allocatedBytes;
+        final long blockedMillis;
+        final long waitedMillis;
+
+        Snapshot(Thread thread, long cpuNanos, long allocatedBytes, long blockedMillis,
+            long waitedMillis) {
+            this.thread = thread;
+            this.cpuNanos = cpuNanos;
+            this.allocatedBytes = allocatedBytes;
+            this.blockedMillis = blockedMillis;
+            this.waitedMillis = waitedMillis;
+        }
+    }
+
+    final int sampleEvery;
+    final ThreadMXBean threadBean;
+    final AllocationCounter allocationCounter;
+    final boolean cpuTime;
+    final boolean contention;
+    /** Spans of each kind started on the current thread since one was last measured. */
+    final ThreadLocal<int[]> spans = new ThreadLocal<int[]>();
+    final Random random = new Random();
+
+    ThreadResourceRecorder(Builder builder, ThreadMXBean threadBean,
+        AllocationCounter allocationCounter) {
+        this.sampleEvery = builder.sampleEvery;
+        this.threadBean = threadBean;
+        this.allocationCounter = allocationCounter;
+        this.cpuTime = threadBean.isCurrentThreadCpuTimeSupported();
+        this.contention = builder.contentionMonitoring && enableContentionMonitoring(threadBean);
+    }
+
+    /** Reads the current thread's counters into the span, if it is one of those measured. */
+    void start(Span span, Kind kind) {
+        if (!sample(kind)) return;
+        Thread thread = Thread.currentThread();
+        long blockedMillis = -1L;
+        long waitedMillis = -1L;
+        if (contention) {
+            ThreadInfo info = threadBean.getThreadInfo(thread.getId());
+            if (info != null) {
+                blockedMillis = info.getBlockedTime();
+                waitedMillis = info.getWaitedTime();
+            }
+        }
+        InternalSpan.instance.threadResources(span, new Snapshot(thread,
+            cpuTime ? threadBean.getCurrentThreadCpuTime() : -1L,
+            allocationCounter.allocatedBytes(),
+            blockedMillis,
+            waitedMillis));
+    }
+
+    /**
+     * Counts per thread and per kind, starting at a random offset, so that neither threads nor a
+     * fixed sequence of server and local spans skew which are measured.
+     */
+    private boolean sample(Kind kind) {
+        if (sampleEvery == 1) return true;
+        int[] counts = spans.get();
+        if (counts == null) {
+            counts = new int[Kind.values().length];
+            for (int i = 0; i < counts.length; i++) counts[i] = random.nextInt(sampleEvery);
+            spans.set(counts);
+        }
+        int i = kind.ordinal();
+        if (++counts[i] < sampleEvery) return false;
+        counts[i] = 0;
+        return true;
+    }
+
+    /** Drops what {@link #start(Span, Kind)} read, for a span which won't be reported. */
+    static void discard(Span span) {
+        InternalSpan.instance.threadResources(span, null);
+    }
+
+    /**
+     * Tags the span with what the current thread consumed since {@link #start(Span, Kind)}, unless it
+     * wasn't measured or started on another thread. Call this before the span is reported.
+     */
+    void finish(Span span, Endpoint endpoint) {
+        Object started = InternalSpan.instance.threadResources(span);
+        if (started == null) return;
+        InternalSpan.instance.threadResources(span, null);
+        Snapshot start = (Snapshot) started;
+        Thread thread = Thread.currentThread();
+        if (start.thread != thread) return;
+
+        long cpuNanos = start.cpuNanos != -1L ? threadBean.getCurrentThreadCpuTime() : -1L;
+        long allocatedBytes = start.allocatedBytes != -1L ? allocationCounter.allocatedBytes() : -1L;
+        ThreadInfo info = start.blockedMillis != -1L ? threadBean.getThreadInfo(thread.getId()) : null;
+        synchronized (span) {
+            if (cpuNanos != -1L) {
+                tag(span, CPU_TIME, (cpuNanos - start.cpuNanos) / 1000L, endpoint);
+            }
+            if (allocatedBytes != -1L) {
+                long bytes = allocatedBytes - start.allocatedBytes - allocationCounter.overhead;
+                tag(span, ALLOCATED_BYTES, bytes, endpoint);
+            }
+            if (info != null && info.getBlockedTime() != -1L) {
+                tag(span, BLOCKED_TIME, info.getBlockedTime() - start.blockedMillis, endpoint);
+                tag(span, WAITED_TIME, info.getWaitedTime() - start.waitedMillis, endpoint);
+            }
+        }
+    }
+
+    private static void tag(Span span, String key, long value, Endpoint endpoint) {
+        span.addToBinary_annotations(
+            BinaryAnnotation.create(key, String.valueOf(Math.max(0L, value)), endpoint));
+    }
+
+    private static boolean enableContentionMonitoring(ThreadMXBean threadBean) {
+        if (!threadBean.isThreadContentionMonitoringSupported()) return false;
+        if (threadBean.isThreadContentionMonitoringEnabled()) return true;
+        try {
+            threadBean.setThreadContentionMonitoringEnabled(true);
+            return true;
+        } catch (SecurityException e) {
+            LOGGER.log(Level.FINE, "Can't enable thread contention monitoring", e);
+            return false;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ThreadResourceRecorder(sampleEvery=" + sampleEvery + ")";
+    }
+}
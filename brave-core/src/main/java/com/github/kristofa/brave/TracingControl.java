@@ -0,0 +1,91 @@
+package com.github.kristofa.brave;
+
+import com.github.kristofa.brave.internal.Nullable;
+import java.util.Locale;
+import java.util.logging.Logger;
+
+import static com.github.kristofa.brave.internal.Util.checkNotNull;
+
+/**
+ * Switches how much work the interceptors do, at runtime. The level is read once at the top of
+ * each interceptor call, so changing it costs nothing and needs no restart:
+ *
+ * <pre>{@code
+ * control = new TracingControl();
+ * brave = new Brave.Builder("my-service").tracingControl(control).build();
+ * ManagementFactory.getPlatformMBeanServer().registerMBean(control, TracingControl.OBJECT_NAME);
+ * }</pre>
+ *
+ * <p>Unlike {@link Sampler#NEVER_SAMPLE}, lower levels skip parsing trace headers and touching
+ * span state. Spans in flight when the level is lowered are abandoned, not reported, though the
+ * interceptors still unbind them from their thread. Only the interceptors are affected: code using
+ * the tracers directly records as usual.
+ */
+public final class TracingControl implements TracingControlMBean {
+
+    /** Suggested name when registering this with an MBean server. */
+    public static final String OBJECT_NAME = "com.github.kristofa.brave:type=TracingControl";
+
+    public enum Level {
+        /**
+         * Interceptors only clear the thread's span state: nothing is read from or added to
+         * requests.
+         */
+        OFF,
+        /**
+         * Trace headers received are forwarded on outgoing requests, as a child of the incoming
+         * span, but nothing is recorded or reported. Downstream services can still trace.
+         */
+        PROPAGATE_ONLY,
+        /** Spans are recorded and reported. This is the default. */
+        FULL
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(TracingControl.class.getName());
+
+    private volatile Level level;
+
+    /** Starts at {@link Level#FULL}. */
+    public TracingControl() {
+        this(Level.FULL);
+    }
+
+    public TracingControl(Level level) {
+        this.level = checkNotNull(level, "level");
+    }
+
+    public Level level() {
+        return level;
+    }
+
+    public void level(Level level) {
+        checkNotNull(level, "level");
+        if (this.level != level) LOGGER.info("Changing tracing level to " + level);
+        this.level = level;
+    }
+
+    /** Returns {@link Level#FULL} when there's no control, such as for interceptors built directly. */
+    static Level level(@Nullable TracingControl control) {
+        return control != null ? control.level : Level.FULL;
+    }
+
+    @Override
+    public String getLevel() {
+        return level.name();
+    }
+
+    @Override
+    public void setLevel(String level) {
+        checkNotNull(level, "level");
+        try {
+            level(Level.valueOf(level.trim().toUpperCase(Locale.ROOT)));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("level should be OFF, PROPAGATE_ONLY or FULL, was " + level);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "TracingControl(" + level + ")";
+    }
+}
@@ -0,0 +1,19 @@
+package com.github.kristofa.brave;
+
+/**
+ * JMX view of a {@link TracingControl}.
+ */
+public interface TracingControlMBean {
+
+    /**
+     * @return the current level: OFF, PROPAGATE_ONLY or FULL.
+     */
+    String getLevel();
+
+    /**
+     * Changes the level of requests that start after this call.
+     *
+     * @param level OFF, PROPAGATE_ONLY or FULL, case insensitive.
+     */
+    void setLevel(String level);
+}
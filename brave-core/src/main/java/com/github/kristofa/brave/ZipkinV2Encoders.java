@@ -0,0 +1,67 @@
+package com.github.kristofa.brave;
+
+import com.github.kristofa.brave.internal.V2SpanCodec;
+import java.util.List;
+import zipkin.reporter.Encoder;
+import zipkin.reporter.Encoding;
+import zipkin.reporter.Reporter;
+
+import static com.github.kristofa.brave.internal.Util.checkNotNull;
+
+/**
+ * Encoders for the Zipkin v2 span model, for use with {@link zipkin.reporter.AsyncReporter} or
+ * {@link FileSpoolReporter}. In v2, a span has one local endpoint instead of one per annotation,
+ * and tags are a flat map, which makes encoded spans considerably smaller than v1.
+ *
+ * <p>Spans encoded this way must be sent to an endpoint which accepts v2, such as
+ * {@code POST /api/v2/spans}.
+ *
+ * @see com.twitter.zipkin.gen.SpanCodec#JSON_V2
+ * @see com.twitter.zipkin.gen.SpanCodec#PROTO3
+ */
+public final class ZipkinV2Encoders {
+
+  /**
+   * Encodes a span as one v2 json object. Lists of these are framed the same as v1 json.
+   *
+   * <p>A span which has both client and server annotations is two spans in v2, so can't be encoded
+   * as one message: encoding throws {@link IllegalArgumentException}. Brave's tracers report each
+   * side separately, so only spans reported from elsewhere need {@link #splitSharedSpans(Reporter)}.
+   */
+  public static final Encoder<zipkin.Span> JSON = new Encoder<zipkin.Span>() {
+    @Override public Encoding encoding() {
+      return Encoding.JSON;
+    }
+
+    @Override public byte[] encode(zipkin.Span span) {
+      return V2SpanCodec.writeJson(span);
+    }
+
+    @Override public String toString() {
+      return "JSON_V2";
+    }
+  };
+
+  /**
+   * Returns a reporter which reports each side of a span with both client and server annotations
+   * separately, so that every span passed to the delegate is encoded as one v2 span.
+   */
+  public static Reporter<zipkin.Span> splitSharedSpans(final Reporter<zipkin.Span> delegate) {
+    checkNotNull(delegate, "delegate");
+    return new Reporter<zipkin.Span>() {
+      @Override public void report(zipkin.Span span) {
+        List<zipkin.Span> sides = V2SpanCodec.splitShared(span);
+        for (int i = 0, length = sides.size(); i < length; i++) {
+          delegate.report(sides.get(i));
+        }
+      }
+
+      @Override public String toString() {
+        return "SplitSharedSpans(" + delegate + ")";
+      }
+    };
+  }
+
+  private ZipkinV2Encoders() {
+  }
+}
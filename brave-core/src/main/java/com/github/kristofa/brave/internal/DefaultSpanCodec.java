@@ -36,7 +36,10 @@ public final class DefaultSpanCodec implements SpanCodec {
 
   @Override
   public Span readSpan(byte[] bytes) {
-    zipkin.Span in = codec.readSpan(bytes);
+    return fromZipkin(codec.readSpan(bytes));
+  }
+
+  static Span fromZipkin(zipkin.Span in) {
     Span result = new Span();
     result.setTrace_id_high(in.traceIdHigh);
     result.setTrace_id(in.traceId);
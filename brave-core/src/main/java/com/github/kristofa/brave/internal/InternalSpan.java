@@ -0,0 +1,41 @@
+package com.github.kristofa.brave.internal;
+
+import com.twitter.zipkin.gen.Span;
+
+/**
+ * Gives brave access to package-private state of {@link Span}, which isn't part of its api: the
+ * clock anchor, where the span is registered while in flight, and what is measured while it runs.
+ */
+public abstract class InternalSpan {
+
+  /** Set by {@link Span} when it is initialized. */
+  public static InternalSpan instance;
+
+  /**
+   * Sets the clock reading timestamps in the span's trace derive from: epoch microseconds and the
+   * {@link System#nanoTime()} read with them.
+   */
+  public abstract void setClockAnchor(Span span, long epochMicros, long tick);
+
+  /** Copies the clock anchor of a span in the same trace, returning false if it has none. */
+  public abstract boolean inheritClockAnchor(Span span, Span parent);
+
+  public abstract boolean hasClockAnchor(Span span);
+
+  /**
+   * Returns the epoch microseconds at the {@link System#nanoTime()} value {@code tick}, relative to
+   * the clock anchor. Results never decrease as the tick increases.
+   */
+  public abstract long anchoredTimeMicroseconds(Span span, long tick);
+
+  @Nullable public abstract Object inFlight(Span span);
+
+  public abstract void inFlight(Span span, @Nullable Object inFlight);
+
+  @Nullable public abstract Object threadResources(Span span);
+
+  public abstract void threadResources(Span span, @Nullable Object threadResources);
+
+  /** Resets the span for reuse, as if it were newly constructed. */
+  public abstract Span clear(Span span);
+}
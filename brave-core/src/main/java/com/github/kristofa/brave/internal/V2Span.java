@@ -0,0 +1,240 @@
+package com.github.kristofa.brave.internal;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import zipkin.Annotation;
+import zipkin.BinaryAnnotation;
+import zipkin.Constants;
+import zipkin.Endpoint;
+
+import static com.github.kristofa.brave.internal.Util.UTF_8;
+import static com.github.kristofa.brave.internal.Util.equal;
+
+/**
+ * A span in the Zipkin v2 model, which has one local endpoint instead of one per annotation. Core
+ * annotations become {@link #kind}, timestamp and duration, addresses become
+ * {@link #remoteEndpoint}, and binary annotations become string tags.
+ *
+ * <p>A v1 span which includes both client and server annotations converts to two v2 spans.
+ * {@link #toSpan(List)} converts back, merging such a pair into one v1 span.
+ */
+final class V2Span {
+  enum Kind {
+    CLIENT, SERVER
+  }
+
+  final long traceIdHigh;
+  final long traceId;
+  @Nullable final Long parentId;
+  final long id;
+  @Nullable final String name;
+  @Nullable final Boolean debug;
+  @Nullable Kind kind;
+  long timestamp; // zero means absent
+  long duration; // zero means absent
+  boolean shared;
+  @Nullable Endpoint localEndpoint;
+  @Nullable Endpoint remoteEndpoint;
+  List<Annotation> annotations = Collections.emptyList();
+  Map<String, String> tags = Collections.emptyMap();
+
+  V2Span(zipkin.Span span) {
+    this(span.traceIdHigh, span.traceId, span.parentId, span.id, span.name, span.debug);
+  }
+
+  V2Span(long traceIdHigh, long traceId, @Nullable Long parentId, long id, @Nullable String name,
+      @Nullable Boolean debug) {
+    this.traceIdHigh = traceIdHigh;
+    this.traceId = traceId;
+    this.parentId = parentId;
+    this.id = id;
+    this.name = name == null || name.isEmpty() ? null : name;
+    this.debug = debug;
+  }
+
+  static List<V2Span> fromSpan(zipkin.Span span) {
+    Annotation cs = null, cr = null, sr = null, ss = null;
+    for (int i = 0, length = span.annotations.size(); i < length; i++) {
+      Annotation a = span.annotations.get(i);
+      if (a.value.length() != 2) continue;
+      if (a.value.equals(Constants.CLIENT_SEND)) {
+        cs = a;
+      } else if (a.value.equals(Constants.CLIENT_RECV)) {
+        cr = a;
+      } else if (a.value.equals(Constants.SERVER_RECV)) {
+        sr = a;
+      } else if (a.value.equals(Constants.SERVER_SEND)) {
+        ss = a;
+      }
+    }
+
+    V2Span first = new V2Span(span), server = null;
+    first.timestamp = span.timestamp != null ? span.timestamp : 0L;
+    first.duration = span.duration != null ? span.duration : 0L;
+    if (cs != null || cr != null) {
+      first.kind = Kind.CLIENT;
+      first.localEndpoint = cs != null ? cs.endpoint : cr.endpoint;
+      first.begin(cs, cr, false);
+      if (sr != null || ss != null) { // a shared span reported in one piece
+        server = new V2Span(span);
+        server.kind = Kind.SERVER;
+        server.localEndpoint = sr != null ? sr.endpoint : ss.endpoint;
+        server.begin(sr, ss, true);
+      }
+    } else if (sr != null || ss != null) {
+      first.kind = Kind.SERVER;
+      first.localEndpoint = sr != null ? sr.endpoint : ss.endpoint;
+      first.begin(sr, ss, span.timestamp == null);
+    }
+
+    for (int i = 0, length = span.annotations.size(); i < length; i++) {
+      Annotation a = span.annotations.get(i);
+      if (a == cs || a == cr || a == sr || a == ss) continue;
+      V2Span target = target(first, server, a.endpoint);
+      if (target.annotations.isEmpty()) target.annotations = new ArrayList<Annotation>();
+      target.annotations.add(a);
+    }
+
+    for (int i = 0, length = span.binaryAnnotations.size(); i < length; i++) {
+      BinaryAnnotation b = span.binaryAnnotations.get(i);
+      if (b.type == BinaryAnnotation.Type.BOOL
+          && (b.key.equals(Constants.CLIENT_ADDR) || b.key.equals(Constants.SERVER_ADDR))) {
+        boolean clientAddr = b.key.equals(Constants.CLIENT_ADDR);
+        // the client address is remote to the server side and vice versa
+        V2Span target = server != null ? (clientAddr ? server : first) : first;
+        target.remoteEndpoint = b.endpoint;
+        continue;
+      }
+      V2Span target = target(first, server, b.endpoint);
+      if (target.tags.isEmpty()) target.tags = new LinkedHashMap<String, String>();
+      target.tags.put(b.key, tagValue(b));
+    }
+
+    if (server == null) return Collections.singletonList(first);
+    List<V2Span> result = new ArrayList<V2Span>(2);
+    result.add(first);
+    result.add(server);
+    return result;
+  }
+
+  /**
+   * Converts v2 spans which share an ID back to one v1 span, the inverse of {@link
+   * #fromSpan(zipkin.Span)}. Tags become string binary annotations.
+   *
+   * @throws IllegalArgumentException if the spans don't have the same trace and span ID
+   */
+  static zipkin.Span toSpan(List<V2Span> spans) {
+    if (spans.isEmpty()) throw new IllegalArgumentException("no spans");
+    V2Span first = spans.get(0);
+    zipkin.Span.Builder result = first.toSpan().toBuilder();
+    for (int i = 1, length = spans.size(); i < length; i++) {
+      V2Span next = spans.get(i);
+      if (next.traceIdHigh != first.traceIdHigh || next.traceId != first.traceId
+          || next.id != first.id) {
+        throw new IllegalArgumentException("spans have different IDs");
+      }
+      result.merge(next.toSpan());
+    }
+    return result.build();
+  }
+
+  zipkin.Span toSpan() {
+    zipkin.Span.Builder result = zipkin.Span.builder()
+        .traceIdHigh(traceIdHigh)
+        .traceId(traceId)
+        .parentId(parentId)
+        .id(id)
+        .name(name != null ? name : "")
+        .debug(debug);
+    // the server side of a shared span doesn't own its timestamp and duration in v1
+    if (!shared && timestamp != 0L) result.timestamp(timestamp);
+    if (!shared && duration != 0L) result.duration(duration);
+    if (kind != null && timestamp != 0L) {
+      boolean client = kind == Kind.CLIENT;
+      result.addAnnotation(Annotation.create(timestamp,
+          client ? Constants.CLIENT_SEND : Constants.SERVER_RECV, localEndpoint));
+      if (duration != 0L) {
+        result.addAnnotation(Annotation.create(timestamp + duration,
+            client ? Constants.CLIENT_RECV : Constants.SERVER_SEND, localEndpoint));
+      }
+    }
+    if (remoteEndpoint != null) {
+      result.addBinaryAnnotation(BinaryAnnotation.address(
+          kind == Kind.SERVER ? Constants.CLIENT_ADDR : Constants.SERVER_ADDR, remoteEndpoint));
+    }
+    for (int i = 0, length = annotations.size(); i < length; i++) {
+      Annotation a = annotations.get(i);
+      result.addAnnotation(Annotation.create(a.timestamp, a.value, localEndpoint));
+    }
+    for (Map.Entry<String, String> tag : tags.entrySet()) {
+      result.addBinaryAnnotation(BinaryAnnotation.create(tag.getKey(), tag.getValue(), localEndpoint));
+    }
+    return result.build();
+  }
+
+  /** Sets timestamp and duration from core annotations when the v1 span didn't have them. */
+  void begin(@Nullable Annotation begin, @Nullable Annotation end, boolean shared) {
+    this.shared = shared;
+    if (shared || timestamp == 0L) {
+      timestamp = begin != null ? begin.timestamp : 0L;
+    }
+    if ((shared || duration == 0L) && begin != null && end != null) {
+      duration = end.timestamp - begin.timestamp;
+    }
+  }
+
+  /** Annotations belong to the side whose local endpoint they were logged by. */
+  static V2Span target(V2Span first, @Nullable V2Span server, @Nullable Endpoint endpoint) {
+    if (first.localEndpoint == null) {
+      first.localEndpoint = endpoint;
+      return first;
+    }
+    if (server != null && !equal(first.localEndpoint, endpoint)
+        && equal(server.localEndpoint, endpoint)) {
+      return server;
+    }
+    return first;
+  }
+
+  static String tagValue(BinaryAnnotation b) {
+    switch (b.type) {
+      case STRING:
+        return new String(b.value, UTF_8);
+      case BOOL:
+        return b.value[0] == 1 ? "true" : "false";
+      case I16:
+        return String.valueOf(ByteBuffer.wrap(b.value).getShort());
+      case I32:
+        return String.valueOf(ByteBuffer.wrap(b.value).getInt());
+      case I64:
+        return String.valueOf(ByteBuffer.wrap(b.value).getLong());
+      case DOUBLE:
+        return String.valueOf(Double.longBitsToDouble(ByteBuffer.wrap(b.value).getLong()));
+      default:
+        return base64(b.value);
+    }
+  }
+
+  static final char[] BASE64 =
+      "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+
+  static String base64(byte[] in) {
+    char[] out = new char[(in.length + 2) / 3 * 4];
+    int i = 0, o = 0;
+    while (i < in.length) {
+      int b0 = in[i++] & 0xff;
+      int b1 = i < in.length ? in[i] & 0xff : 0;
+      int b2 = i + 1 < in.length ? in[i + 1] & 0xff : 0;
+      out[o++] = BASE64[b0 >>> 2];
+      out[o++] = BASE64[(b0 & 0x3) << 4 | b1 >>> 4];
+      out[o++] = i < in.length ? BASE64[(b1 & 0xf) << 2 | b2 >>> 6] : '=';
+      out[o++] = i + 1 < in.length ? BASE64[b2 & 0x3f] : '=';
+      i += 2;
+    }
+    return new String(out);
+  }
+}
@@ -0,0 +1,90 @@
+package com.github.kristofa.brave.internal;
+
+import com.twitter.zipkin.gen.Span;
+import com.twitter.zipkin.gen.SpanCodec;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Encodes spans in the Zipkin v2 model, which is smaller than v1 as endpoints aren't repeated per
+ * annotation. Decoding converts back to the v1 model: tags become string binary annotations.
+ */
+public abstract class V2SpanCodec implements SpanCodec {
+  public static final SpanCodec JSON = new V2SpanCodec() {
+    @Override public byte[] writeSpan(Span span) {
+      return V2SpanJsonWriter.writeSpan(span.toZipkin());
+    }
+
+    @Override public byte[] writeSpans(List<Span> spans) {
+      return V2SpanJsonWriter.writeSpans(toZipkin(spans));
+    }
+
+    @Override public Span readSpan(byte[] bytes) {
+      return DefaultSpanCodec.fromZipkin(V2Span.toSpan(V2SpanJsonReader.readSpans(bytes)));
+    }
+
+    @Override public String toString() {
+      return "JSON_V2";
+    }
+  };
+
+  public static final SpanCodec PROTO3 = new V2SpanCodec() {
+    @Override public byte[] writeSpan(Span span) {
+      return V2SpanProto3Writer.writeSpan(span.toZipkin());
+    }
+
+    @Override public byte[] writeSpans(List<Span> spans) {
+      return V2SpanProto3Writer.writeSpans(toZipkin(spans));
+    }
+
+    @Override public Span readSpan(byte[] bytes) {
+      return DefaultSpanCodec.fromZipkin(V2Span.toSpan(V2SpanProto3Reader.readSpans(bytes)));
+    }
+
+    @Override public String toString() {
+      return "PROTO3";
+    }
+  };
+
+  /**
+   * Encodes a zipkin span as one v2 json object. Used by {@code ZipkinV2Encoders}.
+   *
+   * @throws IllegalArgumentException if the span has both client and server annotations, so
+   * would be two v2 spans
+   */
+  public static byte[] writeJson(zipkin.Span span) {
+    List<V2Span> converted = V2Span.fromSpan(span);
+    if (converted.size() != 1) {
+      throw new IllegalArgumentException("shared span must be split before encoding: " + span);
+    }
+    V2SpanJsonWriter writer = new V2SpanJsonWriter(512);
+    writer.write(converted.get(0));
+    return writer.toByteArray();
+  }
+
+  /**
+   * Splits a span which has both client and server annotations into one span per side, each of
+   * which converts to a single v2 span. Other spans are returned as is.
+   */
+  public static List<zipkin.Span> splitShared(zipkin.Span span) {
+    List<V2Span> converted = V2Span.fromSpan(span);
+    if (converted.size() == 1) return Collections.singletonList(span);
+    List<zipkin.Span> result = new ArrayList<zipkin.Span>(converted.size());
+    for (V2Span side : converted) {
+      result.add(side.toSpan());
+    }
+    return result;
+  }
+
+  V2SpanCodec() {
+  }
+
+  static List<zipkin.Span> toZipkin(List<Span> spans) {
+    List<zipkin.Span> out = new ArrayList<zipkin.Span>(spans.size());
+    for (Span span : spans) {
+      out.add(span.toZipkin());
+    }
+    return out;
+  }
+}
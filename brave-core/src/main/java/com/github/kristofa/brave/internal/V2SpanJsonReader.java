@@ -0,0 +1,354 @@
+package com.github.kristofa.brave.internal;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import zipkin.Annotation;
+import zipkin.Endpoint;
+
+import static com.github.kristofa.brave.internal.Util.UTF_8;
+
+/**
+ * Reads spans in the Zipkin v2 json format, as written by {@link V2SpanJsonWriter}: either one span
+ * object or a list of them. Unknown fields are skipped.
+ */
+final class V2SpanJsonReader {
+  final byte[] buf;
+  int pos;
+
+  V2SpanJsonReader(byte[] buf) {
+    this.buf = buf;
+  }
+
+  /** @throws IllegalArgumentException if the input isn't v2 json */
+  static List<V2Span> readSpans(byte[] bytes) {
+    V2SpanJsonReader reader = new V2SpanJsonReader(bytes);
+    try {
+      List<V2Span> result = new ArrayList<V2Span>(2);
+      if (reader.peek() == '[') {
+        reader.pos++;
+        if (reader.peek() == ']') {
+          reader.pos++;
+        } else {
+          do {
+            result.add(reader.readSpan());
+          } while (reader.nextIf(','));
+          reader.expect(']');
+        }
+      } else {
+        result.add(reader.readSpan());
+      }
+      if (reader.peek() != -1) throw reader.malformed("trailing content");
+      return result;
+    } catch (IndexOutOfBoundsException e) {
+      throw new IllegalArgumentException("Truncated v2 json", e);
+    }
+  }
+
+  V2Span readSpan() {
+    long traceIdHigh = 0L, traceId = 0L, id = 0L;
+    Long parentId = null;
+    boolean hasTraceId = false, hasId = false;
+    String name = null, kind = null;
+    Boolean debug = null;
+    long timestamp = 0L, duration = 0L;
+    boolean shared = false;
+    Endpoint localEndpoint = null, remoteEndpoint = null;
+    List<Annotation> annotations = null;
+    LinkedHashMap<String, String> tags = null;
+
+    expect('{');
+    if (!nextIf('}')) {
+      do {
+        String key = readString();
+        expect(':');
+        if (nextIfNull()) continue;
+        if (key.equals("traceId")) {
+          String hex = readString();
+          if (hex.length() == 32) {
+            traceIdHigh = lowerHexToLong(hex.substring(0, 16));
+            traceId = lowerHexToLong(hex.substring(16));
+          } else {
+            traceId = lowerHexToLong(hex);
+          }
+          hasTraceId = true;
+        } else if (key.equals("parentId")) {
+          parentId = lowerHexToLong(readString());
+        } else if (key.equals("id")) {
+          id = lowerHexToLong(readString());
+          hasId = true;
+        } else if (key.equals("kind")) {
+          kind = readString();
+        } else if (key.equals("name")) {
+          name = readString();
+        } else if (key.equals("timestamp")) {
+          timestamp = readLong();
+        } else if (key.equals("duration")) {
+          duration = readLong();
+        } else if (key.equals("localEndpoint")) {
+          localEndpoint = readEndpoint();
+        } else if (key.equals("remoteEndpoint")) {
+          remoteEndpoint = readEndpoint();
+        } else if (key.equals("annotations")) {
+          annotations = readAnnotations();
+        } else if (key.equals("tags")) {
+          tags = readTags();
+        } else if (key.equals("debug")) {
+          debug = readBoolean();
+        } else if (key.equals("shared")) {
+          shared = readBoolean();
+        } else {
+          skipValue();
+        }
+      } while (nextIf(','));
+      expect('}');
+    }
+
+    if (!hasTraceId || !hasId) throw malformed("traceId and id are required");
+    V2Span result = new V2Span(traceIdHigh, traceId, parentId, id, name, debug);
+    if (kind != null) {
+      try {
+        result.kind = V2Span.Kind.valueOf(kind);
+      } catch (IllegalArgumentException e) {
+        throw malformed("unsupported kind " + kind);
+      }
+    }
+    result.timestamp = timestamp;
+    result.duration = duration;
+    result.shared = shared;
+    result.localEndpoint = localEndpoint;
+    result.remoteEndpoint = remoteEndpoint;
+    if (annotations != null) result.annotations = annotations;
+    if (tags != null) result.tags = tags;
+    return result;
+  }
+
+  Endpoint readEndpoint() {
+    Endpoint.Builder result = Endpoint.builder().serviceName("");
+    expect('{');
+    if (!nextIf('}')) {
+      do {
+        String key = readString();
+        expect(':');
+        if (nextIfNull()) continue;
+        if (key.equals("serviceName")) {
+          result.serviceName(readString());
+        } else if (key.equals("ipv4")) {
+          result.ipv4(ipv4(readString()));
+        } else if (key.equals("ipv6")) {
+          result.ipv6(ipv6(readString()));
+        } else if (key.equals("port")) {
+          result.port((int) readLong());
+        } else {
+          skipValue();
+        }
+      } while (nextIf(','));
+      expect('}');
+    }
+    return result.build();
+  }
+
+  List<Annotation> readAnnotations() {
+    List<Annotation> result = new ArrayList<Annotation>();
+    expect('[');
+    if (nextIf(']')) return result;
+    do {
+      long timestamp = 0L;
+      String value = null;
+      expect('{');
+      do {
+        String key = readString();
+        expect(':');
+        if (key.equals("timestamp")) {
+          timestamp = readLong();
+        } else if (key.equals("value")) {
+          value = readString();
+        } else {
+          skipValue();
+        }
+      } while (nextIf(','));
+      expect('}');
+      if (value == null) throw malformed("annotation value is required");
+      result.add(Annotation.create(timestamp, value, null));
+    } while (nextIf(','));
+    expect(']');
+    return result;
+  }
+
+  LinkedHashMap<String, String> readTags() {
+    LinkedHashMap<String, String> result = new LinkedHashMap<String, String>();
+    expect('{');
+    if (nextIf('}')) return result;
+    do {
+      String key = readString();
+      expect(':');
+      result.put(key, readString());
+    } while (nextIf(','));
+    expect('}');
+    return result;
+  }
+
+  /** Skips a value of any type, used for fields added after this reader was written. */
+  void skipValue() {
+    int c = peek();
+    if (c == '"') {
+      readString();
+    } else if (c == '{' || c == '[') {
+      int close = c == '{' ? '}' : ']';
+      pos++;
+      if (nextIf(close)) return;
+      do {
+        if (close == '}') {
+          readString();
+          expect(':');
+        }
+        skipValue();
+      } while (nextIf(','));
+      expect(close);
+    } else {
+      while (pos < buf.length && buf[pos] != ',' && buf[pos] != '}' && buf[pos] != ']') pos++;
+    }
+  }
+
+  String readString() {
+    expect('"');
+    StringBuilder result = null;
+    int start = pos;
+    while (true) {
+      byte b = buf[pos];
+      if (b == '"') {
+        String chunk = new String(buf, start, pos - start, UTF_8);
+        pos++;
+        return result == null ? chunk : result.append(chunk).toString();
+      }
+      if (b != '\\') {
+        pos++;
+        continue;
+      }
+      if (result == null) result = new StringBuilder();
+      result.append(new String(buf, start, pos - start, UTF_8));
+      pos++;
+      char escaped = (char) buf[pos++];
+      switch (escaped) {
+        case 'n':
+          result.append('\n');
+          break;
+        case 'r':
+          result.append('\r');
+          break;
+        case 't':
+          result.append('\t');
+          break;
+        case 'b':
+          result.append('\b');
+          break;
+        case 'f':
+          result.append('\f');
+          break;
+        case 'u':
+          result.append((char) Integer.parseInt(new String(buf, pos, 4, UTF_8), 16));
+          pos += 4;
+          break;
+        default: // quote, backslash or slash
+          result.append(escaped);
+      }
+      start = pos;
+    }
+  }
+
+  long readLong() {
+    skipWhitespace();
+    int start = pos;
+    if (buf[pos] == '-') pos++;
+    while (pos < buf.length && buf[pos] >= '0' && buf[pos] <= '9') pos++;
+    if (start == pos) throw malformed("expected a number");
+    return Long.parseLong(new String(buf, start, pos - start, UTF_8));
+  }
+
+  boolean readBoolean() {
+    if (nextIfLiteral("true")) return true;
+    if (nextIfLiteral("false")) return false;
+    throw malformed("expected a boolean");
+  }
+
+  boolean nextIfNull() {
+    return nextIfLiteral("null");
+  }
+
+  boolean nextIfLiteral(String literal) {
+    skipWhitespace();
+    int length = literal.length();
+    if (pos + length > buf.length) return false;
+    for (int i = 0; i < length; i++) {
+      if (buf[pos + i] != literal.charAt(i)) return false;
+    }
+    pos += length;
+    return true;
+  }
+
+  boolean nextIf(int c) {
+    if (peek() != c) return false;
+    pos++;
+    return true;
+  }
+
+  void expect(int c) {
+    if (!nextIf(c)) throw malformed("expected '" + (char) c + "'");
+  }
+
+  /** Returns the next non-whitespace byte without consuming it, or -1 at the end. */
+  int peek() {
+    skipWhitespace();
+    return pos < buf.length ? buf[pos] : -1;
+  }
+
+  void skipWhitespace() {
+    while (pos < buf.length) {
+      byte b = buf[pos];
+      if (b != ' ' && b != '\n' && b != '\r' && b != '\t') return;
+      pos++;
+    }
+  }
+
+  IllegalArgumentException malformed(String reason) {
+    return new IllegalArgumentException("Malformed v2 json at position " + pos + ": " + reason);
+  }
+
+  static long lowerHexToLong(String hex) {
+    if (hex.isEmpty() || hex.length() > 16) {
+      throw new IllegalArgumentException("Malformed id: " + hex);
+    }
+    long result = 0L;
+    for (int i = 0; i < hex.length(); i++) {
+      int digit = Character.digit(hex.charAt(i), 16);
+      if (digit == -1) throw new IllegalArgumentException("Malformed id: " + hex);
+      result = result << 4 | digit;
+    }
+    return result;
+  }
+
+  static int ipv4(String address) {
+    String[] octets = address.split("\\.", -1);
+    if (octets.length != 4) throw new IllegalArgumentException("Malformed ipv4: " + address);
+    int result = 0;
+    for (String octet : octets) {
+      int value = Integer.parseInt(octet);
+      if (value < 0 || value > 255) throw new IllegalArgumentException("Malformed ipv4: " + address);
+      result = result << 8 | value;
+    }
+    return result;
+  }
+
+  static byte[] ipv6(String address) {
+    if (address.indexOf(':') == -1) { // avoid name resolution
+      throw new IllegalArgumentException("Malformed ipv6: " + address);
+    }
+    try {
+      return InetAddress.getByName(address).getAddress();
+    } catch (UnknownHostException e) {
+      throw new IllegalArgumentException("Malformed ipv6: " + address, e);
+    }
+  }
+}
@@ -0,0 +1,260 @@
+package com.github.kristofa.brave.internal;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import zipkin.Annotation;
+import zipkin.Endpoint;
+
+/** Writes spans in the Zipkin v2 json format, as accepted by {@code POST /api/v2/spans}. */
+final class V2SpanJsonWriter {
+  static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes(Util.UTF_8);
+
+  byte[] buf;
+  int pos;
+
+  V2SpanJsonWriter(int initialCapacity) {
+    buf = new byte[initialCapacity];
+  }
+
+  /**
+   * Writes the v2 form of the span as one object. When the input is both a client and server span,
+   * which is two v2 spans, a list of both is written instead.
+   */
+  static byte[] writeSpan(zipkin.Span span) {
+    List<V2Span> spans = V2Span.fromSpan(span);
+    V2SpanJsonWriter writer = new V2SpanJsonWriter(512);
+    if (spans.size() == 1) {
+      writer.write(spans.get(0));
+      return writer.toByteArray();
+    }
+    writer.writeByte('[');
+    for (int i = 0, length = spans.size(); i < length; i++) {
+      if (i > 0) writer.writeByte(',');
+      writer.write(spans.get(i));
+    }
+    writer.writeByte(']');
+    return writer.toByteArray();
+  }
+
+  static byte[] writeSpans(List<zipkin.Span> spans) {
+    V2SpanJsonWriter writer = new V2SpanJsonWriter(512 * Math.max(1, spans.size()));
+    writer.writeByte('[');
+    boolean first = true;
+    for (int i = 0, length = spans.size(); i < length; i++) {
+      List<V2Span> converted = V2Span.fromSpan(spans.get(i));
+      for (int j = 0, jLength = converted.size(); j < jLength; j++) {
+        if (!first) writer.writeByte(',');
+        first = false;
+        writer.write(converted.get(j));
+      }
+    }
+    writer.writeByte(']');
+    return writer.toByteArray();
+  }
+
+  void write(V2Span span) {
+    writeAscii("{\"traceId\":\"");
+    if (span.traceIdHigh != 0L) writeHex(span.traceIdHigh);
+    writeHex(span.traceId);
+    writeByte('"');
+    if (span.parentId != null) {
+      writeAscii(",\"parentId\":\"");
+      writeHex(span.parentId);
+      writeByte('"');
+    }
+    writeAscii(",\"id\":\"");
+    writeHex(span.id);
+    writeByte('"');
+    if (span.kind != null) {
+      writeAscii(",\"kind\":\"");
+      writeAscii(span.kind.name());
+      writeByte('"');
+    }
+    if (span.name != null) {
+      writeAscii(",\"name\":");
+      writeString(span.name);
+    }
+    if (span.timestamp != 0L) {
+      writeAscii(",\"timestamp\":");
+      writeAscii(Long.toString(span.timestamp));
+    }
+    if (span.duration != 0L) {
+      writeAscii(",\"duration\":");
+      writeAscii(Long.toString(span.duration));
+    }
+    if (span.localEndpoint != null) {
+      writeAscii(",\"localEndpoint\":");
+      writeEndpoint(span.localEndpoint);
+    }
+    if (span.remoteEndpoint != null) {
+      writeAscii(",\"remoteEndpoint\":");
+      writeEndpoint(span.remoteEndpoint);
+    }
+    if (!span.annotations.isEmpty()) {
+      writeAscii(",\"annotations\":[");
+      for (int i = 0, length = span.annotations.size(); i < length; i++) {
+        Annotation a = span.annotations.get(i);
+        if (i > 0) writeByte(',');
+        writeAscii("{\"timestamp\":");
+        writeAscii(Long.toString(a.timestamp));
+        writeAscii(",\"value\":");
+        writeString(a.value);
+        writeByte('}');
+      }
+      writeByte(']');
+    }
+    if (!span.tags.isEmpty()) {
+      writeAscii(",\"tags\":{");
+      boolean first = true;
+      for (Map.Entry<String, String> tag : span.tags.entrySet()) {
+        if (!first) writeByte(',');
+        first = false;
+        writeString(tag.getKey());
+        writeByte(':');
+        writeString(tag.getValue());
+      }
+      writeByte('}');
+    }
+    if (span.debug != null && span.debug) writeAscii(",\"debug\":true");
+    if (span.shared) writeAscii(",\"shared\":true");
+    writeByte('}');
+  }
+
+  void writeEndpoint(Endpoint endpoint) {
+    writeByte('{');
+    boolean empty = true;
+    if (endpoint.serviceName != null && !endpoint.serviceName.isEmpty()) {
+      writeAscii("\"serviceName\":");
+      writeString(endpoint.serviceName);
+      empty = false;
+    }
+    if (endpoint.ipv4 != 0) {
+      if (!empty) writeByte(',');
+      writeAscii("\"ipv4\":\"");
+      writeAscii(Integer.toString(endpoint.ipv4 >> 24 & 0xff));
+      writeByte('.');
+      writeAscii(Integer.toString(endpoint.ipv4 >> 16 & 0xff));
+      writeByte('.');
+      writeAscii(Integer.toString(endpoint.ipv4 >> 8 & 0xff));
+      writeByte('.');
+      writeAscii(Integer.toString(endpoint.ipv4 & 0xff));
+      writeByte('"');
+      empty = false;
+    }
+    if (endpoint.ipv6 != null) {
+      if (!empty) writeByte(',');
+      writeAscii("\"ipv6\":\"");
+      writeAscii(ipv6(endpoint.ipv6));
+      writeByte('"');
+      empty = false;
+    }
+    if (endpoint.port != null && endpoint.port != 0) {
+      if (!empty) writeByte(',');
+      writeAscii("\"port\":");
+      writeAscii(Integer.toString(endpoint.port & 0xffff));
+    }
+    writeByte('}');
+  }
+
+  static String ipv6(byte[] ipv6) {
+    try {
+      return InetAddress.getByAddress(ipv6).getHostAddress();
+    } catch (UnknownHostException e) {
+      throw new IllegalArgumentException(e); // only thrown when the length is wrong
+    }
+  }
+
+  void writeHex(long v) {
+    ensureCapacity(16);
+    for (int shift = 60; shift >= 0; shift -= 4) {
+      buf[pos++] = HEX_DIGITS[(int) (v >>> shift) & 0xf];
+    }
+  }
+
+  void writeAscii(String s) {
+    int length = s.length();
+    ensureCapacity(length);
+    for (int i = 0; i < length; i++) {
+      buf[pos++] = (byte) s.charAt(i);
+    }
+  }
+
+  /** Writes a quoted json string, escaping as needed and encoding as UTF-8. */
+  void writeString(String s) {
+    int length = s.length();
+    ensureCapacity(length + 2);
+    buf[pos++] = '"';
+    for (int i = 0; i < length; i++) {
+      char c = s.charAt(i);
+      if (c < 0x80) {
+        if (c == '"' || c == '\\') {
+          writeByte('\\');
+          writeByte(c);
+        } else if (c < 0x20) {
+          writeControl(c);
+        } else {
+          writeByte(c);
+        }
+      } else if (c < 0x800) {
+        writeByte(0xc0 | c >> 6);
+        writeByte(0x80 | c & 0x3f);
+      } else if (Character.isHighSurrogate(c) && i + 1 < length
+          && Character.isLowSurrogate(s.charAt(i + 1))) {
+        int codePoint = Character.toCodePoint(c, s.charAt(++i));
+        writeByte(0xf0 | codePoint >> 18);
+        writeByte(0x80 | codePoint >> 12 & 0x3f);
+        writeByte(0x80 | codePoint >> 6 & 0x3f);
+        writeByte(0x80 | codePoint & 0x3f);
+      } else if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+        writeByte('?'); // malformed
+      } else {
+        writeByte(0xe0 | c >> 12);
+        writeByte(0x80 | c >> 6 & 0x3f);
+        writeByte(0x80 | c & 0x3f);
+      }
+    }
+    writeByte('"');
+  }
+
+  void writeControl(char c) {
+    switch (c) {
+      case '\n':
+        writeAscii("\\n");
+        break;
+      case '\r':
+        writeAscii("\\r");
+        break;
+      case '\t':
+        writeAscii("\\t");
+        break;
+      case '\b':
+        writeAscii("\\b");
+        break;
+      case '\f':
+        writeAscii("\\f");
+        break;
+      default:
+        writeAscii("\\u00");
+        writeByte(HEX_DIGITS[c >> 4]);
+        writeByte(HEX_DIGITS[c & 0xf]);
+    }
+  }
+
+  void writeByte(int b) {
+    ensureCapacity(1);
+    buf[pos++] = (byte) b;
+  }
+
+  void ensureCapacity(int count) {
+    if (pos + count > buf.length) {
+      buf = Arrays.copyOf(buf, Math.max(buf.length * 2, pos + count));
+    }
+  }
+
+  byte[] toByteArray() {
+    return Arrays.copyOf(buf, pos);
+  }
+}
@@ -0,0 +1,266 @@
+package com.github.kristofa.brave.internal;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import zipkin.Annotation;
+import zipkin.Endpoint;
+
+import static com.github.kristofa.brave.internal.Util.UTF_8;
+import static com.github.kristofa.brave.internal.V2SpanProto3Writer.FIXED64;
+import static com.github.kristofa.brave.internal.V2SpanProto3Writer.LENGTH_DELIMITED;
+import static com.github.kristofa.brave.internal.V2SpanProto3Writer.VARINT;
+
+/**
+ * Reads a {@code ListOfSpans} in the Zipkin v2 proto3 format, as written by {@link
+ * V2SpanProto3Writer}. Unknown fields are skipped.
+ */
+final class V2SpanProto3Reader {
+  final byte[] buf;
+  int pos;
+
+  V2SpanProto3Reader(byte[] buf) {
+    this.buf = buf;
+  }
+
+  /** @throws IllegalArgumentException if the input isn't a v2 proto3 list of spans */
+  static List<V2Span> readSpans(byte[] bytes) {
+    V2SpanProto3Reader reader = new V2SpanProto3Reader(bytes);
+    try {
+      List<V2Span> result = new ArrayList<V2Span>(2);
+      while (reader.pos < bytes.length) {
+        int key = reader.readKey();
+        if (key == (1 << 3 | LENGTH_DELIMITED)) {
+          int end = reader.readLength();
+          result.add(reader.readSpan(end));
+        } else {
+          reader.skip(key);
+        }
+      }
+      return result;
+    } catch (IndexOutOfBoundsException e) {
+      throw new IllegalArgumentException("Truncated v2 proto3", e);
+    }
+  }
+
+  V2Span readSpan(int end) {
+    long traceIdHigh = 0L, traceId = 0L, id = 0L;
+    Long parentId = null;
+    boolean hasTraceId = false, hasId = false;
+    int kind = 0;
+    String name = null;
+    Boolean debug = null;
+    long timestamp = 0L, duration = 0L;
+    boolean shared = false;
+    Endpoint localEndpoint = null, remoteEndpoint = null;
+    List<Annotation> annotations = null;
+    LinkedHashMap<String, String> tags = null;
+
+    while (pos < end) {
+      int key = readKey();
+      switch (key) {
+        case 1 << 3 | LENGTH_DELIMITED:
+          int length = (int) readVarint();
+          if (length == 16) {
+            traceIdHigh = readBigEndian();
+          } else if (length != 8) {
+            throw malformed("trace_id must be 8 or 16 bytes");
+          }
+          traceId = readBigEndian();
+          hasTraceId = true;
+          break;
+        case 2 << 3 | LENGTH_DELIMITED:
+          parentId = readId();
+          break;
+        case 3 << 3 | LENGTH_DELIMITED:
+          id = readId();
+          hasId = true;
+          break;
+        case 4 << 3 | VARINT:
+          kind = (int) readVarint();
+          break;
+        case 5 << 3 | LENGTH_DELIMITED:
+          name = readString();
+          break;
+        case 6 << 3 | FIXED64:
+          timestamp = readLittleEndian();
+          break;
+        case 7 << 3 | VARINT:
+          duration = readVarint();
+          break;
+        case 8 << 3 | LENGTH_DELIMITED:
+          localEndpoint = readEndpoint(readLength());
+          break;
+        case 9 << 3 | LENGTH_DELIMITED:
+          remoteEndpoint = readEndpoint(readLength());
+          break;
+        case 10 << 3 | LENGTH_DELIMITED:
+          if (annotations == null) annotations = new ArrayList<Annotation>();
+          annotations.add(readAnnotation(readLength()));
+          break;
+        case 11 << 3 | LENGTH_DELIMITED:
+          if (tags == null) tags = new LinkedHashMap<String, String>();
+          readTag(readLength(), tags);
+          break;
+        case 12 << 3 | VARINT:
+          debug = readVarint() != 0;
+          break;
+        case 13 << 3 | VARINT:
+          shared = readVarint() != 0;
+          break;
+        default:
+          skip(key);
+      }
+    }
+    if (pos != end) throw malformed("span overruns its length");
+
+    if (!hasTraceId || !hasId) throw malformed("trace_id and id are required");
+    V2Span result = new V2Span(traceIdHigh, traceId, parentId, id, name, debug);
+    if (kind == 1) {
+      result.kind = V2Span.Kind.CLIENT;
+    } else if (kind == 2) {
+      result.kind = V2Span.Kind.SERVER;
+    } else if (kind != 0) {
+      throw malformed("unsupported kind " + kind);
+    }
+    result.timestamp = timestamp;
+    result.duration = duration;
+    result.shared = shared;
+    result.localEndpoint = localEndpoint;
+    result.remoteEndpoint = remoteEndpoint;
+    if (annotations != null) result.annotations = annotations;
+    if (tags != null) result.tags = tags;
+    return result;
+  }
+
+  Endpoint readEndpoint(int end) {
+    Endpoint.Builder result = Endpoint.builder().serviceName("");
+    while (pos < end) {
+      int key = readKey();
+      switch (key) {
+        case 1 << 3 | LENGTH_DELIMITED:
+          result.serviceName(readString());
+          break;
+        case 2 << 3 | LENGTH_DELIMITED:
+          if (readVarint() != 4) throw malformed("ipv4 must be 4 bytes");
+          result.ipv4((buf[pos++] & 0xff) << 24 | (buf[pos++] & 0xff) << 16
+              | (buf[pos++] & 0xff) << 8 | buf[pos++] & 0xff);
+          break;
+        case 3 << 3 | LENGTH_DELIMITED:
+          if (readVarint() != 16) throw malformed("ipv6 must be 16 bytes");
+          byte[] ipv6 = new byte[16];
+          System.arraycopy(buf, pos, ipv6, 0, 16);
+          pos += 16;
+          result.ipv6(ipv6);
+          break;
+        case 4 << 3 | VARINT:
+          result.port((int) readVarint());
+          break;
+        default:
+          skip(key);
+      }
+    }
+    return result.build();
+  }
+
+  Annotation readAnnotation(int end) {
+    long timestamp = 0L;
+    String value = null;
+    while (pos < end) {
+      int key = readKey();
+      if (key == (1 << 3 | FIXED64)) {
+        timestamp = readLittleEndian();
+      } else if (key == (2 << 3 | LENGTH_DELIMITED)) {
+        value = readString();
+      } else {
+        skip(key);
+      }
+    }
+    if (value == null) throw malformed("annotation value is required");
+    return Annotation.create(timestamp, value, null);
+  }
+
+  void readTag(int end, LinkedHashMap<String, String> tags) {
+    String key = "", value = "";
+    while (pos < end) {
+      int fieldKey = readKey();
+      if (fieldKey == (1 << 3 | LENGTH_DELIMITED)) {
+        key = readString();
+      } else if (fieldKey == (2 << 3 | LENGTH_DELIMITED)) {
+        value = readString();
+      } else {
+        skip(fieldKey);
+      }
+    }
+    tags.put(key, value);
+  }
+
+  long readId() {
+    if (readVarint() != 8) throw malformed("ids must be 8 bytes");
+    return readBigEndian();
+  }
+
+  String readString() {
+    int length = (int) readVarint();
+    if (length < 0 || pos + length > buf.length) throw malformed("truncated string");
+    String result = new String(buf, pos, length, UTF_8);
+    pos += length;
+    return result;
+  }
+
+  /** Reads the length of a nested message, returning the position it ends at. */
+  int readLength() {
+    int length = (int) readVarint();
+    if (length < 0 || pos + length > buf.length) throw malformed("truncated message");
+    return pos + length;
+  }
+
+  void skip(int key) {
+    switch (key & 7) {
+      case VARINT:
+        readVarint();
+        break;
+      case FIXED64:
+        pos += 8;
+        break;
+      case LENGTH_DELIMITED:
+        pos = readLength();
+        break;
+      case 5: // fixed32
+        pos += 4;
+        break;
+      default:
+        throw malformed("unsupported wire type " + (key & 7));
+    }
+  }
+
+  int readKey() {
+    return (int) readVarint();
+  }
+
+  long readVarint() {
+    long result = 0L;
+    for (int shift = 0; shift < 64; shift += 7) {
+      byte b = buf[pos++];
+      result |= (long) (b & 0x7f) << shift;
+      if ((b & 0x80) == 0) return result;
+    }
+    throw malformed("varint too long");
+  }
+
+  long readBigEndian() {
+    long result = 0L;
+    for (int i = 0; i < 8; i++) result = result << 8 | (buf[pos++] & 0xffL);
+    return result;
+  }
+
+  long readLittleEndian() {
+    long result = 0L;
+    for (int i = 0; i < 8; i++) result |= (buf[pos++] & 0xffL) << (i * 8);
+    return result;
+  }
+
+  IllegalArgumentException malformed(String reason) {
+    return new IllegalArgumentException("Malformed v2 proto3 at position " + pos + ": " + reason);
+  }
+}
@@ -0,0 +1,281 @@
+package com.github.kristofa.brave.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import zipkin.Annotation;
+import zipkin.Endpoint;
+
+/**
+ * Writes spans in the Zipkin v2 proto3 format, as accepted by {@code POST /api/v2/spans} with the
+ * content type "application/x-protobuf". This is a hand-written encoder of the following schema,
+ * so that there's no dependency on protobuf.
+ *
+ * <pre>
+ * message ListOfSpans { repeated Span spans = 1; }
+ * message Span {
+ *   bytes trace_id = 1; bytes parent_id = 2; bytes id = 3; Kind kind = 4; string name = 5;
+ *   fixed64 timestamp = 6; uint64 duration = 7; Endpoint local_endpoint = 8;
+ *   Endpoint remote_endpoint = 9; repeated Annotation annotations = 10;
+ *   map&lt;string, string&gt; tags = 11; bool debug = 12; bool shared = 13;
+ * }
+ * message Endpoint { string service_name = 1; bytes ipv4 = 2; bytes ipv6 = 3; int32 port = 4; }
+ * message Annotation { fixed64 timestamp = 1; string value = 2; }
+ * </pre>
+ *
+ * <p>Each span is written as a {@code ListOfSpans} field, so encoded spans can be concatenated
+ * into a list without re-encoding.
+ */
+final class V2SpanProto3Writer {
+  // wire types
+  static final int VARINT = 0, FIXED64 = 1, LENGTH_DELIMITED = 2;
+
+  final byte[] buf;
+  int pos;
+
+  V2SpanProto3Writer(int size) {
+    buf = new byte[size];
+  }
+
+  static byte[] writeSpan(zipkin.Span span) {
+    return writeV2Spans(V2Span.fromSpan(span));
+  }
+
+  static byte[] writeSpans(List<zipkin.Span> spans) {
+    List<V2Span> converted = new ArrayList<V2Span>(spans.size());
+    for (int i = 0, length = spans.size(); i < length; i++) {
+      converted.addAll(V2Span.fromSpan(spans.get(i)));
+    }
+    return writeV2Spans(converted);
+  }
+
+  static byte[] writeV2Spans(List<V2Span> spans) {
+    int length = spans.size();
+    int[] sizes = new int[length];
+    int total = 0;
+    for (int i = 0; i < length; i++) {
+      sizes[i] = sizeInBytes(spans.get(i));
+      total += 1 + varintSize(sizes[i]) + sizes[i];
+    }
+    V2SpanProto3Writer writer = new V2SpanProto3Writer(total);
+    for (int i = 0; i < length; i++) {
+      writer.writeKey(1, LENGTH_DELIMITED);
+      writer.writeVarint(sizes[i]);
+      writer.write(spans.get(i));
+    }
+    return writer.buf;
+  }
+
+  static int sizeInBytes(V2Span span) {
+    int size = 1 + 1 + (span.traceIdHigh != 0L ? 16 : 8); // trace_id
+    if (span.parentId != null) size += 1 + 1 + 8;
+    size += 1 + 1 + 8; // id
+    if (span.kind != null) size += 1 + 1;
+    if (span.name != null) size += sizeOfString(1, span.name);
+    if (span.timestamp != 0L) size += 1 + 8;
+    if (span.duration != 0L) size += 1 + varintSize(span.duration);
+    if (span.localEndpoint != null) size += sizeOfMessage(1, sizeOf(span.localEndpoint));
+    if (span.remoteEndpoint != null) size += sizeOfMessage(1, sizeOf(span.remoteEndpoint));
+    for (int i = 0, length = span.annotations.size(); i < length; i++) {
+      size += sizeOfMessage(1, sizeOf(span.annotations.get(i)));
+    }
+    for (Map.Entry<String, String> tag : span.tags.entrySet()) {
+      size += sizeOfMessage(1, sizeOf(tag));
+    }
+    if (span.debug != null && span.debug) size += 2;
+    if (span.shared) size += 2;
+    return size;
+  }
+
+  void write(V2Span span) {
+    writeKey(1, LENGTH_DELIMITED);
+    if (span.traceIdHigh != 0L) {
+      writeVarint(16);
+      writeBigEndian(span.traceIdHigh);
+    } else {
+      writeVarint(8);
+    }
+    writeBigEndian(span.traceId);
+    if (span.parentId != null) {
+      writeKey(2, LENGTH_DELIMITED);
+      writeVarint(8);
+      writeBigEndian(span.parentId);
+    }
+    writeKey(3, LENGTH_DELIMITED);
+    writeVarint(8);
+    writeBigEndian(span.id);
+    if (span.kind != null) {
+      writeKey(4, VARINT);
+      writeVarint(span.kind.ordinal() + 1); // CLIENT = 1, SERVER = 2
+    }
+    if (span.name != null) writeString(5, span.name);
+    if (span.timestamp != 0L) {
+      writeKey(6, FIXED64);
+      writeLittleEndian(span.timestamp);
+    }
+    if (span.duration != 0L) {
+      writeKey(7, VARINT);
+      writeVarint(span.duration);
+    }
+    if (span.localEndpoint != null) writeEndpoint(8, span.localEndpoint);
+    if (span.remoteEndpoint != null) writeEndpoint(9, span.remoteEndpoint);
+    for (int i = 0, length = span.annotations.size(); i < length; i++) {
+      Annotation a = span.annotations.get(i);
+      writeKey(10, LENGTH_DELIMITED);
+      writeVarint(sizeOf(a));
+      writeKey(1, FIXED64);
+      writeLittleEndian(a.timestamp);
+      writeString(2, a.value);
+    }
+    for (Map.Entry<String, String> tag : span.tags.entrySet()) {
+      writeKey(11, LENGTH_DELIMITED);
+      writeVarint(sizeOf(tag));
+      writeString(1, tag.getKey());
+      writeString(2, tag.getValue());
+    }
+    if (span.debug != null && span.debug) {
+      writeKey(12, VARINT);
+      writeVarint(1);
+    }
+    if (span.shared) {
+      writeKey(13, VARINT);
+      writeVarint(1);
+    }
+  }
+
+  static int sizeOf(Endpoint endpoint) {
+    int size = 0;
+    if (endpoint.serviceName != null && !endpoint.serviceName.isEmpty()) {
+      size += sizeOfString(1, endpoint.serviceName);
+    }
+    if (endpoint.ipv4 != 0) size += 1 + 1 + 4;
+    if (endpoint.ipv6 != null) size += 1 + 1 + 16;
+    if (endpoint.port != null && endpoint.port != 0) size += 1 + varintSize(endpoint.port & 0xffff);
+    return size;
+  }
+
+  void writeEndpoint(int field, Endpoint endpoint) {
+    writeKey(field, LENGTH_DELIMITED);
+    writeVarint(sizeOf(endpoint));
+    if (endpoint.serviceName != null && !endpoint.serviceName.isEmpty()) {
+      writeString(1, endpoint.serviceName);
+    }
+    if (endpoint.ipv4 != 0) {
+      writeKey(2, LENGTH_DELIMITED);
+      writeVarint(4);
+      buf[pos++] = (byte) (endpoint.ipv4 >> 24);
+      buf[pos++] = (byte) (endpoint.ipv4 >> 16);
+      buf[pos++] = (byte) (endpoint.ipv4 >> 8);
+      buf[pos++] = (byte) endpoint.ipv4;
+    }
+    if (endpoint.ipv6 != null) {
+      writeKey(3, LENGTH_DELIMITED);
+      writeVarint(16);
+      System.arraycopy(endpoint.ipv6, 0, buf, pos, 16);
+      pos += 16;
+    }
+    if (endpoint.port != null && endpoint.port != 0) {
+      writeKey(4, VARINT);
+      writeVarint(endpoint.port & 0xffff);
+    }
+  }
+
+  static int sizeOf(Annotation annotation) {
+    return 1 + 8 + sizeOfString(2, annotation.value);
+  }
+
+  static int sizeOf(Map.Entry<String, String> tag) {
+    return sizeOfString(1, tag.getKey()) + sizeOfString(2, tag.getValue());
+  }
+
+  /** Assumes the field number is less than 16, so its key is one byte. */
+  static int sizeOfMessage(int keySize, int messageSize) {
+    return keySize + varintSize(messageSize) + messageSize;
+  }
+
+  static int sizeOfString(int field, String value) {
+    int utf8Size = utf8SizeInBytes(value);
+    return 1 + varintSize(utf8Size) + utf8Size;
+  }
+
+  void writeString(int field, String value) {
+    writeKey(field, LENGTH_DELIMITED);
+    writeVarint(utf8SizeInBytes(value));
+    for (int i = 0, length = value.length(); i < length; i++) {
+      char c = value.charAt(i);
+      if (c < 0x80) {
+        buf[pos++] = (byte) c;
+      } else if (c < 0x800) {
+        buf[pos++] = (byte) (0xc0 | c >> 6);
+        buf[pos++] = (byte) (0x80 | c & 0x3f);
+      } else if (Character.isHighSurrogate(c) && i + 1 < length
+          && Character.isLowSurrogate(value.charAt(i + 1))) {
+        int codePoint = Character.toCodePoint(c, value.charAt(++i));
+        buf[pos++] = (byte) (0xf0 | codePoint >> 18);
+        buf[pos++] = (byte) (0x80 | codePoint >> 12 & 0x3f);
+        buf[pos++] = (byte) (0x80 | codePoint >> 6 & 0x3f);
+        buf[pos++] = (byte) (0x80 | codePoint & 0x3f);
+      } else if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+        buf[pos++] = '?'; // malformed
+      } else {
+        buf[pos++] = (byte) (0xe0 | c >> 12);
+        buf[pos++] = (byte) (0x80 | c >> 6 & 0x3f);
+        buf[pos++] = (byte) (0x80 | c & 0x3f);
+      }
+    }
+  }
+
+  static int utf8SizeInBytes(String value) {
+    int size = 0;
+    for (int i = 0, length = value.length(); i < length; i++) {
+      char c = value.charAt(i);
+      if (c < 0x80) {
+        size++;
+      } else if (c < 0x800) {
+        size += 2;
+      } else if (Character.isHighSurrogate(c) && i + 1 < length
+          && Character.isLowSurrogate(value.charAt(i + 1))) {
+        size += 4;
+        i++;
+      } else if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+        size++;
+      } else {
+        size += 3;
+      }
+    }
+    return size;
+  }
+
+  void writeKey(int field, int wireType) {
+    buf[pos++] = (byte) (field << 3 | wireType);
+  }
+
+  static int varintSize(long v) {
+    int size = 1;
+    while ((v & ~0x7fL) != 0) {
+      v >>>= 7;
+      size++;
+    }
+    return size;
+  }
+
+  void writeVarint(long v) {
+    while ((v & ~0x7fL) != 0) {
+      buf[pos++] = (byte) ((v & 0x7f) | 0x80);
+      v >>>= 7;
+    }
+    buf[pos++] = (byte) v;
+  }
+
+  void writeBigEndian(long v) {
+    for (int shift = 56; shift >= 0; shift -= 8) {
+      buf[pos++] = (byte) (v >>> shift);
+    }
+  }
+
+  void writeLittleEndian(long v) {
+    for (int shift = 0; shift < 64; shift += 8) {
+      buf[pos++] = (byte) (v >>> shift);
+    }
+  }
+}
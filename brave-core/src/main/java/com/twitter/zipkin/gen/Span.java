@@ -1,6 +1,11 @@
 package com.twitter.zipkin.gen;
 
+import com.github.kristofa.brave.internal.InternalSpan;
 import com.github.kristofa.brave.internal.Util;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -19,21 +24,103 @@ public class Span implements Serializable {
 
   static final long serialVersionUID = 1L;
 
+  /** Fields of the serialized form, which predates storing optional fields as primitives. */
+  private static final ObjectStreamField[] serialPersistentFields = {
+      new ObjectStreamField("startTick", Long.class),
+      new ObjectStreamField("trace_id", long.class),
+      new ObjectStreamField("trace_id_high", long.class),
+      new ObjectStreamField("name", String.class),
+      new ObjectStreamField("id", long.class),
+      new ObjectStreamField("parent_id", Long.class),
+      new ObjectStreamField("annotations", List.class),
+      new ObjectStreamField("binary_annotations", List.class),
+      new ObjectStreamField("debug", Boolean.class),
+      new ObjectStreamField("timestamp", Long.class),
+      new ObjectStreamField("duration", Long.class)
+  };
+
+  static {
+    InternalSpan.instance = new InternalSpan() {
+      @Override public void setClockAnchor(Span span, long epochMicros, long tick) {
+        span.setClockAnchor(epochMicros, tick);
+      }
+
+      @Override public boolean inheritClockAnchor(Span span, Span parent) {
+        return span.inheritClockAnchor(parent);
+      }
+
+      @Override public boolean hasClockAnchor(Span span) {
+        return span.anchored;
+      }
+
+      @Override public long anchoredTimeMicroseconds(Span span, long tick) {
+        return span.anchoredTimeMicroseconds(tick);
+      }
+
+      @Override public Object inFlight(Span span) {
+        return span.inFlight;
+      }
+
+      @Override public void inFlight(Span span, Object inFlight) {
+        span.inFlight = inFlight;
+      }
+
+      @Override public Object threadResources(Span span) {
+        return span.threadResources;
+      }
+
+      @Override public void threadResources(Span span, Object threadResources) {
+        span.threadResources = threadResources;
+      }
+
+      @Override public Span clear(Span span) {
+        return span.clear();
+      }
+    };
+  }
+
+  // Optional fields are primitives with presence flags, so in-flight spans don't retain boxes.
+  static final int FLAG_PARENT_ID = 1 << 0;
+  static final int FLAG_TIMESTAMP = 1 << 1;
+  static final int FLAG_DURATION = 1 << 2;
+  static final int FLAG_DEBUG_SET = 1 << 3;
+  static final int FLAG_DEBUG = 1 << 4;
+
+  /** Most spans have 2-4 annotations and a few binary annotations: avoids the default of 10. */
+  static final int INITIAL_ANNOTATION_CAPACITY = 4;
+
   /**
    * Internal field, used for deriving duration with {@link System#nanoTime()}.
    */
   public volatile Long startTick;
 
+  /**
+   * Internal field, used by {@link com.github.kristofa.brave.InFlightSpans} to find where this span
+   * is registered.
+   */
+  transient volatile Object inFlight;
+
+  /**
+   * Internal field, used by {@link com.github.kristofa.brave.ThreadResourceRecorder} to keep the
+   * starting thread's resource counters.
+   */
+  transient volatile Object threadResources;
+
+  // Internal clock anchor: epoch microseconds and the System.nanoTime() read at the same moment.
+  private transient boolean anchored;
+  private transient long anchorMicros;
+  private transient long anchorTick;
+
   private long trace_id; // required
   private long trace_id_high; // optional (default to zero)
   private String name; // required
   private long id; // required
-  private Long parent_id; // optional
+  private long parent_id; // optional
   private List<Annotation> annotations = Collections.emptyList(); // required
   private List<BinaryAnnotation> binary_annotations = Collections.emptyList(); // required
-  private Boolean debug; // optional
-  private Long timestamp; // optional
-  private Long duration; // optional
+  private long timestamp; // optional
+  private long duration; // optional
+  private int flags; // which optional fields are set, and debug
 
   public long getTrace_id() {
     return this.trace_id;
@@ -91,17 +178,30 @@ public class Span implements Serializable {
   }
 
   public Long getParent_id() {
-    return this.parent_id;
+    return (flags & FLAG_PARENT_ID) != 0 ? parent_id : null;
   }
 
   public Span setParent_id(Long parent_id) {
+    if (parent_id == null) {
+      flags &= ~FLAG_PARENT_ID;
+      this.parent_id = 0L;
+    } else {
+      flags |= FLAG_PARENT_ID;
+      this.parent_id = parent_id;
+    }
+    return this;
+  }
+
+  /** Like {@link #setParent_id(Long)}, except avoids boxing. */
+  public Span setParent_id(long parent_id) {
+    flags |= FLAG_PARENT_ID;
     this.parent_id = parent_id;
     return this;
   }
 
   public Span addToAnnotations(Annotation elem) {
     if (this.annotations == Collections.EMPTY_LIST) {
-      this.annotations = new ArrayList<Annotation>();
+      this.annotations = new OwnedList<Annotation>();
     }
     this.annotations.add(elem);
     return this;
@@ -118,7 +218,7 @@ public class Span implements Serializable {
 
   public Span addToBinary_annotations(BinaryAnnotation elem) {
     if (this.binary_annotations == Collections.EMPTY_LIST) {
-      this.binary_annotations = new ArrayList<BinaryAnnotation>();
+      this.binary_annotations = new OwnedList<BinaryAnnotation>();
     }
     this.binary_annotations.add(elem);
     return this;
@@ -134,11 +234,17 @@ public class Span implements Serializable {
   }
 
   public Boolean isDebug() {
-    return this.debug;
+    return (flags & FLAG_DEBUG_SET) != 0 ? Boolean.valueOf((flags & FLAG_DEBUG) != 0) : null;
   }
 
   public Span setDebug(Boolean debug) {
-    this.debug = debug;
+    if (debug == null) {
+      flags &= ~(FLAG_DEBUG_SET | FLAG_DEBUG);
+    } else if (debug) {
+      flags |= FLAG_DEBUG_SET | FLAG_DEBUG;
+    } else {
+      flags = (flags | FLAG_DEBUG_SET) & ~FLAG_DEBUG;
+    }
     return this;
   }
 
@@ -157,7 +263,7 @@ public class Span implements Serializable {
    * stores are expected to support this at time of introduction.
    */
   public Long getTimestamp() {
-    return this.timestamp;
+    return (flags & FLAG_TIMESTAMP) != 0 ? timestamp : null;
   }
 
   /**
@@ -175,6 +281,19 @@ public class Span implements Serializable {
    * stores are expected to support this at time of introduction.
    */
   public Span setTimestamp(Long timestamp) {
+    if (timestamp == null) {
+      flags &= ~FLAG_TIMESTAMP;
+      this.timestamp = 0L;
+    } else {
+      flags |= FLAG_TIMESTAMP;
+      this.timestamp = timestamp;
+    }
+    return this;
+  }
+
+  /** Like {@link #setTimestamp(Long)}, except avoids boxing. */
+  public Span setTimestamp(long timestamp) {
+    flags |= FLAG_TIMESTAMP;
     this.timestamp = timestamp;
     return this;
   }
@@ -197,7 +316,7 @@ public class Span implements Serializable {
    * This field is i64 vs i32 to support spans longer than 35 minutes.
    */
   public Long getDuration() {
-    return this.duration;
+    return (flags & FLAG_DURATION) != 0 ? duration : null;
   }
 
   /**
@@ -218,10 +337,128 @@ public class Span implements Serializable {
    * This field is i64 vs i32 to support spans longer than 35 minutes.
    */
   public Span setDuration(Long duration) {
+    if (duration == null) {
+      flags &= ~FLAG_DURATION;
+      this.duration = 0L;
+    } else {
+      flags |= FLAG_DURATION;
+      this.duration = duration;
+    }
+    return this;
+  }
+
+  /** Like {@link #setDuration(Long)}, except avoids boxing. */
+  public Span setDuration(long duration) {
+    flags |= FLAG_DURATION;
     this.duration = duration;
     return this;
   }
 
+  /**
+   * Used to derive timestamps in a trace from one clock reading. The {@code epochMicros} and {@code
+   * tick} arguments are a clock reading and the {@link System#nanoTime()} read with it.
+   */
+  Span setClockAnchor(long epochMicros, long tick) {
+    anchored = true;
+    anchorMicros = epochMicros;
+    anchorTick = tick;
+    return this;
+  }
+
+  /** Copies the clock anchor of a span in the same trace, if it has one. */
+  boolean inheritClockAnchor(Span parent) {
+    if (!parent.anchored) return false;
+    setClockAnchor(parent.anchorMicros, parent.anchorTick);
+    return true;
+  }
+
+  /**
+   * Returns the epoch microseconds at the {@link System#nanoTime()} value {@code tick}, relative to
+   * the clock anchor. Results never decrease as the tick increases.
+   */
+  long anchoredTimeMicroseconds(long tick) {
+    return anchorMicros + (tick - anchorTick) / 1000L;
+  }
+
+  /**
+   * Resets this span for reuse, as if it were newly constructed. Lists added to by this span are
+   * cleared, keeping their capacity.
+   */
+  Span clear() {
+    startTick = null;
+    inFlight = null;
+    threadResources = null;
+    anchored = false;
+    anchorMicros = 0L;
+    anchorTick = 0L;
+    trace_id = 0L;
+    trace_id_high = 0L;
+    name = null;
+    id = 0L;
+    parent_id = 0L;
+    timestamp = 0L;
+    duration = 0L;
+    flags = 0;
+    annotations = clear(annotations);
+    binary_annotations = clear(binary_annotations);
+    return this;
+  }
+
+  static <T> List<T> clear(List<T> list) {
+    if (list instanceof OwnedList) { // lists passed to setters could be shared, so aren't reused
+      list.clear();
+      return list;
+    }
+    return Collections.emptyList();
+  }
+
+  private void writeObject(ObjectOutputStream out) throws IOException {
+    ObjectOutputStream.PutField fields = out.putFields();
+    fields.put("startTick", startTick);
+    fields.put("trace_id", trace_id);
+    fields.put("trace_id_high", trace_id_high);
+    fields.put("name", name);
+    fields.put("id", id);
+    fields.put("parent_id", getParent_id());
+    fields.put("annotations", unowned(annotations));
+    fields.put("binary_annotations", unowned(binary_annotations));
+    fields.put("debug", isDebug());
+    fields.put("timestamp", getTimestamp());
+    fields.put("duration", getDuration());
+    out.writeFields();
+  }
+
+  @SuppressWarnings("unchecked")
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    ObjectInputStream.GetField fields = in.readFields();
+    startTick = (Long) fields.get("startTick", null);
+    trace_id = fields.get("trace_id", 0L);
+    trace_id_high = fields.get("trace_id_high", 0L);
+    name = (String) fields.get("name", null);
+    id = fields.get("id", 0L);
+    setParent_id((Long) fields.get("parent_id", null));
+    annotations = (List<Annotation>) fields.get("annotations", Collections.emptyList());
+    binary_annotations =
+        (List<BinaryAnnotation>) fields.get("binary_annotations", Collections.emptyList());
+    setDebug((Boolean) fields.get("debug", null));
+    setTimestamp((Long) fields.get("timestamp", null));
+    setDuration((Long) fields.get("duration", null));
+  }
+
+  /** Lists are serialized as plain lists, so that older versions can read them. */
+  static <T> List<T> unowned(List<T> list) {
+    return list instanceof OwnedList ? new ArrayList<T>(list) : list;
+  }
+
+  /** Marks a list this span created, as opposed to one passed in. */
+  static final class OwnedList<T> extends ArrayList<T> {
+    static final long serialVersionUID = 1L;
+
+    OwnedList() {
+      super(INITIAL_ANNOTATION_CAPACITY);
+    }
+  }
+
   @Override
   public boolean equals(Object o) {
     if (o == this) {
@@ -233,12 +470,13 @@ public class Span implements Serializable {
           && (this.trace_id == that.trace_id)
           && (this.name.equals(that.name))
           && (this.id == that.id)
-          && equal(this.parent_id, that.parent_id)
-          && equal(this.timestamp, that.timestamp)
-          && equal(this.duration, that.duration)
+          // unset optional fields are always zero, so primitives compare like the boxed values
+          && (this.flags == that.flags)
+          && (this.parent_id == that.parent_id)
+          && (this.timestamp == that.timestamp)
+          && (this.duration == that.duration)
           && equal(this.annotations, that.annotations)
-          && equal(this.binary_annotations, that.binary_annotations)
-          && equal(this.debug, that.debug);
+          && equal(this.binary_annotations, that.binary_annotations);
     }
     return false;
   }
@@ -255,17 +493,17 @@ public class Span implements Serializable {
     h *= 1000003;
     h ^= (id >>> 32) ^ id;
     h *= 1000003;
-    h ^= (parent_id == null) ? 0 : parent_id.hashCode();
+    h ^= (parent_id >>> 32) ^ parent_id;
     h *= 1000003;
-    h ^= (timestamp == null) ? 0 : timestamp.hashCode();
+    h ^= (timestamp >>> 32) ^ timestamp;
     h *= 1000003;
-    h ^= (duration == null) ? 0 : duration.hashCode();
+    h ^= (duration >>> 32) ^ duration;
     h *= 1000003;
     h ^= (annotations == null) ? 0 : annotations.hashCode();
     h *= 1000003;
     h ^= (binary_annotations == null) ? 0 : binary_annotations.hashCode();
     h *= 1000003;
-    h ^= (debug == null) ? 0 : debug.hashCode();
+    h ^= flags;
     return h;
   }
 
@@ -285,15 +523,26 @@ public class Span implements Serializable {
     result.timestamp(getTimestamp());
     result.duration(getDuration());
     result.debug(isDebug());
+    // Annotations almost always share the local endpoint: only convert it once.
+    Endpoint lastHost = null;
+    zipkin.Endpoint lastZipkinHost = null;
     for (Annotation a : getAnnotations()) {
-      result.addAnnotation(zipkin.Annotation.create(a.timestamp, a.value, from(a.host)));
+      if (a.host != lastHost) {
+        lastHost = a.host;
+        lastZipkinHost = from(a.host);
+      }
+      result.addAnnotation(zipkin.Annotation.create(a.timestamp, a.value, lastZipkinHost));
     }
     for (BinaryAnnotation a : getBinary_annotations()) {
+      if (a.host != lastHost) {
+        lastHost = a.host;
+        lastZipkinHost = from(a.host);
+      }
       result.addBinaryAnnotation(zipkin.BinaryAnnotation.builder()
           .key(a.key)
           .value(a.value)
           .type(zipkin.BinaryAnnotation.Type.fromValue(a.type.getValue()))
-          .endpoint(from(a.host))
+          .endpoint(lastZipkinHost)
           .build());
     }
     return result.build();
@@ -1,11 +1,24 @@
 package com.twitter.zipkin.gen;
 
 import com.github.kristofa.brave.internal.DefaultSpanCodec;
+import com.github.kristofa.brave.internal.V2SpanCodec;
 import java.util.List;
 
 public interface SpanCodec {
   SpanCodec THRIFT = DefaultSpanCodec.THRIFT;
   SpanCodec JSON = DefaultSpanCodec.JSON;
+  /**
+   * Zipkin v2 json, accepted by {@code POST /api/v2/spans}. Smaller than {@link #JSON}, as
+   * endpoints aren't repeated on each annotation. A span with both client and server annotations
+   * is written as a list of its two sides. Spans read are converted to the v1 model, with tags as
+   * string binary annotations.
+   */
+  SpanCodec JSON_V2 = V2SpanCodec.JSON;
+  /**
+   * Zipkin v2 protobuf (proto3), accepted by {@code POST /api/v2/spans}. Each span is written as
+   * a {@code ListOfSpans}. Spans read are converted to the v1 model, like {@link #JSON_V2}.
+   */
+  SpanCodec PROTO3 = V2SpanCodec.PROTO3;
 
   byte[] writeSpan(Span span);
 
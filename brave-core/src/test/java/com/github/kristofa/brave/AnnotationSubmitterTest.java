@@ -1,6 +1,7 @@
 package com.github.kristofa.brave;
 
 import com.github.kristofa.brave.SpanAndEndpoint.StaticSpanAndEndpoint;
+import com.github.kristofa.brave.internal.InternalSpan;
 import com.twitter.zipkin.gen.Annotation;
 import com.twitter.zipkin.gen.BinaryAnnotation;
 import com.twitter.zipkin.gen.Endpoint;
@@ -119,6 +120,51 @@ public class AnnotationSubmitterTest {
         );
     }
 
+    @Test
+    public void startAnnotation_anchorsLocalRootToClock() {
+        PowerMockito.when(System.nanoTime()).thenReturn(5000L);
+
+        annotationSubmitter.submitStartAnnotation("sr");
+
+        assertThat(InternalSpan.instance.hasClockAnchor(span)).isTrue();
+        assertThat(span.getTimestamp()).isEqualTo(CURRENT_TIME_MICROSECONDS);
+        assertThat(span.startTick).isEqualTo(5000L);
+
+        // later events read nanoTime, not the clock
+        PowerMockito.when(System.currentTimeMillis()).thenReturn(0L);
+        PowerMockito.when(System.nanoTime()).thenReturn(7500L);
+        annotationSubmitter.submitAnnotation(ANNOTATION_NAME);
+
+        assertThat(span.getAnnotations()).extracting(a -> a.timestamp)
+            .containsExactly(CURRENT_TIME_MICROSECONDS, CURRENT_TIME_MICROSECONDS + 2);
+    }
+
+    @Test
+    public void startAnnotation_derivedFromInheritedAnchor() {
+        InternalSpan.instance.setClockAnchor(span, CURRENT_TIME_MICROSECONDS, 0L);
+        PowerMockito.when(System.currentTimeMillis()).thenReturn(0L);
+        PowerMockito.when(System.nanoTime()).thenReturn(1500L);
+
+        annotationSubmitter.submitStartAnnotation("cs");
+
+        assertThat(span.getTimestamp()).isEqualTo(CURRENT_TIME_MICROSECONDS + 1);
+    }
+
+    @Test
+    public void endAnnotation_derivedFromAnchor() {
+        InternalSpan.instance.setClockAnchor(span, CURRENT_TIME_MICROSECONDS, 0L);
+        PowerMockito.when(System.nanoTime()).thenReturn(1000L);
+        annotationSubmitter.submitStartAnnotation("sr");
+
+        PowerMockito.when(System.currentTimeMillis()).thenReturn(0L);
+        PowerMockito.when(System.nanoTime()).thenReturn(4000L);
+        annotationSubmitter.submitEndAnnotation("ss", span -> {
+            assertThat(span.timestamp).isEqualTo(CURRENT_TIME_MICROSECONDS + 1);
+            assertThat(span.duration).isEqualTo(3L);
+            assertThat(span.annotations.get(1).timestamp).isEqualTo(CURRENT_TIME_MICROSECONDS + 4);
+        });
+    }
+
     @Test
     public void doesntSetDurationWhenTimestampUnset() {
         annotationSubmitter.submitAnnotation("sr");
@@ -1,8 +1,12 @@
 package com.github.kristofa.brave;
 
 import static org.mockito.Matchers.anyLong;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
@@ -16,13 +20,15 @@ public class BraveRunnableTest {
     private Runnable mockWrappedRunnable;
     private ServerSpanThreadBinder mockThreadBinder;
     private ServerSpan mockSpan;
+    private ServerSpan mockPreviousSpan;
 
     @Before
     public void setup() {
         mockWrappedRunnable = mock(Runnable.class);
         mockThreadBinder = mock(ServerSpanThreadBinder.class);
         mockSpan = mock(ServerSpan.class);
-        when(mockThreadBinder.getCurrentServerSpan()).thenReturn(mockSpan);
+        mockPreviousSpan = mock(ServerSpan.class);
+        when(mockThreadBinder.getCurrentServerSpan()).thenReturn(mockSpan, mockPreviousSpan);
         braveRunnable = BraveRunnable.create(mockWrappedRunnable, mockThreadBinder);
     }
 
@@ -31,11 +37,25 @@ public class BraveRunnableTest {
         braveRunnable.run();
 
         final InOrder inOrder = inOrder(mockWrappedRunnable, mockThreadBinder, mockSpan);
-        inOrder.verify(mockThreadBinder).getCurrentServerSpan();
+        inOrder.verify(mockThreadBinder, times(2)).getCurrentServerSpan();
         inOrder.verify(mockThreadBinder).setCurrentSpan(mockSpan);
         inOrder.verify(mockWrappedRunnable).run();
+        inOrder.verify(mockThreadBinder).setCurrentSpan(mockPreviousSpan);
 
         verifyNoMoreInteractions(mockWrappedRunnable, mockThreadBinder, mockSpan);
     }
 
+    @Test
+    public void testRun_restoresPreviousSpanOnException() throws Exception {
+        doThrow(new IllegalStateException()).when(mockWrappedRunnable).run();
+
+        try {
+            braveRunnable.run();
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+
+        verify(mockThreadBinder).setCurrentSpan(mockPreviousSpan);
+    }
+
 }
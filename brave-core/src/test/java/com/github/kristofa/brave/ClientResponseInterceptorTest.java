@@ -28,6 +28,7 @@ public class ClientResponseInterceptorTest {
         when(adapter.responseAnnotations()).thenReturn(Collections.EMPTY_LIST);
         interceptor.handle(adapter);
         InOrder inOrder = inOrder(clientTracer, adapter);
+        inOrder.verify(clientTracer).noCurrentSpan();
         inOrder.verify(adapter).responseAnnotations();
         inOrder.verify(clientTracer).setClientReceived();
         verifyNoMoreInteractions(clientTracer, adapter);
@@ -41,10 +42,19 @@ public class ClientResponseInterceptorTest {
         when(adapter.responseAnnotations()).thenReturn(Arrays.asList(a1, a2));
         interceptor.handle(adapter);
         InOrder inOrder = inOrder(clientTracer, adapter);
+        inOrder.verify(clientTracer).noCurrentSpan();
         inOrder.verify(adapter).responseAnnotations();
         inOrder.verify(clientTracer).submitBinaryAnnotation(a1.getKey(), a1.getValue());
         inOrder.verify(clientTracer).submitBinaryAnnotation(a2.getKey(), a2.getValue());
         inOrder.verify(clientTracer).setClientReceived();
         verifyNoMoreInteractions(clientTracer, adapter);
     }
+
+    @Test
+    public void testNoCurrentSpan_skipsAdapter() {
+        when(clientTracer.noCurrentSpan()).thenReturn(true);
+        interceptor.handle(adapter);
+        verify(clientTracer).setClientReceived();
+        verifyZeroInteractions(adapter);
+    }
 }
@@ -1,6 +1,7 @@
 package com.github.kristofa.brave;
 
 import com.github.kristofa.brave.example.TestServerClientAndLocalSpanStateCompilation;
+import com.github.kristofa.brave.internal.InternalSpan;
 import com.twitter.zipkin.gen.Annotation;
 import com.twitter.zipkin.gen.BinaryAnnotation;
 import com.twitter.zipkin.gen.Endpoint;
@@ -261,6 +262,20 @@ public class ClientTracerTest {
         assertEquals(TRACE_ID, newSpanId.traceId);
     }
 
+    @Test
+    public void startNewSpan_clientSentDerivedFromParentClockAnchor() {
+        Span parent = PARENT_SPAN_ID.toSpan().setName("name");
+        InternalSpan.instance.setClockAnchor(parent, 1000000L, 500L);
+        state.setCurrentServerSpan(ServerSpan.create(parent));
+        when(mockRandom.nextLong()).thenReturn(1L);
+
+        clientTracer.startNewSpan(REQUEST_NAME);
+        PowerMockito.when(System.nanoTime()).thenReturn(2500L);
+        clientTracer.setClientSent();
+
+        assertEquals(1000002L, state.getCurrentClientSpan().getTimestamp().longValue());
+    }
+
     @Test
     public void startNewSpan_rootSpanWith64bitTraceId() {
         when(mockRandom.nextLong()).thenReturn(TRACE_ID);
@@ -282,4 +297,18 @@ public class ClientTracerTest {
         assertEquals(TRACE_ID + 1, newSpanId.traceIdHigh);
         assertEquals(TRACE_ID, newSpanId.traceId);
     }
+
+    @Test
+    public void startNewSpan_rootSpanWithTimeOrdered128bitTraceId() {
+        clientTracer = new AutoValue_ClientTracer.Builder(clientTracer)
+            .traceId128Bit(true).timeOrderedTraceIds(true).build();
+        when(mockRandom.nextLong()).thenReturn(TRACE_ID);
+        when(mockRandom.nextInt()).thenReturn(-1);
+        when(mockSampler.isSampled(TRACE_ID)).thenReturn(true);
+
+        SpanId newSpanId = clientTracer.startNewSpan(REQUEST_NAME);
+        assertEquals(CURRENT_TIME_MICROSECONDS / 1000000L, newSpanId.traceIdHigh >>> 32);
+        assertEquals(0xffffffffL, newSpanId.traceIdHigh & 0xffffffffL);
+        assertEquals(TRACE_ID, newSpanId.traceId);
+    }
 }
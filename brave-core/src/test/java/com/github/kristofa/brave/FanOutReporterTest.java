@@ -0,0 +1,272 @@
+package com.github.kristofa.brave;
+
+import com.github.kristofa.brave.FanOutReporter.DropPolicy;
+import com.github.kristofa.brave.FanOutReporter.Sink;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.junit.After;
+import org.junit.Test;
+import zipkin.Component;
+import zipkin.Span;
+import zipkin.TestObjects;
+import zipkin.reporter.Callback;
+import zipkin.reporter.Encoding;
+import zipkin.reporter.InMemoryReporterMetrics;
+import zipkin.reporter.Reporter;
+import zipkin.reporter.Sender;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FanOutReporterTest {
+  static final Span SPAN = TestObjects.LOTS_OF_SPANS[0];
+
+  FanOutReporter reporter;
+
+  @After
+  public void close() {
+    if (reporter != null) reporter.close();
+  }
+
+  @Test
+  public void deliversToEachKindOfSink() {
+    List<Span> reported = new CopyOnWriteArrayList<>();
+    List<com.twitter.zipkin.gen.Span> collected = new CopyOnWriteArrayList<>();
+    FakeSender sender = new FakeSender(Encoding.JSON);
+    reporter = FanOutReporter.builder()
+        .addSink(Sink.reporter(reported::add))
+        .addSink(Sink.spanCollector(new SpanCollector() {
+          @Override public void collect(com.twitter.zipkin.gen.Span span) {
+            collected.add(span);
+          }
+
+          @Override public void addDefaultAnnotation(String key, String value) {
+          }
+        }))
+        .addSink(Sink.sender(sender))
+        .build();
+
+    reporter.report(SPAN);
+    reporter.close();
+
+    assertThat(reported).containsExactly(SPAN);
+    assertThat(collected).extracting(s -> s.getId()).containsExactly(SPAN.id);
+    assertThat(sender.spans).hasSize(1);
+  }
+
+  @Test
+  public void stalledSinkDoesntBlockOthers() throws InterruptedException {
+    CountDownLatch stall = new CountDownLatch(1);
+    List<Span> fast = new CopyOnWriteArrayList<>();
+    InMemoryReporterMetrics stalledMetrics = new InMemoryReporterMetrics();
+    reporter = FanOutReporter.builder()
+        .addSink(Sink.reporter(span -> await(stall)).queueSize(2).metrics(stalledMetrics))
+        .addSink(Sink.reporter(fast::add))
+        .build();
+
+    for (int i = 0; i < 10; i++) reporter.report(TestObjects.LOTS_OF_SPANS[i]);
+    for (int i = 0; i < 100 && fast.size() < 10; i++) Thread.sleep(10);
+    stall.countDown();
+
+    assertThat(fast).hasSize(10);
+    assertThat(stalledMetrics.spans()).isEqualTo(10);
+    assertThat(stalledMetrics.spansDropped()).isPositive();
+  }
+
+  @Test
+  public void dropOldest_keepsRecentSpans() {
+    CountDownLatch stall = new CountDownLatch(1);
+    List<Span> reported = new CopyOnWriteArrayList<>();
+    reporter = FanOutReporter.builder()
+        .addSink(Sink.reporter(span -> {
+          await(stall);
+          reported.add(span);
+        }).queueSize(2).dropPolicy(DropPolicy.DROP_OLDEST))
+        .build();
+
+    for (int i = 0; i < 10; i++) reporter.report(TestObjects.LOTS_OF_SPANS[i]);
+    stall.countDown();
+    reporter.close();
+
+    assertThat(reported).endsWith(TestObjects.LOTS_OF_SPANS[8], TestObjects.LOTS_OF_SPANS[9]);
+  }
+
+  @Test
+  public void encodesOncePerEncoding() {
+    FakeSender json1 = new FakeSender(Encoding.JSON);
+    FakeSender json2 = new FakeSender(Encoding.JSON);
+    FakeSender thrift = new FakeSender(Encoding.THRIFT);
+    reporter = FanOutReporter.builder()
+        .addSink(Sink.sender(json1))
+        .addSink(Sink.sender(json2))
+        .addSink(Sink.sender(thrift))
+        .build();
+
+    reporter.report(SPAN);
+    reporter.close();
+
+    assertThat(json1.spans.get(0)).isSameAs(json2.spans.get(0));
+    assertThat(thrift.spans.get(0)).isNotEqualTo(json1.spans.get(0));
+  }
+
+  @Test
+  public void sender_splitsMessagesBySize() {
+    FakeSender sender = new FakeSender(Encoding.JSON);
+    int spanSize = sender.messageSizeInBytes(singletonJson(SPAN));
+    sender.messageMaxBytes = spanSize * 2;
+    InMemoryReporterMetrics metrics = new InMemoryReporterMetrics();
+    reporter = FanOutReporter.builder()
+        .addSink(Sink.sender(sender).metrics(metrics))
+        .build();
+
+    for (int i = 0; i < 5; i++) reporter.report(SPAN);
+    reporter.close();
+
+    assertThat(sender.spans).hasSize(5);
+    assertThat(metrics.messages()).isEqualTo(sender.messages).isGreaterThanOrEqualTo(3);
+    assertThat(metrics.spansDropped()).isZero();
+  }
+
+  @Test
+  public void sender_errorDropsMessage() {
+    FakeSender sender = new FakeSender(Encoding.THRIFT);
+    sender.error = new IOException("connection refused");
+    InMemoryReporterMetrics metrics = new InMemoryReporterMetrics();
+    reporter = FanOutReporter.builder()
+        .addSink(Sink.sender(sender).metrics(metrics))
+        .build();
+
+    reporter.report(SPAN);
+    reporter.close();
+
+    assertThat(metrics.spansDropped()).isEqualTo(1);
+    assertThat(metrics.messagesDropped()).isEqualTo(1);
+  }
+
+  @Test
+  public void sender_timeoutDropsMessage() {
+    FakeSender sender = new FakeSender(Encoding.JSON);
+    sender.neverComplete = true;
+    InMemoryReporterMetrics metrics = new InMemoryReporterMetrics();
+    reporter = FanOutReporter.builder()
+        .addSink(Sink.sender(sender).metrics(metrics).messageTimeout(10, TimeUnit.MILLISECONDS))
+        .build();
+
+    reporter.report(SPAN);
+    reporter.close();
+
+    assertThat(metrics.spansDropped()).isEqualTo(1);
+    assertThat(metrics.messagesDroppedByCause().keySet()).extracting(Object::getClass)
+        .containsOnly(TimeoutException.class);
+  }
+
+  @Test
+  public void close_timesOutOnStalledSink() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    FakeSender sender = new FakeSender(Encoding.JSON);
+    sender.neverComplete = true;
+    InMemoryReporterMetrics metrics = new InMemoryReporterMetrics();
+    reporter = FanOutReporter.builder()
+        .addSink(Sink.sender(sender).metrics(metrics))
+        .addSink(Sink.reporter(span -> {
+          try {
+            release.await();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt(); // close interrupts stalled sinks
+          }
+        }))
+        .closeTimeout(50, TimeUnit.MILLISECONDS)
+        .build();
+
+    reporter.report(SPAN);
+    reporter.report(SPAN);
+    long start = System.nanoTime();
+    reporter.close();
+    release.countDown();
+
+    assertThat(System.nanoTime() - start).isLessThan(TimeUnit.SECONDS.toNanos(5));
+    // the interrupted lane counts the message it was sending as it exits
+    for (FanOutReporter.Lane lane : reporter.lanes) lane.thread.join(1000L);
+    assertThat(metrics.spansDropped()).isEqualTo(2);
+  }
+
+  @Test
+  public void reportAfterClose_drops() {
+    InMemoryReporterMetrics metrics = new InMemoryReporterMetrics();
+    reporter = FanOutReporter.builder()
+        .addSink(Sink.reporter(Reporter.NOOP).metrics(metrics))
+        .build();
+    reporter.close();
+
+    reporter.report(SPAN);
+
+    assertThat(metrics.spansDropped()).isEqualTo(1);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void requiresSinks() {
+    FanOutReporter.builder().build();
+  }
+
+  static List<byte[]> singletonJson(Span span) {
+    List<byte[]> result = new ArrayList<>();
+    result.add(zipkin.reporter.Encoder.JSON.encode(span));
+    return result;
+  }
+
+  static void await(CountDownLatch latch) {
+    try {
+      latch.await(10, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  static final class FakeSender implements Sender {
+    final Encoding encoding;
+    final List<byte[]> spans = new CopyOnWriteArrayList<>();
+    int messageMaxBytes = 1024 * 1024;
+    int messages;
+    Throwable error;
+    boolean neverComplete;
+
+    FakeSender(Encoding encoding) {
+      this.encoding = encoding;
+    }
+
+    @Override public Encoding encoding() {
+      return encoding;
+    }
+
+    @Override public int messageMaxBytes() {
+      return messageMaxBytes;
+    }
+
+    @Override public int messageSizeInBytes(List<byte[]> encodedSpans) {
+      return encoding.listSizeInBytes(encodedSpans);
+    }
+
+    @Override public void sendSpans(List<byte[]> encodedSpans, Callback callback) {
+      if (neverComplete) return;
+      if (error != null) {
+        callback.onError(error);
+        return;
+      }
+      assertThat(messageSizeInBytes(encodedSpans)).isLessThanOrEqualTo(messageMaxBytes);
+      messages++;
+      spans.addAll(encodedSpans);
+      callback.onComplete();
+    }
+
+    @Override public Component.CheckResult check() {
+      return Component.CheckResult.OK;
+    }
+
+    @Override public void close() {
+    }
+  }
+}
@@ -0,0 +1,253 @@
+package com.github.kristofa.brave;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import zipkin.Annotation;
+import zipkin.Codec;
+import zipkin.Constants;
+import zipkin.Endpoint;
+import zipkin.Span;
+import zipkin.reporter.Encoder;
+import zipkin.reporter.InMemoryReporterMetrics;
+import zipkin.reporter.Reporter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FileSpoolReporterTest {
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  InMemoryReporterMetrics metrics = new InMemoryReporterMetrics();
+
+  @Test
+  public void writesJsonLines() throws Exception {
+    FileSpoolReporter reporter = FileSpoolReporter.builder(folder.getRoot())
+        .metrics(metrics).build();
+    reporter.report(span(1L));
+    reporter.report(span(2L));
+    reporter.close();
+
+    File[] segments = folder.getRoot().listFiles();
+    assertThat(segments).extracting(File::getName)
+        .containsExactly("spans-0000000000000000000.json");
+    List<String> lines = Files.readAllLines(segments[0].toPath());
+    assertThat(lines).hasSize(2);
+    assertThat(Codec.JSON.readSpan(lines.get(1).getBytes("UTF-8"))).isEqualTo(span(2L));
+    assertThat(metrics.spans()).isEqualTo(2);
+    assertThat(metrics.spansDropped()).isZero();
+  }
+
+  @Test
+  public void writesLengthPrefixedThrift() throws Exception {
+    FileSpoolReporter reporter = FileSpoolReporter.builder(folder.getRoot())
+        .encoder(Encoder.THRIFT).build();
+    reporter.report(span(1L));
+    reporter.report(span(2L));
+    reporter.close();
+
+    assertThat(readThrift(folder.getRoot().listFiles()[0])).containsExactly(span(1L), span(2L));
+  }
+
+  @Test
+  public void rotatesWhenSegmentFull() throws Exception {
+    int spanBytes = Codec.JSON.sizeInBytes(span(1L)) + 1;
+    FileSpoolReporter reporter = FileSpoolReporter.builder(folder.getRoot())
+        .segmentBytes(Math.max(1024, spanBytes * 3)).build();
+    int count = Math.max(1024, spanBytes * 3) / spanBytes * 2 + 1;
+    for (long i = 1; i <= count; i++) reporter.report(span(i));
+    reporter.close();
+
+    File[] segments = sortedSegments();
+    assertThat(segments).hasSize(3);
+    long lines = 0;
+    for (File segment : segments) lines += Files.readAllLines(segment.toPath()).size();
+    assertThat(lines).isEqualTo(count);
+  }
+
+  @Test
+  public void rotatesOnInterval() throws Exception {
+    FileSpoolReporter reporter = FileSpoolReporter.builder(folder.getRoot())
+        .rotationInterval(1, TimeUnit.MILLISECONDS).build();
+    try {
+      reporter.report(span(1L));
+
+      // the completed segment appears without closing the reporter
+      long deadline = System.currentTimeMillis() + 5000;
+      while (sortedSegments().length == 0 && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10);
+      }
+      assertThat(sortedSegments()).hasSize(1);
+    } finally {
+      reporter.close();
+    }
+  }
+
+  @Test
+  public void deletesOldestSegmentsOverBudget() throws Exception {
+    for (int i = 0; i < 5; i++) {
+      Files.write(new File(folder.getRoot(), "spans-000000000000000000" + i + ".json").toPath(),
+          new byte[1024]);
+    }
+
+    FileSpoolReporter reporter = FileSpoolReporter.builder(folder.getRoot())
+        .segmentBytes(1024).maxTotalBytes(3 * 1024).build();
+    reporter.report(span(1L));
+    reporter.close();
+
+    assertThat(sortedSegments()).extracting(File::getName).containsExactly(
+        "spans-0000000000000000003.json",
+        "spans-0000000000000000004.json",
+        "spans-0000000000000000005.json"
+    );
+  }
+
+  @Test
+  public void recoversActiveSegment() throws Exception {
+    byte[] line = (new String(Codec.JSON.writeSpan(span(1L)), "UTF-8") + "\n").getBytes("UTF-8");
+    File active = new File(folder.getRoot(), "spans-0000000000000000007.json.active");
+    try (RandomAccessFile file = new RandomAccessFile(active, "rw")) {
+      file.setLength(4096);
+      file.write(line);
+      file.write("{\"partial".getBytes("UTF-8"));
+    }
+
+    FileSpoolReporter reporter = FileSpoolReporter.builder(folder.getRoot()).build();
+    reporter.report(span(2L));
+    reporter.close();
+
+    File[] segments = sortedSegments();
+    assertThat(segments).extracting(File::getName).containsExactly(
+        "spans-0000000000000000007.json",
+        "spans-0000000000000000008.json"
+    );
+    assertThat(Files.readAllBytes(segments[0].toPath())).isEqualTo(line);
+  }
+
+  @Test
+  public void v2Json_oneSpanPerLine() throws Exception {
+    Endpoint client = Endpoint.create("client", 127 << 24 | 1);
+    Endpoint server = Endpoint.create("server", 127 << 24 | 2);
+    Span shared = span(1L).toBuilder()
+        .addAnnotation(Annotation.create(1000L, Constants.CLIENT_SEND, client))
+        .addAnnotation(Annotation.create(1002L, Constants.SERVER_RECV, server))
+        .addAnnotation(Annotation.create(1008L, Constants.SERVER_SEND, server))
+        .addAnnotation(Annotation.create(1010L, Constants.CLIENT_RECV, client))
+        .build();
+    FileSpoolReporter spool = FileSpoolReporter.builder(folder.getRoot())
+        .encoder(ZipkinV2Encoders.JSON).metrics(metrics).build();
+    Reporter<Span> reporter = ZipkinV2Encoders.splitSharedSpans(spool);
+
+    reporter.report(shared);
+    reporter.report(span(2L));
+    spool.close();
+
+    List<String> lines = Files.readAllLines(sortedSegments()[0].toPath());
+    assertThat(lines).hasSize(3);
+    assertThat(lines.get(0)).startsWith("{").contains("\"kind\":\"CLIENT\"").endsWith("}");
+    assertThat(lines.get(1)).startsWith("{").contains("\"kind\":\"SERVER\"").endsWith("}");
+    assertThat(metrics.spansDropped()).isZero();
+  }
+
+  @Test
+  public void dropsSpanWhichCantBeEncoded() throws Exception {
+    Endpoint endpoint = Endpoint.create("service", 127 << 24 | 1);
+    Span shared = span(1L).toBuilder()
+        .addAnnotation(Annotation.create(1000L, Constants.CLIENT_SEND, endpoint))
+        .addAnnotation(Annotation.create(1002L, Constants.SERVER_RECV, endpoint))
+        .build();
+    FileSpoolReporter reporter = FileSpoolReporter.builder(folder.getRoot())
+        .encoder(ZipkinV2Encoders.JSON).metrics(metrics).build();
+
+    reporter.report(shared);
+    reporter.report(span(2L));
+    reporter.close();
+
+    assertThat(Files.readAllLines(sortedSegments()[0].toPath())).hasSize(1);
+    assertThat(metrics.spansDropped()).isEqualTo(1);
+  }
+
+  @Test
+  public void abandonedSegmentIsDeleted() throws Exception {
+    FileSpoolReporter reporter = FileSpoolReporter.builder(folder.getRoot()).build();
+    reporter.close(); // so that the test thread owns the segment
+
+    reporter.startSegment();
+    assertThat(reporter.listSegments(true)).hasSize(1);
+    reporter.abandonSegment();
+
+    assertThat(folder.getRoot().listFiles()).isEmpty();
+  }
+
+  @Test
+  public void countsOnlyUnwrittenSpansAsDropped() throws Exception {
+    FileSpoolReporter reporter = FileSpoolReporter.builder(folder.getRoot())
+        .segmentBytes(1024).metrics(metrics).build();
+    reporter.close(); // so that the test thread runs the write loop
+
+    // two spans fit in the first segment, then starting the next one fails
+    String name = new String(new char[400]).replace('\0', 'a');
+    for (long i = 1; i <= 3; i++) reporter.queue.add(span(i).toBuilder().name(name).build());
+    reporter.startSegment();
+    for (File file : folder.getRoot().listFiles()) assertThat(file.delete()).isTrue();
+    assertThat(folder.getRoot().delete()).isTrue();
+    reporter.writeLoop();
+
+    assertThat(metrics.spansDropped()).isEqualTo(1);
+  }
+
+  /** Truncating a mapped file fails on Windows, so segments are unmapped first. */
+  @Test
+  public void unmap() throws Exception {
+    File file = folder.newFile();
+    try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+      raf.setLength(4096);
+      MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, 4096);
+
+      assertThat(FileSpoolReporter.unmap(buffer)).isTrue();
+      raf.setLength(0);
+    }
+  }
+
+  @Test
+  public void dropsWhenClosed() throws Exception {
+    FileSpoolReporter reporter = FileSpoolReporter.builder(folder.getRoot())
+        .metrics(metrics).build();
+    reporter.close();
+
+    reporter.report(span(1L));
+
+    assertThat(metrics.spansDropped()).isEqualTo(1);
+    assertThat(folder.getRoot().listFiles()).isEmpty();
+  }
+
+  File[] sortedSegments() {
+    File[] result = folder.getRoot().listFiles((dir, name) -> name.endsWith(".json"));
+    Arrays.sort(result);
+    return result;
+  }
+
+  static List<Span> readThrift(File file) throws Exception {
+    ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+    List<Span> result = new ArrayList<>();
+    while (buffer.hasRemaining()) {
+      byte[] encoded = new byte[buffer.getInt()];
+      buffer.get(encoded);
+      result.add(Codec.THRIFT.readSpan(encoded));
+    }
+    return result;
+  }
+
+  static Span span(long id) {
+    return Span.builder().traceId(id).id(id).name("get").timestamp(id * 1000).duration(10L).build();
+  }
+}
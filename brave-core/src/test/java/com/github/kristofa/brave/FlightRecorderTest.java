@@ -0,0 +1,161 @@
+package com.github.kristofa.brave;
+
+import com.twitter.zipkin.gen.Endpoint;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.After;
+import org.junit.Test;
+import zipkin.Constants;
+import zipkin.Span;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class FlightRecorderTest {
+  List<Span> reported = new ArrayList<>();
+  FlightRecorder recorder = FlightRecorder.builder().capacity(4).dumpOnError(false).build();
+  Brave brave = brave(recorder, AnnotationSubmitter.DefaultClock.INSTANCE);
+
+  Brave brave(FlightRecorder recorder, AnnotationSubmitter.Clock clock) {
+    return new Brave.Builder(
+        new InheritableServerClientAndLocalSpanState(Endpoint.create("service", 127 << 24 | 1)))
+        .reporter(reported::add)
+        .traceSampler(Sampler.NEVER_SAMPLE)
+        .clock(clock)
+        .flightRecorder(recorder).build();
+  }
+
+  @After
+  public void clear() {
+    brave.serverTracer().clearCurrentSpan();
+  }
+
+  @Test
+  public void capacityRoundedUpToPowerOfTwo() {
+    assertThat(FlightRecorder.builder().capacity(1000).build().getCapacity())
+        .isEqualTo(1024);
+  }
+
+  @Test
+  public void recordsSampledSpans() {
+    recorder.report(span(1L, "get"));
+
+    assertThat(recorder.getRecordedCount()).isEqualTo(1);
+    assertThat(recorder.dump())
+        .startsWith("traceId=0000000000000001 spanId=0000000000000001 name=get")
+        .contains("sampled=true error=false");
+  }
+
+  @Test
+  public void recordsUnsampledServerRequests() {
+    ServerRequestAdapter adapter = mock(ServerRequestAdapter.class);
+    when(adapter.getTraceData()).thenReturn(TraceData.create(
+        SpanId.builder().traceId(10L).spanId(11L).sampled(false).build()));
+
+    brave.serverRequestInterceptor().handle(adapter);
+    brave.serverResponseInterceptor().handle(Collections::emptyList);
+
+    assertThat(reported).isEmpty();
+    assertThat(recorder.getUnsampledCount()).isEqualTo(1);
+    assertThat(recorder.dump())
+        .startsWith("traceId=000000000000000a spanId=000000000000000b name= ")
+        .contains("sampled=false");
+    verify(adapter, never()).getSpanName();
+  }
+
+  @Test
+  public void recordsUnsampledServerRequests_withNames() {
+    recorder = FlightRecorder.builder().unsampledNames(true).dumpOnError(false).build();
+    brave = brave(recorder, AnnotationSubmitter.DefaultClock.INSTANCE);
+    ServerRequestAdapter adapter = mock(ServerRequestAdapter.class);
+    when(adapter.getTraceData()).thenReturn(TraceData.create(
+        SpanId.builder().traceId(10L).spanId(11L).sampled(false).build()));
+    when(adapter.getSpanName()).thenReturn("post");
+
+    brave.serverRequestInterceptor().handle(adapter);
+    brave.serverResponseInterceptor().handle(Collections::emptyList);
+
+    assertThat(recorder.dump())
+        .startsWith("traceId=000000000000000a spanId=000000000000000b name=post");
+  }
+
+  @Test
+  public void recordsUnsampledServerRequests_whenDecidedLocally() {
+    recorder = FlightRecorder.builder().unsampledNames(true).dumpOnError(false).build();
+    brave = brave(recorder, AnnotationSubmitter.DefaultClock.INSTANCE);
+    ServerRequestAdapter adapter = mock(ServerRequestAdapter.class);
+    when(adapter.getTraceData()).thenReturn(TraceData.EMPTY);
+    when(adapter.getSpanName()).thenReturn("get");
+
+    brave.serverRequestInterceptor().handle(adapter);
+    brave.serverResponseInterceptor().handle(Collections::emptyList);
+
+    assertThat(recorder.getUnsampledCount()).isEqualTo(1);
+    assertThat(recorder.dump()).contains("name=get");
+  }
+
+  @Test
+  public void timestampsUnsampledRequestsWithTracerClock() {
+    AnnotationSubmitter.Clock clock = () -> 1000000L;
+    recorder = FlightRecorder.builder().clock(clock).dumpOnError(false).build();
+    brave = brave(recorder, clock);
+
+    brave.serverTracer().setStateUnknown("get");
+    brave.serverTracer().setServerSend();
+
+    assertThat(recorder.dump()).contains("name=get timestamp=1000000 ");
+  }
+
+  @Test
+  public void ignoresServerSendWithoutRequest() {
+    brave.serverTracer().setServerSend();
+
+    assertThat(recorder.getRecordedCount()).isZero();
+  }
+
+  @Test
+  public void keepsNewestRecords() {
+    for (long i = 1; i <= 6; i++) {
+      recorder.report(span(i, "span" + i));
+    }
+
+    assertThat(recorder.dump().split("\n"))
+        .extracting(line -> line.substring(line.indexOf("name=") + 5, line.indexOf(" timestamp")))
+        .containsExactly("span3", "span4", "span5", "span6");
+  }
+
+  @Test
+  public void truncatesLongNames() {
+    StringBuilder name = new StringBuilder();
+    for (int i = 0; i < 100; i++) name.append('a');
+    recorder.report(span(1L, name.toString()));
+
+    assertThat(recorder.dump())
+        .contains("name=" + name.substring(0, FlightRecorder.MAX_NAME_LENGTH) + " ");
+  }
+
+  @Test
+  public void excludesRecordsOutsideWindow() {
+    recorder.record(0L, 1L, 1L, "old", 1000L, 1L, FlightRecorder.FLAG_SAMPLED);
+
+    assertThat(recorder.dump()).isEmpty();
+  }
+
+  @Test
+  public void flagsErrors() {
+    recorder.report(span(1L, "get").toBuilder()
+        .addBinaryAnnotation(zipkin.BinaryAnnotation.create(Constants.ERROR, "500", null))
+        .build());
+
+    assertThat(recorder.dump()).contains("error=true");
+  }
+
+  static Span span(long id, String name) {
+    return Span.builder().traceId(id).id(id).name(name)
+        .timestamp(System.currentTimeMillis() * 1000).duration(10L).build();
+  }
+}
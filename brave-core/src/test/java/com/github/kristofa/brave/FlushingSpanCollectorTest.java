@@ -0,0 +1,123 @@
+package com.github.kristofa.brave;
+
+import com.twitter.zipkin.gen.Span;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.junit.After;
+import org.junit.Test;
+
+import static com.github.kristofa.brave.PrioritySpanQueueTest.routine;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FlushingSpanCollectorTest {
+  List<List<Span>> batches = new CopyOnWriteArrayList<>();
+  FlushingSpanCollector collector = new TestCollector(0);
+
+  @After
+  public void close() {
+    collector.close();
+  }
+
+  @Test
+  public void maxBatchSize_splitsFlush() {
+    collector.setMaxBatchSize(2);
+    for (long id = 1; id <= 5; id++) collector.collect(routine(id));
+
+    collector.flush();
+
+    assertThat(batches).extracting(List::size).containsExactly(2, 2, 1);
+    assertThat(collector.getQueueDepth()).isZero();
+  }
+
+  @Test
+  public void pause_queuesUntilResumed() {
+    collector.pause();
+    collector.collect(routine(1));
+    collector.flush();
+
+    assertThat(batches).isEmpty();
+    assertThat(collector.getQueueDepth()).isEqualTo(1);
+
+    collector.resume();
+    collector.flush();
+
+    assertThat(batches).hasSize(1);
+  }
+
+  @Test
+  public void shrinkingQueue_keepsQueuedSpans() {
+    collector = new TestCollector(0,
+        PrioritySpanQueue.builder().capacity(10).reservedPriorityCapacity(0).build());
+    for (long id = 1; id <= 5; id++) collector.collect(routine(id));
+
+    collector.setQueueCapacity(2);
+    collector.collect(routine(6));
+
+    assertThat(collector.getQueueDepth()).isEqualTo(5);
+    collector.flush();
+    assertThat(batches.get(0)).extracting(Span::getId).containsExactly(1L, 2L, 3L, 4L, 5L);
+
+    for (long id = 7; id <= 9; id++) collector.collect(routine(id));
+    assertThat(collector.getQueueDepth()).isEqualTo(2);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void queueCapacityCantBeLessThanReserved() {
+    collector.setQueueCapacity(99);
+  }
+
+  @Test
+  public void setFlushInterval_startsScheduledFlushing() throws InterruptedException {
+    collector.collect(routine(1));
+    collector.setFlushIntervalSeconds(1);
+
+    for (int i = 0; i < 300 && batches.isEmpty(); i++) Thread.sleep(10);
+
+    assertThat(batches).hasSize(1);
+    assertThat(collector.getFlushIntervalSeconds()).isEqualTo(1);
+  }
+
+  @Test
+  public void gauges() {
+    assertThat(collector.getLastSendLatencyMillis()).isEqualTo(-1L);
+    collector.collect(routine(1));
+
+    collector.flush();
+
+    assertThat(collector.getLastSendLatencyMillis()).isGreaterThanOrEqualTo(0L);
+    assertThat(collector.getInFlightBatches()).isZero();
+  }
+
+  @Test
+  public void subclassesAreStandardMBeans() throws Exception {
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    ObjectName name = new ObjectName("com.github.kristofa.brave:type=SpanCollector,name=test");
+    server.registerMBean(collector, name);
+    try {
+      server.invoke(name, "pause", null, null);
+
+      assertThat(server.getAttribute(name, "Paused")).isEqualTo(true);
+      assertThat(server.getAttribute(name, "QueueCapacity")).isEqualTo(1100);
+    } finally {
+      server.unregisterMBean(name);
+    }
+  }
+
+  final class TestCollector extends FlushingSpanCollector {
+    TestCollector(int flushInterval) {
+      super(new EmptySpanCollectorMetricsHandler(), flushInterval);
+    }
+
+    TestCollector(int flushInterval, PrioritySpanQueue queue) {
+      super(new EmptySpanCollectorMetricsHandler(), flushInterval, queue);
+    }
+
+    @Override protected void reportSpans(List<Span> drained) {
+      batches.add(new ArrayList<>(drained));
+    }
+  }
+}
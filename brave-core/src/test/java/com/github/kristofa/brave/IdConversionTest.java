@@ -1,5 +1,6 @@
 package com.github.kristofa.brave;
 
+import java.nio.ByteBuffer;
 import org.junit.Test;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -83,4 +84,71 @@ public class IdConversionTest {
     assertThat(IdConversion.convertToLong("463ac35c9f6413ad48485a3953bb6124", 0))
         .isEqualTo(IdConversion.convertToLong("463ac35c9f6413ad"));
   }
+
+  @Test
+  public void convertToPaddedString_keepsLeadingZeros() {
+    assertThat(IdConversion.convertToPaddedString(1234L))
+        .isEqualTo("00000000000004d2");
+    assertThat(IdConversion.convertToPaddedString(-4667777584646200191L))
+        .isEqualTo("bf38b90488a1e481");
+  }
+
+  @Test
+  public void convertToLong_range() {
+    StringBuilder header = new StringBuilder("463ac35c9f6413ad-48485a3953bb6124-1");
+
+    assertThat(IdConversion.convertToLong(header, 17, 33))
+        .isEqualTo(IdConversion.convertToLong("48485a3953bb6124"));
+    assertThat(IdConversion.convertToLong(header, 34, 35))
+        .isEqualTo(1L);
+  }
+
+  @Test(expected = NumberFormatException.class)
+  public void convertToLong_range_tooLong() {
+    IdConversion.convertToLong("463ac35c9f6413ad48485a3953bb6124", 0, 17);
+  }
+
+  @Test(expected = NumberFormatException.class)
+  public void convertToLong_range_invalidCharacter() {
+    IdConversion.convertToLong("463ac35c9f6413ad-48485a3953bb6124", 8, 24);
+  }
+
+  @Test
+  public void convertToLong_bytes() {
+    byte[] ascii = "x-b3-traceid: 463ac35c9f6413ad".getBytes();
+
+    assertThat(IdConversion.convertToLong(ascii, 14, 30))
+        .isEqualTo(IdConversion.convertToLong("463ac35c9f6413ad"));
+  }
+
+  @Test(expected = NumberFormatException.class)
+  public void convertToLong_bytes_invalidCharacter() {
+    IdConversion.convertToLong("463AC35C9F6413AD".getBytes(), 0, 16);
+  }
+
+  @Test
+  public void writeHexLong_chars() {
+    char[] dest = new char[18];
+    IdConversion.writeHexLong(dest, 1, 1234L);
+
+    assertThat(new String(dest, 1, 16)).isEqualTo("00000000000004d2");
+  }
+
+  @Test
+  public void writeHexLong_bytes() {
+    byte[] dest = new byte[18];
+    IdConversion.writeHexLong(dest, 2, -4667777584646200191L);
+
+    assertThat(new String(dest, 2, 16)).isEqualTo("bf38b90488a1e481");
+  }
+
+  @Test
+  public void writeHexLong_byteBuffer() {
+    ByteBuffer dest = ByteBuffer.allocate(32);
+    IdConversion.writeHexLong(dest, 1234L);
+    IdConversion.writeHexLong(dest, 5678L);
+
+    assertThat(dest.position()).isEqualTo(32);
+    assertThat(new String(dest.array())).isEqualTo("00000000000004d2000000000000162e");
+  }
 }
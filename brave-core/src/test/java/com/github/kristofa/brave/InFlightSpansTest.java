@@ -0,0 +1,283 @@
+package com.github.kristofa.brave;
+
+import com.github.kristofa.brave.internal.InternalSpan;
+import com.twitter.zipkin.gen.Endpoint;
+import com.twitter.zipkin.gen.Span;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+public class InFlightSpansTest {
+  static final Endpoint ENDPOINT = Endpoint.create("service", 127 << 24 | 1);
+  static final SpanId ID = SpanId.builder().traceId(1L).spanId(2L).build();
+
+  List<zipkin.Span> reported = new CopyOnWriteArrayList<>();
+  InFlightSpans inFlightSpans = InFlightSpans.builder()
+      .abandonAfter(1, TimeUnit.NANOSECONDS)
+      .checkInterval(0, TimeUnit.SECONDS)
+      .build();
+  InheritableServerClientAndLocalSpanState state =
+      new InheritableServerClientAndLocalSpanState(ENDPOINT);
+  Brave brave = new Brave.Builder(state)
+      .reporter(reported::add)
+      .inFlightSpans(inFlightSpans).build();
+
+  @After
+  public void clear() {
+    inFlightSpans.close();
+    brave.serverTracer().clearCurrentSpan();
+    state.setCurrentClientSpan(null);
+    while (state.getCurrentLocalSpan() != null) state.setCurrentLocalSpan(null);
+  }
+
+  @Test
+  public void inFlight_countsByName() {
+    brave.serverTracer().setStateUnknown("get");
+    brave.localTracer().startNewSpan("codec", "encode");
+    brave.clientTracer().startNewSpan("post");
+    SpanHandle handle = brave.localTracer().startSpan("codec", "encode");
+
+    assertThat(inFlightSpans.inFlight()).isEqualTo(4);
+    assertThat(inFlightSpans.inFlight("encode")).isEqualTo(2);
+    assertThat(inFlightSpans.inFlightByName())
+        .containsOnly(entry("get", 1), entry("encode", 2), entry("post", 1));
+
+    handle.finish();
+    brave.clientTracer().setClientSent();
+    brave.clientTracer().setClientReceived();
+    brave.localTracer().finishSpan();
+    brave.serverTracer().setServerReceived();
+    brave.serverTracer().setServerSend();
+
+    assertThat(inFlightSpans.inFlight()).isZero();
+    assertThat(inFlightSpans.inFlightByName()).isEmpty();
+    assertThat(reported).hasSize(4);
+  }
+
+  @Test
+  public void unsampledSpansArentTracked() {
+    brave = new Brave.Builder(state).traceSampler(Sampler.NEVER_SAMPLE)
+        .inFlightSpans(inFlightSpans).build();
+
+    brave.serverTracer().setStateUnknown("get");
+    brave.localTracer().startNewSpan("codec", "encode");
+
+    assertThat(inFlightSpans.inFlight()).isZero();
+  }
+
+  /** Nested local spans that are never finished stay on the stack, until reported as abandoned. */
+  @Test
+  public void checkAbandoned_reportsUnfinishedSpans() throws Exception {
+    SpanId outer = brave.localTracer().startNewSpan("codec", "encode");
+    SpanId inner = brave.localTracer().startNewSpan("codec", "compress");
+    Thread.sleep(1L);
+
+    assertThat(inFlightSpans.checkAbandoned()).isEqualTo(2);
+
+    assertThat(inFlightSpans.inFlight()).isZero();
+    assertThat(inFlightSpans.abandonedCount()).isEqualTo(2);
+    assertThat(reported).extracting(s -> s.id).containsExactly(outer.spanId, inner.spanId);
+    for (zipkin.Span span : reported) {
+      assertThat(span.duration).isNull();
+      assertThat(span.annotations).extracting(a -> a.value).containsExactly(InFlightSpans.ABANDONED);
+      assertThat(span.annotations.get(0).timestamp).isGreaterThanOrEqualTo(span.timestamp);
+    }
+  }
+
+  @Test
+  public void checkAbandoned_ignoresRecentSpans() {
+    inFlightSpans = InFlightSpans.builder().abandonAfter(1, TimeUnit.HOURS).build();
+    brave = new Brave.Builder(state).inFlightSpans(inFlightSpans).build();
+
+    brave.localTracer().startNewSpan("codec", "encode");
+
+    assertThat(inFlightSpans.checkAbandoned()).isZero();
+    assertThat(inFlightSpans.inFlight()).isEqualTo(1);
+  }
+
+  @Test
+  public void finishingAbandonedSpan_reportsItAgain() throws Exception {
+    brave.localTracer().startNewSpan("codec", "encode");
+    Thread.sleep(1L);
+    inFlightSpans.checkAbandoned();
+
+    brave.localTracer().finishSpan();
+
+    assertThat(inFlightSpans.inFlight()).isZero();
+    assertThat(inFlightSpans.abandonedCount()).isEqualTo(1);
+    assertThat(reported).hasSize(2);
+    assertThat(reported.get(1).annotations).isEmpty(); // the abandoned annotation was on a copy
+    assertThat(reported.get(1).duration).isNotNull();
+  }
+
+  /** A client span replaced before it finished is only referenced by the registry. */
+  @Test
+  public void collectedCount() throws Exception {
+    brave.clientTracer().startNewSpan("post");
+    brave.clientTracer().startNewSpan("post");
+
+    for (int i = 0; i < 20 && inFlightSpans.collectedCount() == 0; i++) {
+      System.gc();
+      Thread.sleep(10L);
+    }
+
+    assertThat(inFlightSpans.collectedCount()).isEqualTo(1);
+    assertThat(inFlightSpans.inFlight("post")).isEqualTo(1);
+  }
+
+  @Test
+  public void sampleStacks_disabledByDefault() {
+    brave.localTracer().startNewSpan("codec", "encode");
+
+    assertThat(inFlightSpans.sampleStacks()).isZero();
+  }
+
+  @Test
+  public void sampleStacks_tagsSlowServerSpan() throws Exception {
+    inFlightSpans = InFlightSpans.builder()
+        .sampleStacksAfter(1, TimeUnit.NANOSECONDS)
+        .maxStackSamples(3)
+        .stackSampleInterval(0, TimeUnit.SECONDS)
+        .checkInterval(0, TimeUnit.SECONDS)
+        .build();
+    brave = new Brave.Builder(state).reporter(reported::add).inFlightSpans(inFlightSpans).build();
+
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<?> request = executor.submit(() -> {
+        brave.serverTracer().setStateUnknown("get");
+        brave.serverTracer().setServerReceived();
+        brave.clientTracer().startNewSpan("post"); // client spans aren't sampled
+        started.countDown();
+        release.await();
+        brave.clientTracer().setClientReceived();
+        brave.serverTracer().setServerSend();
+        return null;
+      });
+      started.await();
+      Thread.sleep(1L);
+
+      // the request thread could still be between countDown and await
+      while (inFlightSpans.sampleStacks() != 0) Thread.sleep(1L);
+      release.countDown();
+      request.get();
+    } finally {
+      executor.shutdownNow();
+    }
+
+    zipkin.Span server = reported.stream().filter(s -> s.name.equals("get")).findFirst().get();
+    String samples = server.binaryAnnotations.stream()
+        .filter(b -> b.key.equals(InFlightSpans.STACK_SAMPLES))
+        .map(b -> new String(b.value)).findFirst().get();
+    assertThat(samples)
+        .matches("(?s)\\d/3 .*") // 3 samples in total
+        .contains("\n\tat java.util.concurrent.CountDownLatch.await(");
+
+    zipkin.Span client = reported.stream().filter(s -> s.name.equals("post")).findFirst().get();
+    assertThat(client.binaryAnnotations).extracting(b -> b.key)
+        .doesNotContain(InFlightSpans.STACK_SAMPLES);
+  }
+
+  @Test
+  public void sampleStacks_followsSpanBoundToAnotherThread() throws Exception {
+    inFlightSpans = InFlightSpans.builder()
+        .sampleStacksAfter(1, TimeUnit.NANOSECONDS)
+        .stackSampleInterval(0, TimeUnit.SECONDS)
+        .checkInterval(0, TimeUnit.SECONDS)
+        .build();
+    brave = new Brave.Builder(state).reporter(reported::add).inFlightSpans(inFlightSpans).build();
+
+    brave.serverTracer().setStateUnknown("get");
+    ServerSpan serverSpan = brave.serverSpanThreadBinder().getCurrentServerSpan();
+    brave.localTracer().startNewSpan("codec", "encode");
+    Span localSpan = brave.localSpanThreadBinder().getCurrentLocalSpan();
+
+    Thread[] worker = new Thread[1];
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      executor.submit(() -> {
+        worker[0] = Thread.currentThread();
+        brave.serverSpanThreadBinder().setCurrentSpan(serverSpan);
+        brave.localSpanThreadBinder().setCurrentSpan(localSpan);
+      }).get();
+    } finally {
+      executor.shutdownNow();
+    }
+
+    assertThat(owner(serverSpan.getSpan())).isSameAs(worker[0]);
+    assertThat(owner(localSpan)).isSameAs(worker[0]);
+  }
+
+  @Test
+  public void sampleStacks_bindingDoesntSampleClientSpans() {
+    inFlightSpans = InFlightSpans.builder()
+        .sampleStacksAfter(1, TimeUnit.NANOSECONDS)
+        .stackSampleInterval(0, TimeUnit.SECONDS)
+        .checkInterval(0, TimeUnit.SECONDS)
+        .build();
+    brave = new Brave.Builder(state).reporter(reported::add).inFlightSpans(inFlightSpans).build();
+
+    brave.clientTracer().startNewSpan("post");
+    Span clientSpan = state.getCurrentClientSpan();
+    InFlightSpans.bound(clientSpan, Thread.currentThread());
+
+    assertThat(owner(clientSpan)).isNull();
+  }
+
+  static Thread owner(Span span) {
+    return ((InFlightSpans.Entry) InternalSpan.instance.inFlight(span)).owner;
+  }
+
+  @Test
+  public void stackSamples_mergesIdenticalStacks() {
+    InFlightSpans.Entry entry = new InFlightSpans.Entry(ID.toSpan(), null, null, "get",
+        reported::add, 0L, Thread.currentThread());
+    StackTraceElement[] waiting = {
+        new StackTraceElement("java.lang.Object", "wait", null, -2),
+        new StackTraceElement("com.acme.Pool", "borrow", "Pool.java", 10),
+        new StackTraceElement("com.acme.Dao", "query", "Dao.java", 20)
+    };
+    StackTraceElement[] running = {
+        new StackTraceElement("com.acme.Codec", "encode", "Codec.java", 30)
+    };
+
+    entry.addStackSample(Thread.State.WAITING, waiting, 2);
+    entry.addStackSample(Thread.State.RUNNABLE, running, 2);
+    entry.addStackSample(Thread.State.WAITING, waiting, 2);
+
+    assertThat(entry.stackSamples()).isEqualTo(""
+        + "2/3 WAITING\n"
+        + "\tat java.lang.Object.wait(Native Method)\n"
+        + "\tat com.acme.Pool.borrow(Pool.java:10)\n"
+        + "\t...\n"
+        + "1/3 RUNNABLE\n"
+        + "\tat com.acme.Codec.encode(Codec.java:30)");
+  }
+
+  @Test
+  public void backgroundCheck() throws Exception {
+    inFlightSpans = InFlightSpans.builder()
+        .abandonAfter(1, TimeUnit.MILLISECONDS)
+        .checkInterval(1, TimeUnit.MILLISECONDS)
+        .build();
+    brave = new Brave.Builder(state).reporter(reported::add).inFlightSpans(inFlightSpans).build();
+
+    brave.localTracer().startNewSpan("codec", "encode");
+
+    for (int i = 0; i < 100 && reported.isEmpty(); i++) {
+      Thread.sleep(10L);
+    }
+    assertThat(reported).hasSize(1);
+  }
+}
@@ -0,0 +1,104 @@
+package com.github.kristofa.brave;
+
+import com.github.kristofa.brave.ExtendedSpanCollectorMetricsHandler.DropCause;
+import com.twitter.zipkin.gen.Span;
+import com.twitter.zipkin.gen.SpanCodec;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.junit.After;
+import org.junit.Test;
+
+import static com.github.kristofa.brave.PrioritySpanQueueTest.routine;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class JmxSpanCollectorMetricsHandlerTest {
+  JmxSpanCollectorMetricsHandler metrics = new JmxSpanCollectorMetricsHandler();
+  SpanCodec codec = mock(SpanCodec.class);
+  List<byte[]> sent = new ArrayList<>();
+  AbstractSpanCollector collector =
+      new AbstractSpanCollector(codec, PayloadCompressor.NONE, metrics, 0,
+          PrioritySpanQueue.builder().capacity(2).reservedPriorityCapacity(0).build()) {
+        @Override protected void sendSpans(byte[] encoded) throws IOException {
+          if (encoded.length == 0) throw new IOException("empty");
+          sent.add(encoded);
+        }
+      };
+
+  @After
+  public void close() {
+    collector.close();
+  }
+
+  @Test
+  public void recordsEncodingAndFlush() {
+    when(codec.writeSpans(anyList())).thenReturn(new byte[10]);
+    collector.collect(routine(1));
+    collector.collect(routine(2));
+
+    collector.flush();
+
+    assertThat(metrics.getAcceptedSpans()).isEqualTo(2);
+    assertThat(metrics.getQueueDepth()).isEqualTo(2);
+    assertThat(metrics.getFlushedBatches()).isEqualTo(1);
+    assertThat(metrics.getBatchSpansMax()).isEqualTo(2);
+    assertThat(metrics.getEncodedBytes()).isEqualTo(10);
+    assertThat(metrics.getDroppedSpans()).isZero();
+  }
+
+  @Test
+  public void dropCauses() {
+    when(codec.writeSpans(anyList()))
+        .thenThrow(new IllegalStateException())
+        .thenReturn(new byte[0]);
+    for (long id = 1; id <= 3; id++) collector.collect(routine(id));
+    assertThat(metrics.getDroppedSpansQueueFull()).isEqualTo(1);
+
+    collector.flush(); // encoding fails
+    assertThat(metrics.getDroppedSpansEncoding()).isEqualTo(2);
+    assertThat(metrics.getEncodedBytes()).isZero();
+
+    collector.collect(routine(4));
+    collector.flush(); // sending fails
+    assertThat(metrics.getDroppedSpansTransport()).isEqualTo(1);
+
+    collector.collect(routine(5));
+    collector.close();
+    assertThat(metrics.getDroppedSpansClosed()).isEqualTo(1);
+    assertThat(metrics.getDroppedSpans()).isEqualTo(5);
+  }
+
+  @Test
+  public void plainHandlersSeeAllDrops() {
+    SpanCollectorMetricsHandler plain = mock(SpanCollectorMetricsHandler.class);
+    ExtendedSpanCollectorMetricsHandler adapted = ExtendedSpanCollectorMetricsHandler.Adapter.of(plain);
+
+    adapted.incrementDroppedSpans(3, DropCause.ENCODING);
+    adapted.recordFlush(3, 1000L);
+
+    verify(plain).incrementDroppedSpans(3);
+    assertThat(ExtendedSpanCollectorMetricsHandler.Adapter.of(metrics)).isSameAs(metrics);
+  }
+
+  @Test
+  public void registersAsStandardMBean() throws Exception {
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    ObjectName name = new ObjectName(JmxSpanCollectorMetricsHandler.OBJECT_NAME + ",name=test");
+    server.registerMBean(metrics, name);
+    try {
+      metrics.recordFlush(1, 2_000_000L);
+
+      assertThat(server.getAttribute(name, "FlushLatencyMicrosMax")).isEqualTo(2000L);
+      assertThat(server.getAttribute(name, "FlushedBatches")).isEqualTo(1L);
+    } finally {
+      server.unregisterMBean(name);
+    }
+  }
+}
@@ -10,6 +10,7 @@ import static org.mockito.Mockito.when;
 import java.util.Random;
 
 import com.github.kristofa.brave.example.TestServerClientAndLocalSpanStateCompilation;
+import com.github.kristofa.brave.internal.InternalSpan;
 import com.github.kristofa.brave.internal.Util;
 import org.junit.Before;
 import org.junit.Test;
@@ -85,6 +86,27 @@ public class LocalTracerTest {
         assertEquals(OPERATION_NAME, started.getName());
     }
 
+    /**
+     * Local spans derive their timestamp from the clock reading of their local root, so the clock
+     * isn't read again.
+     */
+    @Test
+    public void startNewSpan_inheritsClockAnchor() {
+        Span parent = PARENT_SPAN_ID.toSpan().setName("name");
+        InternalSpan.instance.setClockAnchor(parent, 1000000L, 500L);
+        state.setCurrentServerSpan(ServerSpan.create(parent));
+
+        PowerMockito.when(System.currentTimeMillis()).thenReturn(1L);
+        PowerMockito.when(System.nanoTime()).thenReturn(2500L);
+
+        localTracer.startNewSpan(COMPONENT_NAME, OPERATION_NAME);
+
+        Span started = state.getCurrentLocalSpan();
+        assertEquals(1000002L, started.getTimestamp().longValue());
+        assertEquals(2500L, started.startTick.longValue());
+        assertEquals(1000003L, InternalSpan.instance.anchoredTimeMicroseconds(started, 3500L));
+    }
+
     /**
      * When a span is started with a timestamp, we can't use nanotime for duration as we don't
      * know the nanotime value for that timestamp.
@@ -0,0 +1,56 @@
+package com.github.kristofa.brave;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LongHistogramTest {
+  LongHistogram histogram = new LongHistogram();
+
+  @Test
+  public void empty() {
+    assertThat(histogram.count()).isZero();
+    assertThat(histogram.mean()).isZero();
+    assertThat(histogram.quantile(0.99)).isZero();
+  }
+
+  @Test
+  public void smallValuesAreExact() {
+    for (long i = 0; i < 8; i++) histogram.record(i);
+
+    assertThat(histogram.quantile(0.5)).isEqualTo(3);
+    assertThat(histogram.quantile(1.0)).isEqualTo(7);
+  }
+
+  @Test
+  public void quantileWithinOneEighth() {
+    for (long i = 1; i <= 100_000; i++) histogram.record(i * 1000);
+
+    assertThat(histogram.count()).isEqualTo(100_000);
+    assertThat(histogram.mean()).isEqualTo(50_000_500);
+    assertThat(histogram.quantile(0.5)).isBetween(50_000_000L, 56_250_000L);
+    assertThat(histogram.quantile(0.99)).isBetween(99_000_000L, 111_375_000L);
+    assertThat(histogram.quantile(1.0)).isEqualTo(histogram.max()).isEqualTo(100_000_000L);
+  }
+
+  @Test
+  public void bucketsCoverAllLongs() {
+    assertThat(LongHistogram.index(Long.MAX_VALUE)).isEqualTo(LongHistogram.BUCKET_COUNT - 1);
+    assertThat(LongHistogram.highestValue(LongHistogram.BUCKET_COUNT - 1))
+        .isEqualTo(Long.MAX_VALUE);
+
+    for (int i = LongHistogram.SUB_BUCKETS; i < LongHistogram.BUCKET_COUNT; i++) {
+      long highest = LongHistogram.highestValue(i);
+      assertThat(LongHistogram.index(highest)).isEqualTo(i);
+      if (highest != Long.MAX_VALUE) assertThat(LongHistogram.index(highest + 1)).isEqualTo(i + 1);
+    }
+  }
+
+  @Test
+  public void negativeRecordedAsZero() {
+    histogram.record(-5);
+
+    assertThat(histogram.max()).isZero();
+    assertThat(histogram.quantile(0.5)).isZero();
+  }
+}
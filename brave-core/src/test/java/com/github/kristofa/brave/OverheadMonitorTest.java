@@ -0,0 +1,163 @@
+package com.github.kristofa.brave;
+
+import com.github.kristofa.brave.OverheadMonitor.Operation;
+import com.github.kristofa.brave.OverheadMonitor.Stats;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.junit.Test;
+import zipkin.Span;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assume.assumeTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class OverheadMonitorTest {
+  static final SpanId SAMPLED = SpanId.builder().traceId(1L).spanId(3L).sampled(true).build();
+
+  List<Span> spans = new ArrayList<>();
+  ServerRequestAdapter request = mock(ServerRequestAdapter.class);
+  ServerResponseAdapter response = mock(ServerResponseAdapter.class);
+
+  Brave brave(OverheadMonitor monitor) {
+    when(request.getTraceData()).thenReturn(TraceData.create(SAMPLED));
+    when(request.getSpanName()).thenReturn("get");
+    return new Brave.Builder("frontend").reporter(spans::add).overheadMonitor(monitor).build();
+  }
+
+  @Test
+  public void measuresOneInN() {
+    OverheadMonitor monitor = OverheadMonitor.builder().sampleEvery(2).build();
+    Brave brave = brave(monitor);
+
+    for (int i = 0; i < 4; i++) brave.serverRequestInterceptor().handle(request);
+    brave.serverTracer().clearCurrentSpan();
+
+    assertThat(monitor.getMeasuredCalls()).isEqualTo(2);
+  }
+
+  @Test
+  public void measuresEveryOperation() {
+    OverheadMonitor monitor = OverheadMonitor.builder().sampleEvery(3).build();
+    Brave brave = brave(monitor);
+    ClientRequestAdapter clientRequest = mock(ClientRequestAdapter.class);
+    ClientResponseAdapter clientResponse = mock(ClientResponseAdapter.class);
+    when(clientRequest.getSpanName()).thenReturn("get");
+
+    // Each request calls 4 interceptors and reports 2 spans: a shared count would alias.
+    for (int i = 0; i < 30; i++) {
+      brave.serverRequestInterceptor().handle(request);
+      brave.clientRequestInterceptor().handle(clientRequest);
+      brave.clientResponseInterceptor().handle(clientResponse);
+      brave.serverResponseInterceptor().handle(response);
+    }
+
+    assertThat(spans).hasSize(60);
+    for (Operation operation : Operation.values()) {
+      long measured = monitor.modules.values().stream()
+          .mapToLong(stats -> stats[operation.ordinal()].nanos.count())
+          .sum();
+      assertThat(measured).as(operation.name())
+          .isEqualTo(operation == Operation.REPORT ? 20 : 10);
+    }
+  }
+
+  @Test
+  public void countsPerThread() throws Exception {
+    OverheadMonitor monitor = OverheadMonitor.builder().sampleEvery(1000).build();
+    monitor.sample(Operation.REPORT);
+    int count = monitor.calls.get()[Operation.REPORT.ordinal()];
+
+    Thread thread = new Thread(() -> {
+      for (int i = 0; i < 10; i++) monitor.sample(Operation.REPORT);
+    });
+    thread.start();
+    thread.join();
+
+    assertThat(monitor.calls.get()[Operation.REPORT.ordinal()]).isEqualTo(count);
+  }
+
+  @Test
+  public void measuresInterceptorsAndReporter() {
+    OverheadMonitor monitor = OverheadMonitor.builder().sampleEvery(1).build();
+    Brave brave = brave(monitor);
+
+    brave.serverRequestInterceptor().handle(request);
+    brave.serverResponseInterceptor().handle(response);
+
+    assertThat(spans).hasSize(1);
+    assertThat(monitor.getMeasuredCalls()).isEqualTo(3);
+    assertThat(monitor.report())
+        .contains("SERVER_REQUEST", "SERVER_RESPONSE", "REPORT")
+        .doesNotContain("CLIENT_REQUEST");
+  }
+
+  @Test
+  public void measuresAllocation() {
+    OverheadMonitor monitor = OverheadMonitor.builder().sampleEvery(1).build();
+    assumeTrue(monitor.isAllocationMeasured());
+
+    zipkin.reporter.Reporter<Span> noop = monitor.monitoring(span -> {
+    });
+    for (int i = 0; i < 100; i++) noop.report(null); // the first calls load classes
+    monitor.monitoring(span -> new byte[1024 * 1024].clone()).report(null);
+
+    Stats[] stats = monitor.modules.values().iterator().next();
+    assertThat(stats[Operation.REPORT.ordinal()].bytes.max()).isGreaterThan(1024 * 1024);
+    assertThat(stats[Operation.REPORT.ordinal()].bytes.quantile(0.5)).isLessThan(1024);
+  }
+
+  @Test
+  public void callingModule() {
+    assertThat(OverheadMonitor.callingModule(stack(
+        "com.github.kristofa.brave.ClientRequestInterceptor",
+        "com.github.kristofa.brave.okhttp.BraveTracingInterceptor",
+        "okhttp3.RealCall"
+    ))).isEqualTo("okhttp");
+
+    assertThat(OverheadMonitor.callingModule(stack(
+        "com.github.kristofa.brave.ServerResponseInterceptor",
+        "com.github.kristofa.brave.jaxrs2.BraveContainerResponseFilter"
+    ))).isEqualTo("jaxrs2");
+
+    assertThat(OverheadMonitor.callingModule(stack(
+        "zipkin.reporter.AsyncReporter",
+        "com.github.kristofa.brave.LocalTracer",
+        "com.acme.Cache"
+    ))).isEqualTo("com.acme");
+  }
+
+  @Test
+  public void boundsModules() {
+    OverheadMonitor monitor = OverheadMonitor.builder().build();
+    for (int i = 0; i < OverheadMonitor.MAX_MODULES + 10; i++) monitor.stats("module" + i);
+
+    assertThat(monitor.modules).hasSize(OverheadMonitor.MAX_MODULES + 1)
+        .containsKey(OverheadMonitor.OTHER_MODULE);
+  }
+
+  @Test
+  public void registersAsStandardMBean() throws Exception {
+    OverheadMonitor monitor = OverheadMonitor.builder().build();
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    ObjectName name = new ObjectName(OverheadMonitor.OBJECT_NAME);
+    server.registerMBean(monitor, name);
+    try {
+      assertThat(server.getAttribute(name, "SampleEvery")).isEqualTo(1000);
+      assertThat((String) server.invoke(name, "report", null, null)).startsWith("module");
+    } finally {
+      server.unregisterMBean(name);
+    }
+  }
+
+  static StackTraceElement[] stack(String... classNames) {
+    StackTraceElement[] result = new StackTraceElement[classNames.length];
+    for (int i = 0; i < classNames.length; i++) {
+      result[i] = new StackTraceElement(classNames[i], "method", null, -1);
+    }
+    return result;
+  }
+}
@@ -0,0 +1,154 @@
+package com.github.kristofa.brave;
+
+import com.twitter.zipkin.gen.Span;
+import com.twitter.zipkin.gen.SpanCodec;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PayloadCompressorTest {
+  static final byte[] SPANS_64K = spans(64 * 1024);
+
+  @Test
+  public void gzip_roundTrip() throws IOException {
+    PayloadCompressor gzip = PayloadCompressor.gzip(6);
+
+    for (byte[] input : inputs()) {
+      assertThat(gunzip(gzip.compress(input))).isEqualTo(input);
+    }
+  }
+
+  @Test
+  public void gzip_reusesDeflater() throws IOException {
+    PooledGzipCompressor gzip = (PooledGzipCompressor) PayloadCompressor.gzip(1);
+
+    gzip.compress(SPANS_64K);
+    gzip.compress(SPANS_64K);
+
+    assertThat(gzip.pool).hasSize(1);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void gzip_invalidLevel() {
+    PayloadCompressor.gzip(10);
+  }
+
+  @Test
+  public void fastGzip_roundTrip() throws IOException {
+    PayloadCompressor fast = PayloadCompressor.fastGzip();
+
+    for (byte[] input : inputs()) {
+      assertThat(gunzip(fast.compress(input))).isEqualTo(input);
+    }
+  }
+
+  @Test
+  public void fastGzip_compressesSpans() throws IOException {
+    PayloadCompressor fast = PayloadCompressor.fastGzip();
+
+    fast.compress(SPANS_64K);
+
+    assertThat(fast.ratio()).isLessThan(0.3);
+  }
+
+  @Test
+  public void fastGzip_longMatchesAndDistances() throws IOException {
+    byte[] input = new byte[200 * 1024];
+    Random random = new Random(0);
+    byte[] block = new byte[40 * 1024];
+    random.nextBytes(block);
+    // repeats at distances beyond the 32KiB window, and runs longer than the maximum match
+    for (int i = 0; i < input.length; i++) {
+      input[i] = i % 50000 < 1000 ? (byte) 'a' : block[i % block.length];
+    }
+
+    assertThat(gunzip(PayloadCompressor.fastGzip().compress(input))).isEqualTo(input);
+  }
+
+  @Test
+  public void none_passesThrough() throws IOException {
+    assertThat(PayloadCompressor.NONE.compress(SPANS_64K)).isSameAs(SPANS_64K);
+    assertThat(PayloadCompressor.NONE.encoding(SPANS_64K.length))
+        .isEqualTo(PayloadCompressor.IDENTITY);
+  }
+
+  @Test
+  public void adaptive_selectsBySize() {
+    AdaptivePayloadCompressor adaptive = AdaptivePayloadCompressor.create();
+
+    assertThat(adaptive.select(100)).isSameAs(PayloadCompressor.NONE);
+    assertThat(adaptive.select(64 * 1024)).isInstanceOf(PooledGzipCompressor.class);
+    assertThat(adaptive.select(1024 * 1024)).isInstanceOf(FastGzipCompressor.class);
+    assertThat(adaptive.encoding(100)).isEqualTo(PayloadCompressor.IDENTITY);
+    assertThat(adaptive.encoding(64 * 1024)).isEqualTo(PayloadCompressor.GZIP);
+  }
+
+  @Test
+  public void adaptive_sortsThresholds() {
+    AdaptivePayloadCompressor adaptive = AdaptivePayloadCompressor.builder()
+        .add(1000, PayloadCompressor.fastGzip())
+        .add(10, PayloadCompressor.gzip(9))
+        .build();
+
+    assertThat(adaptive.select(5)).isSameAs(PayloadCompressor.NONE);
+    assertThat(adaptive.select(500)).isInstanceOf(PooledGzipCompressor.class);
+    assertThat(adaptive.select(5000)).isInstanceOf(FastGzipCompressor.class);
+  }
+
+  @Test
+  public void tracksRatioAndTime() throws IOException {
+    PayloadCompressor gzip = PayloadCompressor.gzip(6);
+    assertThat(gzip.ratio()).isEqualTo(1.0);
+
+    byte[] compressed = gzip.compress(SPANS_64K);
+
+    assertThat(gzip.compressions()).isEqualTo(1);
+    assertThat(gzip.inputBytes()).isEqualTo(SPANS_64K.length);
+    assertThat(gzip.outputBytes()).isEqualTo(compressed.length);
+    assertThat(gzip.ratio()).isEqualTo((double) compressed.length / SPANS_64K.length);
+    assertThat(gzip.compressNanos()).isPositive();
+  }
+
+  static List<byte[]> inputs() {
+    List<byte[]> result = new ArrayList<>();
+    result.add(new byte[0]);
+    result.add(new byte[] {'a'});
+    result.add("aaaaaaaa".getBytes());
+    byte[] random = new byte[10 * 1024];
+    new Random(0).nextBytes(random);
+    result.add(random);
+    result.add(spans(1024));
+    result.add(SPANS_64K);
+    result.add(spans(1024 * 1024));
+    return result;
+  }
+
+  /** Returns a json list of spans at least the given size. */
+  static byte[] spans(int size) {
+    List<Span> spans = new ArrayList<>();
+    int encodedSize = 2;
+    for (long id = 1L; encodedSize < size; id++) {
+      Span span = new Span().setTrace_id(id * 31).setId(id).setName("get /users/" + id)
+          .setTimestamp(1444438900939000L + id).setDuration(id * 7);
+      spans.add(span);
+      encodedSize += SpanCodec.JSON.writeSpan(span).length + 1;
+    }
+    return SpanCodec.JSON.writeSpans(spans);
+  }
+
+  static byte[] gunzip(byte[] gzipped) throws IOException {
+    ByteArrayOutputStream result = new ByteArrayOutputStream();
+    try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(gzipped))) {
+      byte[] buffer = new byte[8192];
+      for (int read; (read = in.read(buffer)) != -1; ) result.write(buffer, 0, read);
+    }
+    return result.toByteArray();
+  }
+}
@@ -0,0 +1,157 @@
+package com.github.kristofa.brave;
+
+import com.github.kristofa.brave.PrioritySpanQueue.DropPolicy;
+import com.twitter.zipkin.gen.BinaryAnnotation;
+import com.twitter.zipkin.gen.Span;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import zipkin.Constants;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PrioritySpanQueueTest {
+
+  @Test
+  public void routineSpansCantUseReservedCapacity() {
+    PrioritySpanQueue queue = PrioritySpanQueue.builder()
+        .capacity(4).reservedPriorityCapacity(2).build();
+
+    for (long id = 1; id <= 4; id++) queue.offer(routine(id));
+    queue.offer(error(5));
+    queue.offer(debug(6));
+
+    assertThat(drainIds(queue)).containsExactly(5L, 6L, 1L, 2L);
+    assertThat(queue.droppedRoutineSpans()).isEqualTo(2);
+    assertThat(queue.droppedPrioritySpans()).isZero();
+  }
+
+  @Test
+  public void priorityLaneCanUseAllCapacity() {
+    PrioritySpanQueue queue = PrioritySpanQueue.builder()
+        .capacity(3).reservedPriorityCapacity(1).build();
+
+    for (long id = 1; id <= 4; id++) queue.offer(error(id));
+
+    assertThat(drainIds(queue)).containsExactly(1L, 2L, 3L);
+    assertThat(queue.droppedPrioritySpans()).isEqualTo(1);
+  }
+
+  @Test
+  public void dropOldest() {
+    PrioritySpanQueue queue = PrioritySpanQueue.builder()
+        .capacity(3).reservedPriorityCapacity(1).dropPolicy(DropPolicy.DROP_OLDEST).build();
+
+    for (long id = 1; id <= 4; id++) {
+      assertThat(queue.offer(routine(id))).isEqualTo(id <= 2 ? 0 : 1);
+    }
+
+    assertThat(drainIds(queue)).containsExactly(3L, 4L);
+    assertThat(queue.droppedRoutineSpans()).isEqualTo(2);
+  }
+
+  @Test
+  public void dropLowestPriority_evictsNewestRoutineSpan() {
+    PrioritySpanQueue queue = PrioritySpanQueue.builder()
+        .capacity(3).reservedPriorityCapacity(0)
+        .dropPolicy(DropPolicy.DROP_LOWEST_PRIORITY).build();
+
+    for (long id = 1; id <= 3; id++) queue.offer(routine(id));
+    assertThat(queue.offer(error(4))).isEqualTo(1);
+    assertThat(queue.offer(routine(5))).isEqualTo(1);
+
+    assertThat(drainIds(queue)).containsExactly(4L, 1L, 2L);
+    assertThat(queue.droppedRoutineSpans()).isEqualTo(2);
+    assertThat(queue.droppedPrioritySpans()).isZero();
+  }
+
+  @Test
+  public void dropNewest_doesntEvictRoutineSpans() {
+    PrioritySpanQueue queue = PrioritySpanQueue.builder()
+        .capacity(3).reservedPriorityCapacity(0).build();
+
+    for (long id = 1; id <= 3; id++) queue.offer(routine(id));
+    queue.offer(error(4));
+
+    assertThat(drainIds(queue)).containsExactly(1L, 2L, 3L);
+    assertThat(queue.droppedPrioritySpans()).isEqualTo(1);
+  }
+
+  @Test
+  public void drainTo_max() {
+    PrioritySpanQueue queue = PrioritySpanQueue.builder().build();
+    for (long id = 1; id <= 3; id++) queue.offer(routine(id));
+    queue.offer(error(4));
+
+    List<Span> drained = new ArrayList<>();
+    assertThat(queue.drainTo(drained, 2)).isEqualTo(2);
+
+    assertThat(drained).extracting(Span::getId).containsExactly(4L, 1L);
+    assertThat(drainIds(queue)).containsExactly(2L, 3L);
+  }
+
+  @Test
+  public void capacity_growingAdmitsRoutineSpans() {
+    PrioritySpanQueue queue = PrioritySpanQueue.builder()
+        .capacity(3).reservedPriorityCapacity(1).build();
+    for (long id = 1; id <= 3; id++) queue.offer(routine(id));
+
+    queue.capacity(4);
+    queue.offer(routine(4));
+
+    assertThat(drainIds(queue)).containsExactly(1L, 2L, 4L);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void reservedCantExceedCapacity() {
+    PrioritySpanQueue.builder().capacity(10).reservedPriorityCapacity(11).build();
+  }
+
+  @Test
+  public void flushingSpanCollector_flushesPrioritySpansFirst() {
+    final List<Span> reported = new ArrayList<>();
+    final AtomicInteger dropped = new AtomicInteger();
+    FlushingSpanCollector collector = new FlushingSpanCollector(new SpanCollectorMetricsHandler() {
+      @Override public void incrementAcceptedSpans(int quantity) {
+      }
+
+      @Override public void incrementDroppedSpans(int quantity) {
+        dropped.addAndGet(quantity);
+      }
+    }, 0, PrioritySpanQueue.builder().capacity(2).reservedPriorityCapacity(1).build()) {
+      @Override protected void reportSpans(List<Span> drained) {
+        reported.addAll(drained);
+      }
+    };
+
+    collector.collect(routine(1));
+    collector.collect(routine(2));
+    collector.collect(error(3));
+    collector.flush();
+
+    assertThat(reported).extracting(Span::getId).containsExactly(3L, 1L);
+    assertThat(dropped.get()).isEqualTo(1);
+    assertThat(collector.queue().droppedRoutineSpans()).isEqualTo(1);
+  }
+
+  static List<Long> drainIds(PrioritySpanQueue queue) {
+    List<Span> drained = new ArrayList<>();
+    queue.drainTo(drained);
+    List<Long> result = new ArrayList<>();
+    for (Span span : drained) result.add(span.getId());
+    return result;
+  }
+
+  static Span routine(long id) {
+    return new Span().setTrace_id(id).setId(id).setName("get");
+  }
+
+  static Span error(long id) {
+    return routine(id).addToBinary_annotations(BinaryAnnotation.create(Constants.ERROR, "500", null));
+  }
+
+  static Span debug(long id) {
+    return routine(id).setDebug(true);
+  }
+}
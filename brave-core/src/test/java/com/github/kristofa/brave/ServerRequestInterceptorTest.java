@@ -10,6 +10,8 @@ import zipkin.reporter.Reporter;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class ServerRequestInterceptorTest {
@@ -30,6 +32,7 @@ public class ServerRequestInterceptorTest {
         .traceSampler(Sampler.ALWAYS_SAMPLE)
         .clock(AnnotationSubmitter.DefaultClock.INSTANCE)
         .traceId128Bit(false)
+        .timeOrderedTraceIds(false)
         .build();
     ServerRequestInterceptor interceptor = new ServerRequestInterceptor(serverTracer);
     ServerRequestAdapter adapter = mock(ServerRequestAdapter.class);
@@ -58,6 +61,19 @@ public class ServerRequestInterceptorTest {
             .isTrue();
     }
 
+    @Test
+    public void handleNoState_whenSampleFalse_doesntReadAdapter() {
+        ServerTracer neverSample = new AutoValue_ServerTracer.Builder(serverTracer)
+            .traceSampler(Sampler.NEVER_SAMPLE).build();
+        when(adapter.getTraceData()).thenReturn(TraceData.EMPTY);
+
+        new ServerRequestInterceptor(neverSample).handle(adapter);
+
+        assertThat(state.getCurrentServerSpan()).isEqualTo(ServerSpan.NOT_SAMPLED);
+        verify(adapter, never()).getSpanName();
+        verify(adapter, never()).requestAnnotations();
+    }
+
     @Test
     public void handleSampleRequestWithParentSpanId() {
         SpanId spanId = SpanId.builder()
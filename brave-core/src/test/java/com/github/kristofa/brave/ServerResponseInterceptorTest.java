@@ -32,6 +32,7 @@ public class ServerResponseInterceptorTest {
         when(adapter.responseAnnotations()).thenReturn(Collections.EMPTY_LIST);
         interceptor.handle(adapter);
         InOrder inOrder = inOrder(serverTracer, adapter);
+        inOrder.verify(serverTracer).noCurrentSpan();
         inOrder.verify(adapter).responseAnnotations();
         inOrder.verify(serverTracer).setServerSend();
         inOrder.verify(serverTracer).clearCurrentSpan();
@@ -44,6 +45,7 @@ public class ServerResponseInterceptorTest {
         when(adapter.responseAnnotations()).thenReturn(Arrays.asList(ANNOTATION1, ANNOTATION2));
         interceptor.handle(adapter);
         InOrder inOrder = inOrder(serverTracer, adapter);
+        inOrder.verify(serverTracer).noCurrentSpan();
         inOrder.verify(adapter).responseAnnotations();
         inOrder.verify(serverTracer).submitBinaryAnnotation(ANNOTATION1.getKey(), ANNOTATION1.getValue());
         inOrder.verify(serverTracer).submitBinaryAnnotation(ANNOTATION2.getKey(), ANNOTATION2.getValue());
@@ -51,4 +53,12 @@ public class ServerResponseInterceptorTest {
         inOrder.verify(serverTracer).clearCurrentSpan();
         verifyNoMoreInteractions(serverTracer);
     }
+
+    @Test
+    public void testNoCurrentSpan_skipsAdapter() {
+        when(serverTracer.noCurrentSpan()).thenReturn(true);
+        interceptor.handle(adapter);
+        verify(serverTracer).setServerSend();
+        verifyZeroInteractions(adapter);
+    }
 }
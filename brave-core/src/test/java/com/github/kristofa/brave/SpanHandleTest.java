@@ -0,0 +1,199 @@
+package com.github.kristofa.brave;
+
+import com.twitter.zipkin.gen.Endpoint;
+import com.twitter.zipkin.gen.Span;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.After;
+import org.junit.Test;
+import zipkin.Constants;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class SpanHandleTest {
+  static final Endpoint ENDPOINT = Endpoint.create("service", 127 << 24 | 1);
+
+  List<zipkin.Span> reported = new CopyOnWriteArrayList<>();
+  ServerClientAndLocalSpanState state = new ThreadLocalServerClientAndLocalSpanState(ENDPOINT);
+  Brave brave = new Brave.Builder(state).reporter(reported::add).build();
+  ExecutorService executor = Executors.newSingleThreadExecutor();
+
+  @After
+  public void clear() {
+    executor.shutdownNow();
+    // thread local state is static
+    state.setCurrentServerSpan(null);
+    state.setCurrentLocalSpan(null);
+    state.setCurrentClientSpan(null);
+  }
+
+  @Test
+  public void clientSpan_doesntChangeCurrentSpans() {
+    Span localSpan = SpanId.builder().spanId(2L).build().toSpan();
+    state.setCurrentLocalSpan(localSpan);
+
+    SpanHandle span = brave.clientTracer().startSpan("get");
+
+    assertThat(span.spanId().parentId).isEqualTo(2L);
+    assertThat(state.getCurrentLocalSpan()).isSameAs(localSpan);
+    assertThat(state.getCurrentClientSpan()).isNull();
+  }
+
+  @Test
+  public void clientSpan_finishedOnAnotherThread() throws Exception {
+    SpanHandle span = brave.clientTracer().startSpan("get");
+    span.setClientSent(Endpoint.create("backend", 127 << 24 | 2, 8080));
+
+    executor.submit(() -> {
+      span.submitBinaryAnnotation("http.status_code", 200);
+      span.finish();
+    }).get();
+
+    assertThat(reported).hasSize(1);
+    zipkin.Span result = reported.get(0);
+    assertThat(result.id).isEqualTo(span.spanId().spanId);
+    assertThat(result.annotations).extracting(a -> a.value)
+        .containsExactly(Constants.CLIENT_SEND, Constants.CLIENT_RECV);
+    assertThat(result.binaryAnnotations).extracting(b -> b.key)
+        .containsOnly(Constants.SERVER_ADDR, "http.status_code");
+    assertThat(result.duration).isPositive();
+  }
+
+  @Test
+  public void localSpan_finishedOnAnotherThread() throws Exception {
+    SpanHandle span = brave.localTracer().startSpan("codec", "encode");
+    assertThat(state.getCurrentLocalSpan()).isNull();
+
+    executor.submit(() -> span.finish()).get();
+
+    assertThat(reported).extracting(s -> s.name, s -> s.id)
+        .containsExactly(tuple("encode", span.spanId().spanId));
+    assertThat(reported.get(0).binaryAnnotations).extracting(b -> b.key, b -> new String(b.value))
+        .containsExactly(tuple(Constants.LOCAL_COMPONENT, "codec"));
+    assertThat(reported.get(0).duration).isPositive();
+  }
+
+  @Test
+  public void localSpan_childOfCurrentServerSpan() {
+    state.setCurrentServerSpan(ServerSpan.create(SpanId.builder().traceId(1L).spanId(3L).build().toSpan()));
+
+    SpanHandle span = brave.localTracer().startSpan("codec", "encode");
+
+    assertThat(span.spanId().traceId).isEqualTo(1L);
+    assertThat(span.spanId().parentId).isEqualTo(3L);
+  }
+
+  @Test
+  public void finish_onlyOnce() {
+    SpanHandle span = brave.localTracer().startSpan("codec", "encode");
+
+    span.finish();
+    span.finish(new IllegalStateException());
+
+    assertThat(span.isFinished()).isTrue();
+    assertThat(reported).hasSize(1);
+    assertThat(reported.get(0).binaryAnnotations).extracting(b -> b.key)
+        .doesNotContain(Constants.ERROR);
+  }
+
+  @Test
+  public void finish_error() {
+    SpanHandle span = brave.clientTracer().startSpan("get");
+    span.setClientSent();
+
+    span.finish(new IllegalStateException("timeout"));
+
+    assertThat(reported.get(0).binaryAnnotations).extracting(b -> b.key, b -> new String(b.value))
+        .contains(tuple(Constants.ERROR, "timeout"));
+  }
+
+  @Test
+  public void finish_errorClaimsSpanBeforeTagging() {
+    SpanHandle span = brave.localTracer().startSpan("codec", "encode");
+    // a callback which races to finish the span while the error is being tagged
+    IllegalStateException error = new IllegalStateException() {
+      @Override public String getMessage() {
+        span.finish();
+        return "timeout";
+      }
+    };
+
+    span.finish(error);
+
+    assertThat(reported).hasSize(1);
+    assertThat(reported.get(0).binaryAnnotations).extracting(b -> b.key, b -> new String(b.value))
+        .contains(tuple(Constants.ERROR, "timeout"));
+  }
+
+  @Test
+  public void interceptors_finishOnAnotherThread() throws Exception {
+    ClientRequestAdapter request = mock(ClientRequestAdapter.class);
+    when(request.getSpanName()).thenReturn("get");
+    when(request.requestAnnotations()).thenReturn(Collections.emptyList());
+    ClientResponseAdapter response = mock(ClientResponseAdapter.class);
+    when(response.responseAnnotations())
+        .thenReturn(Collections.singletonList(KeyValueAnnotation.create("http.status_code", "200")));
+
+    SpanHandle span = brave.clientRequestInterceptor().startSpan(request);
+    verify(request).addSpanIdToRequest(span.spanId());
+    assertThat(state.getCurrentClientSpan()).isNull();
+
+    executor.submit(() -> brave.clientResponseInterceptor().handle(response, span)).get();
+
+    assertThat(reported).hasSize(1);
+    assertThat(reported.get(0).annotations).extracting(a -> a.value)
+        .containsExactly(Constants.CLIENT_SEND, Constants.CLIENT_RECV);
+    assertThat(reported.get(0).binaryAnnotations).extracting(b -> b.key)
+        .containsExactly("http.status_code");
+  }
+
+  @Test
+  public void unsampled() {
+    brave = new Brave.Builder(state).traceSampler(Sampler.NEVER_SAMPLE).build();
+
+    assertThat(brave.clientTracer().startSpan("get")).isNull();
+    assertThat(brave.localTracer().startSpan("codec", "encode")).isNull();
+  }
+
+  @Test
+  public void finishOnCompletion() throws Exception {
+    SpanHandle span = brave.clientTracer().startSpan("get");
+    span.setClientSent();
+    CompletableFuture<String> future = new CompletableFuture<>();
+
+    assertThat(SpanHandleFutures.finishOnCompletion(future, span)).isSameAs(future);
+    assertThat(reported).isEmpty();
+
+    executor.submit(() -> future.complete("hello")).get();
+    assertThat(reported).hasSize(1);
+  }
+
+  /** Dependent stages fail with a CompletionException, which shouldn't hide the cause. */
+  @Test
+  public void finishOnCompletion_error() throws Exception {
+    SpanHandle span = brave.localTracer().startSpan("codec", "encode");
+    CompletableFuture<String> future = new CompletableFuture<>();
+    SpanHandleFutures.finishOnCompletion(future.thenApply(String::trim), span);
+
+    executor.submit(() -> future.completeExceptionally(new IllegalStateException("bad input")))
+        .get();
+
+    assertThat(reported.get(0).binaryAnnotations).extracting(b -> b.key, b -> new String(b.value))
+        .contains(tuple(Constants.ERROR, "bad input"));
+  }
+
+  @Test
+  public void finishOnCompletion_unsampled() {
+    CompletableFuture<String> future = CompletableFuture.completedFuture("hello");
+
+    assertThat(SpanHandleFutures.finishOnCompletion(future, null)).isSameAs(future);
+  }
+}
@@ -3,6 +3,7 @@ package com.github.kristofa.brave;
 import com.twitter.finagle.tracing.TraceId;
 import com.twitter.finagle.tracing.TraceId$;
 import com.twitter.zipkin.gen.Span;
+import java.util.Random;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
@@ -25,6 +26,25 @@ public class SpanIdTest {
     checkAgainstFinagle(id);
   }
 
+  @Test public void timeOrderedTraceIdHigh() {
+    long epochSeconds = 1472470996L;
+    Random prng = new Random(1L);
+    int random = new Random(1L).nextInt();
+
+    long traceIdHigh = SpanId.timeOrderedTraceIdHigh(epochSeconds * 1000000L + 199000L, prng);
+
+    assertThat(traceIdHigh >>> 32).isEqualTo(epochSeconds);
+    assertThat((int) traceIdHigh).isEqualTo(random);
+  }
+
+  @Test public void timeOrderedTraceIdHigh_sortsByTime() {
+    Random prng = new Random();
+    long earlier = SpanId.timeOrderedTraceIdHigh(1472470996000000L, prng);
+    long later = SpanId.timeOrderedTraceIdHigh(1472470997000000L, prng);
+
+    assertThat(later).isGreaterThan(earlier);
+  }
+
   @Test public void equals() {
     assertThat(SpanId.builder().spanId(333L).build())
         .isEqualTo(SpanId.builder().spanId(333L).build());
@@ -114,6 +134,20 @@ public class SpanIdTest {
     checkAgainstFinagle(id);
   }
 
+  @Test public void builderPrimitiveParentId() {
+    SpanId id = SpanId.builder().traceId(1L).parentId(2L).spanId(3L).build();
+
+    assertThat(id.nullableParentId()).isEqualTo(2L);
+    assertThat(id.root()).isFalse();
+    assertThat(id.toBuilder().build().nullableParentId()).isEqualTo(2L);
+    assertThat(id.toBuilder().parentId(null).build().root()).isTrue();
+  }
+
+  @Test(expected = NullPointerException.class)
+  public void builderRequiresSpanId() {
+    SpanId.builder().traceId(1L).build();
+  }
+
   @Test public void builderUnsetsDebug() {
     SpanId id = new SpanId(1L, 1L, 1L, SpanId.FLAG_DEBUG);
 
@@ -0,0 +1,165 @@
+package com.github.kristofa.brave;
+
+import com.github.kristofa.brave.internal.Util;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import zipkin.Annotation;
+import zipkin.BinaryAnnotation;
+import zipkin.Codec;
+import zipkin.Constants;
+import zipkin.Endpoint;
+import zipkin.Span;
+import zipkin.reporter.Encoding;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+public class SpanLimitsTest {
+  static final Endpoint WEB = Endpoint.create("web", 127 << 24 | 1);
+  static final Endpoint DB = Endpoint.create("db", 172 << 24 | 17 << 16 | 2);
+
+  static final Span CLIENT_SPAN = Span.builder().traceId(1L).id(2L).name("query")
+      .timestamp(1000L).duration(300L)
+      .addAnnotation(Annotation.create(1000L, Constants.CLIENT_SEND, WEB))
+      .addAnnotation(Annotation.create(1100L, "retry", WEB))
+      .addAnnotation(Annotation.create(1200L, "retry", WEB))
+      .addAnnotation(Annotation.create(1300L, Constants.CLIENT_RECV, WEB))
+      .addBinaryAnnotation(BinaryAnnotation.create(Constants.LOCAL_COMPONENT, "jdbc", WEB))
+      .addBinaryAnnotation(BinaryAnnotation.create("sql.query", repeat('x', 5000), WEB))
+      .addBinaryAnnotation(BinaryAnnotation.create("http.url", "/users/1", WEB))
+      .addBinaryAnnotation(BinaryAnnotation.address(Constants.SERVER_ADDR, DB))
+      .build();
+
+  @Test
+  public void withinLimits_returnsSameInstance() {
+    SpanLimits limits = SpanLimits.builder()
+        .maxValueLength(5000)
+        .dropTagKeys("password")
+        .maxAnnotations(2)
+        .maxSpanBytes(64 * 1024, Encoding.JSON)
+        .build();
+
+    assertThat(limits.apply(CLIENT_SPAN)).isSameAs(CLIENT_SPAN);
+    assertThat(limits.modifiedSpans()).isZero();
+  }
+
+  @Test
+  public void maxValueLength_truncatesTags() {
+    SpanLimits limits = SpanLimits.builder().maxValueLength(100).build();
+
+    Span span = limits.apply(CLIENT_SPAN);
+
+    assertThat(span.binaryAnnotations)
+        .filteredOn(b -> b.key.equals("sql.query"))
+        .extracting(b -> new String(b.value))
+        .containsExactly(repeat('x', 100));
+    assertThat(limits.truncatedValues()).isEqualTo(1);
+    assertThat(limits.modifiedSpans()).isEqualTo(1);
+  }
+
+  @Test
+  public void maxValueLength_doesntSplitCharacters() {
+    Span span = CLIENT_SPAN.toBuilder()
+        .binaryAnnotations(singleton(BinaryAnnotation.create("greeting", "h\u00e9\u20ac", WEB)))
+        .annotations(singleton(Annotation.create(1000L, "a\ud83d\ude00", WEB)))
+        .build();
+    // "h" is 1 byte, e-acute 2 and the euro sign 3, so 5 bytes would cut the euro sign
+    SpanLimits limits = SpanLimits.builder().maxValueLength(5).build();
+    assertThat(new String(limits.apply(span).binaryAnnotations.get(0).value, Util.UTF_8))
+        .isEqualTo("h\u00e9");
+
+    // 2 chars would split the emoji's surrogate pair
+    limits = SpanLimits.builder().maxValueLength(2).build();
+    assertThat(limits.apply(span).annotations.get(0).value).isEqualTo("a");
+  }
+
+  @Test
+  public void dropTagKeys() {
+    SpanLimits limits = SpanLimits.builder().dropTagKeys("sql.query").build();
+
+    assertThat(limits.apply(CLIENT_SPAN).binaryAnnotations)
+        .extracting(b -> b.key)
+        .containsOnly(Constants.LOCAL_COMPONENT, "http.url", Constants.SERVER_ADDR);
+    assertThat(limits.droppedTags()).isEqualTo(1);
+  }
+
+  @Test
+  public void allowTagKeys_keepsStructuralTags() {
+    SpanLimits limits = SpanLimits.builder().allowTagKeys("http.url").build();
+
+    assertThat(limits.apply(CLIENT_SPAN).binaryAnnotations)
+        .extracting(b -> b.key)
+        .containsOnly(Constants.LOCAL_COMPONENT, "http.url", Constants.SERVER_ADDR);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void dropAndAllowAreExclusive() {
+    SpanLimits.builder().dropTagKeys("a").allowTagKeys("b");
+  }
+
+  @Test
+  public void maxAnnotations_keepsCoreAnnotations() {
+    SpanLimits limits = SpanLimits.builder().maxAnnotations(1).build();
+
+    assertThat(limits.apply(CLIENT_SPAN).annotations)
+        .extracting(a -> a.timestamp, a -> a.value)
+        .containsExactly(
+            tuple(1000L, Constants.CLIENT_SEND),
+            tuple(1100L, "retry"),
+            tuple(1300L, Constants.CLIENT_RECV)
+        );
+    assertThat(limits.droppedAnnotations()).isEqualTo(1);
+  }
+
+  @Test
+  public void maxSpanBytes_dropsLargestTagsFirst() {
+    int withoutQuery = Codec.JSON.sizeInBytes(
+        SpanLimits.builder().dropTagKeys("sql.query").build().apply(CLIENT_SPAN));
+    SpanLimits limits = SpanLimits.builder().maxSpanBytes(withoutQuery, Encoding.JSON).build();
+
+    Span span = limits.apply(CLIENT_SPAN);
+
+    assertThat(Codec.JSON.sizeInBytes(span)).isLessThanOrEqualTo(withoutQuery);
+    assertThat(span.binaryAnnotations).extracting(b -> b.key)
+        .containsOnly(Constants.LOCAL_COMPONENT, "http.url", Constants.SERVER_ADDR);
+    assertThat(span.annotations).hasSize(4);
+  }
+
+  @Test
+  public void maxSpanBytes_neverDropsCoreData() {
+    SpanLimits limits = SpanLimits.builder().maxSpanBytes(1, Encoding.THRIFT).build();
+
+    Span span = limits.apply(CLIENT_SPAN);
+
+    assertThat(span.annotations).extracting(a -> a.value)
+        .containsExactly(Constants.CLIENT_SEND, Constants.CLIENT_RECV);
+    assertThat(span.binaryAnnotations).extracting(b -> b.key)
+        .containsOnly(Constants.LOCAL_COMPONENT, Constants.SERVER_ADDR);
+  }
+
+  @Test
+  public void decorate_appliesBeforeReporting() {
+    List<Span> reported = new ArrayList<>();
+    SpanLimits limits = SpanLimits.builder().maxValueLength(10).build();
+
+    limits.decorate(reported::add).report(CLIENT_SPAN);
+
+    assertThat(reported.get(0).binaryAnnotations)
+        .extracting(b -> b.value.length)
+        .doesNotContain(5000);
+    assertThat(limits.truncatedValues()).isEqualTo(1);
+  }
+
+  static <T> List<T> singleton(T element) {
+    List<T> result = new ArrayList<>();
+    result.add(element);
+    return result;
+  }
+
+  static String repeat(char c, int count) {
+    StringBuilder result = new StringBuilder();
+    for (int i = 0; i < count; i++) result.append(c);
+    return result.toString();
+  }
+}
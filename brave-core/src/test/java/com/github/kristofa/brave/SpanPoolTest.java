@@ -0,0 +1,147 @@
+package com.github.kristofa.brave;
+
+import com.twitter.zipkin.gen.Annotation;
+import com.twitter.zipkin.gen.BinaryAnnotation;
+import com.twitter.zipkin.gen.Endpoint;
+import com.twitter.zipkin.gen.Span;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class SpanPoolTest {
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  static final Endpoint ENDPOINT = Endpoint.create("service", 127 << 24 | 1);
+  static final SpanId ID = SpanId.builder().traceId(1L).parentId(2L).spanId(3L).build();
+
+  SpanPool pool = SpanPool.builder().detectUseAfterRelease(true).build();
+  List<zipkin.Span> reported = new ArrayList<>();
+  Brave brave = new Brave.Builder(new InheritableServerClientAndLocalSpanState(ENDPOINT))
+      .reporter(reported::add)
+      .spanPool(pool).build();
+
+  @After
+  public void clear() {
+    brave.serverTracer().clearCurrentSpan();
+  }
+
+  @Test
+  public void acquire_reusesReleasedSpan() {
+    Span span = pool.acquire(ID);
+    pool.release(span);
+
+    assertThat(pool.idleOnCurrentThread()).isEqualTo(1);
+    assertThat(pool.acquire(ID)).isSameAs(span);
+    assertThat(pool.idleOnCurrentThread()).isZero();
+  }
+
+  @Test
+  public void acquire_newSpanWhenPoolEmpty() {
+    assertThat(pool.acquire(ID))
+        .isEqualTo(ID.toSpan());
+  }
+
+  @Test
+  public void acquire_clearsPreviousState() {
+    Span span = pool.acquire(SpanId.builder().spanId(9L).debug(true).build());
+    span.setName("get").setTimestamp(1L).setDuration(2L);
+    span.addToAnnotations(Annotation.create(1L, "sr", ENDPOINT));
+    span.addToBinary_annotations(BinaryAnnotation.create("http.path", "/", ENDPOINT));
+    pool.release(span);
+
+    Span reused = pool.acquire(ID);
+
+    assertThat(reused).isSameAs(span);
+    assertThat(reused).isEqualTo(ID.toSpan());
+    assertThat(reused.getAnnotations()).isEmpty();
+    assertThat(reused.getBinary_annotations()).isEmpty();
+  }
+
+  @Test
+  public void release_dropsSpansWhenFull() {
+    pool = SpanPool.builder().maxPerThread(1).build();
+
+    pool.release(pool.acquire(ID));
+    pool.release(pool.acquire(ID).setName("another"));
+    pool.release(ID.toSpan());
+
+    assertThat(pool.idleOnCurrentThread()).isEqualTo(1);
+  }
+
+  @Test
+  public void release_perThread() throws InterruptedException {
+    pool.release(pool.acquire(ID));
+
+    int[] idleOnOtherThread = new int[1];
+    Thread thread = new Thread(() -> idleOnOtherThread[0] = pool.idleOnCurrentThread());
+    thread.start();
+    thread.join();
+
+    assertThat(idleOnOtherThread[0]).isZero();
+  }
+
+  @Test
+  public void release_twiceFails() {
+    Span span = pool.acquire(ID);
+    pool.release(span);
+
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("span released twice");
+    pool.release(span);
+  }
+
+  @Test
+  public void acquire_detectsModificationAfterRelease() {
+    Span span = pool.acquire(ID);
+    pool.release(span);
+    span.addToAnnotations(Annotation.create(1L, "cs", ENDPOINT));
+
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("span modified after it was released");
+    pool.acquire(ID);
+  }
+
+  @Test
+  public void serverRequests_reuseSpan() {
+    ServerRequestAdapter adapter = mock(ServerRequestAdapter.class);
+    when(adapter.getTraceData()).thenReturn(TraceData.create(ID.toBuilder().sampled(true).build()));
+    when(adapter.getSpanName()).thenReturn("get");
+
+    brave.serverRequestInterceptor().handle(adapter);
+    Span first = brave.serverSpanThreadBinder().getCurrentServerSpan().getSpan();
+    brave.serverResponseInterceptor().handle(Collections::emptyList);
+
+    assertThat(pool.idleOnCurrentThread()).isEqualTo(1);
+
+    brave.serverRequestInterceptor().handle(adapter);
+    assertThat(brave.serverSpanThreadBinder().getCurrentServerSpan().getSpan())
+        .isSameAs(first);
+    brave.serverResponseInterceptor().handle(Collections::emptyList);
+
+    assertThat(reported).extracting(s -> s.id).containsExactly(3L, 3L);
+    assertThat(reported).extracting(s -> s.annotations.size()).containsExactly(2, 2);
+  }
+
+  @Test
+  public void localSpans_reuseSpan() {
+    brave.localTracer().startNewSpan("codec", "encode");
+    Span first = brave.localSpanThreadBinder().getCurrentLocalSpan();
+    brave.localTracer().finishSpan();
+
+    brave.localTracer().startNewSpan("codec", "decode");
+    assertThat(brave.localSpanThreadBinder().getCurrentLocalSpan())
+        .isSameAs(first);
+    brave.localTracer().finishSpan();
+
+    assertThat(reported).extracting(s -> s.name).containsExactly("encode", "decode");
+  }
+}
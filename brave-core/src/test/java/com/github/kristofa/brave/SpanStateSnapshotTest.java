@@ -0,0 +1,187 @@
+package com.github.kristofa.brave;
+
+import com.twitter.zipkin.gen.Endpoint;
+import com.twitter.zipkin.gen.Span;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class SpanStateSnapshotTest {
+  static final Endpoint ENDPOINT = Endpoint.create("service", 127 << 24 | 1);
+
+  ServerClientAndLocalSpanState state = new ThreadLocalServerClientAndLocalSpanState(ENDPOINT);
+  Brave brave = new Brave.Builder(state).build();
+
+  ServerSpan serverSpan = ServerSpan.create(span(1L, "get"));
+  Span localSpan = span(2L, "encode");
+  Span clientSpan = span(3L, "post");
+
+  @After
+  public void clear() {
+    // thread local state is static
+    state.setCurrentServerSpan(null);
+    state.setCurrentLocalSpan(null);
+    state.setCurrentClientSpan(null);
+  }
+
+  @Test
+  public void capture() {
+    makeCurrent(state);
+
+    SpanStateSnapshot snapshot = SpanStateSnapshot.capture(brave);
+
+    assertThat(snapshot.serverSpan()).isSameAs(serverSpan);
+    assertThat(snapshot.localSpan()).isSameAs(localSpan);
+    assertThat(snapshot.clientSpan()).isSameAs(clientSpan);
+  }
+
+  @Test
+  public void wrap_runsWithCapturedSpans() throws Exception {
+    makeCurrent(state);
+    Callable<List<Object>> task = SpanStateSnapshot.capture(state).wrap(currentSpans(state));
+
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      assertThat(executor.submit(task).get())
+          .containsExactly(serverSpan, localSpan, clientSpan);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void wrap_restoresPreviousSpans() throws Exception {
+    makeCurrent(state);
+    Callable<List<Object>> task = SpanStateSnapshot.capture(state).wrap(currentSpans(state));
+    ServerSpan previousServerSpan = ServerSpan.create(span(4L, "put"));
+    state.setCurrentServerSpan(previousServerSpan);
+    state.setCurrentLocalSpan(null);
+    state.setCurrentClientSpan(null);
+
+    assertThat(task.call()).containsExactly(serverSpan, localSpan, clientSpan);
+
+    assertThat(currentSpans(state).call()).containsExactly(previousServerSpan, null, null);
+  }
+
+  @Test
+  public void wrap_restoresPreviousSpansWhenTaskFails() {
+    makeCurrent(state);
+    Runnable task = SpanStateSnapshot.capture(state).wrap(new Runnable() {
+      @Override public void run() {
+        throw new IllegalStateException();
+      }
+    });
+    clear();
+
+    try {
+      task.run();
+      fail();
+    } catch (IllegalStateException expected) {
+    }
+
+    assertThat(state.getCurrentLocalSpan()).isNull();
+    assertThat(state.getCurrentClientSpan()).isNull();
+  }
+
+  /** The inheritable state keeps local spans in a stack: the task's span is pushed, then popped. */
+  @Test
+  public void wrap_inheritableState_localSpanStack() throws Exception {
+    InheritableServerClientAndLocalSpanState inheritable =
+        new InheritableServerClientAndLocalSpanState(ENDPOINT);
+    makeCurrent(inheritable);
+    Callable<List<Object>> task = SpanStateSnapshot.capture(inheritable).wrap(currentSpans(inheritable));
+
+    Span previousLocalSpan = span(5L, "decode");
+    inheritable.setCurrentLocalSpan(previousLocalSpan);
+    assertThat(task.call()).containsExactly(serverSpan, localSpan, clientSpan);
+
+    assertThat(inheritable.getCurrentLocalSpan()).isSameAs(previousLocalSpan);
+    inheritable.setCurrentLocalSpan(null);
+    assertThat(inheritable.getCurrentLocalSpan()).isSameAs(localSpan); // from makeCurrent
+  }
+
+  @Test
+  public void executorService_pooledThreadDoesntKeepSpans() throws Exception {
+    ExecutorService executor = new BraveExecutorService(Executors.newSingleThreadExecutor(), brave);
+    try {
+      makeCurrent(state);
+      assertThat(executor.submit(currentSpans(state)).get())
+          .containsExactly(serverSpan, localSpan, clientSpan);
+
+      clear();
+      assertThat(executor.submit(currentSpans(state)).get())
+          .containsExactly(ServerSpan.EMPTY, null, null);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void executorService_invokeAll() throws Exception {
+    ExecutorService executor = new BraveExecutorService(Executors.newFixedThreadPool(2), brave);
+    try {
+      makeCurrent(state);
+      for (Future<List<Object>> result : executor.invokeAll(
+          Arrays.asList(currentSpans(state), currentSpans(state)))) {
+        assertThat(result.get()).containsExactly(serverSpan, localSpan, clientSpan);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void executorService_forkJoinPool() throws Exception {
+    ExecutorService executor = new BraveExecutorService(new ForkJoinPool(2), brave);
+    try {
+      makeCurrent(state);
+      assertThat(executor.submit(currentSpans(state)).get())
+          .containsExactly(serverSpan, localSpan, clientSpan);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void scheduledExecutorService() throws Exception {
+    ScheduledExecutorService executor =
+        new BraveScheduledExecutorService(Executors.newSingleThreadScheduledExecutor(), brave);
+    try {
+      makeCurrent(state);
+      assertThat(executor.schedule(currentSpans(state), 1, TimeUnit.MILLISECONDS).get())
+          .containsExactly(serverSpan, localSpan, clientSpan);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  void makeCurrent(ServerClientAndLocalSpanState state) {
+    state.setCurrentServerSpan(serverSpan);
+    state.setCurrentLocalSpan(localSpan);
+    state.setCurrentClientSpan(clientSpan);
+  }
+
+  static Callable<List<Object>> currentSpans(final ServerClientAndLocalSpanState state) {
+    return new Callable<List<Object>>() {
+      @Override public List<Object> call() {
+        return Arrays.<Object>asList(state.getCurrentServerSpan(), state.getCurrentLocalSpan(),
+            state.getCurrentClientSpan());
+      }
+    };
+  }
+
+  static Span span(long id, String name) {
+    return SpanId.builder().spanId(id).build().toSpan().setName(name);
+  }
+}
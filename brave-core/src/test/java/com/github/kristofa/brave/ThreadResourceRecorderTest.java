@@ -0,0 +1,188 @@
+package com.github.kristofa.brave;
+
+import com.github.kristofa.brave.OverheadMonitor.AllocationCounter;
+import com.twitter.zipkin.gen.Endpoint;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assume.assumeTrue;
+
+public class ThreadResourceRecorderTest {
+  static final Endpoint ENDPOINT = Endpoint.create("service", 127 << 24 | 1);
+
+  List<zipkin.Span> reported = new CopyOnWriteArrayList<>();
+  ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+  boolean contentionMonitoringWasEnabled = threadBean.isThreadContentionMonitoringSupported()
+      && threadBean.isThreadContentionMonitoringEnabled();
+  ThreadLocalServerClientAndLocalSpanState state =
+      new ThreadLocalServerClientAndLocalSpanState(ENDPOINT);
+
+  Brave brave(ThreadResourceRecorder recorder) {
+    return new Brave.Builder(state).reporter(reported::add).threadResourceRecorder(recorder).build();
+  }
+
+  @After
+  public void clear() {
+    state.setCurrentServerSpan(null);
+    state.setCurrentLocalSpan(null);
+    if (threadBean.isThreadContentionMonitoringSupported()) {
+      threadBean.setThreadContentionMonitoringEnabled(contentionMonitoringWasEnabled);
+    }
+  }
+
+  @Test
+  public void tagsServerSpan() throws Exception {
+    ThreadResourceRecorder recorder =
+        ThreadResourceRecorder.builder().contentionMonitoring(true).build();
+    assumeTrue(recorder.cpuTime && recorder.contention);
+    Brave brave = brave(recorder);
+    Object lock = new Object();
+
+    brave.serverTracer().setStateUnknown("get");
+    brave.serverTracer().setServerReceived();
+    byte[] garbage = new byte[1024 * 1024];
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(20L);
+    synchronized (lock) {
+      for (long remaining; (remaining = deadline - System.nanoTime()) > 0; ) {
+        TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+      }
+    }
+    brave.serverTracer().setServerSend();
+
+    Map<String, Long> tags = tags(reported.get(0));
+    assertThat(tags).containsKeys(ThreadResourceRecorder.CPU_TIME,
+        ThreadResourceRecorder.BLOCKED_TIME, ThreadResourceRecorder.WAITED_TIME);
+    assertThat(tags.get(ThreadResourceRecorder.WAITED_TIME)).isGreaterThanOrEqualTo(20L);
+    if (recorder.allocationCounter != AllocationCounter.UNSUPPORTED) {
+      assertThat(tags.get(ThreadResourceRecorder.ALLOCATED_BYTES))
+          .isGreaterThanOrEqualTo(garbage.length);
+    }
+  }
+
+  @Test
+  public void tagsLocalSpan() {
+    Brave brave = brave(ThreadResourceRecorder.create());
+
+    brave.localTracer().startNewSpan("codec", "encode");
+    brave.localTracer().finishSpan();
+
+    assertThat(tags(reported.get(0))).containsKey(ThreadResourceRecorder.CPU_TIME);
+  }
+
+  @Test
+  public void measuresOneInN() {
+    Brave brave = brave(ThreadResourceRecorder.builder().sampleEvery(2).build());
+
+    for (int i = 0; i < 4; i++) {
+      brave.localTracer().startNewSpan("codec", "encode");
+      brave.localTracer().finishSpan();
+    }
+
+    assertThat(reported)
+        .filteredOn(s -> tags(s).containsKey(ThreadResourceRecorder.CPU_TIME))
+        .hasSize(2);
+  }
+
+  @Test
+  public void measuresOneInNOfEachKind() {
+    Brave brave = brave(ThreadResourceRecorder.builder().sampleEvery(2).build());
+
+    // A shared count would only ever land on one of the two kinds.
+    for (int i = 0; i < 4; i++) {
+      brave.serverTracer().setStateUnknown("get");
+      brave.serverTracer().setServerReceived();
+      brave.localTracer().startNewSpan("codec", "encode");
+      brave.localTracer().finishSpan();
+      brave.serverTracer().setServerSend();
+    }
+
+    assertThat(reported)
+        .filteredOn(s -> tags(s).containsKey(ThreadResourceRecorder.CPU_TIME))
+        .extracting(s -> s.name)
+        .containsOnly("get", "encode")
+        .hasSize(4);
+  }
+
+  @Test
+  public void contentionMonitoring_offByDefault() {
+    assumeTrue(threadBean.isThreadContentionMonitoringSupported());
+    threadBean.setThreadContentionMonitoringEnabled(false);
+
+    ThreadResourceRecorder recorder = ThreadResourceRecorder.create();
+
+    assertThat(recorder.contention).isFalse();
+    assertThat(threadBean.isThreadContentionMonitoringEnabled()).isFalse();
+  }
+
+  @Test
+  public void doesntTagSpanFinishedOnAnotherThread() throws Exception {
+    Brave brave = brave(ThreadResourceRecorder.create());
+    brave.serverTracer().setStateUnknown("get");
+    brave.serverTracer().setServerReceived();
+    ServerSpan span = brave.serverSpanThreadBinder().getCurrentServerSpan();
+
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      executor.submit(() -> {
+        brave.serverSpanThreadBinder().setCurrentSpan(span);
+        brave.serverTracer().setServerSend();
+      }).get();
+    } finally {
+      executor.shutdownNow();
+    }
+
+    assertThat(reported).hasSize(1);
+    assertThat(tags(reported.get(0))).isEmpty();
+  }
+
+  @Test
+  public void doesntTagClientSpan() {
+    Brave brave = brave(ThreadResourceRecorder.create());
+
+    brave.clientTracer().startNewSpan("get");
+    brave.clientTracer().setClientSent();
+    brave.clientTracer().setClientReceived();
+
+    assertThat(tags(reported.get(0))).isEmpty();
+  }
+
+  @Test
+  public void unsupportedCountersArentTagged() {
+    ThreadResourceRecorder recorder = new ThreadResourceRecorder(
+        ThreadResourceRecorder.builder().contentionMonitoring(false),
+        ManagementFactory.getThreadMXBean(), AllocationCounter.UNSUPPORTED);
+    Brave brave = brave(recorder);
+
+    brave.localTracer().startNewSpan("codec", "encode");
+    brave.localTracer().finishSpan();
+
+    assertThat(tags(reported.get(0))).doesNotContainKeys(ThreadResourceRecorder.ALLOCATED_BYTES,
+        ThreadResourceRecorder.BLOCKED_TIME, ThreadResourceRecorder.WAITED_TIME);
+  }
+
+  @Test
+  public void sampleEvery_mustBePositive() {
+    try {
+      ThreadResourceRecorder.builder().sampleEvery(0);
+      throw new AssertionError();
+    } catch (IllegalArgumentException e) {
+      assertThat(e).hasMessage("sampleEvery must be positive");
+    }
+  }
+
+  static Map<String, Long> tags(zipkin.Span span) {
+    return span.binaryAnnotations.stream()
+        .filter(b -> b.key.startsWith("brave."))
+        .collect(Collectors.toMap(b -> b.key, b -> Long.valueOf(new String(b.value))));
+  }
+}
@@ -0,0 +1,213 @@
+package com.github.kristofa.brave;
+
+import com.github.kristofa.brave.TracingControl.Level;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import zipkin.Span;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+public class TracingControlTest {
+  static final SpanId RECEIVED = SpanId.builder()
+      .traceId(1L).parentId(2L).spanId(3L).sampled(true).build();
+
+  List<Span> spans = new ArrayList<>();
+  TracingControl control = new TracingControl();
+  Brave brave = new Brave.Builder("frontend").reporter(spans::add).tracingControl(control).build();
+
+  ServerRequestAdapter serverRequest = mock(ServerRequestAdapter.class);
+  ServerResponseAdapter serverResponse = mock(ServerResponseAdapter.class);
+  ClientRequestAdapter clientRequest = mock(ClientRequestAdapter.class);
+  ClientResponseAdapter clientResponse = mock(ClientResponseAdapter.class);
+
+  @After
+  public void clear() {
+    brave.serverTracer().clearCurrentSpan();
+  }
+
+  @Test
+  public void defaultsToFull() {
+    assertThat(new TracingControl().level()).isEqualTo(Level.FULL);
+    assertThat(brave.tracingControl()).isSameAs(control);
+  }
+
+  @Test
+  public void setLevel_ignoresCase() {
+    control.setLevel("propagate_only");
+
+    assertThat(control.level()).isEqualTo(Level.PROPAGATE_ONLY);
+    assertThat(control.getLevel()).isEqualTo("PROPAGATE_ONLY");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void setLevel_rejectsUnknown() {
+    control.setLevel("SOME");
+  }
+
+  @Test
+  public void full_recordsSpans() {
+    when(serverRequest.getTraceData()).thenReturn(TraceData.create(RECEIVED));
+    when(serverRequest.getSpanName()).thenReturn("get");
+    when(clientRequest.getSpanName()).thenReturn("get");
+
+    handleRequest();
+
+    assertThat(spans).extracting(s -> s.name).containsExactly("get", "get");
+  }
+
+  @Test
+  public void off_doesNothing() {
+    control.level(Level.OFF);
+
+    handleRequest();
+
+    verifyZeroInteractions(serverRequest, serverResponse, clientRequest, clientResponse);
+    assertThat(spans).isEmpty();
+  }
+
+  @Test
+  public void propagateOnly_forwardsChildOfReceivedSpan() {
+    control.level(Level.PROPAGATE_ONLY);
+    when(serverRequest.getTraceData()).thenReturn(TraceData.create(RECEIVED));
+
+    handleRequest();
+
+    ArgumentCaptor<SpanId> forwarded = ArgumentCaptor.forClass(SpanId.class);
+    verify(clientRequest).addSpanIdToRequest(forwarded.capture());
+    assertThat(forwarded.getValue().traceId).isEqualTo(RECEIVED.traceId);
+    assertThat(forwarded.getValue().parentId).isEqualTo(RECEIVED.spanId);
+    assertThat(forwarded.getValue().spanId).isNotEqualTo(RECEIVED.spanId);
+    assertThat(forwarded.getValue().sampled()).isTrue();
+
+    verifyZeroInteractions(serverResponse, clientResponse);
+    assertThat(spans).isEmpty();
+    assertThat(brave.serverTracer().spanAndEndpoint().state().getCurrentServerSpan())
+        .isEqualTo(ServerSpan.EMPTY);
+  }
+
+  @Test
+  public void propagateOnly_forwardsNotSampled() {
+    control.level(Level.PROPAGATE_ONLY);
+    when(serverRequest.getTraceData()).thenReturn(TraceData.NOT_SAMPLED);
+
+    handleRequest();
+
+    verify(clientRequest).addSpanIdToRequest(null);
+  }
+
+  @Test
+  public void propagateOnly_nothingReceivedNothingForwarded() {
+    control.level(Level.PROPAGATE_ONLY);
+    when(serverRequest.getTraceData()).thenReturn(TraceData.EMPTY);
+
+    handleRequest();
+
+    verifyZeroInteractions(clientRequest);
+  }
+
+  @Test
+  public void propagateOnly_doesntRecordDirectTracerUse() {
+    control.level(Level.PROPAGATE_ONLY);
+    when(serverRequest.getTraceData()).thenReturn(TraceData.create(RECEIVED));
+    brave.serverRequestInterceptor().handle(serverRequest);
+
+    assertThat(brave.localTracer().startNewSpan("cache", "get")).isNull();
+    assertThat(brave.clientTracer().startNewSpan("get")).isNull();
+  }
+
+  @Test
+  public void levelChangedDuringRequest_clearsStateWithoutReporting() {
+    when(serverRequest.getTraceData()).thenReturn(TraceData.create(RECEIVED));
+    when(serverRequest.getSpanName()).thenReturn("get");
+    when(clientRequest.getSpanName()).thenReturn("get");
+    when(clientRequest.requestAnnotations()).thenReturn(Collections.emptyList());
+
+    brave.serverRequestInterceptor().handle(serverRequest);
+    brave.clientRequestInterceptor().handle(clientRequest);
+    control.level(Level.OFF);
+    brave.clientResponseInterceptor().handle(clientResponse);
+    brave.serverResponseInterceptor().handle(serverResponse);
+
+    verifyZeroInteractions(serverResponse, clientResponse);
+    assertThat(spans).isEmpty();
+    assertThat(brave.serverTracer().spanAndEndpoint().state().getCurrentServerSpan())
+        .isEqualTo(ServerSpan.EMPTY);
+    assertThat(brave.clientTracer().spanAndEndpoint().state().getCurrentClientSpan()).isNull();
+  }
+
+  @Test
+  public void levelChangedDuringRequest_unregistersInFlightSpans() {
+    InFlightSpans inFlightSpans = InFlightSpans.builder()
+        .abandonAfter(1, TimeUnit.NANOSECONDS)
+        .checkInterval(0, TimeUnit.SECONDS)
+        .build();
+    brave = new Brave.Builder("frontend").reporter(spans::add).tracingControl(control)
+        .inFlightSpans(inFlightSpans).build();
+    when(serverRequest.getTraceData()).thenReturn(TraceData.create(RECEIVED));
+    when(serverRequest.getSpanName()).thenReturn("get");
+    when(clientRequest.getSpanName()).thenReturn("get");
+    when(clientRequest.requestAnnotations()).thenReturn(Collections.emptyList());
+
+    try {
+      brave.serverRequestInterceptor().handle(serverRequest);
+      brave.clientRequestInterceptor().handle(clientRequest);
+      assertThat(inFlightSpans.inFlight()).isEqualTo(2);
+
+      control.level(Level.PROPAGATE_ONLY);
+      brave.clientResponseInterceptor().handle(clientResponse);
+      brave.serverResponseInterceptor().handle(serverResponse);
+
+      assertThat(inFlightSpans.inFlight()).isZero();
+      assertThat(inFlightSpans.checkAbandoned()).isZero();
+      assertThat(spans).isEmpty();
+    } finally {
+      inFlightSpans.close();
+    }
+  }
+
+  @Test
+  public void propagateOnlyDuringClientRequest_clearsClientSpan() {
+    when(clientRequest.getSpanName()).thenReturn("get");
+    when(clientRequest.requestAnnotations()).thenReturn(Collections.emptyList());
+
+    brave.clientRequestInterceptor().handle(clientRequest);
+    control.level(Level.PROPAGATE_ONLY);
+    brave.clientResponseInterceptor().handle(clientResponse);
+
+    assertThat(spans).isEmpty();
+    assertThat(brave.clientTracer().spanAndEndpoint().state().getCurrentClientSpan()).isNull();
+  }
+
+  @Test
+  public void offDuringRequest_nextRequestStartsClean() {
+    when(serverRequest.getTraceData()).thenReturn(TraceData.create(RECEIVED));
+    when(serverRequest.getSpanName()).thenReturn("get");
+    brave.serverRequestInterceptor().handle(serverRequest);
+
+    control.level(Level.OFF);
+    brave.serverRequestInterceptor().handle(serverRequest);
+
+    assertThat(brave.serverTracer().spanAndEndpoint().state().getCurrentServerSpan())
+        .isEqualTo(ServerSpan.EMPTY);
+  }
+
+  void handleRequest() {
+    when(serverResponse.responseAnnotations()).thenReturn(Collections.emptyList());
+    when(clientRequest.requestAnnotations()).thenReturn(Collections.emptyList());
+    when(clientResponse.responseAnnotations()).thenReturn(Collections.emptyList());
+
+    brave.serverRequestInterceptor().handle(serverRequest);
+    brave.clientRequestInterceptor().handle(clientRequest);
+    brave.clientResponseInterceptor().handle(clientResponse);
+    brave.serverResponseInterceptor().handle(serverResponse);
+  }
+}
@@ -0,0 +1,350 @@
+package com.github.kristofa.brave.internal;
+
+import com.twitter.zipkin.gen.Annotation;
+import com.twitter.zipkin.gen.BinaryAnnotation;
+import com.twitter.zipkin.gen.Endpoint;
+import com.twitter.zipkin.gen.Span;
+import com.twitter.zipkin.gen.SpanCodec;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+import zipkin.Constants;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class V2SpanCodecTest {
+
+  Endpoint browser = Endpoint.create("browser-client", 1 << 24 | 2 << 16 | 3);
+  Endpoint web = Endpoint.builder()
+      .serviceName("web")
+      .ipv4(124 << 24 | 13 << 16 | 90 << 8 | 3)
+      .port(80).build();
+  Endpoint db = Endpoint.builder().serviceName("db").ipv4(127 << 24 | 1).port(3306).build();
+
+  Span serverSpan = new Span() // browser calls web
+      .setTrace_id(1L)
+      .setName("get")
+      .setId(2L)
+      .setTimestamp(1444438900939000L)
+      .setDuration(376000L)
+      .addToAnnotations(Annotation.create(1444438900939000L, Constants.SERVER_RECV, web))
+      .addToAnnotations(Annotation.create(1444438901315000L, Constants.SERVER_SEND, web))
+      .addToBinary_annotations(BinaryAnnotation.address(Constants.CLIENT_ADDR, browser));
+
+  Span clientSpan = new Span() // web calls db
+      .setTrace_id(1L)
+      .setParent_id(2L)
+      .setName("query")
+      .setId(3L)
+      .setTimestamp(1444438900941000L)
+      .setDuration(77000L)
+      .addToAnnotations(Annotation.create(1444438900941000L, Constants.CLIENT_SEND, web))
+      .addToAnnotations(Annotation.create(1444438900950000L, "retry", web))
+      .addToAnnotations(Annotation.create(1444438901018000L, Constants.CLIENT_RECV, web))
+      .addToBinary_annotations(BinaryAnnotation.create("sql.query", "select \"1\"", web))
+      .addToBinary_annotations(BinaryAnnotation.address(Constants.SERVER_ADDR, db));
+
+  @Test
+  public void json_serverSpan() {
+    assertThat(json(serverSpan)).isEqualTo("{"
+        + "\"traceId\":\"0000000000000001\",\"id\":\"0000000000000002\",\"kind\":\"SERVER\","
+        + "\"name\":\"get\",\"timestamp\":1444438900939000,\"duration\":376000,"
+        + "\"localEndpoint\":{\"serviceName\":\"web\",\"ipv4\":\"124.13.90.3\",\"port\":80},"
+        + "\"remoteEndpoint\":{\"serviceName\":\"browser-client\",\"ipv4\":\"1.2.0.3\"}"
+        + "}");
+  }
+
+  @Test
+  public void json_clientSpan() {
+    assertThat(json(clientSpan)).isEqualTo("{"
+        + "\"traceId\":\"0000000000000001\",\"parentId\":\"0000000000000002\","
+        + "\"id\":\"0000000000000003\",\"kind\":\"CLIENT\",\"name\":\"query\","
+        + "\"timestamp\":1444438900941000,\"duration\":77000,"
+        + "\"localEndpoint\":{\"serviceName\":\"web\",\"ipv4\":\"124.13.90.3\",\"port\":80},"
+        + "\"remoteEndpoint\":{\"serviceName\":\"db\",\"ipv4\":\"127.0.0.1\",\"port\":3306},"
+        + "\"annotations\":[{\"timestamp\":1444438900950000,\"value\":\"retry\"}],"
+        + "\"tags\":{\"sql.query\":\"select \\\"1\\\"\"}"
+        + "}");
+  }
+
+  @Test
+  public void json_128bitTraceId() {
+    serverSpan.setTrace_id_high(3L);
+
+    assertThat(json(serverSpan))
+        .startsWith("{\"traceId\":\"00000000000000030000000000000001\"");
+  }
+
+  @Test
+  public void json_localSpan() {
+    Span localSpan = new Span().setTrace_id(1L).setId(1L).setName("encode")
+        .setTimestamp(1L).setDuration(2L)
+        .addToBinary_annotations(BinaryAnnotation.create(Constants.LOCAL_COMPONENT, "codec", web));
+
+    assertThat(json(localSpan)).isEqualTo("{"
+        + "\"traceId\":\"0000000000000001\",\"id\":\"0000000000000001\",\"name\":\"encode\","
+        + "\"timestamp\":1,\"duration\":2,"
+        + "\"localEndpoint\":{\"serviceName\":\"web\",\"ipv4\":\"124.13.90.3\",\"port\":80},"
+        + "\"tags\":{\"lc\":\"codec\"}"
+        + "}");
+  }
+
+  @Test
+  public void json_sharedSpanSplitsIntoClientAndServer() {
+    Span shared = new Span().setTrace_id(1L).setId(2L).setName("get")
+        .setTimestamp(10L).setDuration(100L)
+        .addToAnnotations(Annotation.create(10L, Constants.CLIENT_SEND, browser))
+        .addToAnnotations(Annotation.create(20L, Constants.SERVER_RECV, web))
+        .addToAnnotations(Annotation.create(25L, "cache.miss", web))
+        .addToAnnotations(Annotation.create(90L, Constants.SERVER_SEND, web))
+        .addToAnnotations(Annotation.create(110L, Constants.CLIENT_RECV, browser));
+
+    assertThat(new String(SpanCodec.JSON_V2.writeSpans(asList(shared)), Util.UTF_8))
+        .isEqualTo("[{"
+            + "\"traceId\":\"0000000000000001\",\"id\":\"0000000000000002\",\"kind\":\"CLIENT\","
+            + "\"name\":\"get\",\"timestamp\":10,\"duration\":100,"
+            + "\"localEndpoint\":{\"serviceName\":\"browser-client\",\"ipv4\":\"1.2.0.3\"}"
+            + "},{"
+            + "\"traceId\":\"0000000000000001\",\"id\":\"0000000000000002\",\"kind\":\"SERVER\","
+            + "\"name\":\"get\",\"timestamp\":20,\"duration\":70,"
+            + "\"localEndpoint\":{\"serviceName\":\"web\",\"ipv4\":\"124.13.90.3\",\"port\":80},"
+            + "\"annotations\":[{\"timestamp\":25,\"value\":\"cache.miss\"}],"
+            + "\"shared\":true"
+            + "}]");
+  }
+
+  @Test
+  public void json_serverSpanWithoutTimestampIsShared() {
+    serverSpan.setTimestamp(null).setDuration(null);
+
+    assertThat(json(serverSpan))
+        .contains("\"timestamp\":1444438900939000,\"duration\":376000")
+        .endsWith(",\"shared\":true}");
+  }
+
+  @Test
+  public void json_escapesAndEncodesUtf8() {
+    serverSpan.setName("中文\né😀");
+
+    assertThat(json(serverSpan))
+        .contains("\"name\":\"中文\\né😀\"");
+  }
+
+  @Test
+  public void json_nonStringTags() {
+    clientSpan.getBinary_annotations().clear();
+    clientSpan.addToBinary_annotations(BinaryAnnotation.create("error", new byte[] {1},
+        com.twitter.zipkin.gen.AnnotationType.BOOL, web));
+    clientSpan.addToBinary_annotations(BinaryAnnotation.create("count",
+        ByteBuffer.allocate(4).putInt(42).array(), com.twitter.zipkin.gen.AnnotationType.I32, web));
+    clientSpan.addToBinary_annotations(BinaryAnnotation.create("bytes", new byte[] {1, 2, 3, 4},
+        com.twitter.zipkin.gen.AnnotationType.BYTES, web));
+
+    assertThat(json(clientSpan))
+        .contains("\"tags\":{\"bytes\":\"AQIDBA==\",\"count\":\"42\",\"error\":\"true\"}");
+  }
+
+  @Test
+  public void proto3_serverSpan() {
+    List<Field> list = parse(SpanCodec.PROTO3.writeSpan(serverSpan));
+    assertThat(list).extracting(f -> f.number).containsExactly(1);
+
+    List<Field> span = parse(list.get(0).bytes);
+    assertThat(span).extracting(f -> f.number).containsExactly(1, 3, 4, 5, 6, 7, 8, 9);
+    assertThat(span.get(0).bytes).containsExactly(new byte[] {0, 0, 0, 0, 0, 0, 0, 1});
+    assertThat(span.get(1).bytes).containsExactly(new byte[] {0, 0, 0, 0, 0, 0, 0, 2});
+    assertThat(span.get(2).value).isEqualTo(2L); // SERVER
+    assertThat(new String(span.get(3).bytes, Util.UTF_8)).isEqualTo("get");
+    assertThat(span.get(4).value).isEqualTo(1444438900939000L);
+    assertThat(span.get(5).value).isEqualTo(376000L);
+
+    List<Field> local = parse(span.get(6).bytes);
+    assertThat(local).extracting(f -> f.number).containsExactly(1, 2, 4);
+    assertThat(new String(local.get(0).bytes, Util.UTF_8)).isEqualTo("web");
+    assertThat(local.get(1).bytes).containsExactly(new byte[] {124, 13, 90, 3});
+    assertThat(local.get(2).value).isEqualTo(80L);
+  }
+
+  @Test
+  public void proto3_clientSpan() {
+    List<Field> span = parse(parse(SpanCodec.PROTO3.writeSpan(clientSpan)).get(0).bytes);
+    assertThat(span).extracting(f -> f.number).containsExactly(1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11);
+
+    List<Field> annotation = parse(span.get(9).bytes);
+    assertThat(annotation.get(0).value).isEqualTo(1444438900950000L);
+    assertThat(new String(annotation.get(1).bytes, Util.UTF_8)).isEqualTo("retry");
+
+    List<Field> tag = parse(span.get(10).bytes);
+    assertThat(new String(tag.get(0).bytes, Util.UTF_8)).isEqualTo("sql.query");
+    assertThat(new String(tag.get(1).bytes, Util.UTF_8)).isEqualTo("select \"1\"");
+  }
+
+  @Test
+  public void proto3_listIsConcatenationOfSpans() {
+    byte[] server = SpanCodec.PROTO3.writeSpan(serverSpan);
+    byte[] client = SpanCodec.PROTO3.writeSpan(clientSpan);
+    byte[] concatenated = Arrays.copyOf(server, server.length + client.length);
+    System.arraycopy(client, 0, concatenated, server.length, client.length);
+
+    assertThat(SpanCodec.PROTO3.writeSpans(asList(serverSpan, clientSpan)))
+        .containsExactly(concatenated);
+  }
+
+  @Test
+  public void v2IsSmallerThanV1() {
+    List<Span> spans = asList(serverSpan, clientSpan);
+
+    assertThat(SpanCodec.JSON_V2.writeSpans(spans).length)
+        .isLessThan(SpanCodec.JSON.writeSpans(spans).length);
+    assertThat(SpanCodec.PROTO3.writeSpans(spans).length)
+        .isLessThan(SpanCodec.THRIFT.writeSpans(spans).length);
+  }
+
+  @Test
+  public void json_sharedSpanIsWrittenAsList() {
+    assertThat(json(sharedSpan()))
+        .startsWith("[{\"traceId\"")
+        .contains("\"kind\":\"CLIENT\"", "},{", "\"kind\":\"SERVER\"")
+        .endsWith("}]");
+  }
+
+  @Test
+  public void writeJson_rejectsSharedSpan() {
+    try {
+      V2SpanCodec.writeJson(sharedSpan().toZipkin());
+      throw new AssertionError();
+    } catch (IllegalArgumentException e) {
+      assertThat(e).hasMessageStartingWith("shared span must be split");
+    }
+  }
+
+  @Test
+  public void splitShared() {
+    List<zipkin.Span> sides = V2SpanCodec.splitShared(sharedSpan().toZipkin());
+
+    assertThat(sides).hasSize(2);
+    assertThat(new String(V2SpanCodec.writeJson(sides.get(0)), Util.UTF_8))
+        .contains("\"kind\":\"CLIENT\",\"name\":\"get\",\"timestamp\":10,\"duration\":100");
+    assertThat(new String(V2SpanCodec.writeJson(sides.get(1)), Util.UTF_8))
+        .contains("\"kind\":\"SERVER\",\"name\":\"get\",\"timestamp\":20,\"duration\":70")
+        .contains("\"annotations\":[{\"timestamp\":25,\"value\":\"cache.miss\"}]")
+        .endsWith(",\"shared\":true}");
+  }
+
+  @Test
+  public void splitShared_returnsOtherSpansAsIs() {
+    zipkin.Span span = clientSpan.toZipkin();
+
+    assertThat(V2SpanCodec.splitShared(span)).containsExactly(span);
+  }
+
+  @Test
+  public void readSpan_json() {
+    for (Span span : asList(serverSpan, clientSpan, sharedSpan())) {
+      assertRoundTrip(SpanCodec.JSON_V2, span);
+    }
+  }
+
+  @Test
+  public void readSpan_proto3() {
+    for (Span span : asList(serverSpan, clientSpan, sharedSpan())) {
+      assertRoundTrip(SpanCodec.PROTO3, span);
+    }
+  }
+
+  @Test
+  public void readSpan_json_128bitTraceIdAndEscapes() {
+    serverSpan.setTrace_id_high(3L).setName("中文\né😀");
+
+    assertRoundTrip(SpanCodec.JSON_V2, serverSpan);
+  }
+
+  @Test
+  public void readSpan_json_skipsUnknownFields() {
+    Span span = SpanCodec.JSON_V2.readSpan((""
+        + "{\"traceId\":\"0000000000000001\",\"id\":\"0000000000000002\",\"name\":\"get\","
+        + "\"unknown\":{\"nested\":[1,\"2\",{}],\"b\":true},\"other\":null}")
+        .getBytes(Util.UTF_8));
+
+    assertThat(span.getId()).isEqualTo(2L);
+    assertThat(span.getName()).isEqualTo("get");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void readSpan_json_malformed() {
+    SpanCodec.JSON_V2.readSpan("{\"traceId\":\"00000000000".getBytes(Util.UTF_8));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void readSpan_proto3_malformed() {
+    byte[] bytes = SpanCodec.PROTO3.writeSpan(serverSpan);
+    SpanCodec.PROTO3.readSpan(Arrays.copyOf(bytes, bytes.length - 3));
+  }
+
+  /** Reading what was written gives the same v1 span, except tags are strings. */
+  static void assertRoundTrip(SpanCodec codec, Span span) {
+    zipkin.Span read = codec.readSpan(codec.writeSpan(span)).toZipkin();
+
+    assertThat(read).isEqualTo(span.toZipkin());
+  }
+
+  Span sharedSpan() {
+    return new Span().setTrace_id(1L).setId(2L).setName("get")
+        .setTimestamp(10L).setDuration(100L)
+        .addToAnnotations(Annotation.create(10L, Constants.CLIENT_SEND, browser))
+        .addToAnnotations(Annotation.create(20L, Constants.SERVER_RECV, web))
+        .addToAnnotations(Annotation.create(25L, "cache.miss", web))
+        .addToAnnotations(Annotation.create(90L, Constants.SERVER_SEND, web))
+        .addToAnnotations(Annotation.create(110L, Constants.CLIENT_RECV, browser));
+  }
+
+  String json(Span span) {
+    return new String(SpanCodec.JSON_V2.writeSpan(span), Util.UTF_8);
+  }
+
+  static final class Field {
+    int number;
+    long value; // varint or fixed64
+    byte[] bytes; // length-delimited
+  }
+
+  /** Minimal proto3 reader, enough to verify the encoder's output. */
+  static List<Field> parse(byte[] bytes) {
+    ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+    List<Field> result = new ArrayList<>();
+    while (buffer.hasRemaining()) {
+      int key = (int) readVarint(buffer);
+      Field field = new Field();
+      field.number = key >>> 3;
+      switch (key & 7) {
+        case 0:
+          field.value = readVarint(buffer);
+          break;
+        case 1:
+          field.value = buffer.getLong();
+          break;
+        case 2:
+          field.bytes = new byte[(int) readVarint(buffer)];
+          buffer.get(field.bytes);
+          break;
+        default:
+          throw new AssertionError("unexpected wire type " + (key & 7));
+      }
+      result.add(field);
+    }
+    return result;
+  }
+
+  static long readVarint(ByteBuffer buffer) {
+    long result = 0;
+    for (int shift = 0; ; shift += 7) {
+      byte b = buffer.get();
+      result |= (long) (b & 0x7f) << shift;
+      if ((b & 0x80) == 0) return result;
+    }
+  }
+}
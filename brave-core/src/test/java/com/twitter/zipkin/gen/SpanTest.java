@@ -1,9 +1,17 @@
 package com.twitter.zipkin.gen;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
 import org.junit.Test;
 import zipkin.Constants;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 
 public class SpanTest {
   @Test
@@ -29,4 +37,88 @@ public class SpanTest {
     Span span = new Span();
     span.startTick = System.nanoTime();
   }
+
+  @Test
+  public void clockAnchor_inheritedByChild() {
+    Span parent = new Span().setName("get").setClockAnchor(1000L, 0L);
+    Span child = new Span().setName("get");
+
+    assertEquals(true, child.inheritClockAnchor(parent));
+    assertEquals(1001L, child.anchoredTimeMicroseconds(1999L));
+    assertEquals(1002L, child.anchoredTimeMicroseconds(2000L));
+    assertEquals(false, new Span().inheritClockAnchor(new Span()));
+  }
+
+  @Test
+  public void clockAnchor_notPartOfEquals() {
+    assertEquals(new Span().setName("get"), new Span().setName("get").setClockAnchor(1000L, 0L));
+  }
+
+  @Test
+  public void serializedFormOmitsInternalState() throws Exception {
+    Span span = new Span().setTrace_id(1L).setName("get").setId(2L).setParent_id(3L)
+        .setTimestamp(4L).setDuration(5L).setDebug(true).setClockAnchor(1000L, 0L)
+        .addToAnnotations(Annotation.create(4L, Constants.SERVER_RECV, null));
+    span.inFlight = new Object();
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(span);
+    }
+    Span read;
+    try (ObjectInputStream in =
+             new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+      read = (Span) in.readObject();
+    }
+
+    assertEquals(span, read);
+    assertEquals(ArrayList.class, read.getAnnotations().getClass());
+    assertNull(read.inFlight);
+    assertEquals(false, new Span().inheritClockAnchor(read));
+  }
+
+  @Test
+  public void optionalFields_unsetAreNull() {
+    Span span = new Span();
+
+    assertNull(span.getParent_id());
+    assertNull(span.getTimestamp());
+    assertNull(span.getDuration());
+    assertNull(span.isDebug());
+  }
+
+  @Test
+  public void optionalFields_canBeCleared() {
+    Span span = new Span().setName("get")
+        .setParent_id(1L).setTimestamp(2L).setDuration(3L).setDebug(false);
+
+    assertEquals(Long.valueOf(1L), span.getParent_id());
+    assertEquals(Boolean.FALSE, span.isDebug());
+
+    span.setParent_id(null).setTimestamp(null).setDuration(null).setDebug(null);
+
+    assertEquals(new Span().setName("get"), span);
+    assertEquals(new Span().setName("get").hashCode(), span.hashCode());
+  }
+
+  @Test
+  public void equals_distinguishesZeroFromUnset() {
+    assertNotEquals(new Span().setName("get"), new Span().setName("get").setParent_id(0L));
+    assertNotEquals(new Span().setName("get"), new Span().setName("get").setDebug(false));
+  }
+
+  @Test
+  public void toZipkin_convertsSharedEndpointOnce() {
+    Endpoint endpoint = Endpoint.create("service", 127 << 24 | 1);
+    Span span = new Span().setName("get")
+        .addToAnnotations(Annotation.create(1L, "sr", endpoint))
+        .addToAnnotations(Annotation.create(2L, "ss", endpoint))
+        .addToBinary_annotations(BinaryAnnotation.create("http.url", "/", endpoint));
+
+    zipkin.Span result = span.toZipkin();
+
+    assertSame(result.annotations.get(0).endpoint, result.annotations.get(1).endpoint);
+    assertSame(result.annotations.get(0).endpoint, result.binaryAnnotations.get(0).endpoint);
+    assertEquals("service", result.annotations.get(0).endpoint.serviceName);
+  }
 }
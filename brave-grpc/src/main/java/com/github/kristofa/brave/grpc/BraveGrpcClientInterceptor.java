@@ -5,14 +5,14 @@ import com.github.kristofa.brave.ClientRequestAdapter;
 import com.github.kristofa.brave.ClientRequestInterceptor;
 import com.github.kristofa.brave.ClientResponseAdapter;
 import com.github.kristofa.brave.ClientResponseInterceptor;
-import com.github.kristofa.brave.ClientSpanThreadBinder;
 import com.github.kristofa.brave.IdConversion;
 import com.github.kristofa.brave.KeyValueAnnotation;
+import com.github.kristofa.brave.SpanHandle;
 import com.github.kristofa.brave.SpanId;
 import com.github.kristofa.brave.internal.Nullable;
 import com.github.kristofa.brave.internal.Util;
+import com.github.kristofa.brave.http.B3SingleFormat;
 import com.twitter.zipkin.gen.Endpoint;
-import com.twitter.zipkin.gen.Span;
 import io.grpc.CallOptions;
 import io.grpc.Channel;
 import io.grpc.ClientCall;
@@ -43,11 +43,32 @@ public final class BraveGrpcClientInterceptor implements ClientInterceptor {
 
     public static final class Builder {
         final Brave brave;
+        boolean b3SingleHeader = false;
+        boolean binaryPropagation = false;
 
         Builder(Brave brave) { // intentionally hidden
             this.brave = Util.checkNotNull(brave, "brave");
         }
 
+        /**
+         * When true, propagates the trace in the single "b3" key instead of one key per field.
+         * Only use this when servers called understand it. Default false.
+         */
+        public Builder b3SingleHeader(boolean b3SingleHeader) {
+            this.b3SingleHeader = b3SingleHeader;
+            return this;
+        }
+
+        /**
+         * When true, propagates the trace in the binary "b3-bin" key, which avoids hex formatting and
+         * parsing. This takes precedence over {@link #b3SingleHeader(boolean)}. Only use this when
+         * servers called understand it. Default false.
+         */
+        public Builder binaryPropagation(boolean binaryPropagation) {
+            this.binaryPropagation = binaryPropagation;
+            return this;
+        }
+
         public BraveGrpcClientInterceptor build() {
             return new BraveGrpcClientInterceptor(this);
         }
@@ -55,12 +76,14 @@ public final class BraveGrpcClientInterceptor implements ClientInterceptor {
 
     private final ClientRequestInterceptor clientRequestInterceptor;
     private final ClientResponseInterceptor clientResponseInterceptor;
-    private final ClientSpanThreadBinder clientSpanThreadBinder;
+    private final Propagation propagation;
 
     BraveGrpcClientInterceptor(Builder b) { // intentionally hidden
         this.clientRequestInterceptor = b.brave.clientRequestInterceptor();
         this.clientResponseInterceptor = b.brave.clientResponseInterceptor();
-        this.clientSpanThreadBinder = b.brave.clientSpanThreadBinder();
+        this.propagation = b.binaryPropagation
+            ? Propagation.BINARY
+            : b.b3SingleHeader ? Propagation.B3_SINGLE : Propagation.MULTIPLE_KEYS;
     }
 
     /**
@@ -70,7 +93,7 @@ public final class BraveGrpcClientInterceptor implements ClientInterceptor {
     public BraveGrpcClientInterceptor(Brave brave) {
         this.clientRequestInterceptor = checkNotNull(brave.clientRequestInterceptor());
         this.clientResponseInterceptor = checkNotNull(brave.clientResponseInterceptor());
-        this.clientSpanThreadBinder = checkNotNull(brave.clientSpanThreadBinder());
+        this.propagation = Propagation.MULTIPLE_KEYS;
     }
 
     @Override
@@ -80,33 +103,46 @@ public final class BraveGrpcClientInterceptor implements ClientInterceptor {
 
             @Override
             public void start(Listener<RespT> responseListener, Metadata headers) {
-                clientRequestInterceptor.handle(new GrpcClientRequestAdapter<>(method, headers));
-                final Span currentClientSpan = clientSpanThreadBinder.getCurrentClientSpan();
+                // The span isn't bound to a thread, as onClose is called on another one.
+                final SpanHandle span = clientRequestInterceptor.startSpan(
+                    new GrpcClientRequestAdapter<>(method, headers, propagation));
                 super.start(new SimpleForwardingClientCallListener<RespT>(responseListener) {
                     @Override
                     public void onClose(Status status, Metadata trailers) {
-                        try {
-                            clientSpanThreadBinder.setCurrentSpan(currentClientSpan);
-                            clientResponseInterceptor.handle(new GrpcClientResponseAdapter(status));
-                            super.onClose(status, trailers);
-                        } finally {
-                            clientSpanThreadBinder.setCurrentSpan(null);
-                        }
-                   }
+                        clientResponseInterceptor.handle(new GrpcClientResponseAdapter(status), span);
+                        super.onClose(status, trailers);
+                    }
                 }, headers);
             }
         };
 
     }
 
+    /** How the trace context is written into request metadata. */
+    enum Propagation {
+        /** One ASCII key per field, understood by all versions. */
+        MULTIPLE_KEYS,
+        /** @see BravePropagationKeys#B3 */
+        B3_SINGLE,
+        /** @see BravePropagationKeys#B3Bin */
+        BINARY
+    }
+
     static final class GrpcClientRequestAdapter<ReqT, RespT> implements ClientRequestAdapter {
 
         private final MethodDescriptor<ReqT, RespT> method;
         private final Metadata headers;
+        private final Propagation propagation;
 
         public GrpcClientRequestAdapter(MethodDescriptor<ReqT, RespT> method, Metadata headers) {
+            this(method, headers, Propagation.MULTIPLE_KEYS);
+        }
+
+        GrpcClientRequestAdapter(MethodDescriptor<ReqT, RespT> method, Metadata headers,
+            Propagation propagation) {
             this.method = checkNotNull(method);
             this.headers = checkNotNull(headers);
+            this.propagation = checkNotNull(propagation);
         }
 
         @Override
@@ -116,14 +152,18 @@ public final class BraveGrpcClientInterceptor implements ClientInterceptor {
 
         @Override
         public void addSpanIdToRequest(@Nullable SpanId spanId) {
-            if (spanId == null) {
+            if (propagation == Propagation.B3_SINGLE) {
+                headers.put(BravePropagationKeys.B3, B3SingleFormat.write(spanId));
+            } else if (propagation == Propagation.BINARY && spanId != null) {
+                headers.put(BravePropagationKeys.B3Bin, spanId);
+            } else if (spanId == null) {
                 headers.put(BravePropagationKeys.Sampled, "0");
             } else {
                 headers.put(BravePropagationKeys.Sampled, "1");
                 headers.put(BravePropagationKeys.TraceId, spanId.traceIdString());
-                headers.put(BravePropagationKeys.SpanId, IdConversion.convertToString(spanId.spanId));
+                headers.put(BravePropagationKeys.SpanId, IdConversion.convertToPaddedString(spanId.spanId));
                 if (spanId.nullableParentId() != null) {
-                    headers.put(BravePropagationKeys.ParentSpanId, IdConversion.convertToString(spanId.parentId));
+                    headers.put(BravePropagationKeys.ParentSpanId, IdConversion.convertToPaddedString(spanId.parentId));
                 }
             }
         }
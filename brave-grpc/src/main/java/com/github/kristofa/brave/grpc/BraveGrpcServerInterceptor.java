@@ -12,6 +12,7 @@ import com.github.kristofa.brave.ServerResponseAdapter;
 import com.github.kristofa.brave.ServerResponseInterceptor;
 import com.github.kristofa.brave.SpanId;
 import com.github.kristofa.brave.TraceData;
+import com.github.kristofa.brave.http.B3SingleFormat;
 
 import com.github.kristofa.brave.internal.Util;
 import io.grpc.ForwardingServerCall.SimpleForwardingServerCall;
@@ -100,6 +101,16 @@ public final class BraveGrpcServerInterceptor implements ServerInterceptor {
 
         @Override
         public TraceData getTraceData() {
+            SpanId b3Bin = requestHeaders.get(BravePropagationKeys.B3Bin);
+            if (b3Bin != null) {
+                // Sampling is set in the flags on the wire, but not when metadata is passed in-process
+                return TraceData.create(b3Bin.sampled() != null ? b3Bin : b3Bin.toBuilder().sampled(true).build());
+            }
+            String b3 = requestHeaders.get(BravePropagationKeys.B3);
+            if (b3 != null) {
+                TraceData result = B3SingleFormat.parse(b3);
+                if (result != null) return result;
+            }
             String sampled = requestHeaders.get(BravePropagationKeys.Sampled);
             String parentSpanId = requestHeaders.get(BravePropagationKeys.ParentSpanId);
             String traceId = requestHeaders.get(BravePropagationKeys.TraceId);
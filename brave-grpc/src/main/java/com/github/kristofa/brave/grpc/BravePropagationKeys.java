@@ -15,5 +15,35 @@ class BravePropagationKeys {
         Metadata.Key.of(BraveHttpHeaders.TraceId.getName(), Metadata.ASCII_STRING_MARSHALLER);
     public static Metadata.Key<String> Sampled =
         Metadata.Key.of(BraveHttpHeaders.Sampled.getName(), Metadata.ASCII_STRING_MARSHALLER);
+    /** @see com.github.kristofa.brave.http.B3SingleFormat */
+    public static Metadata.Key<String> B3 =
+        Metadata.Key.of(BraveHttpHeaders.B3.getName(), Metadata.ASCII_STRING_MARSHALLER);
+    /**
+     * The trace in the 32 or 40 byte form of {@link com.github.kristofa.brave.SpanId#bytes()}, which
+     * needs no hex formatting or parsing, and is a single metadata entry.
+     */
+    public static Metadata.Key<com.github.kristofa.brave.SpanId> B3Bin =
+        Metadata.Key.of("b3-bin", SpanIdMarshaller.INSTANCE);
+
+    enum SpanIdMarshaller implements Metadata.BinaryMarshaller<com.github.kristofa.brave.SpanId> {
+        INSTANCE;
+
+        /** IDs are only propagated when the request is sampled, so that is set in the flags. */
+        @Override
+        public byte[] toBytes(com.github.kristofa.brave.SpanId value) {
+            byte[] result = value.bytes();
+            // flags are the trailing big-endian long, and sampling bits are in its lowest byte
+            result[result.length - 1] |=
+                com.github.kristofa.brave.SpanId.FLAG_SAMPLING_SET | com.github.kristofa.brave.SpanId.FLAG_SAMPLED;
+            return result;
+        }
+
+        /** Returns null on a malformed value, so that callers can fall back to other keys. */
+        @Override
+        public com.github.kristofa.brave.SpanId parseBytes(byte[] serialized) {
+            if (serialized.length != 32 && serialized.length != 40) return null;
+            return com.github.kristofa.brave.SpanId.fromBytes(serialized);
+        }
+    }
 
 }
@@ -90,6 +90,16 @@ public class BraveGrpcInterceptorsTest {
         validateSpans();
     }
 
+    /** The client span is finished on a transport thread, without binding it to the caller. */
+    @Test
+    public void asyncCallDoesntBindClientSpan() throws Exception {
+        GreeterFutureStub futureStub = GreeterGrpc.newFutureStub(channel);
+        ListenableFuture<HelloReply> helloReplyListenableFuture = futureStub.sayHello(HELLO_REQUEST);
+        assertThat(brave.clientSpanThreadBinder().getCurrentClientSpan()).isNull();
+        helloReplyListenableFuture.get();
+        validateSpans();
+    }
+
     @Test
     public void statusCodeAddedOnError() throws Exception {
         tearDown(); // kill the server
@@ -25,6 +25,44 @@ public class GrpcClientRequestAdapterTest {
         .isEqualTo("0");
   }
 
+  @Test
+  public void b3SingleHeader() throws Exception {
+    adapter = new GrpcClientRequestAdapter(GreeterGrpc.METHOD_SAY_HELLO, metadata,
+        BraveGrpcClientInterceptor.Propagation.B3_SINGLE);
+    adapter.addSpanIdToRequest(SpanId.builder().traceId(1234L).parentId(1234L).spanId(5678L).build());
+
+    assertThat(metadata.keys())
+        .containsExactly("b3");
+
+    assertThat(metadata.get(BravePropagationKeys.B3))
+        .isEqualTo("00000000000004d2-000000000000162e-1-00000000000004d2");
+  }
+
+  @Test
+  public void binary() throws Exception {
+    adapter = new GrpcClientRequestAdapter(GreeterGrpc.METHOD_SAY_HELLO, metadata,
+        BraveGrpcClientInterceptor.Propagation.BINARY);
+    SpanId spanId = SpanId.builder().traceId(1234L).parentId(1234L).spanId(5678L).build();
+    adapter.addSpanIdToRequest(spanId);
+
+    assertThat(metadata.keys())
+        .containsExactly("b3-bin");
+
+    // sampled is implied by propagating IDs, so it is set in the flags
+    assertThat(metadata.get(BravePropagationKeys.B3Bin))
+        .isEqualTo(spanId.toBuilder().sampled(true).build());
+  }
+
+  @Test
+  public void binary_unsampled() throws Exception {
+    adapter = new GrpcClientRequestAdapter(GreeterGrpc.METHOD_SAY_HELLO, metadata,
+        BraveGrpcClientInterceptor.Propagation.BINARY);
+    adapter.addSpanIdToRequest(null);
+
+    assertThat(metadata.keys())
+        .containsExactly("x-b3-sampled");
+  }
+
   @Test
   public void sampled_rootSpan() throws Exception {
     adapter.addSpanIdToRequest(SpanId.builder().traceId(1234L).spanId(1234L).build());
@@ -37,7 +75,7 @@ public class GrpcClientRequestAdapterTest {
     assertThat(metadata.get(BravePropagationKeys.TraceId))
         .isEqualTo("00000000000004d2");
     assertThat(metadata.get(BravePropagationKeys.SpanId))
-        .isEqualTo("4d2");
+        .isEqualTo("00000000000004d2");
   }
 
   @Test
@@ -52,9 +90,9 @@ public class GrpcClientRequestAdapterTest {
     assertThat(metadata.get(BravePropagationKeys.TraceId))
         .isEqualTo("00000000000004d2");
     assertThat(metadata.get(BravePropagationKeys.ParentSpanId))
-        .isEqualTo("4d2");
+        .isEqualTo("00000000000004d2");
     assertThat(metadata.get(BravePropagationKeys.SpanId))
-        .isEqualTo("162e");
+        .isEqualTo("000000000000162e");
   }
 
   @Test
@@ -69,6 +107,6 @@ public class GrpcClientRequestAdapterTest {
     assertThat(metadata.get(BravePropagationKeys.TraceId))
         .isEqualTo("00000000000000010000000000000002");
     assertThat(metadata.get(BravePropagationKeys.SpanId))
-        .isEqualTo("2");
+        .isEqualTo("0000000000000002");
   }
 }
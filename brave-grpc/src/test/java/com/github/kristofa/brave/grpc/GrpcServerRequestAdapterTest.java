@@ -35,6 +35,37 @@ public class GrpcServerRequestAdapterTest {
     adapter = new GrpcServerRequestAdapter(serverCall, metadata);
   }
 
+  @Test
+  public void getTraceData_b3SingleHeader() {
+    metadata.put(BravePropagationKeys.B3, TRACE_ID + "-" + SPAN_ID + "-1");
+    metadata.put(BravePropagationKeys.Sampled, "0"); // ignored
+
+    TraceData traceData = adapter.getTraceData();
+    assertTrue(traceData.getSample());
+    assertEquals(IdConversion.convertToLong(SPAN_ID), traceData.getSpanId().spanId);
+  }
+
+  @Test
+  public void getTraceData_b3Bin() {
+    SpanId spanId = SpanId.builder().traceIdHigh(1L).traceId(2L).parentId(2L).spanId(3L).build();
+    metadata.put(BravePropagationKeys.B3Bin, spanId);
+    metadata.put(BravePropagationKeys.B3, "0"); // ignored
+
+    TraceData traceData = adapter.getTraceData();
+    assertTrue(traceData.getSample());
+    assertEquals(spanId.toBuilder().sampled(true).build(), traceData.getSpanId());
+  }
+
+  @Test
+  public void getTraceData_malformedB3BinFallsBack() {
+    metadata.put(Metadata.Key.of("b3-bin", Metadata.BINARY_BYTE_MARSHALLER), new byte[3]);
+    metadata.put(BravePropagationKeys.Sampled, "0");
+
+    TraceData traceData = adapter.getTraceData();
+    assertFalse(traceData.getSample());
+    assertNull(traceData.getSpanId());
+  }
+
   @Test
   public void getTraceDataNoSampledHeader() {
     TraceData traceData = adapter.getTraceData();
@@ -0,0 +1,113 @@
+package com.github.kristofa.brave.http;
+
+import com.github.kristofa.brave.IdConversion;
+import com.github.kristofa.brave.SpanId;
+import com.github.kristofa.brave.TraceData;
+import com.github.kristofa.brave.internal.Nullable;
+
+/**
+ * Reads and writes the {@link BraveHttpHeaders#B3 single header} form of B3:
+ * {@code {traceId}-{spanId}-{sampled}-{parentSpanId}}, where the last two fields are optional.
+ * A header of just "0" means the caller didn't sample.
+ *
+ * <p>The trace ID is 16 or 32 lower-hex characters, and span IDs are 16. Sampled is "1", "0" or
+ * "d" for debug. For example, {@code 80f198ee56343ba864fe8b2a57d3eff7-e457b5a2e4d86bd1-1-05e3ac9a4f6e3b90}.
+ *
+ * <p>Both directions work in one pass over the characters, without intermediate strings.
+ */
+public final class B3SingleFormat {
+    static final int MAX_LENGTH = 32 + 1 + 16 + 2 + 17;
+
+    /** Avoids allocating a buffer per write, as {@link String#String(char[], int, int)} copies. */
+    static final ThreadLocal<char[]> BUFFER = new ThreadLocal<char[]>() {
+        @Override protected char[] initialValue() {
+            return new char[MAX_LENGTH];
+        }
+    };
+
+    /** Writes the header value for an outgoing request, or "0" when not sampled. */
+    public static String write(@Nullable SpanId spanId) {
+        if (spanId == null) return "0";
+        boolean traceHi = spanId.traceIdHigh != 0;
+        Long parentId = spanId.nullableParentId();
+        char[] result = BUFFER.get();
+        int pos = 0;
+        if (traceHi) {
+            IdConversion.writeHexLong(result, pos, spanId.traceIdHigh);
+            pos += 16;
+        }
+        IdConversion.writeHexLong(result, pos, spanId.traceId);
+        pos += 16;
+        result[pos++] = '-';
+        IdConversion.writeHexLong(result, pos, spanId.spanId);
+        pos += 16;
+        result[pos++] = '-';
+        result[pos++] = spanId.debug() ? 'd' : '1';
+        if (parentId != null) {
+            result[pos++] = '-';
+            IdConversion.writeHexLong(result, pos, parentId);
+            pos += 16;
+        }
+        return new String(result, 0, pos);
+    }
+
+    /**
+     * Parses the header value of an incoming request, or returns null if it is malformed, in which
+     * case callers can fall back to the multiple header form.
+     */
+    @Nullable
+    public static TraceData parse(String b3) {
+        int length = b3.length();
+        if (length == 1) {
+            char sampled = b3.charAt(0);
+            if (sampled == '0') return TraceData.NOT_SAMPLED;
+            // The caller wants this sampled, but didn't send IDs: the same as no header.
+            if (sampled == '1' || sampled == 'd') return TraceData.EMPTY;
+            return null;
+        }
+
+        int traceIdLength;
+        if (length > 16 && b3.charAt(16) == '-') {
+            traceIdLength = 16;
+        } else if (length > 32 && b3.charAt(32) == '-') {
+            traceIdLength = 32;
+        } else {
+            return null;
+        }
+        int spanIdEnd = traceIdLength + 1 + 16;
+        if (length != spanIdEnd && length != spanIdEnd + 2 && length != spanIdEnd + 2 + 17) {
+            return null;
+        }
+        if (length > spanIdEnd && b3.charAt(spanIdEnd) != '-') return null;
+
+        // convertToLong validates each character as it goes, so hex isn't scanned twice
+        SpanId.Builder builder = SpanId.builder().parentId(null);
+        try {
+            builder.traceIdHigh(traceIdLength == 32 ? IdConversion.convertToLong(b3, 0, 16) : 0L)
+                .traceId(IdConversion.convertToLong(b3, traceIdLength - 16, traceIdLength))
+                .spanId(IdConversion.convertToLong(b3, traceIdLength + 1, spanIdEnd));
+            if (length == spanIdEnd + 2 + 17) {
+                if (b3.charAt(spanIdEnd + 2) != '-') return null;
+                builder.parentId(IdConversion.convertToLong(b3, spanIdEnd + 3, length));
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        if (length == spanIdEnd) return TraceData.create(builder.build());
+
+        char sampled = b3.charAt(spanIdEnd + 1);
+        if (sampled == '0') {
+            builder.sampled(false);
+        } else if (sampled == 'd') {
+            builder.sampled(true).debug(true);
+        } else if (sampled == '1') {
+            builder.sampled(true);
+        } else {
+            return null;
+        }
+        return TraceData.create(builder.build());
+    }
+
+    private B3SingleFormat() {
+    }
+}
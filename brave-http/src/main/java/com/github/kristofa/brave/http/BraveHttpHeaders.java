@@ -28,7 +28,14 @@ public enum BraveHttpHeaders {
      * "1" means report this span to the tracing system, "0" means do not. (absent means defer the
      * decision to the receiver of this header).
      */
-    Sampled("X-B3-Sampled");
+    Sampled("X-B3-Sampled"),
+    /**
+     * All of the above in one header: "{TraceId}-{SpanId}-{Sampled}-{ParentSpanId}", or "0" when
+     * not sampled. Preferred over the other headers when present.
+     *
+     * @see B3SingleFormat
+     */
+    B3("b3");
 
     private final String name;
 
@@ -15,10 +15,21 @@ public class HttpClientRequestAdapter implements ClientRequestAdapter {
 
     private final HttpClientRequest request;
     private final SpanNameProvider spanNameProvider;
+    private final boolean b3SingleHeader;
 
     public HttpClientRequestAdapter(HttpClientRequest request, SpanNameProvider spanNameProvider) {
+        this(request, spanNameProvider, false);
+    }
+
+    /**
+     * @param b3SingleHeader true to propagate the trace in the {@link BraveHttpHeaders#B3} header,
+     * instead of one header per field. Only use this when servers called understand it.
+     */
+    public HttpClientRequestAdapter(HttpClientRequest request, SpanNameProvider spanNameProvider,
+        boolean b3SingleHeader) {
         this.request = request;
         this.spanNameProvider = spanNameProvider;
+        this.b3SingleHeader = b3SingleHeader;
     }
 
     @Override
@@ -28,14 +39,16 @@ public class HttpClientRequestAdapter implements ClientRequestAdapter {
 
     @Override
     public void addSpanIdToRequest(@Nullable SpanId spanId) {
-        if (spanId == null) {
+        if (b3SingleHeader) {
+            request.addHeader(BraveHttpHeaders.B3.getName(), B3SingleFormat.write(spanId));
+        } else if (spanId == null) {
             request.addHeader(BraveHttpHeaders.Sampled.getName(), "0");
         } else {
             request.addHeader(BraveHttpHeaders.Sampled.getName(), "1");
             request.addHeader(BraveHttpHeaders.TraceId.getName(), spanId.traceIdString());
-            request.addHeader(BraveHttpHeaders.SpanId.getName(), IdConversion.convertToString(spanId.spanId));
+            request.addHeader(BraveHttpHeaders.SpanId.getName(), IdConversion.convertToPaddedString(spanId.spanId));
             if (spanId.nullableParentId() != null) {
-                request.addHeader(BraveHttpHeaders.ParentSpanId.getName(), IdConversion.convertToString(spanId.parentId));
+                request.addHeader(BraveHttpHeaders.ParentSpanId.getName(), IdConversion.convertToPaddedString(spanId.parentId));
             }
         }
     }
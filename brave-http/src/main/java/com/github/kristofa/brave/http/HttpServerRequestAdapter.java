@@ -21,6 +21,11 @@ public class HttpServerRequestAdapter implements ServerRequestAdapter {
 
     @Override
     public TraceData getTraceData() {
+        String b3 = request.getHttpHeaderValue(BraveHttpHeaders.B3.getName());
+        if (b3 != null) {
+            TraceData result = B3SingleFormat.parse(b3);
+            if (result != null) return result;
+        }
         String sampled = request.getHttpHeaderValue(BraveHttpHeaders.Sampled.getName());
         String parentSpanId = request.getHttpHeaderValue(BraveHttpHeaders.ParentSpanId.getName());
         String traceId = request.getHttpHeaderValue(BraveHttpHeaders.TraceId.getName());
@@ -0,0 +1,97 @@
+package com.github.kristofa.brave.http;
+
+import com.github.kristofa.brave.SpanId;
+import com.github.kristofa.brave.TraceData;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class B3SingleFormatTest {
+    static final String TRACE_ID = "463ac35c9f6413ad";
+    static final String TRACE_ID_HIGH = "48485a3953bb6124";
+    static final String SPAN_ID = "a2fb4a1d1a96d312";
+    static final String PARENT_ID = "0020000000000001";
+
+    @Test
+    public void write_notSampled() {
+        assertThat(B3SingleFormat.write(null)).isEqualTo("0");
+    }
+
+    @Test
+    public void write_rootSpan() {
+        SpanId id = SpanId.builder().traceId(0x463ac35c9f6413adL).spanId(0x463ac35c9f6413adL).build();
+
+        assertThat(B3SingleFormat.write(id)).isEqualTo(TRACE_ID + "-" + TRACE_ID + "-1");
+    }
+
+    @Test
+    public void write_childSpan128BitDebug() {
+        SpanId id = SpanId.builder()
+            .traceIdHigh(0x48485a3953bb6124L).traceId(0x463ac35c9f6413adL)
+            .parentId(0x20000000000001L).spanId(0xa2fb4a1d1a96d312L).debug(true).build();
+
+        assertThat(B3SingleFormat.write(id))
+            .isEqualTo(TRACE_ID_HIGH + TRACE_ID + "-" + SPAN_ID + "-d-" + PARENT_ID);
+    }
+
+    @Test
+    public void parse_roundTrip() {
+        SpanId id = SpanId.builder()
+            .traceIdHigh(0x48485a3953bb6124L).traceId(0x463ac35c9f6413adL)
+            .parentId(0x20000000000001L).spanId(0xa2fb4a1d1a96d312L).sampled(true).build();
+
+        TraceData traceData = B3SingleFormat.parse(B3SingleFormat.write(id));
+
+        assertThat(traceData.getSample()).isTrue();
+        assertThat(traceData.getSpanId()).isEqualTo(id);
+        assertThat(traceData.getSpanId().traceIdHigh).isEqualTo(id.traceIdHigh);
+    }
+
+    @Test
+    public void parse_idsOnly_defersSampling() {
+        TraceData traceData = B3SingleFormat.parse(TRACE_ID + "-" + SPAN_ID);
+
+        assertThat(traceData.getSample()).isNull();
+        assertThat(traceData.getSpanId().traceId).isEqualTo(0x463ac35c9f6413adL);
+        assertThat(traceData.getSpanId().spanId).isEqualTo(0xa2fb4a1d1a96d312L);
+        assertThat(traceData.getSpanId().nullableParentId()).isNull();
+    }
+
+    @Test
+    public void parse_notSampledWithIds() {
+        TraceData traceData = B3SingleFormat.parse(TRACE_ID + "-" + SPAN_ID + "-0");
+
+        assertThat(traceData.getSample()).isFalse();
+        assertThat(traceData.getSpanId().spanId).isEqualTo(0xa2fb4a1d1a96d312L);
+    }
+
+    @Test
+    public void parse_debug() {
+        TraceData traceData = B3SingleFormat.parse(TRACE_ID + "-" + SPAN_ID + "-d");
+
+        assertThat(traceData.getSample()).isTrue();
+        assertThat(traceData.getSpanId().debug()).isTrue();
+    }
+
+    @Test
+    public void parse_decisionOnly() {
+        assertThat(B3SingleFormat.parse("0")).isEqualTo(TraceData.NOT_SAMPLED);
+        assertThat(B3SingleFormat.parse("1")).isEqualTo(TraceData.EMPTY);
+        assertThat(B3SingleFormat.parse("d")).isEqualTo(TraceData.EMPTY);
+    }
+
+    @Test
+    public void parse_malformed() {
+        assertThat(B3SingleFormat.parse("")).isNull();
+        assertThat(B3SingleFormat.parse("x")).isNull();
+        assertThat(B3SingleFormat.parse(TRACE_ID)).isNull();
+        assertThat(B3SingleFormat.parse(TRACE_ID + "-")).isNull();
+        assertThat(B3SingleFormat.parse(TRACE_ID + "-" + SPAN_ID + "-")).isNull();
+        assertThat(B3SingleFormat.parse(TRACE_ID + "-" + SPAN_ID + "-2")).isNull();
+        assertThat(B3SingleFormat.parse(TRACE_ID + "-" + SPAN_ID + "-1-")).isNull();
+        assertThat(B3SingleFormat.parse(TRACE_ID + "-" + SPAN_ID + "-1-" + SPAN_ID + "0")).isNull();
+        assertThat(B3SingleFormat.parse(TRACE_ID + "-" + SPAN_ID + "-1x" + PARENT_ID)).isNull();
+        assertThat(B3SingleFormat.parse(TRACE_ID.toUpperCase() + "-" + SPAN_ID)).isNull();
+        assertThat(B3SingleFormat.parse("463ac35c9f6413a-" + SPAN_ID)).isNull();
+    }
+}
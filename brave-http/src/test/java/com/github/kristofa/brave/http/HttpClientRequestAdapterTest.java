@@ -49,14 +49,32 @@ public class HttpClientRequestAdapterTest {
         verifyNoMoreInteractions(request, spanNameProvider);
     }
 
+    @Test
+    public void addSpanIdToRequest_b3SingleHeader() {
+        clientRequestAdapter = new HttpClientRequestAdapter(request, spanNameProvider, true);
+        SpanId id = SpanId.builder().traceId(TRACE_ID).spanId(SPAN_ID).parentId(PARENT_SPAN_ID).build();
+        clientRequestAdapter.addSpanIdToRequest(id);
+        verify(request).addHeader(BraveHttpHeaders.B3.getName(),
+            "0000000000000001-0000000000000002-1-0000000000000003");
+        verifyNoMoreInteractions(request, spanNameProvider);
+    }
+
+    @Test
+    public void addSpanIdToRequest_b3SingleHeader_NoSpanId() {
+        clientRequestAdapter = new HttpClientRequestAdapter(request, spanNameProvider, true);
+        clientRequestAdapter.addSpanIdToRequest(null);
+        verify(request).addHeader(BraveHttpHeaders.B3.getName(), "0");
+        verifyNoMoreInteractions(request, spanNameProvider);
+    }
+
     @Test
     public void addSpanIdToRequest_WithParentSpanId() {
         SpanId id = SpanId.builder().traceId(TRACE_ID).spanId(SPAN_ID).parentId(PARENT_SPAN_ID).build();
         clientRequestAdapter.addSpanIdToRequest(id);
         verify(request).addHeader(BraveHttpHeaders.Sampled.getName(), "1");
         verify(request).addHeader(BraveHttpHeaders.TraceId.getName(), "0000000000000001");
-        verify(request).addHeader(BraveHttpHeaders.SpanId.getName(), String.valueOf(SPAN_ID));
-        verify(request).addHeader(BraveHttpHeaders.ParentSpanId.getName(), String.valueOf(PARENT_SPAN_ID));
+        verify(request).addHeader(BraveHttpHeaders.SpanId.getName(), "0000000000000002");
+        verify(request).addHeader(BraveHttpHeaders.ParentSpanId.getName(), "0000000000000003");
         verifyNoMoreInteractions(request, spanNameProvider);
     }
 
@@ -66,7 +84,7 @@ public class HttpClientRequestAdapterTest {
         clientRequestAdapter.addSpanIdToRequest(id);
         verify(request).addHeader(BraveHttpHeaders.Sampled.getName(), "1");
         verify(request).addHeader(BraveHttpHeaders.TraceId.getName(), "0000000000000001");
-        verify(request).addHeader(BraveHttpHeaders.SpanId.getName(), String.valueOf(SPAN_ID));
+        verify(request).addHeader(BraveHttpHeaders.SpanId.getName(), "0000000000000002");
         verifyNoMoreInteractions(request, spanNameProvider);
     }
 
@@ -88,7 +106,7 @@ public class HttpClientRequestAdapterTest {
         clientRequestAdapter.addSpanIdToRequest(id);
         verify(request).addHeader(BraveHttpHeaders.Sampled.getName(), "1");
         verify(request).addHeader(BraveHttpHeaders.TraceId.getName(), "00000000000000010000000000000001");
-        verify(request).addHeader(BraveHttpHeaders.SpanId.getName(), String.valueOf(SPAN_ID));
+        verify(request).addHeader(BraveHttpHeaders.SpanId.getName(), "0000000000000002");
         verifyNoMoreInteractions(request, spanNameProvider);
     }
 }
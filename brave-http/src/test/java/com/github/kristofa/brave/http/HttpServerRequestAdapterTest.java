@@ -15,6 +15,8 @@ import zipkin.TraceKeys;
 import static junit.framework.Assert.assertNull;
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
 public class HttpServerRequestAdapterTest {
@@ -34,6 +36,28 @@ public class HttpServerRequestAdapterTest {
         adapter = new HttpServerRequestAdapter(serverRequest, spanNameProvider);
     }
 
+    @Test
+    public void getTraceData_b3SingleHeader() {
+        when(serverRequest.getHttpHeaderValue(BraveHttpHeaders.B3.getName()))
+            .thenReturn(TRACE_ID + "-" + SPAN_ID + "-1-" + PARENT_SPAN_ID);
+        TraceData traceData = adapter.getTraceData();
+        assertTrue(traceData.getSample());
+        SpanId spanId = traceData.getSpanId();
+        assertEquals(IdConversion.convertToLong(TRACE_ID), spanId.traceId);
+        assertEquals(IdConversion.convertToLong(SPAN_ID), spanId.spanId);
+        assertEquals(Long.valueOf(IdConversion.convertToLong(PARENT_SPAN_ID)), spanId.nullableParentId());
+        verify(serverRequest).getHttpHeaderValue(BraveHttpHeaders.B3.getName());
+        verifyNoMoreInteractions(serverRequest);
+    }
+
+    @Test
+    public void getTraceData_malformedB3FallsBackToMultipleHeaders() {
+        when(serverRequest.getHttpHeaderValue(BraveHttpHeaders.B3.getName())).thenReturn("garbage");
+        when(serverRequest.getHttpHeaderValue(BraveHttpHeaders.Sampled.getName())).thenReturn("0");
+        TraceData traceData = adapter.getTraceData();
+        assertFalse(traceData.getSample());
+    }
+
     @Test
     public void getTraceDataNoSampledHeader() {
         when(serverRequest.getHttpHeaderValue(BraveHttpHeaders.Sampled.getName())).thenReturn(null);
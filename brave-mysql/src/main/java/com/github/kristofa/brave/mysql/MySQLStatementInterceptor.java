@@ -74,7 +74,7 @@ public class MySQLStatementInterceptor implements StatementInterceptorV2 {
     }
 
     private void beginTrace(final ClientTracer tracer, final String sql, final Connection connection) throws SQLException {
-        tracer.startNewSpan("query");
+        if (tracer.startNewSpan("query") == null) return; // unsampled: skip the query and address
         tracer.submitBinaryAnnotation(TraceKeys.SQL_QUERY, sql);
 
         try {
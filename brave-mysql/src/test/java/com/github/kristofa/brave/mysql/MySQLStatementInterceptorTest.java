@@ -11,6 +11,7 @@ import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 
 import com.github.kristofa.brave.ClientTracer;
+import com.github.kristofa.brave.SpanId;
 import com.mysql.jdbc.Connection;
 import com.mysql.jdbc.PreparedStatement;
 import com.mysql.jdbc.ResultSetInternalMethods;
@@ -37,6 +38,7 @@ public class MySQLStatementInterceptorTest {
     public void setUp() throws Exception {
         subject = new MySQLStatementInterceptor();
         MySQLStatementInterceptor.setClientTracer(clientTracer);
+        when(clientTracer.startNewSpan("query")).thenReturn(SpanId.builder().spanId(1L).build());
     }
 
     @Test
@@ -64,6 +66,19 @@ public class MySQLStatementInterceptorTest {
         order.verifyNoMoreInteractions();
     }
 
+    @Test
+    public void preProcessShouldSkipConnectionWhenUnsampled() throws Exception {
+        when(clientTracer.startNewSpan("query")).thenReturn(null);
+        final Connection connection = mock(Connection.class);
+
+        assertNull(subject.preProcess("sql", mock(Statement.class), connection));
+
+        final InOrder order = inOrder(clientTracer);
+        order.verify(clientTracer).startNewSpan("query");
+        order.verifyNoMoreInteractions();
+        verifyZeroInteractions(connection);
+    }
+
     @Test
     public void preProcessShouldLogServerAddress() throws Exception {
         final String sql = randomAlphanumeric(20);
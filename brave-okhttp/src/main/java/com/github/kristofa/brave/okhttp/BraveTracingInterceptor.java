@@ -20,7 +20,7 @@ import okhttp3.Response;
 import zipkin.Constants;
 import zipkin.TraceKeys;
 
-import static com.github.kristofa.brave.IdConversion.convertToString;
+import static com.github.kristofa.brave.IdConversion.convertToPaddedString;
 import static com.github.kristofa.brave.http.BraveHttpHeaders.Sampled;
 import static com.github.kristofa.brave.internal.Util.checkNotNull;
 
@@ -146,10 +146,10 @@ public final class BraveTracingInterceptor implements Interceptor {
   static Request.Builder addTraceHeaders(Request request, SpanId spanId) {
     Request.Builder tracedRequest = request.newBuilder();
     tracedRequest.header(BraveHttpHeaders.TraceId.getName(), spanId.traceIdString());
-    tracedRequest.header(BraveHttpHeaders.SpanId.getName(), convertToString(spanId.spanId));
+    tracedRequest.header(BraveHttpHeaders.SpanId.getName(), convertToPaddedString(spanId.spanId));
     if (spanId.nullableParentId() != null) {
       tracedRequest.header(BraveHttpHeaders.ParentSpanId.getName(),
-          convertToString(spanId.parentId));
+          convertToPaddedString(spanId.parentId));
     }
     tracedRequest.header(BraveHttpHeaders.Sampled.getName(), "1");
     return tracedRequest;
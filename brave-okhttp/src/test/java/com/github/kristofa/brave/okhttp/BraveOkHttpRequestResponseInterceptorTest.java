@@ -82,6 +82,7 @@ public class BraveOkHttpRequestResponseInterceptorTest {
     inOrder.verify(clientTracer).startNewSpan(HTTP_METHOD_GET);
     inOrder.verify(clientTracer).submitBinaryAnnotation(TraceKeys.HTTP_URL, url);
     inOrder.verify(clientTracer).setClientSent();
+    inOrder.verify(clientTracer).noCurrentSpan();
     inOrder.verify(clientTracer).setClientReceived();
     verifyNoMoreInteractions(clientTracer);
 
@@ -89,7 +90,7 @@ public class BraveOkHttpRequestResponseInterceptorTest {
     assertEquals(HTTP_METHOD_GET, serverRequest.getMethod());
     assertEquals("1", serverRequest.getHeader(BraveHttpHeaders.Sampled.getName()));
     assertEquals(TRACE_ID_STRING, serverRequest.getHeader(BraveHttpHeaders.TraceId.getName()));
-    assertEquals(Long.toString(SPAN_ID, 16), serverRequest.getHeader(BraveHttpHeaders.SpanId.getName()));
+    assertEquals(String.format("%016x", SPAN_ID), serverRequest.getHeader(BraveHttpHeaders.SpanId.getName()));
   }
 
   @Test
@@ -114,6 +115,7 @@ public class BraveOkHttpRequestResponseInterceptorTest {
     inOrder.verify(clientTracer).startNewSpan(HTTP_METHOD_GET);
     inOrder.verify(clientTracer).submitBinaryAnnotation(TraceKeys.HTTP_URL, url);
     inOrder.verify(clientTracer).setClientSent();
+    inOrder.verify(clientTracer).noCurrentSpan();
     inOrder.verify(clientTracer).submitBinaryAnnotation(TraceKeys.HTTP_STATUS_CODE, "400");
     inOrder.verify(clientTracer).setClientReceived();
     verifyNoMoreInteractions(clientTracer);
@@ -122,7 +124,7 @@ public class BraveOkHttpRequestResponseInterceptorTest {
     assertEquals(HTTP_METHOD_GET, serverRequest.getMethod());
     assertEquals("1", serverRequest.getHeader(BraveHttpHeaders.Sampled.getName()));
     assertEquals(TRACE_ID_STRING, serverRequest.getHeader(BraveHttpHeaders.TraceId.getName()));
-    assertEquals(Long.toString(SPAN_ID, 16), serverRequest.getHeader(BraveHttpHeaders.SpanId.getName()));
+    assertEquals(String.format("%016x", SPAN_ID), serverRequest.getHeader(BraveHttpHeaders.SpanId.getName()));
   }
 
   @Test
@@ -144,6 +146,7 @@ public class BraveOkHttpRequestResponseInterceptorTest {
 
     InOrder inOrder = inOrder(clientTracer);
     inOrder.verify(clientTracer).startNewSpan(HTTP_METHOD_GET);
+    inOrder.verify(clientTracer).noCurrentSpan();
     inOrder.verify(clientTracer).setClientReceived();
     verifyNoMoreInteractions(clientTracer);
 
@@ -173,6 +176,7 @@ public class BraveOkHttpRequestResponseInterceptorTest {
     inOrder.verify(clientTracer).startNewSpan(HTTP_METHOD_GET);
     inOrder.verify(clientTracer).submitBinaryAnnotation(TraceKeys.HTTP_URL, url);
     inOrder.verify(clientTracer).setClientSent();
+    inOrder.verify(clientTracer).noCurrentSpan();
     inOrder.verify(clientTracer).setClientReceived();
     verifyNoMoreInteractions(clientTracer);
 
@@ -180,7 +184,7 @@ public class BraveOkHttpRequestResponseInterceptorTest {
     assertEquals(HTTP_METHOD_GET, serverRequest.getMethod());
     assertEquals("1", serverRequest.getHeader(BraveHttpHeaders.Sampled.getName()));
     assertEquals(TRACE_ID_STRING, serverRequest.getHeader(BraveHttpHeaders.TraceId.getName()));
-    assertEquals(Long.toString(SPAN_ID, 16), serverRequest.getHeader(BraveHttpHeaders.SpanId.getName()));
+    assertEquals(String.format("%016x", SPAN_ID), serverRequest.getHeader(BraveHttpHeaders.SpanId.getName()));
   }
 
 }
\ No newline at end of file
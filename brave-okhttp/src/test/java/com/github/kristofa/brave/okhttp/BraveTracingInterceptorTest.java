@@ -65,15 +65,15 @@ public class BraveTracingInterceptorTest {
 
   Span localSpan = Span.builder()
       .traceId(1L).id(1L).name("get")
-      .timestamp(1000L).duration(4000L)
+      .timestamp(1000L).duration(3000L)
       .addBinaryAnnotation(BinaryAnnotation.create(LOCAL_COMPONENT, "okhttp", local))
       .build();
 
   Span clientSpan = Span.builder()
       .traceId(1L).parentId(1L).id(2L).name("get")
-      .timestamp(3000L).duration(1000L)
-      .addAnnotation(Annotation.create(3000, Constants.CLIENT_SEND, local))
-      .addAnnotation(Annotation.create(4000, Constants.CLIENT_RECV, local))
+      .timestamp(2000L).duration(1000L)
+      .addAnnotation(Annotation.create(2000, Constants.CLIENT_SEND, local))
+      .addAnnotation(Annotation.create(3000, Constants.CLIENT_RECV, local))
       .addBinaryAnnotation(BinaryAnnotation.create(HTTP_URL, server.url("foo").toString(), local))
       .addBinaryAnnotation(BinaryAnnotation.address(Constants.SERVER_ADDR, sa))
       .build();
@@ -226,11 +226,11 @@ public class BraveTracingInterceptorTest {
             .addBinaryAnnotation(BinaryAnnotation.create(HTTP_STATUS_CODE, "408", local))
             .build(),
         clientSpan.toBuilder()
-            .id(3L).timestamp(6000L).annotations(asList(
-            Annotation.create(6000, Constants.CLIENT_SEND, local),
-            Annotation.create(7000, Constants.CLIENT_RECV, local)))
+            .id(3L).timestamp(4000L).annotations(asList(
+            Annotation.create(4000, Constants.CLIENT_SEND, local),
+            Annotation.create(5000, Constants.CLIENT_RECV, local)))
             .build(),
-        localSpan.toBuilder().duration(7000L).build()
+        localSpan.toBuilder().duration(5000L).build()
     );
   }
 
@@ -129,7 +129,7 @@ public final class BraveP6SpyListener extends JdbcEventListener {
     }
 
     private void beginTrace(final ClientTracer tracer, final String sql) {
-        tracer.startNewSpan("query");
+        if (tracer.startNewSpan("query") == null) return; // unsampled: skip the query and address
         tracer.submitBinaryAnnotation(TraceKeys.SQL_QUERY, sql);
 
         if (ipv4 != 0 && port > 0) {
@@ -6,8 +6,10 @@ import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
 
 import com.github.kristofa.brave.ClientTracer;
+import com.github.kristofa.brave.SpanId;
 
 import com.twitter.zipkin.gen.Endpoint;
 import org.junit.Before;
@@ -44,6 +46,7 @@ public class BraveP6SpyTest {
     @Before
     public void setup() {
         clientTracer = mock(ClientTracer.class);
+        when(clientTracer.startNewSpan("query")).thenReturn(SpanId.builder().spanId(1L).build());
         BraveP6SpyListener.setClientTracer(clientTracer);
     }
 
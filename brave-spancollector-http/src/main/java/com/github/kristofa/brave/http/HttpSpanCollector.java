@@ -2,18 +2,19 @@ package com.github.kristofa.brave.http;
 
 import com.github.kristofa.brave.AbstractSpanCollector;
 import com.github.kristofa.brave.EmptySpanCollectorMetricsHandler;
+import com.github.kristofa.brave.PayloadCompressor;
+import com.github.kristofa.brave.PrioritySpanQueue;
 import com.github.kristofa.brave.SpanCollectorMetricsHandler;
 import com.google.auto.value.AutoValue;
 import com.twitter.zipkin.gen.SpanCodec;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
-import java.util.zip.GZIPOutputStream;
 
 /**
- * SpanCollector which submits spans to Zipkin, using its {@code POST /spans} endpoint.
+ * SpanCollector which submits spans to Zipkin, using its {@code POST /spans} endpoint. The format
+ * is controlled by {@link Config.Builder#codec(SpanCodec)}.
  *
  * @deprecated replaced by {@link zipkin.reporter.AsyncReporter} and {@code URLConnectionSender}
  *             located in the "io.zipkin.reporter:zipkin-sender-urlconnection" dependency.
@@ -28,6 +29,8 @@ public final class HttpSpanCollector extends AbstractSpanCollector {
           .connectTimeout(10 * 1000)
           .readTimeout(60 * 1000)
           .compressionEnabled(false)
+          .compressor(PayloadCompressor.NONE)
+          .codec(SpanCodec.JSON)
           .flushInterval(1);
     }
 
@@ -39,6 +42,10 @@ public final class HttpSpanCollector extends AbstractSpanCollector {
 
     abstract boolean compressionEnabled();
 
+    abstract PayloadCompressor compressor();
+
+    abstract SpanCodec codec();
+
     @AutoValue.Builder
     public interface Builder {
       /** Default 10 * 1000 milliseconds. 0 implies no timeout. */
@@ -57,11 +64,30 @@ public final class HttpSpanCollector extends AbstractSpanCollector {
        */
       Builder compressionEnabled(boolean compressSpans);
 
+      /**
+       * Default {@link PayloadCompressor#NONE}, or gzip at the default level when {@link
+       * #compressionEnabled(boolean) compression is enabled}. For example, {@link
+       * com.github.kristofa.brave.AdaptivePayloadCompressor} only compresses batches large enough
+       * to benefit.
+       *
+       * <p>Note: This feature requires zipkin-scala 1.34+ or zipkin-java 0.6+
+       */
+      Builder compressor(PayloadCompressor compressor);
+
+      /**
+       * Default {@link SpanCodec#JSON}. {@link SpanCodec#JSON_V2} and {@link SpanCodec#PROTO3}
+       * post to {@code /api/v2/spans} and are considerably smaller.
+       *
+       * <p>Note: v2 formats require a zipkin server which supports the v2 api
+       */
+      Builder codec(SpanCodec codec);
+
       Config build();
     }
   }
 
   private final String url;
+  private final String contentType;
   private final Config config;
 
   /**
@@ -86,32 +112,63 @@ public final class HttpSpanCollector extends AbstractSpanCollector {
     return new HttpSpanCollector(baseUrl, config, metrics);
   }
 
+  /**
+   * @param baseUrl URL of the zipkin query server instance. Like: http://localhost:9411/
+   * @param config includes flush interval and timeouts
+   * @param metrics Gets notified when spans are accepted or dropped. If you are not interested in
+   *                these events you can use {@linkplain EmptySpanCollectorMetricsHandler}
+   * @param pending holds spans until they are flushed, for example reserving capacity for error
+   *                spans. Not shared with other collectors.
+   */
+  public static HttpSpanCollector create(String baseUrl, Config config,
+      SpanCollectorMetricsHandler metrics, PrioritySpanQueue pending) {
+    return new HttpSpanCollector(baseUrl, config, metrics, pending);
+  }
+
   // Visible for testing. Ex when tests need to explicitly control flushing, set interval to 0.
   HttpSpanCollector(String baseUrl, Config config, SpanCollectorMetricsHandler metrics) {
-    super(SpanCodec.JSON, metrics,  config.flushInterval());
-    this.url = baseUrl + (baseUrl.endsWith("/") ? "" : "/") + "api/v1/spans";
+    this(baseUrl, config, metrics, PrioritySpanQueue.builder().build());
+  }
+
+  HttpSpanCollector(String baseUrl, Config config, SpanCollectorMetricsHandler metrics,
+      PrioritySpanQueue pending) {
+    super(config.codec(), compressor(config), metrics, config.flushInterval(), pending);
+    SpanCodec codec = config.codec();
+    boolean v2 = codec == SpanCodec.JSON_V2 || codec == SpanCodec.PROTO3;
+    this.url = baseUrl + (baseUrl.endsWith("/") ? "" : "/")
+        + (v2 ? "api/v2/spans" : "api/v1/spans");
+    this.contentType = codec == SpanCodec.THRIFT ? "application/x-thrift"
+        : codec == SpanCodec.PROTO3 ? "application/x-protobuf"
+        : "application/json";
     this.config = config;
   }
 
+  static PayloadCompressor compressor(Config config) {
+    if (config.compressionEnabled() && config.compressor() == PayloadCompressor.NONE) {
+      return PayloadCompressor.gzip(6); // zlib's default level, as used by GZIPOutputStream
+    }
+    return config.compressor();
+  }
+
   @Override
-  protected void sendSpans(byte[] json) throws IOException {
+  protected void sendSpans(byte[] body) throws IOException {
+    sendSpans(body, PayloadCompressor.IDENTITY);
+  }
+
+  @Override
+  protected void sendSpans(byte[] body, String contentEncoding) throws IOException {
     // intentionally not closing the connection, so as to use keep-alives
     HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
     connection.setConnectTimeout(config.connectTimeout());
     connection.setReadTimeout(config.readTimeout());
     connection.setRequestMethod("POST");
-    connection.addRequestProperty("Content-Type", "application/json");
-    if (config.compressionEnabled()) {
-      connection.addRequestProperty("Content-Encoding", "gzip");
-      ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
-      try (GZIPOutputStream compressor = new GZIPOutputStream(gzipped)) {
-        compressor.write(json);
-      }
-      json = gzipped.toByteArray();
+    connection.addRequestProperty("Content-Type", contentType);
+    if (!PayloadCompressor.IDENTITY.equals(contentEncoding)) {
+      connection.addRequestProperty("Content-Encoding", contentEncoding);
     }
     connection.setDoOutput(true);
-    connection.setFixedLengthStreamingMode(json.length);
-    connection.getOutputStream().write(json);
+    connection.setFixedLengthStreamingMode(body.length);
+    connection.getOutputStream().write(body);
 
     try (InputStream in = connection.getInputStream()) {
       while (in.read() != -1) ; // skip
@@ -1,12 +1,17 @@
 package com.github.kristofa.brave.http;
 
+import com.github.kristofa.brave.ExtendedSpanCollectorMetricsHandler.DropCause;
+import com.github.kristofa.brave.JmxSpanCollectorMetricsHandler;
+import com.github.kristofa.brave.PayloadCompressor;
 import com.github.kristofa.brave.SpanCollectorMetricsHandler;
 import com.twitter.zipkin.gen.Annotation;
 import com.twitter.zipkin.gen.Span;
+import com.twitter.zipkin.gen.SpanCodec;
 import java.util.Arrays;
 import java.util.concurrent.atomic.AtomicInteger;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
 import org.junit.After;
 import org.junit.Rule;
 import org.junit.Test;
@@ -102,6 +107,49 @@ public class HttpSpanCollectorTest {
     }
   }
 
+  @Test
+  public void postsSpansCompressedWithFastGzip() throws Exception {
+    HttpSpanCollector.Config config = HttpSpanCollector.Config.builder()
+        .flushInterval(0).compressor(PayloadCompressor.fastGzip()).build();
+    HttpSpanCollector collector = new HttpSpanCollector(zipkinRule.httpUrl(), config, metrics);
+
+    collector.collect(span(1L, "foo"));
+    collector.collect(span(2L, "bar"));
+
+    collector.flush(); // manually flush the spans
+
+    // zipkin decompressed the spans
+    assertThat(zipkinRule.getTraces()).containsExactly(
+        asList(zipkinSpan(1L, "foo")),
+        asList(zipkinSpan(2L, "bar"))
+    );
+    assertThat(config.compressor().compressions()).isEqualTo(1);
+  }
+
+  @Test
+  public void postsV2Spans() throws Exception {
+    MockWebServer zipkin = new MockWebServer();
+    try {
+      zipkin.start(0);
+      zipkin.enqueue(new MockResponse());
+
+      HttpSpanCollector.Config config = HttpSpanCollector.Config.builder()
+          .flushInterval(0).codec(SpanCodec.PROTO3).build();
+
+      HttpSpanCollector collector = new HttpSpanCollector(zipkin.url("/").toString(), config, metrics);
+
+      collector.collect(span(1L, "foo"));
+
+      collector.flush(); // manually flush the span
+
+      RecordedRequest request = zipkin.takeRequest();
+      assertThat(request.getPath()).isEqualTo("/api/v2/spans");
+      assertThat(request.getHeader("Content-Type")).isEqualTo("application/x-protobuf");
+    } finally {
+      zipkin.shutdown();
+    }
+  }
+
   @Test
   public void incrementsDroppedSpansWhenServerErrors() throws Exception {
     zipkinRule.enqueueFailure(HttpFailure.sendErrorResponse(500, "Server Error!"));
@@ -126,6 +174,29 @@ public class HttpSpanCollectorTest {
     assertThat(metrics.droppedSpans.get()).isEqualTo(2);
   }
 
+  @Test
+  public void extendedMetrics() throws Exception {
+    JmxSpanCollectorMetricsHandler metrics = new JmxSpanCollectorMetricsHandler();
+    collector = new HttpSpanCollector(zipkinRule.httpUrl(), config, metrics);
+    for (int i = 0; i < 1001; i++)
+      collector.collect(span(1L, "foo"));
+
+    collector.flush(); // manually flush the spans
+
+    assertThat(metrics.getDroppedSpans(DropCause.QUEUE_FULL)).isEqualTo(1);
+    assertThat(metrics.getQueueDepth()).isEqualTo(1000);
+    assertThat(metrics.getFlushedBatches()).isEqualTo(1);
+    assertThat(metrics.getBatchSpansMax()).isEqualTo(1000);
+    assertThat(metrics.getEncodedBytes()).isGreaterThan(1000);
+
+    zipkinRule.enqueueFailure(HttpFailure.sendErrorResponse(500, "Server Error!"));
+    collector.collect(span(2L, "bar"));
+    collector.flush();
+
+    assertThat(metrics.getDroppedSpans(DropCause.TRANSPORT)).isEqualTo(1);
+    assertThat(metrics.getDroppedSpans()).isEqualTo(2);
+  }
+
   static class TestMetricsHandler implements SpanCollectorMetricsHandler {
 
     final AtomicInteger acceptedSpans = new AtomicInteger();
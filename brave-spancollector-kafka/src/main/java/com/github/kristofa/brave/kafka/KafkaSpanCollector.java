@@ -2,6 +2,8 @@ package com.github.kristofa.brave.kafka;
 
 import com.github.kristofa.brave.AbstractSpanCollector;
 import com.github.kristofa.brave.EmptySpanCollectorMetricsHandler;
+import com.github.kristofa.brave.PayloadCompressor;
+import com.github.kristofa.brave.PrioritySpanQueue;
 import com.github.kristofa.brave.SpanCollectorMetricsHandler;
 import com.google.auto.value.AutoValue;
 import com.twitter.zipkin.gen.SpanCodec;
@@ -12,7 +14,8 @@ import org.apache.kafka.clients.producer.Producer;
 import org.apache.kafka.clients.producer.ProducerRecord;
 
 /**
- * SpanCollector which sends a thrift-encoded list of spans to a Kafka topic (default: "zipkin")
+ * SpanCollector which sends a thrift-encoded list of spans to a Kafka topic (default: "zipkin").
+ * The encoding is controlled by {@link Config.Builder#codec(SpanCodec)}.
  *
  * <p><b>Important</b> If using zipkin-collector-service (or zipkin-receiver-kafka), you must run v1.35+
  *
@@ -27,6 +30,7 @@ public final class KafkaSpanCollector extends AbstractSpanCollector {
     public static Builder builder() {
       return new AutoValue_KafkaSpanCollector_Config.Builder()
           .topic("zipkin")
+          .codec(SpanCodec.THRIFT)
           .flushInterval(1);
     }
 
@@ -44,6 +48,8 @@ public final class KafkaSpanCollector extends AbstractSpanCollector {
 
     abstract String topic();
 
+    abstract SpanCodec codec();
+
     @AutoValue.Builder
     public interface Builder {
       /**
@@ -61,6 +67,12 @@ public final class KafkaSpanCollector extends AbstractSpanCollector {
       /** Sets kafka-topic for zipkin to report to. Default topic zipkin. **/
       Builder topic(String topic);
 
+      /**
+       * Encoding of each message. Default {@link SpanCodec#THRIFT}. {@link SpanCodec#JSON_V2} and
+       * {@link SpanCodec#PROTO3} are smaller, but require a collector which accepts v2 spans.
+       */
+      Builder codec(SpanCodec codec);
+
       Config build();
     }
   }
@@ -90,16 +102,33 @@ public final class KafkaSpanCollector extends AbstractSpanCollector {
     return new KafkaSpanCollector(config, metrics);
   }
 
+  /**
+   * @param config includes flush interval and kafka properties
+   * @param metrics Gets notified when spans are accepted or dropped. If you are not interested in
+   *                these events you can use {@linkplain EmptySpanCollectorMetricsHandler}
+   * @param pending holds spans until they are flushed, for example reserving capacity for error
+   *                spans. Not shared with other collectors.
+   */
+  public static KafkaSpanCollector create(Config config, SpanCollectorMetricsHandler metrics,
+      PrioritySpanQueue pending) {
+    return new KafkaSpanCollector(config, metrics, pending);
+  }
+
   // Visible for testing. Ex when tests need to explicitly control flushing, set interval to 0.
   KafkaSpanCollector(Config config, SpanCollectorMetricsHandler metrics) {
-    super(SpanCodec.THRIFT, metrics, config.flushInterval());
+    this(config, metrics, PrioritySpanQueue.builder().build());
+  }
+
+  KafkaSpanCollector(Config config, SpanCollectorMetricsHandler metrics,
+      PrioritySpanQueue pending) {
+    super(config.codec(), PayloadCompressor.NONE, metrics, config.flushInterval(), pending);
     this.producer = new KafkaProducer<>(config.kafkaProperties());
     this.topic = config.topic();
   }
 
   @Override
-  protected void sendSpans(byte[] thrift) throws IOException {
-    producer.send(new ProducerRecord<byte[], byte[]>(this.topic, thrift));
+  protected void sendSpans(byte[] encoded) throws IOException {
+    producer.send(new ProducerRecord<byte[], byte[]>(this.topic, encoded));
   }
 
   @Override
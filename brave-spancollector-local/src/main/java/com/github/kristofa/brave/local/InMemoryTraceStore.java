@@ -0,0 +1,346 @@
+package com.github.kristofa.brave.local;
+
+import com.github.kristofa.brave.internal.Nullable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import zipkin.Codec;
+import zipkin.internal.MergeById;
+import zipkin.reporter.Reporter;
+
+import static com.github.kristofa.brave.internal.Util.checkNotNull;
+
+/**
+ * Reporter which assembles finished spans into traces held in memory, bounded by an approximate
+ * byte budget. Use this for staging or embedded diagnostics, where running a Zipkin server is
+ * overkill. Unlike {@link LocalSpanCollector} over an {@code InMemoryStorage}, memory use is
+ * capped: the oldest traces are evicted once the budget is exceeded.
+ *
+ * <p>Traces are found by id in constant time. Recent traces are also indexed by span name, so
+ * that they can be {@link #getTraces(String, long, int) queried} by name and minimum duration.
+ *
+ * <p>Reporting never blocks: the store, the eviction queue and the indexes are all lock-free.
+ * The size of a span is approximated as its thrift-encoded size plus a fixed overhead.
+ *
+ * <pre>{@code
+ * store = InMemoryTraceStore.builder().maxBytes(64 * 1024 * 1024).build();
+ * brave = new Brave.Builder("my-service").reporter(store).build();
+ *
+ * // optionally, serve traces as json
+ * server = HttpServer.create(new InetSocketAddress(9411), 0);
+ * server.createContext("/api/v1", new InMemoryTraceStoreHandler(store));
+ * server.start();
+ * }</pre>
+ */
+public final class InMemoryTraceStore implements Reporter<zipkin.Span> {
+
+  /** Added to the encoded size of each span to account for object headers and references. */
+  static final int SPAN_OVERHEAD_BYTES = 128;
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  public static final class Builder {
+    long maxBytes = 16 * 1024 * 1024;
+    int recentTracesPerName = 256;
+
+    Builder() {
+    }
+
+    /** Approximate upper bound of memory used by spans. Default 16MiB. */
+    public Builder maxBytes(long maxBytes) {
+      if (maxBytes <= 0) throw new IllegalArgumentException("maxBytes must be positive");
+      this.maxBytes = maxBytes;
+      return this;
+    }
+
+    /** Count of recent traces indexed for each span name. Default 256. */
+    public Builder recentTracesPerName(int recentTracesPerName) {
+      if (recentTracesPerName <= 0) {
+        throw new IllegalArgumentException("recentTracesPerName must be positive");
+      }
+      this.recentTracesPerName = recentTracesPerName;
+      return this;
+    }
+
+    public InMemoryTraceStore build() {
+      return new InMemoryTraceStore(this);
+    }
+  }
+
+  final long maxBytes;
+  final int recentTracesPerName;
+  final ConcurrentMap<TraceKey, Trace> traces = new ConcurrentHashMap<>();
+  final ConcurrentLinkedQueue<Trace> evictionQueue = new ConcurrentLinkedQueue<>();
+  final ConcurrentMap<String, RecentTraces> nameIndex = new ConcurrentHashMap<>();
+  final RecentTraces allTraces;
+  final AtomicLong usedBytes = new AtomicLong();
+  final AtomicLong evictedTraces = new AtomicLong();
+
+  InMemoryTraceStore(Builder builder) {
+    this.maxBytes = builder.maxBytes;
+    this.recentTracesPerName = builder.recentTracesPerName;
+    this.allTraces = new RecentTraces(recentTracesPerName);
+  }
+
+  @Override
+  public void report(zipkin.Span span) {
+    checkNotNull(span, "Null span");
+    int size = Codec.THRIFT.sizeInBytes(span) + SPAN_OVERHEAD_BYTES;
+    TraceKey key = new TraceKey(span.traceIdHigh, span.traceId);
+    Trace trace;
+    while (true) {
+      trace = traces.get(key);
+      if (trace == null) {
+        Trace newTrace = new Trace(key);
+        trace = traces.putIfAbsent(key, newTrace);
+        if (trace == null) {
+          trace = newTrace;
+          evictionQueue.add(trace);
+          allTraces.add(trace);
+        }
+      }
+      if (trace.add(span, size)) break;
+      traces.remove(key, trace); // raced with eviction: start a new trace
+    }
+    usedBytes.addAndGet(size);
+    index(span, trace);
+    evictIfNecessary();
+  }
+
+  void index(zipkin.Span span, Trace trace) {
+    if (!trace.indexedNames.add(span.name)) return;
+    RecentTraces recent = nameIndex.get(span.name);
+    if (recent == null) {
+      RecentTraces newRecent = new RecentTraces(recentTracesPerName);
+      recent = nameIndex.putIfAbsent(span.name, newRecent);
+      if (recent == null) recent = newRecent;
+    }
+    recent.add(trace);
+    // raced with eviction of the trace, or with removal of the ring: don't leave it behind
+    if (trace.isEvicted()) {
+      recent.remove(trace);
+    } else if (nameIndex.get(span.name) != recent) {
+      trace.indexedNames.remove(span.name);
+      index(span, trace);
+    }
+  }
+
+  void evictIfNecessary() {
+    while (usedBytes.get() > maxBytes) {
+      Trace oldest = evictionQueue.poll();
+      if (oldest == null) return;
+      long freed = evict(oldest);
+      if (freed > 0) {
+        usedBytes.addAndGet(-freed);
+        evictedTraces.incrementAndGet();
+      }
+    }
+  }
+
+  /**
+   * Unlinks the trace from the store and the indexes, so that its spans can be collected. Span
+   * names only referenced by evicted traces are dropped from the index.
+   */
+  long evict(Trace trace) {
+    traces.remove(trace.key, trace);
+    long freed = trace.evict();
+    if (freed < 0) return freed;
+    allTraces.remove(trace);
+    for (String name : trace.indexedNames) {
+      RecentTraces recent = nameIndex.get(name);
+      if (recent == null) continue;
+      recent.remove(trace);
+      if (recent.isEmpty()) nameIndex.remove(name, recent);
+    }
+    trace.indexedNames.clear();
+    return freed;
+  }
+
+  /**
+   * Returns the spans in the trace, merged by id and sorted by timestamp, or null if the trace
+   * isn't in the store.
+   *
+   * @param traceIdHigh zero unless the trace uses 128-bit ids
+   */
+  @Nullable
+  public List<zipkin.Span> getTrace(long traceIdHigh, long traceId) {
+    Trace trace = traces.get(new TraceKey(traceIdHigh, traceId));
+    return trace != null ? trace.spans() : null;
+  }
+
+  /**
+   * Returns recent traces, newest first.
+   *
+   * @param spanName when not null, only traces which include a span with this name
+   * @param minDuration only traces whose longest span took at least this many microseconds
+   * @param limit maximum count of traces returned
+   */
+  public List<List<zipkin.Span>> getTraces(@Nullable String spanName, long minDuration,
+      int limit) {
+    RecentTraces recent = spanName == null ? allTraces : nameIndex.get(spanName.toLowerCase());
+    if (recent == null || limit <= 0) return Collections.emptyList();
+    List<List<zipkin.Span>> result = new ArrayList<>();
+    for (Trace trace : recent.newestFirst()) {
+      if (trace.isEvicted() || trace.duration.get() < minDuration) continue;
+      result.add(trace.spans());
+      if (result.size() == limit) break;
+    }
+    return result;
+  }
+
+  /** Returns the names of spans in recently indexed traces which haven't been evicted. */
+  public Set<String> getSpanNames() {
+    return Collections.unmodifiableSet(nameIndex.keySet());
+  }
+
+  /** Returns the count of traces currently held. */
+  public int traceCount() {
+    return traces.size();
+  }
+
+  /** Returns the approximate bytes used by spans currently held. */
+  public long usedBytes() {
+    return usedBytes.get();
+  }
+
+  /** Returns the count of traces evicted to stay within {@link Builder#maxBytes(long)}. */
+  public long evictedTraces() {
+    return evictedTraces.get();
+  }
+
+  /** Drops all traces. */
+  public void clear() {
+    Trace trace;
+    while ((trace = evictionQueue.poll()) != null) {
+      usedBytes.addAndGet(-Math.max(0L, evict(trace)));
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "InMemoryTraceStore(maxBytes=" + maxBytes + ")";
+  }
+
+  static final class TraceKey {
+    final long traceIdHigh;
+    final long traceId;
+
+    TraceKey(long traceIdHigh, long traceId) {
+      this.traceIdHigh = traceIdHigh;
+      this.traceId = traceId;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (o == this) return true;
+      if (!(o instanceof TraceKey)) return false;
+      TraceKey that = (TraceKey) o;
+      return traceIdHigh == that.traceIdHigh && traceId == that.traceId;
+    }
+
+    @Override
+    public int hashCode() {
+      int h = 1;
+      h *= 1000003;
+      h ^= (traceIdHigh >>> 32) ^ traceIdHigh;
+      h *= 1000003;
+      h ^= (traceId >>> 32) ^ traceId;
+      return h;
+    }
+  }
+
+  static final class Trace {
+    /** Added to {@link #bytes} on eviction, so that late writers notice. */
+    static final long EVICTED = Long.MIN_VALUE / 2;
+
+    final TraceKey key;
+    final ConcurrentLinkedQueue<zipkin.Span> spans = new ConcurrentLinkedQueue<>();
+    final AtomicLong bytes = new AtomicLong();
+    final AtomicLong duration = new AtomicLong();
+    final Set<String> indexedNames =
+        Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    Trace(TraceKey key) {
+      this.key = key;
+    }
+
+    /** Returns false if the trace was evicted, in which case the span was not added. */
+    boolean add(zipkin.Span span, int size) {
+      if (bytes.getAndAdd(size) < 0) return false;
+      spans.add(span);
+      if (span.duration != null) {
+        long current;
+        while ((current = duration.get()) < span.duration) {
+          if (duration.compareAndSet(current, span.duration)) break;
+        }
+      }
+      return true;
+    }
+
+    /** Returns the bytes freed, or a negative number if already evicted. */
+    long evict() {
+      long freed = bytes.getAndAdd(EVICTED);
+      if (freed >= 0) spans.clear();
+      return freed;
+    }
+
+    boolean isEvicted() {
+      return bytes.get() < 0;
+    }
+
+    List<zipkin.Span> spans() {
+      return MergeById.apply(new ArrayList<>(spans)); // also sorts by timestamp
+    }
+  }
+
+  /** Fixed-size ring of the traces most recently added, tolerant of concurrent writers. */
+  static final class RecentTraces {
+    final AtomicReferenceArray<Trace> ring;
+    final AtomicInteger next = new AtomicInteger();
+
+    RecentTraces(int size) {
+      this.ring = new AtomicReferenceArray<>(size);
+    }
+
+    void add(Trace trace) {
+      int index = next.getAndIncrement() & Integer.MAX_VALUE;
+      ring.set(index % ring.length(), trace);
+    }
+
+    void remove(Trace trace) {
+      for (int i = 0, length = ring.length(); i < length; i++) {
+        ring.compareAndSet(i, trace, null);
+      }
+    }
+
+    boolean isEmpty() {
+      for (int i = 0, length = ring.length(); i < length; i++) {
+        if (ring.get(i) != null) return false;
+      }
+      return true;
+    }
+
+    Iterable<Trace> newestFirst() {
+      int length = ring.length();
+      int last = (next.get() & Integer.MAX_VALUE) - 1;
+      Set<Trace> result = new LinkedHashSet<>();
+      for (int i = 0; i < length; i++) {
+        int index = (last - i) % length;
+        if (index < 0) index += length;
+        Trace trace = ring.get(index);
+        if (trace != null) result.add(trace);
+      }
+      return result;
+    }
+  }
+}
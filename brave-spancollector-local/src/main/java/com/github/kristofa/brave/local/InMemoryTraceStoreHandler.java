@@ -0,0 +1,150 @@
+package com.github.kristofa.brave.local;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URLDecoder;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import zipkin.Codec;
+
+import static com.github.kristofa.brave.internal.Util.checkNotNull;
+
+/**
+ * Serves an {@link InMemoryTraceStore} as json, using the same paths as the Zipkin api. Mount
+ * this on the context "/api/v1" of a JDK {@link com.sun.net.httpserver.HttpServer}.
+ *
+ * <ul>
+ *   <li>GET /api/v1/trace/{traceIdHex} - the spans in a trace or 404</li>
+ *   <li>GET /api/v1/traces?spanName=&amp;minDuration=&amp;limit= - recent traces, newest first</li>
+ *   <li>GET /api/v1/spans - names of spans in the store</li>
+ * </ul>
+ */
+public final class InMemoryTraceStoreHandler implements HttpHandler {
+  static final int DEFAULT_LIMIT = 10;
+
+  final InMemoryTraceStore store;
+
+  public InMemoryTraceStoreHandler(InMemoryTraceStore store) {
+    this.store = checkNotNull(store, "store");
+  }
+
+  @Override
+  public void handle(HttpExchange exchange) throws IOException {
+    try {
+      if (!"GET".equals(exchange.getRequestMethod())) {
+        respond(exchange, 405, new byte[0]);
+        return;
+      }
+      String path = exchange.getRequestURI().getPath();
+      int slash = path.lastIndexOf('/');
+      String resource = path.substring(0, slash);
+      String last = path.substring(slash + 1);
+      if (resource.endsWith("/trace")) {
+        getTrace(exchange, last);
+      } else if ("traces".equals(last)) {
+        getTraces(exchange, parseQuery(exchange.getRequestURI().getRawQuery()));
+      } else if ("spans".equals(last)) {
+        getSpanNames(exchange);
+      } else {
+        respond(exchange, 404, new byte[0]);
+      }
+    } catch (IllegalArgumentException e) {
+      respond(exchange, 400, String.valueOf(e.getMessage()).getBytes("UTF-8"));
+    } finally {
+      exchange.close();
+    }
+  }
+
+  void getTrace(HttpExchange exchange, String traceIdHex) throws IOException {
+    long traceIdHigh = 0L;
+    String low = traceIdHex;
+    if (traceIdHex.length() > 16) {
+      traceIdHigh = parseHex(traceIdHex.substring(0, traceIdHex.length() - 16));
+      low = traceIdHex.substring(traceIdHex.length() - 16);
+    }
+    List<zipkin.Span> trace = store.getTrace(traceIdHigh, parseHex(low));
+    if (trace == null) {
+      respond(exchange, 404, ("Trace " + traceIdHex + " not found").getBytes("UTF-8"));
+      return;
+    }
+    respondJson(exchange, Codec.JSON.writeSpans(trace));
+  }
+
+  void getTraces(HttpExchange exchange, Map<String, String> query) throws IOException {
+    String spanName = query.get("spanName");
+    if ("all".equals(spanName)) spanName = null;
+    long minDuration = query.containsKey("minDuration")
+        ? parseLong("minDuration", query.get("minDuration")) : 0L;
+    int limit = query.containsKey("limit")
+        ? (int) parseLong("limit", query.get("limit")) : DEFAULT_LIMIT;
+    respondJson(exchange, Codec.JSON.writeTraces(store.getTraces(spanName, minDuration, limit)));
+  }
+
+  void getSpanNames(HttpExchange exchange) throws IOException {
+    StringBuilder json = new StringBuilder().append('[');
+    for (String name : store.getSpanNames()) {
+      if (json.length() > 1) json.append(',');
+      json.append('"');
+      for (int i = 0; i < name.length(); i++) {
+        char c = name.charAt(i);
+        if (c == '"' || c == '\\') json.append('\\');
+        if (c < 0x20) {
+          json.append(String.format("\\u%04x", (int) c));
+        } else {
+          json.append(c);
+        }
+      }
+      json.append('"');
+    }
+    respondJson(exchange, json.append(']').toString().getBytes("UTF-8"));
+  }
+
+  static void respondJson(HttpExchange exchange, byte[] body) throws IOException {
+    exchange.getResponseHeaders().set("Content-Type", "application/json");
+    respond(exchange, 200, body);
+  }
+
+  static void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+    exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+    if (body.length == 0) return;
+    OutputStream out = exchange.getResponseBody();
+    out.write(body);
+    out.flush();
+  }
+
+  static Map<String, String> parseQuery(String rawQuery) throws IOException {
+    Map<String, String> result = new LinkedHashMap<>();
+    if (rawQuery == null) return result;
+    for (String pair : rawQuery.split("&")) {
+      int eq = pair.indexOf('=');
+      if (eq <= 0) continue;
+      result.put(URLDecoder.decode(pair.substring(0, eq), "UTF-8"),
+          URLDecoder.decode(pair.substring(eq + 1), "UTF-8"));
+    }
+    return result;
+  }
+
+  static long parseHex(String hex) {
+    if (hex.isEmpty() || hex.length() > 16) {
+      throw new IllegalArgumentException("Malformed trace id: " + hex);
+    }
+    long result = 0L;
+    for (int i = 0; i < hex.length(); i++) {
+      int digit = Character.digit(hex.charAt(i), 16);
+      if (digit == -1) throw new IllegalArgumentException("Malformed trace id: " + hex);
+      result = (result << 4) | digit;
+    }
+    return result;
+  }
+
+  static long parseLong(String name, String value) {
+    try {
+      return Long.parseLong(value);
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException(name + " should be a number: " + value);
+    }
+  }
+}
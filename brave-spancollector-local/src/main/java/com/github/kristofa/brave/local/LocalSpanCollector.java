@@ -1,6 +1,7 @@
 package com.github.kristofa.brave.local;
 
 import com.github.kristofa.brave.EmptySpanCollectorMetricsHandler;
+import com.github.kristofa.brave.ExtendedSpanCollectorMetricsHandler.DropCause;
 import com.github.kristofa.brave.FlushingSpanCollector;
 import com.github.kristofa.brave.SpanCollectorMetricsHandler;
 import com.google.auto.value.AutoValue;
@@ -40,7 +41,6 @@ public final class LocalSpanCollector extends FlushingSpanCollector {
   }
 
   private final StorageComponent storageComponent;
-  private final SpanCollectorMetricsHandler metrics;
 
   /**
    * Create a new instance with default configuration.
@@ -70,7 +70,6 @@ public final class LocalSpanCollector extends FlushingSpanCollector {
       SpanCollectorMetricsHandler metrics) {
     super(metrics, config.flushInterval());
     this.storageComponent = storageComponent;
-    this.metrics = metrics;
   }
 
   @Override protected void reportSpans(final List<Span> drained) throws IOException {
@@ -88,7 +87,7 @@ public final class LocalSpanCollector extends FlushingSpanCollector {
       }
 
       @Override public void onError(Throwable throwable) {
-        metrics.incrementDroppedSpans(drained.size());
+        metrics().incrementDroppedSpans(drained.size(), DropCause.TRANSPORT);
       }
     });
   }
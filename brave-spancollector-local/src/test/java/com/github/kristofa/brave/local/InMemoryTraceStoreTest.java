@@ -0,0 +1,177 @@
+package com.github.kristofa.brave.local;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import org.junit.Test;
+import zipkin.Codec;
+import zipkin.Span;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class InMemoryTraceStoreTest {
+  InMemoryTraceStore store = InMemoryTraceStore.builder().build();
+
+  @Test
+  public void assemblesTraceById() {
+    store.report(span(1L, 1L, "get", 100L));
+    store.report(span(1L, 2L, "query", 10L));
+    store.report(span(2L, 3L, "get", 100L));
+
+    assertThat(store.getTrace(0L, 1L))
+        .extracting(s -> s.id)
+        .containsExactly(1L, 2L);
+    assertThat(store.traceCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void getTrace_missing() {
+    assertThat(store.getTrace(0L, 1L)).isNull();
+  }
+
+  @Test
+  public void getTrace_128bit() {
+    store.report(span(1L, 1L, "get", 100L).toBuilder().traceIdHigh(5L).build());
+
+    assertThat(store.getTrace(0L, 1L)).isNull();
+    assertThat(store.getTrace(5L, 1L)).hasSize(1);
+  }
+
+  @Test
+  public void getTraces_newestFirst() {
+    store.report(span(1L, 1L, "get", 100L));
+    store.report(span(2L, 2L, "get", 100L));
+
+    assertThat(store.getTraces(null, 0L, 10))
+        .extracting(t -> t.get(0).traceId)
+        .containsExactly(2L, 1L);
+  }
+
+  @Test
+  public void getTraces_bySpanNameAndDuration() {
+    store.report(span(1L, 1L, "get", 100L));
+    store.report(span(1L, 2L, "query", 10L));
+    store.report(span(2L, 3L, "get", 5L));
+    store.report(span(3L, 4L, "post", 500L));
+
+    assertThat(store.getTraces("get", 50L, 10))
+        .extracting(t -> t.get(0).traceId)
+        .containsExactly(1L);
+    assertThat(store.getTraces("query", 0L, 10)).hasSize(1);
+    assertThat(store.getTraces("delete", 0L, 10)).isEmpty();
+    assertThat(store.getSpanNames()).containsOnly("get", "query", "post");
+  }
+
+  @Test
+  public void getTraces_limit() {
+    for (long i = 1; i <= 5; i++) store.report(span(i, i, "get", 100L));
+
+    assertThat(store.getTraces("get", 0L, 2)).hasSize(2);
+  }
+
+  @Test
+  public void evictsOldestTracesOverBudget() {
+    Span span = span(1L, 1L, "get", 100L);
+    int spanBytes = Codec.THRIFT.sizeInBytes(span) + InMemoryTraceStore.SPAN_OVERHEAD_BYTES;
+    store = InMemoryTraceStore.builder().maxBytes(spanBytes * 3).build();
+
+    for (long i = 1; i <= 5; i++) store.report(span(i, i, "get", 100L));
+
+    assertThat(store.traceCount()).isEqualTo(3);
+    assertThat(store.getTrace(0L, 1L)).isNull();
+    assertThat(store.getTrace(0L, 5L)).isNotNull();
+    assertThat(store.usedBytes()).isLessThanOrEqualTo(spanBytes * 3);
+    assertThat(store.evictedTraces()).isEqualTo(2);
+    assertThat(store.getTraces("get", 0L, 10)).hasSize(3);
+  }
+
+  @Test
+  public void evictedTracesAreUnreachable() {
+    Span span = span(1L, 1L, "name-0001", 100L);
+    int spanBytes = Codec.THRIFT.sizeInBytes(span) + InMemoryTraceStore.SPAN_OVERHEAD_BYTES;
+    store = InMemoryTraceStore.builder().maxBytes(spanBytes * 10).build();
+
+    for (long i = 1; i <= 1000; i++) store.report(span(i, i, String.format("name-%04d", i), 100L));
+
+    assertThat(store.traceCount()).isEqualTo(10);
+    assertThat(store.getSpanNames()).hasSize(10).contains("name-1000");
+    Set<InMemoryTraceStore.Trace> retained = new LinkedHashSet<>();
+    for (InMemoryTraceStore.RecentTraces recent : store.nameIndex.values()) {
+      recent.newestFirst().forEach(retained::add);
+    }
+    store.allTraces.newestFirst().forEach(retained::add);
+    assertThat(retained).hasSize(10).extracting(t -> t.isEvicted()).containsOnly(false);
+    assertThat(store.evictionQueue).hasSize(10);
+  }
+
+  @Test
+  public void evictedTraceReleasesSpans() {
+    store.report(span(1L, 1L, "get", 100L));
+    InMemoryTraceStore.Trace trace = store.traces.values().iterator().next();
+
+    store.clear();
+
+    assertThat(trace.spans).isEmpty();
+    assertThat(trace.indexedNames).isEmpty();
+    assertThat(store.getSpanNames()).isEmpty();
+  }
+
+  @Test
+  public void clear() {
+    store.report(span(1L, 1L, "get", 100L));
+
+    store.clear();
+
+    assertThat(store.traceCount()).isZero();
+    assertThat(store.usedBytes()).isZero();
+    assertThat(store.getTraces(null, 0L, 10)).isEmpty();
+  }
+
+  @Test
+  public void servesJson() throws Exception {
+    store.report(span(10L, 1L, "get", 100L));
+
+    HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext("/api/v1", new InMemoryTraceStoreHandler(store));
+    server.start();
+    try {
+      String baseUrl = "http://127.0.0.1:" + server.getAddress().getPort() + "/api/v1";
+
+      List<Span> trace = Codec.JSON.readSpans(get(baseUrl + "/trace/000000000000000a", 200));
+      assertThat(trace).extracting(s -> s.name).containsExactly("get");
+
+      assertThat(new String(get(baseUrl + "/traces?spanName=get&limit=1", 200), "UTF-8"))
+          .startsWith("[[{\"traceId\":\"000000000000000a\"");
+      assertThat(new String(get(baseUrl + "/spans", 200), "UTF-8"))
+          .isEqualTo("[\"get\"]");
+
+      get(baseUrl + "/trace/000000000000000b", 404);
+      get(baseUrl + "/trace/xyz", 400);
+    } finally {
+      server.stop(0);
+    }
+  }
+
+  static byte[] get(String url, int expectedStatus) throws Exception {
+    HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+    assertThat(connection.getResponseCode()).isEqualTo(expectedStatus);
+    if (expectedStatus != 200) return new byte[0];
+    ByteArrayOutputStream result = new ByteArrayOutputStream();
+    try (InputStream in = connection.getInputStream()) {
+      byte[] buffer = new byte[1024];
+      for (int read; (read = in.read(buffer)) != -1; ) result.write(buffer, 0, read);
+    }
+    return result.toByteArray();
+  }
+
+  static Span span(long traceId, long spanId, String spanName, long duration) {
+    return Span.builder().traceId(traceId).id(spanId).name(spanName)
+        .timestamp(1000L * spanId).duration(duration).build();
+  }
+}
@@ -5,15 +5,16 @@ import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import com.github.kristofa.brave.SpanCollectorMetricsHandler;
+import com.github.kristofa.brave.ExtendedSpanCollectorMetricsHandler;
+import com.github.kristofa.brave.ExtendedSpanCollectorMetricsHandler.DropCause;
 import com.github.kristofa.brave.SpanCollector;
 
 import org.apache.thrift.TException;
@@ -31,6 +32,10 @@ import static com.github.kristofa.brave.internal.Util.checkNotNull;
  * This SpanCollector is implemented so it puts spans on a queue which are processed by a separate thread. In this way we are
  * submitting spans asynchronously and we should have minimal overhead on application performance.
  * </p>
+ * <p>
+ * Queue capacity and batch size can be changed while running, and sending paused, for example over JMX with
+ * {@link ScribeSpanCollectorMBean}. The number of threads is fixed.
+ * </p>
  *
  * @author kristof
  *
@@ -38,18 +43,19 @@ import static com.github.kristofa.brave.internal.Util.checkNotNull;
  *             located in the "io.zipkin.reporter:zipkin-sender-libthrift" dependency.
  */
 @Deprecated
-public class ScribeSpanCollector implements SpanCollector, Closeable {
+public class ScribeSpanCollector implements SpanCollector, Closeable, ScribeSpanCollectorMBean {
 
     private static final String UTF_8 = "UTF-8";
     private static final Logger LOGGER = Logger.getLogger(ScribeSpanCollector.class.getName());
 
-    private final BlockingQueue<Span> spanQueue;
+    private final SpanQueue spanQueue;
+    private volatile boolean paused;
     private final ExecutorService executorService;
     private final List<SpanProcessingThread> spanProcessingThreads = new ArrayList<>();
     private final List<ScribeClientProvider> clientProviders = new ArrayList<>();
     private final List<Future<Integer>> futures = new ArrayList<>();
     private final Set<BinaryAnnotation> defaultAnnotations = new HashSet<>();
-    private final SpanCollectorMetricsHandler metricsHandler;
+    private final ExtendedSpanCollectorMetricsHandler metricsHandler;
 
     /**
      * Create a new instance with default queue size (= {@link ScribeSpanCollectorParams#DEFAULT_QUEUE_SIZE}) and default
@@ -74,8 +80,8 @@ public class ScribeSpanCollector implements SpanCollector, Closeable {
         checkNotBlank(host, "Null or empty host");
         checkNotNull(params, "Null params");
 
-        metricsHandler = params.getMetricsHandler();
-        spanQueue = new ArrayBlockingQueue<Span>(params.getQueueSize());
+        metricsHandler = ExtendedSpanCollectorMetricsHandler.Adapter.of(params.getMetricsHandler());
+        spanQueue = new SpanQueue(params.getQueueSize());
         executorService = Executors.newFixedThreadPool(params.getNrOfThreads());
 
         for (int i = 1; i <= params.getNrOfThreads(); i++) {
@@ -125,7 +131,7 @@ public class ScribeSpanCollector implements SpanCollector, Closeable {
         final boolean offer = spanQueue.offer(span);
         if (!offer) {
             LOGGER.warning("Queue rejected Span, span not submitted: "+ span);
-            metricsHandler.incrementDroppedSpans(1);
+            metricsHandler.incrementDroppedSpans(1, DropCause.QUEUE_FULL);
         } else {
             final long end = System.currentTimeMillis();
             if (LOGGER.isLoggable(Level.FINE)) {
@@ -142,6 +148,75 @@ public class ScribeSpanCollector implements SpanCollector, Closeable {
         defaultAnnotations.add(BinaryAnnotation.create(key, value, null));
     }
 
+    @Override
+    public int getQueueCapacity() {
+        return spanQueue.capacity;
+    }
+
+    @Override
+    public void setQueueCapacity(final int queueCapacity) {
+        if (queueCapacity <= 0) throw new IllegalArgumentException("queueCapacity must be positive");
+        spanQueue.capacity = queueCapacity;
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return spanQueue.size();
+    }
+
+    @Override
+    public int getMaxBatchSize() {
+        return spanProcessingThreads.get(0).getMaxBatchSize();
+    }
+
+    @Override
+    public void setMaxBatchSize(final int maxBatchSize) {
+        if (maxBatchSize <= 0) throw new IllegalArgumentException("maxBatchSize must be positive");
+        for (final SpanProcessingThread thread : spanProcessingThreads) {
+            thread.setMaxBatchSize(maxBatchSize);
+        }
+    }
+
+    @Override
+    public boolean isPaused() {
+        return paused;
+    }
+
+    @Override
+    public void pause() {
+        setPaused(true);
+    }
+
+    @Override
+    public void resume() {
+        setPaused(false);
+    }
+
+    private void setPaused(final boolean paused) {
+        this.paused = paused;
+        for (final SpanProcessingThread thread : spanProcessingThreads) {
+            thread.setPaused(paused);
+        }
+    }
+
+    @Override
+    public int getInFlightBatches() {
+        int result = 0;
+        for (final SpanProcessingThread thread : spanProcessingThreads) {
+            if (thread.isSending()) result++;
+        }
+        return result;
+    }
+
+    @Override
+    public long getLastSendLatencyMillis() {
+        long latest = -1L;
+        for (final SpanProcessingThread thread : spanProcessingThreads) {
+            latest = Math.max(latest, thread.getLastSendLatencyNanos());
+        }
+        return latest < 0 ? -1L : TimeUnit.NANOSECONDS.toMillis(latest);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -164,8 +239,24 @@ public class ScribeSpanCollector implements SpanCollector, Closeable {
             clientProvider.close();
         }
         executorService.shutdown();
-        metricsHandler.incrementDroppedSpans(spanQueue.size());
+        metricsHandler.incrementDroppedSpans(spanQueue.size(), DropCause.CLOSED);
         LOGGER.info("ScribeSpanCollector closed.");
     }
 
+    /**
+     * A queue whose capacity can be changed while in use. Spans are only added with {@link
+     * #offer(Span)}, which is serialized, so the size can't grow between checking it and adding.
+     */
+    static final class SpanQueue extends LinkedBlockingQueue<Span> {
+        volatile int capacity;
+
+        SpanQueue(final int capacity) {
+            this.capacity = capacity;
+        }
+
+        @Override
+        public synchronized boolean offer(final Span span) {
+            return size() < capacity && super.offer(span);
+        }
+    }
 }
@@ -0,0 +1,49 @@
+package com.github.kristofa.brave.scribe;
+
+/**
+ * JMX controls and gauges of a {@link ScribeSpanCollector}, for tuning it while it runs.
+ */
+public interface ScribeSpanCollectorMBean {
+
+    /**
+     * @return the maximum count of spans waiting to be sent.
+     */
+    int getQueueCapacity();
+
+    /**
+     * Resizes the queue. Spans already queued are kept, even when shrinking below their count.
+     */
+    void setQueueCapacity(int queueCapacity);
+
+    /**
+     * @return count of spans waiting to be sent.
+     */
+    int getQueueDepth();
+
+    /**
+     * @return the maximum count of spans each thread sends at once.
+     */
+    int getMaxBatchSize();
+
+    void setMaxBatchSize(int maxBatchSize);
+
+    /**
+     * @return true if sending is paused, in which case spans are queued until the queue is full.
+     */
+    boolean isPaused();
+
+    /** Stops sending spans. Spans are still queued, and dropped when the queue is full. */
+    void pause();
+
+    void resume();
+
+    /**
+     * @return count of batches being sent right now.
+     */
+    int getInFlightBatches();
+
+    /**
+     * @return how long the last batch took to send, or -1 if none was sent yet.
+     */
+    long getLastSendLatencyMillis();
+}
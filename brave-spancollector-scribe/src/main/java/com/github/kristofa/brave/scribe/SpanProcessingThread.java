@@ -9,6 +9,8 @@ import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import com.github.kristofa.brave.ExtendedSpanCollectorMetricsHandler;
+import com.github.kristofa.brave.ExtendedSpanCollectorMetricsHandler.DropCause;
 import com.github.kristofa.brave.SpanCollectorMetricsHandler;
 import org.apache.thrift.TException;
 import org.apache.thrift.protocol.TBinaryProtocol;
@@ -36,15 +38,22 @@ class SpanProcessingThread implements Callable<Integer> {
 
     private static final Logger LOGGER = Logger.getLogger(SpanProcessingThread.class.getName());
     private static final int MAX_SUBSEQUENT_EMPTY_BATCHES = 2;
+    private static final int PAUSED_POLL_MILLIS = 100;
 
     private final BlockingQueue<Span> queue;
     private final ScribeClientProvider clientProvider;
     private final TProtocolFactory protocolFactory;
-    private final SpanCollectorMetricsHandler metricsHandler;
+    private final ExtendedSpanCollectorMetricsHandler metricsHandler;
     private volatile boolean stop = false;
     private int processedSpans = 0;
     private final List<LogEntry> logEntries;
-    private final int maxBatchSize;
+    private volatile int maxBatchSize;
+    private volatile boolean paused = false;
+    private volatile boolean sending = false;
+    private volatile long lastSendLatencyNanos = -1L;
+    // encoding done for the spans in logEntries
+    private int encodedBytes = 0;
+    private long encodeNanos = 0L;
 
     /**
      * Creates a new instance.
@@ -59,7 +68,8 @@ class SpanProcessingThread implements Callable<Integer> {
         if (maxBatchSize <= 0) throw new IllegalArgumentException("maxBatchSize must be positive");
         this.queue = checkNotNull(queue, "Null queue");
         this.clientProvider = checkNotNull(clientProvider, "Null clientProvider");
-        this.metricsHandler = checkNotNull(metricsHandler, "Null metricsHandler");
+        this.metricsHandler =
+            ExtendedSpanCollectorMetricsHandler.Adapter.of(checkNotNull(metricsHandler, "Null metricsHandler"));
         protocolFactory = new TBinaryProtocol.Factory();
         this.maxBatchSize = maxBatchSize;
         logEntries = new ArrayList<LogEntry>(maxBatchSize);
@@ -72,6 +82,31 @@ class SpanProcessingThread implements Callable<Integer> {
         stop = true;
     }
 
+    void setMaxBatchSize(final int maxBatchSize) {
+        if (maxBatchSize <= 0) throw new IllegalArgumentException("maxBatchSize must be positive");
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /**
+     * While paused, spans are left in the queue. Spans already taken from it are sent when
+     * resumed or stopped.
+     */
+    void setPaused(final boolean paused) {
+        this.paused = paused;
+    }
+
+    boolean isSending() {
+        return sending;
+    }
+
+    long getLastSendLatencyNanos() {
+        return lastSendLatencyNanos;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -82,18 +117,26 @@ class SpanProcessingThread implements Callable<Integer> {
         do {
 
             try {
+                if (paused && !stop) {
+                    TimeUnit.MILLISECONDS.sleep(PAUSED_POLL_MILLIS);
+                    continue;
+                }
                 final Span span = queue.poll(5, TimeUnit.SECONDS);
                 if (span == null) {
                     subsequentEmptyBatches++;
 
                 } else {
-                    logEntries.add(create(span));
+                    add(span);
                 }
 
+                // A span taken just before pausing is held until resumed.
+                if (paused && !stop) continue;
                 if (subsequentEmptyBatches >= MAX_SUBSEQUENT_EMPTY_BATCHES && !logEntries.isEmpty()
                     || logEntries.size() >= maxBatchSize || !logEntries.isEmpty() && stop) {
                     log(logEntries);
                     logEntries.clear();
+                    encodedBytes = 0;
+                    encodeNanos = 0L;
                     subsequentEmptyBatches = 0;
                 }
             } catch (final Exception e) {
@@ -104,13 +147,42 @@ class SpanProcessingThread implements Callable<Integer> {
         return processedSpans;
     }
 
+    private void add(final Span span) {
+        final long start = System.nanoTime();
+        final LogEntry logEntry;
+        try {
+            logEntry = create(span);
+        } catch (final TException e) {
+            LOGGER.log(Level.WARNING, "Couldn't encode span, span not submitted: " + span, e);
+            metricsHandler.incrementDroppedSpans(1, DropCause.ENCODING);
+            return;
+        } catch (final RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Couldn't encode span, span not submitted: " + span, e);
+            metricsHandler.incrementDroppedSpans(1, DropCause.ENCODING);
+            return;
+        }
+        encodeNanos += System.nanoTime() - start;
+        encodedBytes += logEntry.getMessage().length();
+        logEntries.add(logEntry);
+    }
+
     private void log(final List<LogEntry> logEntries) {
-        final long start = System.currentTimeMillis();
-        final boolean success = log(clientProvider.getClient(), logEntries);
+        metricsHandler.updateQueueDepth(queue.size());
+        metricsHandler.recordEncoding(logEntries.size(), encodedBytes, encodeNanos);
+        final long start = System.nanoTime();
+        sending = true;
+        final boolean success;
+        try {
+            success = log(clientProvider.getClient(), logEntries);
+        } finally {
+            sending = false;
+            lastSendLatencyNanos = System.nanoTime() - start;
+            metricsHandler.recordFlush(logEntries.size(), lastSendLatencyNanos);
+        }
         processedSpans += logEntries.size();
         if (success && LOGGER.isLoggable(Level.FINE)) {
-            final long end = System.currentTimeMillis();
-            LOGGER.fine("Submitting " + logEntries.size() + " spans to service took " + (end - start) + "ms.");
+            LOGGER.fine("Submitting " + logEntries.size() + " spans to service took "
+                + TimeUnit.NANOSECONDS.toMillis(lastSendLatencyNanos) + "ms.");
         }
     }
 
@@ -133,7 +205,7 @@ class SpanProcessingThread implements Callable<Integer> {
                 LOGGER.warning("Logging spans failed (couldn't establish connection). " + logEntries.size() + " spans are lost!");
             }
         }
-        metricsHandler.incrementDroppedSpans(logEntries.size());
+        metricsHandler.incrementDroppedSpans(logEntries.size(), DropCause.TRANSPORT);
         return false;
     }
 
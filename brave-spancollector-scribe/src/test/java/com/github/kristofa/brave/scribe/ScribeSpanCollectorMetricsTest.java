@@ -8,6 +8,11 @@ import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.assertEquals;
@@ -113,4 +118,93 @@ public class ScribeSpanCollectorMetricsTest {
         assertEquals(1, eventsHandler.droppedSpans);
     }
 
+    @Test
+    public void testPauseHoldsSpansUntilResumed() throws InterruptedException {
+        // given
+        ScribeSpanCollectorParams params = new ScribeSpanCollectorParams();
+        params.setMetricsHandler(eventsHandler);
+
+        try (ScribeSpanCollector scribeSpanCollector = new ScribeSpanCollector(HOST, PORT, params)) {
+            scribeSpanCollector.setMaxBatchSize(1);
+            scribeSpanCollector.pause();
+
+            // when
+            scribeSpanCollector.collect(SPAN);
+            scribeSpanCollector.collect(SPAN);
+            scribeSpanCollector.collect(SPAN);
+            Thread.sleep(300);
+
+            // then
+            assertTrue(scribeSpanCollector.isPaused());
+            assertEquals(0, scribeServer.getReceivedSpans().size());
+
+            scribeSpanCollector.resume();
+            int received = 0; // getReceivedSpans drains
+            for (int i = 0; i < 100 && received < 3; i++) {
+                Thread.sleep(50);
+                received += scribeServer.getReceivedSpans().size();
+            }
+            assertEquals(3, received);
+            assertTrue(scribeSpanCollector.getLastSendLatencyMillis() >= 0);
+            assertEquals(0, scribeSpanCollector.getQueueDepth());
+        }
+        assertEquals(0, eventsHandler.droppedSpans);
+    }
+
+    @Test
+    public void testQueueCapacityCanBeChangedWhileRunning() {
+        // given
+        ScribeSpanCollectorParams params = new ScribeSpanCollectorParams();
+        params.setMetricsHandler(eventsHandler);
+
+        try (ScribeSpanCollector scribeSpanCollector = new ScribeSpanCollector(HOST, PORT, params)) {
+            scribeSpanCollector.pause();
+
+            // when
+            scribeSpanCollector.setQueueCapacity(2);
+            for (int i = 0; i < 5; i++) {
+                scribeSpanCollector.collect(SPAN);
+            }
+
+            // then the processing thread may hold one span taken before it saw the pause
+            assertEquals(2, scribeSpanCollector.getQueueCapacity());
+            assertTrue(scribeSpanCollector.getQueueDepth() <= 2);
+            assertTrue(eventsHandler.droppedSpans >= 2);
+            scribeSpanCollector.resume();
+        }
+    }
+
+    @Test
+    public void testQueueCapacityHoldsUnderConcurrentCollect() throws Exception {
+        // given
+        ScribeSpanCollectorParams params = new ScribeSpanCollectorParams();
+        params.setMetricsHandler(eventsHandler);
+
+        try (ScribeSpanCollector scribeSpanCollector = new ScribeSpanCollector(HOST, PORT, params)) {
+            scribeSpanCollector.pause();
+            scribeSpanCollector.setQueueCapacity(10);
+
+            // when
+            ExecutorService executor = Executors.newFixedThreadPool(8);
+            try {
+                List<Future<?>> futures = new ArrayList<>();
+                for (int i = 0; i < 8; i++) {
+                    futures.add(executor.submit(() -> {
+                        for (int j = 0; j < 100; j++) {
+                            scribeSpanCollector.collect(SPAN);
+                        }
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+
+            // then
+            assertTrue(scribeSpanCollector.getQueueDepth() <= 10);
+            scribeSpanCollector.resume();
+        }
+    }
 }